@@ -0,0 +1,77 @@
+import java.util.Locale;
+import java.util.Random;
+
+import ru.mail.polis.AVLTree;
+
+/**
+ * AVLTree: вставка, поиск, смешанная нагрузка и удаление на случайных ключах, а также память на узел.
+ * Аргумент: количество ключей (по умолчанию 1M).
+ */
+public class AVLTreeBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        Integer[] keys = new Integer[size];
+        Integer[] churn = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextInt();
+            churn[i] = random.nextInt();
+        }
+
+        long before = usedHeap();
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (Integer key : keys) {
+            tree.add(key);
+        }
+        long bytes = usedHeap() - before;
+        System.out.printf(Locale.ROOT, "Memory: %.1f bytes per node (keys are preallocated)%n", (double) bytes / tree.size());
+
+        Bench.report("AVLTree add", Bench.measure(() -> {
+            AVLTree<Integer> fresh = new AVLTree<>();
+            for (Integer key : keys) {
+                fresh.add(key);
+            }
+            Bench.sink += fresh.size();
+        }), size);
+        Bench.report("AVLTree contains", Bench.measure(() -> {
+            long found = 0;
+            for (Integer key : churn) {
+                if (tree.contains(key)) found++;
+            }
+            for (Integer key : keys) {
+                if (tree.contains(key)) found++;
+            }
+            Bench.sink += found;
+        }), size * 2L);
+        Bench.report("AVLTree remove + add", Bench.measure(() -> {
+            for (int i = 0; i < size; i++) {
+                tree.remove(keys[i]);
+                tree.add(churn[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                tree.remove(churn[i]);
+                tree.add(keys[i]);
+            }
+            Bench.sink += tree.size();
+        }), size * 4L);
+        Bench.report("AVLTree remove all (after copy)", Bench.measure(() -> {
+            AVLTree<Integer> copy = new AVLTree<>();
+            for (Integer key : keys) {
+                copy.add(key);
+            }
+            for (Integer key : keys) {
+                copy.remove(key);
+            }
+            Bench.sink += copy.size();
+        }), size * 2L);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
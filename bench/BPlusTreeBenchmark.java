@@ -0,0 +1,73 @@
+import java.util.Iterator;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.BPlusTreeSet;
+import ru.mail.polis.RedBlackTree;
+
+/**
+ * Случайный поиск и последовательный обход BPlusTreeSet с разным fanout
+ * в сравнении с двоичными деревьями: AVLTree, RedBlackTree и, как точка отсчёта, TreeSet.
+ * Обход - SCAN_LENGTH элементов tailSet от случайного ключа, у каждого дерева через его собственный итератор.
+ * Размеры задаются аргументами (по умолчанию 1M и 10M), для 50M нужен -Xmx порядка 8g.
+ */
+public class BPlusTreeBenchmark {
+
+    private static final int LOOKUPS = 1_000_000;
+    private static final int SCAN_LENGTH = 1_000;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0 ? parse(args) : new int[]{1_000_000, 10_000_000};
+        for (int size : sizes) {
+            System.out.println("size = " + size);
+            int[] keys = new Random(1).ints(size, 0, Integer.MAX_VALUE).toArray();
+            int[] probes = new Random(2).ints(LOOKUPS, 0, size).map(i -> keys[i]).toArray();
+            for (int fanout : new int[]{32, 64, 128}) {
+                run("BPlusTreeSet fanout=" + fanout, fill(new BPlusTreeSet<>(fanout, null), keys), probes);
+            }
+            run("AVLTree", fill(new AVLTree<>(), keys), probes);
+            run("RedBlackTree", fill(new RedBlackTree<>(), keys), probes);
+            run("TreeSet", fill(new TreeSet<>(), keys), probes);
+        }
+    }
+
+    private static void run(String name, SortedSet<Integer> set, int[] probes) {
+        long nanos = Bench.measure(() -> {
+            long found = 0;
+            for (int key : probes) {
+                found += set.contains(key) ? 1 : 0;
+            }
+            Bench.sink += found;
+        });
+        Bench.report(name + " lookup", nanos, probes.length);
+        int scans = probes.length / SCAN_LENGTH;
+        nanos = Bench.measure(() -> {
+            long sum = 0;
+            for (int i = 0; i < scans; i++) {
+                Iterator<Integer> it = set.tailSet(probes[i]).iterator();
+                for (int j = 0; j < SCAN_LENGTH && it.hasNext(); j++) {
+                    sum += it.next();
+                }
+            }
+            Bench.sink += sum;
+        });
+        Bench.report(name + " scan of " + SCAN_LENGTH, nanos, (long) scans * SCAN_LENGTH);
+    }
+
+    private static SortedSet<Integer> fill(SortedSet<Integer> set, int[] keys) {
+        for (int key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    private static int[] parse(String[] args) {
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.ChainHashTable;
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+
+/**
+ * Пакетный containsAll против поэлементного contains при размерах партии от 1 до 1024.
+ * Хеш-таблицы - со студентами, деревья - с Integer. Половина запросов - промахи.
+ * Аргумент: количество элементов в множестве (по умолчанию 1M).
+ */
+public class BatchLookupBenchmark {
+
+    private static final int QUERIES = 1 << 16;
+    private static final int[] BATCH_SIZES = {1, 4, 16, 64, 256, 1024};
+
+    private interface BatchLookup<E> {
+        void containsAll(E[] keys, boolean[] out);
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+
+        Student[] students = new Student[size];
+        for (int i = 0; i < size; i++) {
+            students[i] = SimpleStudentGenerator.getInstance().generate();
+        }
+        Student[] studentQueries = new Student[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            studentQueries[i] = i % 2 == 0 ? students[random.nextInt(size)]
+                    : SimpleStudentGenerator.getInstance().generate();
+        }
+        OpenHashTable<Student> open = new OpenHashTable<>();
+        open.addBatch(students);
+        run("OpenHashTable", open, open::containsAll, studentQueries);
+        open = null;
+        ChainHashTable<Student> chain = new ChainHashTable<>();
+        chain.addBatch(students);
+        run("ChainHashTable", chain, chain::containsAll, studentQueries);
+        chain = null;
+        students = null;
+
+        Integer[] values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i * 2;
+        }
+        Integer[] intQueries = new Integer[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            intQueries[i] = random.nextInt(size * 2);
+        }
+        AVLTree<Integer> avl = new AVLTree<>();
+        avl.addBatch(values);
+        run("AVLTree", avl, avl::containsAll, intQueries);
+        avl = null;
+        RedBlackTree<Integer> redBlack = new RedBlackTree<>();
+        redBlack.addBatch(values);
+        run("RedBlackTree", redBlack, redBlack::containsAll, intQueries);
+    }
+
+    private static <E> void run(String name, Set<E> set, BatchLookup<E> batch, E[] queries) {
+        Bench.report(name + " contains", Bench.measure(() -> {
+            long found = 0;
+            for (E query : queries) {
+                if (set.contains(query)) {
+                    found++;
+                }
+            }
+            Bench.sink += found;
+        }), queries.length);
+        for (int batchSize : BATCH_SIZES) {
+            List<E[]> batches = new ArrayList<>();
+            for (int from = 0; from + batchSize <= queries.length; from += batchSize) {
+                batches.add(Arrays.copyOfRange(queries, from, from + batchSize));
+            }
+            boolean[] out = new boolean[batchSize];
+            Bench.report(name + " containsAll, batch " + batchSize, Bench.measure(() -> {
+                long found = 0;
+                for (E[] keys : batches) {
+                    batch.containsAll(keys, out);
+                    for (boolean b : out) {
+                        if (b) found++;
+                    }
+                }
+                Bench.sink += found;
+            }), queries.length);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntConsumer;
+
+/**
+ * Минимальная обвязка для замеров: прогрев, несколько прогонов, лучший результат.
+ * Для точных цифр используйте JMH, здесь важны относительные значения.
+ */
+final class Bench {
+
+    static final int WARMUP_RUNS = 3;
+    static final int MEASURED_RUNS = 5;
+
+    /**
+     * Сюда складываются результаты, чтобы JIT не выбросил замеряемый код
+     */
+    static volatile long sink;
+
+    private Bench() {
+        /* empty */
+    }
+
+    /**
+     * @return лучшее время одного прогона в наносекундах
+     */
+    static long measure(Runnable body) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            body.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            body.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    /**
+     * Запускает body в threads потоках одновременно, body получает номер потока
+     *
+     * @return время от общего старта до завершения последнего потока в наносекундах
+     */
+    static long measureParallel(int threads, IntConsumer body) {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                body.accept(id);
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return System.nanoTime() - begin;
+    }
+
+    static void report(String name, long nanos, long operations) {
+        System.out.printf(Locale.ROOT, "%-48s %10.1f ns/op %12.0f ops/s%n",
+                name, (double) nanos / operations, operations * 1e9 / nanos);
+    }
+}
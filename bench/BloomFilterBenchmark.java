@@ -0,0 +1,65 @@
+import java.util.Locale;
+import java.util.Set;
+
+import ru.mail.polis.ChainHashTable;
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+
+/**
+ * contains в OpenHashTable и ChainHashTable с фильтром Блума и без него, промахов 95%.
+ * Аргумент: количество студентов в таблице (по умолчанию 200K).
+ */
+public class BloomFilterBenchmark {
+
+    private static final int MISS_PERCENT = 95;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Student[] present = generate(size);
+        Student[] queries = new Student[size];
+        for (int i = 0; i < size; i++) {
+            queries[i] = i % 100 < MISS_PERCENT ? SimpleStudentGenerator.getInstance().generate() : present[i];
+        }
+
+        OpenHashTable<Student> open = new OpenHashTable<>();
+        OpenHashTable<Student> openFiltered = new OpenHashTable<>();
+        openFiltered.enableBloomFilter();
+        ChainHashTable<Student> chain = new ChainHashTable<>();
+        ChainHashTable<Student> chainFiltered = new ChainHashTable<>();
+        chainFiltered.enableBloomFilter();
+        for (Student student : present) {
+            open.add(student);
+            openFiltered.add(student);
+            chain.add(student);
+            chainFiltered.add(student);
+        }
+        System.out.printf(Locale.ROOT, "Bloom filter: %d blocks, fill ratio %.3f%n",
+                openFiltered.getBloomFilter().getBlockCount(), openFiltered.getBloomFilter().getFillRatio());
+
+        lookup("OpenHashTable contains", open, queries);
+        lookup("OpenHashTable + Bloom filter contains", openFiltered, queries);
+        lookup("ChainHashTable contains", chain, queries);
+        lookup("ChainHashTable + Bloom filter contains", chainFiltered, queries);
+    }
+
+    private static Student[] generate(int size) {
+        Student[] students = new Student[size];
+        for (int i = 0; i < size; i++) {
+            students[i] = SimpleStudentGenerator.getInstance().generate();
+        }
+        return students;
+    }
+
+    private static void lookup(String name, Set<Student> set, Student[] queries) {
+        Bench.report(name, Bench.measure(() -> {
+            long found = 0;
+            for (Student query : queries) {
+                if (set.contains(query)) {
+                    found++;
+                }
+            }
+            Bench.sink += found;
+        }), queries.length);
+    }
+}
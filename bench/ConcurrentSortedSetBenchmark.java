@@ -0,0 +1,59 @@
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.LockFreeSkipList;
+import ru.mail.polis.RedBlackTree;
+
+/**
+ * Смешанная нагрузка (50% contains, 25% add, 25% remove) на множество,
+ * заполненное наполовину, при разном числе потоков.
+ * Деревья оборачиваются в Collections.synchronizedSortedSet.
+ */
+public class ConcurrentSortedSetBenchmark {
+
+    private static final int KEY_RANGE = 1 << 20;
+    private static final int OPERATIONS_PER_THREAD = 1_000_000;
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            System.out.println("threads = " + threads);
+            run("LockFreeSkipList", threads, LockFreeSkipList::new);
+            run("ConcurrentSkipListSet", threads, ConcurrentSkipListSet::new);
+            run("synchronized AVLTree", threads, () -> Collections.synchronizedSortedSet(new AVLTree<Integer>()));
+            run("synchronized RedBlackTree", threads, () -> Collections.synchronizedSortedSet(new RedBlackTree<Integer>()));
+        }
+    }
+
+    private static void run(String name, int threads, Supplier<SortedSet<Integer>> factory) {
+        SortedSet<Integer> set = factory.get();
+        for (int i = 0; i < KEY_RANGE; i += 2) {
+            set.add(i);
+        }
+        // прогрев
+        Bench.measureParallel(threads, id -> mixedLoad(set, OPERATIONS_PER_THREAD / 4));
+        long nanos = Bench.measureParallel(threads, id -> mixedLoad(set, OPERATIONS_PER_THREAD));
+        Bench.report(name, nanos, (long) threads * OPERATIONS_PER_THREAD);
+    }
+
+    private static void mixedLoad(SortedSet<Integer> set, int operations) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long found = 0;
+        for (int i = 0; i < operations; i++) {
+            int key = random.nextInt(KEY_RANGE);
+            int op = random.nextInt(4);
+            if (op < 2) {
+                found += set.contains(key) ? 1 : 0;
+            } else if (op == 2) {
+                set.add(key);
+            } else {
+                set.remove(key);
+            }
+        }
+        Bench.sink += found;
+    }
+}
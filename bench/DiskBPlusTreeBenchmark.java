@@ -0,0 +1,71 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import ru.mail.polis.DiskBPlusTree;
+import ru.mail.polis.ElementCodecs;
+import ru.mail.polis.RedBlackTree;
+
+/**
+ * Время открытия готового файла против перестроения RedBlackTree с нуля
+ * и скорость поиска, когда страницы уже в кэше.
+ * Аргументы: количество ключей (по умолчанию 1M) и путь к файлу (по умолчанию временный).
+ */
+public class DiskBPlusTreeBenchmark {
+
+    private static final int LOOKUPS = 1_000_000;
+    private static final int COMMIT_EVERY = 100_000;
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path file = args.length > 1 ? Path.of(args[1]) : Files.createTempFile("bplustree", ".db");
+        Files.deleteIfExists(file);
+        long[] keys = new Random(1).longs(size, 0, Long.MAX_VALUE).toArray();
+        long[] probes = new Random(2).ints(LOOKUPS, 0, size).mapToLong(i -> keys[i]).toArray();
+
+        long start = System.nanoTime();
+        try (DiskBPlusTree<Long> tree = DiskBPlusTree.open(file, ElementCodecs.LONG)) {
+            for (int i = 0; i < keys.length; i++) {
+                tree.add(keys[i]);
+                if (i % COMMIT_EVERY == 0) {
+                    tree.commit();
+                }
+            }
+        }
+        Bench.report("DiskBPlusTree build", System.nanoTime() - start, size);
+        System.out.println("file size, MB: " + Files.size(file) / (1 << 20));
+
+        start = System.nanoTime();
+        RedBlackTree<Long> rebuilt = new RedBlackTree<>();
+        for (long key : keys) {
+            rebuilt.add(key);
+        }
+        System.out.printf("RedBlackTree rebuild: %.1f ms%n", (System.nanoTime() - start) / 1e6);
+
+        start = System.nanoTime();
+        try (DiskBPlusTree<Long> tree = DiskBPlusTree.open(file, ElementCodecs.LONG)) {
+            boolean found = tree.contains(probes[0]);
+            System.out.printf("DiskBPlusTree open + first lookup: %.3f ms (%s)%n", (System.nanoTime() - start) / 1e6, found);
+            long nanos = Bench.measure(() -> {
+                long hits = 0;
+                for (long key : probes) {
+                    hits += tree.contains(key) ? 1 : 0;
+                }
+                Bench.sink += hits;
+            });
+            Bench.report("DiskBPlusTree lookup, warm page cache", nanos, probes.length);
+        }
+        long nanos = Bench.measure(() -> {
+            long hits = 0;
+            for (long key : probes) {
+                hits += rebuilt.contains(key) ? 1 : 0;
+            }
+            Bench.sink += hits;
+        });
+        Bench.report("RedBlackTree lookup", nanos, probes.length);
+        if (args.length < 2) {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SortedSet;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.EytzingerIntSet;
+import ru.mail.polis.EytzingerSet;
+import ru.mail.polis.RedBlackTree;
+
+/**
+ * Поиск в замороженных множествах против деревьев на ссылках: AVLTree и RedBlackTree, их freeze()
+ * (EytzingerSet), EytzingerIntSet и двоичный поиск по отсортированному int[] (Arrays.binarySearch).
+ * Половина запросов попадает в множество. Деревья и EytzingerSet строятся только до BOXED_LIMIT ключей:
+ * 100M Integer в дереве не помещаются в разумную кучу, для них меряются только int-варианты.
+ * Аргумент: размеры через запятую (по умолчанию 1M,10M,100M; для 100M нужно -Xmx3g).
+ */
+public class EytzingerBenchmark {
+
+    private static final int BOXED_LIMIT = 10_000_000;
+    private static final int QUERIES = 1 << 20;
+
+    public static void main(String[] args) {
+        String sizes = args.length > 0 ? args[0] : "1000000,10000000,100000000";
+        for (String size : sizes.split(",")) {
+            run(Integer.parseInt(size.trim()));
+        }
+    }
+
+    private static void run(int size) {
+        System.out.println("size = " + size);
+        Random random = new Random(42);
+        int[] keys = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextInt();
+        }
+        int[] queries = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = (i & 1) == 0 ? keys[random.nextInt(size)] : random.nextInt();
+        }
+        EytzingerIntSet ints = EytzingerIntSet.of(keys);
+        int[] sorted = ints.toArray();
+        keys = null;
+
+        Bench.report("int[] Arrays.binarySearch", Bench.measure(() -> {
+            long found = 0;
+            for (int query : queries) {
+                if (Arrays.binarySearch(sorted, query) >= 0) found++;
+            }
+            Bench.sink += found;
+        }), QUERIES);
+        Bench.report("EytzingerIntSet contains", Bench.measure(() -> {
+            long found = 0;
+            for (int query : queries) {
+                if (ints.contains(query)) found++;
+            }
+            Bench.sink += found;
+        }), QUERIES);
+        Bench.report("EytzingerIntSet ceiling", Bench.measure(() -> {
+            long sum = 0;
+            for (int query : queries) {
+                sum += ints.ceiling(query);
+            }
+            Bench.sink += sum;
+        }), QUERIES);
+
+        if (size > BOXED_LIMIT) {
+            return;
+        }
+        Integer[] boxedQueries = new Integer[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            boxedQueries[i] = queries[i];
+        }
+        AVLTree<Integer> avl = new AVLTree<>();
+        RedBlackTree<Integer> redBlack = new RedBlackTree<>();
+        // в порядке возрастания узлы лежат в куче почти подряд, поэтому ключи вставляются вперемешку
+        int[] shuffled = sorted.clone();
+        for (int i = shuffled.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = swap;
+        }
+        for (int key : shuffled) {
+            avl.add(key);
+            redBlack.add(key);
+        }
+        shuffled = null;
+        EytzingerSet<Integer> frozen = avl.freeze();
+        contains("AVLTree contains", avl, boxedQueries);
+        contains("RedBlackTree contains", redBlack, boxedQueries);
+        contains("AVLTree.freeze() contains", frozen, boxedQueries);
+        Bench.report("AVLTree.freeze() ceiling", Bench.measure(() -> {
+            long sum = 0;
+            for (Integer query : boxedQueries) {
+                Integer ceiling = frozen.ceiling(query);
+                sum += ceiling != null ? ceiling : 0;
+            }
+            Bench.sink += sum;
+        }), QUERIES);
+    }
+
+    private static void contains(String name, SortedSet<Integer> set, Integer[] queries) {
+        Bench.report(name, Bench.measure(() -> {
+            long found = 0;
+            for (Integer query : queries) {
+                if (set.contains(query)) found++;
+            }
+            Bench.sink += found;
+        }), queries.length);
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import ru.mail.polis.RedBlackTree;
+
+/**
+ * RedBlackTree: вставка и поиск от корня против поиска от пальца на последовательных,
+ * почти последовательных (локальные перестановки) и случайных ключах.
+ * Аргумент: количество ключей (по умолчанию 1M).
+ */
+public class FingerSearchBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+
+        Integer[] sequential = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            sequential[i] = i;
+        }
+        Integer[] nearlySequential = sequential.clone();
+        for (int i = 0; i + 16 < size; i += 1 + random.nextInt(4)) {
+            int j = i + 1 + random.nextInt(16);
+            Integer temp = nearlySequential[i];
+            nearlySequential[i] = nearlySequential[j];
+            nearlySequential[j] = temp;
+        }
+        Integer[] shuffled = sequential.clone();
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer temp = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = temp;
+        }
+
+        run("sequential", sequential);
+        run("nearly sequential", nearlySequential);
+        run("random", shuffled);
+    }
+
+    private static void run(String name, Integer[] keys) {
+        List<Integer> list = Arrays.asList(keys);
+        Bench.report(name + ": add from root", Bench.measure(() -> {
+            RedBlackTree<Integer> tree = new RedBlackTree<>();
+            for (Integer key : keys) {
+                tree.add(key);
+            }
+            Bench.sink += tree.size();
+        }), keys.length);
+        Bench.report(name + ": addAll with finger", Bench.measure(() -> {
+            RedBlackTree<Integer> tree = new RedBlackTree<>();
+            tree.addAll(list);
+            Bench.sink += tree.size();
+        }), keys.length);
+
+        RedBlackTree<Integer> tree = new RedBlackTree<>();
+        tree.addAll(list);
+        Bench.report(name + ": contains from root", Bench.measure(() -> {
+            long found = 0;
+            for (Integer key : keys) {
+                if (tree.contains(key)) found++;
+            }
+            Bench.sink += found;
+        }), keys.length);
+        Bench.report(name + ": contains with finger", Bench.measure(() -> {
+            RedBlackTree<Integer>.Finger finger = tree.finger();
+            long found = 0;
+            for (Integer key : keys) {
+                if (finger.contains(key)) found++;
+            }
+            Bench.sink += found;
+        }), keys.length);
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.Set;
+
+import ru.mail.polis.ChainHashTable;
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.ProbeRecorder;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+
+/**
+ * Отчёты о состоянии хеш-таблиц со студентами, цена их сбора и цена записи длин поиска в contains.
+ * Аргумент: количество студентов в таблице (по умолчанию 200K).
+ */
+public class HashTableHealthBenchmark {
+
+    private static final int SAMPLE_SIZE = 1024;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Student[] present = new Student[size];
+        for (int i = 0; i < size; i++) {
+            present[i] = SimpleStudentGenerator.getInstance().generate();
+        }
+        OpenHashTable<Student> open = new OpenHashTable<>();
+        ChainHashTable<Student> chain = new ChainHashTable<>();
+        for (Student student : present) {
+            open.add(student);
+            chain.add(student);
+        }
+        for (int i = 0; i < size / 5; i++) {
+            open.remove(present[i]);
+        }
+        System.out.println("OpenHashTable: " + open.healthReport(SAMPLE_SIZE));
+        System.out.println("ChainHashTable: " + chain.healthReport(SAMPLE_SIZE));
+
+        Bench.report("OpenHashTable healthReport(" + SAMPLE_SIZE + ")",
+                Bench.measure(() -> Bench.sink += open.healthReport(SAMPLE_SIZE).getTombstones()), 1);
+        Bench.report("OpenHashTable healthReport(all)",
+                Bench.measure(() -> Bench.sink += open.healthReport(Integer.MAX_VALUE).getTombstones()), 1);
+        Bench.report("ChainHashTable healthReport(" + SAMPLE_SIZE + ")",
+                Bench.measure(() -> Bench.sink += chain.healthReport(SAMPLE_SIZE).getSize()), 1);
+
+        lookup("OpenHashTable contains", open, present);
+        open.setProbeRecorder(new ProbeRecorder());
+        lookup("OpenHashTable contains + ProbeRecorder", open, present);
+        lookup("ChainHashTable contains", chain, present);
+        chain.setProbeRecorder(new ProbeRecorder());
+        lookup("ChainHashTable contains + ProbeRecorder", chain, present);
+    }
+
+    private static void lookup(String name, Set<Student> set, Student[] queries) {
+        Bench.report(name, Bench.measure(() -> {
+            long found = 0;
+            for (Student query : queries) {
+                if (set.contains(query)) {
+                    found++;
+                }
+            }
+            Bench.sink += found;
+        }), queries.length);
+    }
+}
@@ -0,0 +1,87 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.mail.polis.IndexedStudentSet;
+import ru.mail.polis.IndexedStudentSet.Field;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+
+/**
+ * Запросы через вторичные индексы против полного просмотра списка.
+ * Аргументы: количество студентов (по умолчанию 1M, имеет смысл 1M-10M при достаточной -Xmx)
+ * и вид дерева RED_BLACK_TREE или AVL_TREE.
+ */
+public class IndexedStudentSetBenchmark {
+
+    private static final int QUERIES = 100;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        IndexedStudentSet.TreeKind treeKind = args.length > 1
+                ? IndexedStudentSet.TreeKind.valueOf(args[1]) : IndexedStudentSet.TreeKind.RED_BLACK_TREE;
+
+        List<Student> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(SimpleStudentGenerator.getInstance().generate());
+        }
+        IndexedStudentSet set = new IndexedStudentSet(treeKind);
+        IndexedStudentSet.Index<Integer> byGroup = set.addIndex(Field.GROUP_ID);
+        IndexedStudentSet.Index<LocalDate> byBirthday = set.addIndex(Field.BIRTHDAY);
+        IndexedStudentSet.Index<String> byLastName = set.addIndex(Field.LAST_NAME);
+        long start = System.nanoTime();
+        set.addAll(list);
+        Bench.report("build " + treeKind + " with 3 indexes", System.nanoTime() - start, size);
+
+        LocalDate from = LocalDate.of(1995, 3, 1);
+        LocalDate to = LocalDate.of(1995, 3, 3);
+        Bench.report("scan groupId = 1042", Bench.measure(() -> {
+            for (int q = 0; q < QUERIES; q++) {
+                long count = 0;
+                for (Student student : list) {
+                    if (student.getGroupId() == 1042) count++;
+                }
+                Bench.sink += count;
+            }
+        }), QUERIES);
+        Bench.report("index groupId = 1042", Bench.measure(() -> {
+            for (int q = 0; q < QUERIES; q++) {
+                long count = 0;
+                for (Student ignored : byGroup.equalTo(1042)) count++;
+                Bench.sink += count;
+            }
+        }), QUERIES);
+        Bench.report("scan birthday between 3 days", Bench.measure(() -> {
+            for (int q = 0; q < QUERIES; q++) {
+                long count = 0;
+                for (Student student : list) {
+                    if (!student.getBirthday().isBefore(from) && !student.getBirthday().isAfter(to)) count++;
+                }
+                Bench.sink += count;
+            }
+        }), QUERIES);
+        Bench.report("index birthday between 3 days", Bench.measure(() -> {
+            for (int q = 0; q < QUERIES; q++) {
+                long count = 0;
+                for (Student ignored : byBirthday.between(from, to)) count++;
+                Bench.sink += count;
+            }
+        }), QUERIES);
+        Bench.report("scan lastName = ФАБИШ", Bench.measure(() -> {
+            for (int q = 0; q < QUERIES; q++) {
+                long count = 0;
+                for (Student student : list) {
+                    if (student.getLastName().equals("ФАБИШ")) count++;
+                }
+                Bench.sink += count;
+            }
+        }), QUERIES);
+        Bench.report("index lastName = ФАБИШ", Bench.measure(() -> {
+            for (int q = 0; q < QUERIES; q++) {
+                long count = 0;
+                for (Student ignored : byLastName.equalTo("ФАБИШ")) count++;
+                Bench.sink += count;
+            }
+        }), QUERIES);
+    }
+}
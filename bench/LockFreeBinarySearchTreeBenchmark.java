@@ -0,0 +1,69 @@
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import ru.mail.polis.LockFreeBinarySearchTree;
+import ru.mail.polis.RedBlackTree;
+
+/**
+ * LockFreeBinarySearchTree против ConcurrentSkipListSet и RedBlackTree под Collections.synchronizedSortedSet
+ * на случайных ключах от 1 до 64 потоков: смешанная нагрузка (50% contains, 25% add, 25% remove)
+ * и нагрузка только на чтение. Множество заполнено наполовину, общее число операций не зависит от числа
+ * потоков, чтобы замер на 64 потоках шёл столько же, сколько на одном.
+ * Аргументы: наибольшее число потоков (по умолчанию 64) и количество операций (по умолчанию 4M).
+ */
+public class LockFreeBinarySearchTreeBenchmark {
+
+    private static final int KEY_RANGE = 1 << 20;
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 4_000_000;
+        System.out.println("available processors = " + Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            System.out.println("threads = " + threads);
+            int perThread = operations / threads;
+            run("LockFreeBinarySearchTree", threads, perThread, LockFreeBinarySearchTree::new);
+            run("ConcurrentSkipListSet", threads, perThread, ConcurrentSkipListSet::new);
+            run("synchronized RedBlackTree", threads, perThread,
+                    () -> Collections.synchronizedSortedSet(new RedBlackTree<Integer>()));
+        }
+    }
+
+    private static void run(String name, int threads, int operations, Supplier<SortedSet<Integer>> factory) {
+        SortedSet<Integer> set = factory.get();
+        // случайный порядок вставки: отсортированный вход вытянул бы несбалансированное дерево в список
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (set.size() < KEY_RANGE / 2) {
+            set.add(random.nextInt(KEY_RANGE));
+        }
+        // прогрев
+        Bench.measureParallel(threads, id -> mixedLoad(set, operations / 4, 2));
+        long mixed = Bench.measureParallel(threads, id -> mixedLoad(set, operations, 2));
+        Bench.report(name + " mixed", mixed, (long) threads * operations);
+        long reads = Bench.measureParallel(threads, id -> mixedLoad(set, operations, 4));
+        Bench.report(name + " contains only", reads, (long) threads * operations);
+    }
+
+    /**
+     * @param reads - сколько из четырёх операций приходится на contains; остальные поровну add и remove
+     */
+    private static void mixedLoad(SortedSet<Integer> set, int operations, int reads) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long found = 0;
+        for (int i = 0; i < operations; i++) {
+            int key = random.nextInt(KEY_RANGE);
+            int op = random.nextInt(4);
+            if (op < reads) {
+                found += set.contains(key) ? 1 : 0;
+            } else if ((op & 1) == 0) {
+                set.add(key);
+            } else {
+                set.remove(key);
+            }
+        }
+        Bench.sink += found;
+    }
+}
@@ -0,0 +1,75 @@
+import java.io.IOException;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.BinarySearchTree;
+import ru.mail.polis.ChainHashTable;
+import ru.mail.polis.Metrics;
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+import ru.mail.polis.UninstrumentedAVLTree;
+
+/**
+ * Цена метрик: одна и та же нагрузка в двух JVM, с выключенными и с включёнными метриками
+ * (флаг Metrics.ENABLED читается один раз при загрузке класса, поэтому нужны отдельные процессы).
+ * В каждой JVM AVLTree меряется рядом с UninstrumentedAVLTree - тем же кодом без проверок Metrics.ENABLED:
+ * при выключенных метриках разница между ними и есть цена выключенных метрик и должна быть в пределах шума.
+ * Аргумент: количество элементов (по умолчанию 200K).
+ */
+public class MetricsBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("run")) {
+            run(args.length > 1 ? Integer.parseInt(args[1]) : 200_000);
+            return;
+        }
+        String size = args.length > 0 ? args[0] : "200000";
+        for (boolean enabled : new boolean[]{false, true}) {
+            Process process = new ProcessBuilder(
+                    System.getProperty("java.home") + "/bin/java",
+                    "-Dru.mail.polis.metrics=" + enabled,
+                    "-cp", System.getProperty("java.class.path"),
+                    MetricsBenchmark.class.getName(), "run", size)
+                    .inheritIO()
+                    .start();
+            process.waitFor();
+        }
+    }
+
+    private static void run(int size) {
+        System.out.println("Metrics.ENABLED = " + Metrics.ENABLED);
+        Random random = new Random(42);
+        Integer[] keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextInt();
+        }
+        Student[] students = new Student[size];
+        for (int i = 0; i < size; i++) {
+            students[i] = SimpleStudentGenerator.getInstance().generate();
+        }
+        measure("AVLTree without instrumentation", UninstrumentedAVLTree::new, keys);
+        measure("AVLTree", AVLTree::new, keys);
+        measure("RedBlackTree", RedBlackTree::new, keys);
+        measure("BinarySearchTree", BinarySearchTree::new, keys);
+        measure("OpenHashTable", OpenHashTable::new, students);
+        measure("ChainHashTable", ChainHashTable::new, students);
+    }
+
+    private static <E> void measure(String name, Supplier<Set<E>> factory, E[] values) {
+        Bench.report(name + " add + contains", Bench.measure(() -> {
+            Set<E> set = factory.get();
+            for (E value : values) {
+                set.add(value);
+            }
+            long found = 0;
+            for (E value : values) {
+                if (set.contains(value)) found++;
+            }
+            Bench.sink += found;
+        }), values.length * 2L);
+    }
+}
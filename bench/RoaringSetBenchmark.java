@@ -0,0 +1,209 @@
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.function.Supplier;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.RoaringSet;
+
+/**
+ * RoaringSet против AVLTree и RedBlackTree на плотных (случайные 80% чисел подряд), разреженных (любые int)
+ * и сгруппированных (отрезки по 1000 подряд идущих ключей через каждые 4000) данных: память на ключ, вставка,
+ * contains (половина запросов мимо), first/last, обход, объединение и пересечение двух множеств одного
+ * распределения. У деревьев объединение - addAll обоих множеств в новое дерево, пересечение - обход одного
+ * с contains в другом. Для RoaringSet выводятся ещё размер сериализованной формы и количество контейнеров
+ * каждого вида после runOptimize().
+ * Аргумент: количество ключей (по умолчанию 1M).
+ */
+public class RoaringSetBenchmark {
+
+    private static final int QUERIES = 1 << 20;
+    private static final int CLUSTER = 1000;
+    private static final int FOOTPRINT_COPIES = 8;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        for (String distribution : new String[]{"dense", "sparse", "clustered"}) {
+            System.out.println("distribution = " + distribution);
+            Random random = new Random(42);
+            Integer[] keys = generate(distribution, size, random);
+            Integer[] otherKeys = generate(distribution, size, random);
+            Integer[] queries = new Integer[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                queries[i] = (i & 1) == 0 ? keys[random.nextInt(size)] : otherKeys[random.nextInt(size)];
+            }
+            roaringShape(keys);
+            run("RoaringSet", RoaringSet::new, keys, otherKeys, queries);
+            run("AVLTree", AVLTree::new, keys, otherKeys, queries);
+            run("RedBlackTree", RedBlackTree::new, keys, otherKeys, queries);
+        }
+    }
+
+    /**
+     * @return различные ключи в случайном порядке
+     */
+    private static Integer[] generate(String distribution, int size, Random random) {
+        Integer[] keys = new Integer[size];
+        switch (distribution) {
+            case "dense": {
+                int n = 0;
+                for (int key = 0; n < size; key++) {
+                    if (random.nextInt(5) != 0) {
+                        keys[n++] = key;
+                    }
+                }
+                break;
+            }
+            case "sparse": {
+                RoaringSet seen = new RoaringSet();
+                for (int n = 0; n < size; ) {
+                    int key = random.nextInt();
+                    if (seen.add(key)) {
+                        keys[n++] = key;
+                    }
+                }
+                break;
+            }
+            default: {
+                int offset = random.nextInt(CLUSTER);
+                for (int n = 0; n < size; n++) {
+                    keys[n] = offset + (n / CLUSTER) * 4 * CLUSTER + n % CLUSTER;
+                }
+                break;
+            }
+        }
+        for (int i = keys.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+        return keys;
+    }
+
+    private static void roaringShape(Integer[] keys) {
+        RoaringSet set = new RoaringSet();
+        for (Integer key : keys) {
+            set.add(key);
+        }
+        int plain = set.serializedSize();
+        int[] before = set.containerCounts();
+        set.runOptimize();
+        int[] after = set.containerCounts();
+        System.out.printf(Locale.ROOT, "RoaringSet serialized: %.2f bytes per key, after runOptimize() %.2f"
+                        + " (arrays/bitmaps/runs: %d/%d/%d -> %d/%d/%d)%n",
+                (double) plain / keys.length, (double) set.serializedSize() / keys.length,
+                before[0], before[1], before[2], after[0], after[1], after[2]);
+        ByteBuffer buffer = ByteBuffer.allocate(set.serializedSize());
+        Bench.report("RoaringSet serialize + deserialize", Bench.measure(() -> {
+            buffer.clear();
+            set.serialize(buffer);
+            buffer.flip();
+            Bench.sink += RoaringSet.deserialize(buffer).size();
+        }), keys.length);
+    }
+
+    private static void run(String name, Supplier<SortedSet<Integer>> factory, Integer[] keys, Integer[] otherKeys,
+                            Integer[] queries) {
+        footprint(name, factory, keys);
+        SortedSet<Integer> set = build(factory, keys);
+        SortedSet<Integer> other = build(factory, otherKeys);
+
+        Bench.report(name + " add", Bench.measure(() -> {
+            SortedSet<Integer> fresh = factory.get();
+            for (Integer key : keys) {
+                fresh.add(key);
+            }
+            Bench.sink += fresh.size();
+        }), keys.length);
+        Bench.report(name + " contains", Bench.measure(() -> {
+            long found = 0;
+            for (Integer query : queries) {
+                if (set.contains(query)) found++;
+            }
+            Bench.sink += found;
+        }), QUERIES);
+        Bench.report(name + " first + last", Bench.measure(() -> {
+            long sum = 0;
+            for (int i = 0; i < QUERIES; i++) {
+                sum += set.first() + set.last();
+            }
+            Bench.sink += sum;
+        }), QUERIES);
+        Bench.report(name + " iterate", Bench.measure(() -> {
+            long sum = 0;
+            for (Integer key : set) {
+                sum += key;
+            }
+            Bench.sink += sum;
+        }), set.size());
+        Bench.report(name + " union", Bench.measure(() -> Bench.sink += union(factory, set, other).size()),
+                set.size() + other.size());
+        Bench.report(name + " intersection",
+                Bench.measure(() -> Bench.sink += intersection(factory, set, other).size()), set.size() + other.size());
+    }
+
+    /**
+     * Плотный RoaringSet занимает меньше, чем погрешность замера кучи, поэтому меряется FOOTPRINT_COPIES копий
+     */
+    private static void footprint(String name, Supplier<SortedSet<Integer>> factory, Integer[] keys) {
+        SortedSet<?>[] copies = new SortedSet<?>[FOOTPRINT_COPIES];
+        long before = usedHeap();
+        for (int i = 0; i < FOOTPRINT_COPIES; i++) {
+            copies[i] = build(factory, keys);
+        }
+        long bytes = usedHeap() - before;
+        System.out.printf(Locale.ROOT, "%s memory: %.2f bytes per key (keys are preallocated)%n",
+                name, (double) bytes / FOOTPRINT_COPIES / keys.length);
+        Bench.sink += copies[FOOTPRINT_COPIES - 1].size();
+    }
+
+    /**
+     * RoaringSet после вставки сжимается runOptimize()
+     */
+    private static SortedSet<Integer> build(Supplier<SortedSet<Integer>> factory, Integer[] keys) {
+        SortedSet<Integer> set = factory.get();
+        for (Integer key : keys) {
+            set.add(key);
+        }
+        if (set instanceof RoaringSet) {
+            ((RoaringSet) set).runOptimize();
+        }
+        return set;
+    }
+
+    private static SortedSet<Integer> union(Supplier<SortedSet<Integer>> factory, SortedSet<Integer> a,
+                                            SortedSet<Integer> b) {
+        if (a instanceof RoaringSet) {
+            return RoaringSet.union((RoaringSet) a, (RoaringSet) b);
+        }
+        SortedSet<Integer> result = factory.get();
+        result.addAll(a);
+        result.addAll(b);
+        return result;
+    }
+
+    private static SortedSet<Integer> intersection(Supplier<SortedSet<Integer>> factory, SortedSet<Integer> a,
+                                                   SortedSet<Integer> b) {
+        if (a instanceof RoaringSet) {
+            return RoaringSet.intersection((RoaringSet) a, (RoaringSet) b);
+        }
+        SortedSet<Integer> result = factory.get();
+        for (Integer key : a) {
+            if (b.contains(key)) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
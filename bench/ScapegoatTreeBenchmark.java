@@ -0,0 +1,98 @@
+import java.util.Locale;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.function.Supplier;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.BinarySearchTree;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.ScapegoatTree;
+
+/**
+ * ScapegoatTree против BinarySearchTree, AVLTree и RedBlackTree: память на узел, вставка и поиск на случайных
+ * ключах, а также вставка и поиск на отсортированных ключах, где BinarySearchTree вырождается в список
+ * (для него отсортированный вход ограничен 20K ключами).
+ * Аргумент: количество ключей (по умолчанию 1M).
+ */
+public class ScapegoatTreeBenchmark {
+
+    private static final int SORTED_BST_LIMIT = 20_000;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        Integer[] shuffled = new Integer[size];
+        Integer[] sorted = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            shuffled[i] = random.nextInt();
+            sorted[i] = i;
+        }
+
+        footprint("BinarySearchTree", BinarySearchTree::new, shuffled);
+        footprint("ScapegoatTree", ScapegoatTree::new, shuffled);
+        footprint("AVLTree", AVLTree::new, shuffled);
+        footprint("RedBlackTree", RedBlackTree::new, shuffled);
+
+        run("BinarySearchTree", BinarySearchTree::new, shuffled, "random");
+        run("ScapegoatTree", ScapegoatTree::new, shuffled, "random");
+        run("ScapegoatTree alpha=0.6", () -> new ScapegoatTree<>(null, 0.6), shuffled, "random");
+        run("AVLTree", AVLTree::new, shuffled, "random");
+        run("RedBlackTree", RedBlackTree::new, shuffled, "random");
+
+        Integer[] sortedPrefix = new Integer[Math.min(size, SORTED_BST_LIMIT)];
+        System.arraycopy(sorted, 0, sortedPrefix, 0, sortedPrefix.length);
+        run("BinarySearchTree", BinarySearchTree::new, sortedPrefix, "sorted");
+        run("ScapegoatTree", ScapegoatTree::new, sorted, "sorted");
+        run("ScapegoatTree alpha=0.6", () -> new ScapegoatTree<>(null, 0.6), sorted, "sorted");
+        run("AVLTree", AVLTree::new, sorted, "sorted");
+        run("RedBlackTree", RedBlackTree::new, sorted, "sorted");
+
+        ScapegoatTree<Integer> scapegoat = new ScapegoatTree<>();
+        for (Integer key : sorted) {
+            scapegoat.add(key);
+        }
+        System.out.printf(Locale.ROOT, "ScapegoatTree, sorted: %d rebuilds, %.2f relinked nodes per insert, %s%n",
+                scapegoat.getRebuildCount(), (double) scapegoat.getRebuiltNodes() / size, scapegoat.stats());
+    }
+
+    private static void footprint(String name, Supplier<SortedSet<Integer>> factory, Integer[] keys) {
+        long before = usedHeap();
+        SortedSet<Integer> tree = factory.get();
+        for (Integer key : keys) {
+            tree.add(key);
+        }
+        long bytes = usedHeap() - before;
+        System.out.printf(Locale.ROOT, "%s memory: %.1f bytes per node (keys are preallocated)%n",
+                name, (double) bytes / tree.size());
+        Bench.sink += tree.size();
+    }
+
+    private static void run(String name, Supplier<SortedSet<Integer>> factory, Integer[] keys, String input) {
+        SortedSet<Integer> tree = factory.get();
+        Bench.report(name + " add, " + input, Bench.measure(() -> {
+            SortedSet<Integer> fresh = factory.get();
+            for (Integer key : keys) {
+                fresh.add(key);
+            }
+            Bench.sink += fresh.size();
+        }), keys.length);
+        for (Integer key : keys) {
+            tree.add(key);
+        }
+        Bench.report(name + " contains, " + input, Bench.measure(() -> {
+            long found = 0;
+            for (Integer key : keys) {
+                if (tree.contains(key)) found++;
+            }
+            Bench.sink += found;
+        }), keys.length);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.ElementCodecs;
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Snapshots;
+import ru.mail.polis.Student;
+import ru.mail.polis.StudentCodec;
+
+/**
+ * Скорость сохранения и загрузки снимков против перестроения структуры вставками.
+ * Аргумент: количество элементов (по умолчанию 1M).
+ */
+public class SnapshotBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path file = Files.createTempFile("snapshot", ".bin");
+        try {
+            long[] keys = new Random(1).longs(size).toArray();
+            AVLTree<Long> avl = new AVLTree<>();
+            RedBlackTree<Long> redBlack = new RedBlackTree<>();
+            for (long key : keys) {
+                avl.add(key);
+                redBlack.add(key);
+            }
+            run("AVLTree<Long>", file,
+                    () -> Snapshots.save(avl, ElementCodecs.LONG, file),
+                    () -> Snapshots.loadAVLTree(file, ElementCodecs.LONG, null).size(),
+                    () -> {
+                        AVLTree<Long> rebuilt = new AVLTree<>();
+                        for (long key : keys) {
+                            rebuilt.add(key);
+                        }
+                        return rebuilt.size();
+                    }, size);
+            run("RedBlackTree<Long>", file,
+                    () -> Snapshots.save(redBlack, ElementCodecs.LONG, file),
+                    () -> Snapshots.loadRedBlackTree(file, ElementCodecs.LONG, null).size(),
+                    () -> {
+                        RedBlackTree<Long> rebuilt = new RedBlackTree<>();
+                        for (long key : keys) {
+                            rebuilt.add(key);
+                        }
+                        return rebuilt.size();
+                    }, size);
+
+            List<Student> students = new ArrayList<>(size);
+            OpenHashTable<Student> table = new OpenHashTable<>();
+            for (int i = 0; i < size; i++) {
+                Student student = SimpleStudentGenerator.getInstance().generate();
+                students.add(student);
+                table.add(student);
+            }
+            run("OpenHashTable<Student>", file,
+                    () -> Snapshots.save(table, StudentCodec.INSTANCE, file),
+                    () -> Snapshots.loadOpenHashTable(file, StudentCodec.INSTANCE).size(),
+                    () -> {
+                        OpenHashTable<Student> rebuilt = new OpenHashTable<>();
+                        rebuilt.addAll(students);
+                        return rebuilt.size();
+                    }, size);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    private interface IOLoad {
+        int load() throws IOException;
+    }
+
+    private static void run(String name, Path file, IOAction save, IOLoad load, IOLoad rebuild, int size) throws IOException {
+        save.run();
+        double megabytes = Files.size(file) / (double) (1 << 20);
+        long saveNanos = Bench.measure(() -> unchecked(() -> {
+            save.run();
+            return 0;
+        }));
+        long loadNanos = Bench.measure(() -> Bench.sink += unchecked(load));
+        long rebuildNanos = Bench.measure(() -> Bench.sink += unchecked(rebuild));
+        System.out.printf(Locale.ROOT, "%-24s %8.1f MB  save %7.1f ms (%6.0f MB/s)  load %7.1f ms (%6.0f MB/s)  rebuild %7.1f ms%n",
+                name, megabytes,
+                saveNanos / 1e6, megabytes * 1e9 / saveNanos,
+                loadNanos / 1e6, megabytes * 1e9 / loadNanos,
+                rebuildNanos / 1e6);
+        Bench.report(name + " load", loadNanos, size);
+    }
+
+    private static int unchecked(IOLoad action) {
+        try {
+            return action.load();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.function.Supplier;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.SplayTree;
+
+/**
+ * SplayTree (с полным расширением и с полурасширением при поиске) против AVLTree и RedBlackTree на поиске
+ * по распределению Ципфа с параметром s = 0.8, 1.0 и 1.2: ключ ранга k запрашивается с вероятностью,
+ * пропорциональной 1 / k^s. Ранги раздаются ключам случайно, чтобы горячие ключи не шли подряд.
+ * Для SplayTree печатается и число поворотов на поиск.
+ * Аргументы: количество ключей (по умолчанию 1M) и количество поисков (по умолчанию 2M).
+ */
+public class SplayTreeBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        Random random = new Random(42);
+        Integer[] keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextInt();
+        }
+        AVLTree<Integer> avl = fill(AVLTree::new, keys);
+        RedBlackTree<Integer> redBlack = fill(RedBlackTree::new, keys);
+        SplayTree<Integer> splay = fill(SplayTree::new, keys);
+        SplayTree<Integer> semiSplay = fill(() -> new SplayTree<>(null, SplayTree.ReadMode.SEMI_SPLAY), keys);
+
+        for (double s : new double[]{0.8, 1.0, 1.2}) {
+            Integer[] queries = zipf(keys, lookups, s, random);
+            String suffix = String.format(Locale.ROOT, " contains, zipf s=%.1f", s);
+            lookup("AVLTree" + suffix, avl, queries);
+            lookup("RedBlackTree" + suffix, redBlack, queries);
+            lookup("SplayTree" + suffix, splay, queries);
+            lookup("SplayTree semi-splay" + suffix, semiSplay, queries);
+        }
+        Integer[] uniform = new Integer[lookups];
+        for (int i = 0; i < lookups; i++) {
+            uniform[i] = keys[random.nextInt(size)];
+        }
+        lookup("AVLTree contains, uniform", avl, uniform);
+        lookup("RedBlackTree contains, uniform", redBlack, uniform);
+        lookup("SplayTree contains, uniform", splay, uniform);
+        lookup("SplayTree semi-splay contains, uniform", semiSplay, uniform);
+    }
+
+    private static void lookup(String name, SortedSet<Integer> tree, Integer[] queries) {
+        long before = tree instanceof SplayTree ? ((SplayTree<Integer>) tree).getRotationCount() : 0;
+        Bench.report(name, Bench.measure(() -> {
+            long found = 0;
+            for (Integer query : queries) {
+                if (tree.contains(query)) {
+                    found++;
+                }
+            }
+            Bench.sink += found;
+        }), queries.length);
+        if (tree instanceof SplayTree) {
+            long rotations = ((SplayTree<Integer>) tree).getRotationCount() - before;
+            int runs = Bench.WARMUP_RUNS + Bench.MEASURED_RUNS;
+            System.out.printf(Locale.ROOT, "%s: %.2f rotations per lookup%n", name,
+                    (double) rotations / ((long) runs * queries.length));
+        }
+    }
+
+    /**
+     * Выборка ключей по Ципфу: ранг ищется двоичным поиском по накопленным вероятностям
+     */
+    private static Integer[] zipf(Integer[] keys, int count, double s, Random random) {
+        double[] cdf = new double[keys.length];
+        double sum = 0;
+        for (int rank = 0; rank < keys.length; rank++) {
+            sum += 1 / Math.pow(rank + 1, s);
+            cdf[rank] = sum;
+        }
+        Integer[] queries = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            queries[i] = keys[rank >= 0 ? rank : Math.min(-rank - 1, keys.length - 1)];
+        }
+        return queries;
+    }
+
+    private static <T extends SortedSet<Integer>> T fill(Supplier<T> factory, Integer[] keys) {
+        T tree = factory.get();
+        for (Integer key : keys) {
+            tree.add(key);
+        }
+        return tree;
+    }
+}
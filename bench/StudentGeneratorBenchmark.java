@@ -0,0 +1,40 @@
+import java.util.Locale;
+
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.StudentGenerator;
+
+/**
+ * Скорость генерации студентов: SimpleStudentGenerator против StudentGenerator последовательно и параллельно.
+ * Аргумент: количество студентов за прогон (по умолчанию 1M).
+ */
+public class StudentGeneratorBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("Cores: " + cores);
+
+        long simple = Bench.measure(() -> {
+            long sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += SimpleStudentGenerator.getInstance().generate().getGroupId();
+            }
+            Bench.sink += sum;
+        });
+        report("SimpleStudentGenerator", simple, size, 1);
+
+        long sequential = Bench.measure(() -> Bench.sink +=
+                new StudentGenerator(42).stream(size).mapToLong(student -> student.getGroupId()).sum());
+        report("StudentGenerator sequential", sequential, size, 1);
+
+        long parallel = Bench.measure(() -> Bench.sink +=
+                new StudentGenerator(42).stream(size).parallel().mapToLong(student -> student.getGroupId()).sum());
+        report("StudentGenerator parallel", parallel, size, cores);
+    }
+
+    private static void report(String name, long nanos, long students, int threads) {
+        double perSecond = students * 1e9 / nanos;
+        System.out.printf(Locale.ROOT, "%-32s %12.0f students/s %12.0f students/s/core%n",
+                name, perSecond, perSecond / threads);
+    }
+}
@@ -0,0 +1,74 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import ru.mail.polis.IndexedStudentSet;
+import ru.mail.polis.IndexedStudentSet.Field;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+import ru.mail.polis.StudentQuery;
+
+/**
+ * Конъюнктивные запросы разной избирательности через StudentQuery против фильтра по всем студентам.
+ * Аргумент: количество студентов (по умолчанию 1M).
+ */
+public class StudentQueryBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<Student> list = new ArrayList<>(size);
+        IndexedStudentSet indexed = new IndexedStudentSet();
+        indexed.addIndex(Field.GROUP_ID);
+        indexed.addIndex(Field.YEAR_OF_ADMISSION);
+        indexed.addIndex(Field.BIRTHDAY);
+        indexed.addIndex(Field.LAST_NAME);
+        for (int i = 0; i < size; i++) {
+            Student student = SimpleStudentGenerator.getInstance().generate();
+            list.add(student);
+            indexed.add(student);
+        }
+        LocalDate after = LocalDate.of(1996, 1, 1);
+        LocalDate weekFrom = LocalDate.of(1995, 6, 1);
+        LocalDate weekTo = LocalDate.of(1995, 6, 7);
+
+        run("group AND year", list,
+                s -> s.getGroupId() == 1042 && s.getYearOfAdmission() == 2015,
+                () -> new StudentQuery(indexed).whereEquals(Field.GROUP_ID, 1042)
+                        .whereEquals(Field.YEAR_OF_ADMISSION, 2015));
+        run("group AND year AND born after 1995", list,
+                s -> s.getGroupId() == 1042 && s.getYearOfAdmission() == 2015 && !s.getBirthday().isBefore(after),
+                () -> new StudentQuery(indexed).whereEquals(Field.GROUP_ID, 1042)
+                        .whereEquals(Field.YEAR_OF_ADMISSION, 2015).whereAtLeast(Field.BIRTHDAY, after));
+        run("born in a week AND lastName", list,
+                s -> !s.getBirthday().isBefore(weekFrom) && !s.getBirthday().isAfter(weekTo) && s.getLastName().equals("ФАБИШ"),
+                () -> new StudentQuery(indexed).whereBetween(Field.BIRTHDAY, weekFrom, weekTo)
+                        .whereEquals(Field.LAST_NAME, "ФАБИШ"));
+        run("year AND lastName (wide)", list,
+                s -> s.getYearOfAdmission() == 2012 && s.getLastName().equals("ФАБИШ"),
+                () -> new StudentQuery(indexed).whereEquals(Field.YEAR_OF_ADMISSION, 2012)
+                        .whereEquals(Field.LAST_NAME, "ФАБИШ"));
+        run("year AND lastName, limit 10", list,
+                s -> s.getYearOfAdmission() == 2012 && s.getLastName().equals("ФАБИШ"),
+                () -> new StudentQuery(indexed).whereEquals(Field.YEAR_OF_ADMISSION, 2012)
+                        .whereEquals(Field.LAST_NAME, "ФАБИШ").limit(10));
+    }
+
+    private static void run(String name, List<Student> list, Predicate<Student> filter, Supplier<StudentQuery> query) {
+        long expected = list.stream().filter(filter).count();
+        System.out.println(name + ": " + query.get().explain() + ", full result " + expected);
+        Bench.report("  filter all students", Bench.measure(() -> {
+            long count = 0;
+            for (Student student : list) {
+                if (filter.test(student)) count++;
+            }
+            Bench.sink += count;
+        }), 1);
+        Bench.report("  StudentQuery", Bench.measure(() -> {
+            long count = 0;
+            for (Student ignored : query.get()) count++;
+            Bench.sink += count;
+        }), 1);
+    }
+}
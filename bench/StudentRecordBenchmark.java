@@ -0,0 +1,76 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+import ru.mail.polis.StudentRecord;
+import ru.mail.polis.StudentRecordTable;
+
+/**
+ * Память и скорость поиска: OpenHashTable со Student против StudentRecordTable над прямым буфером.
+ * Аргумент: количество студентов (по умолчанию 1M). Для сравнения памяти запускайте с -Xmx побольше.
+ */
+public class StudentRecordBenchmark {
+
+    private static final int LOOKUPS = 1_000_000;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int[] probes = new Random(1).ints(LOOKUPS, 0, size).toArray();
+
+        long before = usedHeap();
+        List<Student> students = new ArrayList<>(size);
+        OpenHashTable<Student> objects = new OpenHashTable<>();
+        for (int i = 0; i < size; i++) {
+            Student student = SimpleStudentGenerator.getInstance().generate();
+            students.add(student);
+            objects.add(student);
+        }
+        System.out.printf("OpenHashTable<Student> heap: %d MB%n", (usedHeap() - before) >> 20);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size * StudentRecord.RECORD_SIZE);
+        before = usedHeap();
+        StudentRecordTable records = new StudentRecordTable(buffer);
+        for (int i = 0; i < size; i++) {
+            int offset = i * StudentRecord.RECORD_SIZE;
+            StudentRecord.write(students.get(i), buffer, offset);
+            records.add(offset);
+        }
+        System.out.printf("StudentRecordTable heap: %d MB, off-heap records: %d MB%n",
+                (usedHeap() - before) >> 20, buffer.capacity() >> 20);
+
+        Bench.report("OpenHashTable<Student> contains", Bench.measure(() -> {
+            long found = 0;
+            for (int probe : probes) {
+                if (objects.contains(students.get(probe))) found++;
+            }
+            Bench.sink += found;
+        }), LOOKUPS);
+        StudentRecord record = new StudentRecord();
+        Bench.report("StudentRecordTable contains(record)", Bench.measure(() -> {
+            long found = 0;
+            for (int probe : probes) {
+                if (records.contains(record.wrap(buffer, probe * StudentRecord.RECORD_SIZE))) found++;
+            }
+            Bench.sink += found;
+        }), LOOKUPS);
+        Bench.report("StudentRecordTable contains(Student)", Bench.measure(() -> {
+            long found = 0;
+            for (int probe : probes) {
+                if (records.contains(students.get(probe))) found++;
+            }
+            Bench.sink += found;
+        }), LOOKUPS);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+import ru.mail.polis.StudentStore;
+
+/**
+ * Занимаемая память и полный проход с фильтром: List со Student против столбцового StudentStore.
+ * Фильтр: группа, диапазон лет поступления и пол.
+ * Аргумент: количество студентов (по умолчанию 1M). Для сравнения памяти запускайте с -Xmx побольше.
+ */
+public class StudentStoreBenchmark {
+
+    private static final int GROUP_ID = 1042;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        long before = usedHeap();
+        List<Student> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(SimpleStudentGenerator.getInstance().generate());
+        }
+        long listBytes = usedHeap() - before;
+
+        before = usedHeap();
+        StudentStore store = new StudentStore(size);
+        store.appendAll(list);
+        long storeBytes = usedHeap() - before;
+        System.out.printf("List<Student>: %d MB, StudentStore: %d MB (dictionary of %d strings)%n",
+                listBytes >> 20, storeBytes >> 20, store.getDictionarySize());
+
+        Bench.report("List<Student> filter", Bench.measure(() -> {
+            long count = 0;
+            for (Student student : list) {
+                if (student.getGroupId() == GROUP_ID
+                        && student.getYearOfAdmission() >= 2012 && student.getYearOfAdmission() <= 2014
+                        && student.getGender() == Student.Gender.FEMALE) {
+                    count++;
+                }
+            }
+            Bench.sink += count;
+        }), size);
+        Bench.report("StudentStore filter", Bench.measure(() -> {
+            BitSet selection = store.whereGroupId(GROUP_ID);
+            selection.and(store.whereYearOfAdmission(2012, 2014));
+            selection.and(store.whereGender(Student.Gender.FEMALE));
+            Bench.sink += selection.cardinality();
+        }), size);
+        Bench.report("StudentStore single column scan", Bench.measure(() -> {
+            Bench.sink += store.whereGroupId(GROUP_ID).cardinality();
+        }), size);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.Locale;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.function.Supplier;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.BinarySearchTree;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.TreeStats;
+
+/**
+ * Форма BinarySearchTree, AVLTree и RedBlackTree на случайных и отсортированных ключах и цена снимка stats().
+ * Аргумент: количество ключей (по умолчанию 20K: отсортированный вход BinarySearchTree строит за n^2).
+ */
+public class TreeStatsBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        Random random = new Random(42);
+        Integer[] shuffled = new Integer[size];
+        Integer[] sorted = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            shuffled[i] = random.nextInt();
+            sorted[i] = i;
+        }
+        for (Integer[] keys : new Integer[][]{shuffled, sorted}) {
+            String input = keys == sorted ? "sorted" : "random";
+            BinarySearchTree<Integer> bst = fill(BinarySearchTree::new, keys);
+            AVLTree<Integer> avl = fill(AVLTree::new, keys);
+            RedBlackTree<Integer> redBlack = fill(RedBlackTree::new, keys);
+            System.out.println("BinarySearchTree, " + input + ": " + summary(bst.stats()));
+            System.out.println("AVLTree, " + input + ": " + summary(avl.stats()));
+            System.out.println("RedBlackTree, " + input + ": " + summary(redBlack.stats()));
+            if (keys == shuffled) {
+                Bench.report("AVLTree stats", Bench.measure(() -> Bench.sink += avl.stats().getHeight()), size);
+                Bench.report("RedBlackTree stats", Bench.measure(() -> Bench.sink += redBlack.stats().getHeight()), size);
+            }
+        }
+    }
+
+    private static <T extends SortedSet<Integer>> T fill(Supplier<T> factory, Integer[] keys) {
+        T tree = factory.get();
+        for (Integer key : keys) {
+            tree.add(key);
+        }
+        return tree;
+    }
+
+    private static String summary(TreeStats stats) {
+        return String.format(Locale.ROOT, "height %d (minimal %d, bound %d), hit %.2f, miss %.2f%s",
+                stats.getHeight(), stats.getMinimalHeight(), stats.getHeightBound(),
+                stats.getExpectedHitComparisons(), stats.getExpectedMissComparisons(),
+                stats.getRedRatio() >= 0 ? String.format(Locale.ROOT, ", red %.3f", stats.getRedRatio()) : "");
+    }
+}
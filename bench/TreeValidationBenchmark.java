@@ -0,0 +1,37 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.RedBlackTree;
+
+/**
+ * Цена полной проверки дерева validate: в текущем потоке и в общем ForkJoinPool.
+ * Аргумент: количество ключей (по умолчанию 1M).
+ */
+public class TreeValidationBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        AVLTree<Integer> avl = new AVLTree<>();
+        RedBlackTree<Integer> redBlack = new RedBlackTree<>();
+        for (int i = 0; i < size; i++) {
+            int key = random.nextInt();
+            avl.add(key);
+            redBlack.add(key);
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.println("ForkJoinPool parallelism = " + pool.getParallelism());
+        System.out.println("AVLTree: " + avl.validate(null));
+        System.out.println("RedBlackTree: " + redBlack.validate(null));
+
+        Bench.report("AVLTree validate", Bench.measure(
+                () -> Bench.sink += avl.validate(null).getNodeCount()), avl.size());
+        Bench.report("AVLTree validate(pool)", Bench.measure(
+                () -> Bench.sink += avl.validate(pool).getNodeCount()), avl.size());
+        Bench.report("RedBlackTree validate", Bench.measure(
+                () -> Bench.sink += redBlack.validate(null).getNodeCount()), redBlack.size());
+        Bench.report("RedBlackTree validate(pool)", Bench.measure(
+                () -> Bench.sink += redBlack.validate(pool).getNodeCount()), redBlack.size());
+    }
+}
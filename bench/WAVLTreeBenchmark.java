@@ -0,0 +1,83 @@
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.BalancedSortedSet;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.WAVLTree;
+
+/**
+ * WAVLTree против AVLTree и RedBlackTree: пропускная способность и число поворотов на операцию
+ * при вставке, при смешанной нагрузке (удаление + вставка) и при удалении всего дерева.
+ * Замеры смешанной нагрузки и удаления включают построение дерева, операции считаются вместе с ним.
+ * Аргумент: количество ключей (по умолчанию 500K).
+ */
+public class WAVLTreeBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        Random random = new Random(42);
+        int[] keys = new int[size];
+        int[] churn = new int[size * 2];
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextInt();
+        }
+        for (int i = 0; i < churn.length; i++) {
+            churn[i] = random.nextInt();
+        }
+
+        run("AVLTree", AVLTree::new, keys, churn);
+        run("RedBlackTree", RedBlackTree::new, keys, churn);
+        run("WAVLTree", WAVLTree::new, keys, churn);
+    }
+
+    private static void run(String name, Supplier<BalancedSortedSet<Integer>> factory, int[] keys, int[] churn) {
+        long[] rotations = new long[3];
+        Bench.report(name + " insert", Bench.measure(() -> {
+            BalancedSortedSet<Integer> tree = factory.get();
+            for (int key : keys) {
+                tree.add(key);
+            }
+            rotations[0] = rotationCount(tree);
+            Bench.sink += tree.size();
+        }), keys.length);
+
+        Bench.report(name + " build + mixed remove/insert", Bench.measure(() -> {
+            BalancedSortedSet<Integer> tree = factory.get();
+            for (int key : keys) {
+                tree.add(key);
+            }
+            long before = rotationCount(tree);
+            for (int i = 0; i < keys.length; i++) {
+                tree.remove(keys[i]);
+                tree.add(churn[i]);
+            }
+            rotations[1] = rotationCount(tree) - before;
+            Bench.sink += tree.size();
+        }), keys.length * 3L);
+
+        Bench.report(name + " build + remove all", Bench.measure(() -> {
+            BalancedSortedSet<Integer> tree = factory.get();
+            for (int key : keys) {
+                tree.add(key);
+            }
+            long before = rotationCount(tree);
+            for (int key : keys) {
+                tree.remove(key);
+            }
+            rotations[2] = rotationCount(tree) - before;
+            Bench.sink += tree.size();
+        }), keys.length * 2L);
+
+        System.out.printf(Locale.ROOT, "%s rotations per op: insert %.3f, mixed %.3f, remove %.3f%n", name,
+                (double) rotations[0] / keys.length, (double) rotations[1] / (keys.length * 2L),
+                (double) rotations[2] / keys.length);
+    }
+
+    private static long rotationCount(BalancedSortedSet<Integer> tree) {
+        if (tree instanceof AVLTree) return ((AVLTree<Integer>) tree).getRotationCount();
+        if (tree instanceof RedBlackTree) return ((RedBlackTree<Integer>) tree).getRotationCount();
+        return ((WAVLTree<Integer>) tree).getRotationCount();
+    }
+}
@@ -0,0 +1,245 @@
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.YFastIntSet;
+
+/**
+ * YFastIntSet против AVLTree&lt;Integer&gt; и TreeSet&lt;Integer&gt; на трёх распределениях идентификаторов:
+ * плотном (случайные 80% чисел подряд), разреженном (любые int) и сгруппированном (отрезки по 1000 подряд
+ * идущих id, разбросанные по всему диапазону). Меряются память, вставка, contains, ceiling и floor
+ * (половина запросов - не из множества; у AVLTree только ceiling через iteratorFrom) и удаление.
+ * Аргумент: количество ключей (по умолчанию 1M).
+ */
+public class YFastIntSetBenchmark {
+
+    private static final int QUERIES = 1 << 20;
+    private static final int CLUSTER = 1000;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        for (String distribution : new String[]{"dense", "sparse", "clustered"}) {
+            System.out.println("distribution = " + distribution);
+            Random random = new Random(42);
+            int[] keys = generate(distribution, size, random);
+            int[] queries = new int[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                queries[i] = (i & 1) == 0 ? keys[random.nextInt(size)] : keys[random.nextInt(size)] + 1;
+            }
+            runYFast(keys, queries);
+            runAVL(keys, queries);
+            runTreeSet(keys, queries);
+        }
+    }
+
+    /**
+     * @return различные ключи в случайном порядке
+     */
+    private static int[] generate(String distribution, int size, Random random) {
+        int[] keys = new int[size];
+        switch (distribution) {
+            case "dense": {
+                int n = 0;
+                for (int id = 0; n < size; id++) {
+                    if (random.nextInt(5) != 0) {
+                        keys[n++] = id;
+                    }
+                }
+                break;
+            }
+            case "sparse": {
+                TreeSet<Integer> seen = new TreeSet<>();
+                for (int n = 0; n < size; ) {
+                    int key = random.nextInt();
+                    if (seen.add(key)) {
+                        keys[n++] = key;
+                    }
+                }
+                break;
+            }
+            default: {
+                //отрезки начинаются с кратных 2^20, поэтому не пересекаются
+                int clusters = (size + CLUSTER - 1) / CLUSTER;
+                int stride = Integer.divideUnsigned(-1, clusters) & -(1 << 20);
+                for (int n = 0; n < size; n++) {
+                    keys[n] = Integer.MIN_VALUE + (n / CLUSTER) * stride + n % CLUSTER;
+                }
+                break;
+            }
+        }
+        for (int i = keys.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+        return keys;
+    }
+
+    private static void runYFast(int[] keys, int[] queries) {
+        long before = usedHeap();
+        YFastIntSet set = new YFastIntSet();
+        for (int key : keys) {
+            set.add(key);
+        }
+        footprint("YFastIntSet", usedHeap() - before, set.size());
+        Bench.report("YFastIntSet add", Bench.measure(() -> {
+            YFastIntSet fresh = new YFastIntSet();
+            for (int key : keys) {
+                fresh.add(key);
+            }
+            Bench.sink += fresh.size();
+        }), keys.length);
+        Bench.report("YFastIntSet contains", Bench.measure(() -> {
+            long found = 0;
+            for (int query : queries) {
+                if (set.contains(query)) found++;
+            }
+            Bench.sink += found;
+        }), QUERIES);
+        Bench.report("YFastIntSet ceiling", Bench.measure(() -> {
+            long sum = 0;
+            for (int query : queries) {
+                sum += set.ceiling(query);
+            }
+            Bench.sink += sum;
+        }), QUERIES);
+        Bench.report("YFastIntSet floor", Bench.measure(() -> {
+            long sum = 0;
+            for (int query : queries) {
+                sum += set.floor(query);
+            }
+            Bench.sink += sum;
+        }), QUERIES);
+        Bench.report("YFastIntSet add + remove", Bench.measure(() -> {
+            YFastIntSet fresh = new YFastIntSet();
+            for (int key : keys) {
+                fresh.add(key);
+            }
+            for (int key : keys) {
+                fresh.remove(key);
+            }
+            Bench.sink += fresh.size();
+        }), 2L * keys.length);
+    }
+
+    private static void runAVL(int[] keys, int[] queries) {
+        Integer[] boxed = box(keys);
+        Integer[] boxedQueries = box(queries);
+        long before = usedHeap();
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (Integer key : boxed) {
+            tree.add(key);
+        }
+        footprint("AVLTree", usedHeap() - before, tree.size());
+        Bench.report("AVLTree add", Bench.measure(() -> {
+            AVLTree<Integer> fresh = new AVLTree<>();
+            for (Integer key : boxed) {
+                fresh.add(key);
+            }
+            Bench.sink += fresh.size();
+        }), keys.length);
+        Bench.report("AVLTree contains", Bench.measure(() -> {
+            long found = 0;
+            for (Integer query : boxedQueries) {
+                if (tree.contains(query)) found++;
+            }
+            Bench.sink += found;
+        }), QUERIES);
+        //у AVLTree нет ceiling и floor: преемник - первый элемент iteratorFrom, предшественник не меряется
+        Bench.report("AVLTree ceiling (iteratorFrom)", Bench.measure(() -> {
+            long sum = 0;
+            for (Integer query : boxedQueries) {
+                Iterator<Integer> ceiling = tree.iteratorFrom(query);
+                sum += ceiling.hasNext() ? ceiling.next() : 0;
+            }
+            Bench.sink += sum;
+        }), QUERIES);
+        Bench.report("AVLTree add + remove", Bench.measure(() -> {
+            AVLTree<Integer> fresh = new AVLTree<>();
+            for (Integer key : boxed) {
+                fresh.add(key);
+            }
+            for (Integer key : boxed) {
+                fresh.remove(key);
+            }
+            Bench.sink += fresh.size();
+        }), 2L * keys.length);
+    }
+
+    private static void runTreeSet(int[] keys, int[] queries) {
+        Integer[] boxed = box(keys);
+        Integer[] boxedQueries = box(queries);
+        long before = usedHeap();
+        TreeSet<Integer> tree = new TreeSet<>();
+        for (Integer key : boxed) {
+            tree.add(key);
+        }
+        footprint("TreeSet", usedHeap() - before, tree.size());
+        Bench.report("TreeSet add", Bench.measure(() -> {
+            TreeSet<Integer> fresh = new TreeSet<>();
+            for (Integer key : boxed) {
+                fresh.add(key);
+            }
+            Bench.sink += fresh.size();
+        }), keys.length);
+        Bench.report("TreeSet contains", Bench.measure(() -> {
+            long found = 0;
+            for (Integer query : boxedQueries) {
+                if (tree.contains(query)) found++;
+            }
+            Bench.sink += found;
+        }), QUERIES);
+        Bench.report("TreeSet ceiling", Bench.measure(() -> {
+            long sum = 0;
+            for (Integer query : boxedQueries) {
+                Integer ceiling = tree.ceiling(query);
+                sum += ceiling != null ? ceiling : 0;
+            }
+            Bench.sink += sum;
+        }), QUERIES);
+        Bench.report("TreeSet floor", Bench.measure(() -> {
+            long sum = 0;
+            for (Integer query : boxedQueries) {
+                Integer floor = tree.floor(query);
+                sum += floor != null ? floor : 0;
+            }
+            Bench.sink += sum;
+        }), QUERIES);
+        Bench.report("TreeSet add + remove", Bench.measure(() -> {
+            TreeSet<Integer> fresh = new TreeSet<>();
+            for (Integer key : boxed) {
+                fresh.add(key);
+            }
+            for (Integer key : boxed) {
+                fresh.remove(key);
+            }
+            Bench.sink += fresh.size();
+        }), 2L * keys.length);
+    }
+
+    private static Integer[] box(int[] values) {
+        Integer[] boxed = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            boxed[i] = values[i];
+        }
+        return boxed;
+    }
+
+    /**
+     * Для деревьев ключи упакованы заранее, поэтому в память на ключ Integer не входит
+     */
+    private static void footprint(String name, long bytes, int size) {
+        System.out.printf(Locale.ROOT, "%s memory: %.1f bytes per key%n", name, (double) bytes / size);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,179 @@
+package ru.mail.polis;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * Копия пути add и contains из AVLTree без единой проверки Metrics.ENABLED - точка отсчёта для MetricsBenchmark:
+ * с выключенными метриками AVLTree должен работать так же быстро. Всё остальное (RebalanceEvent, счётчик
+ * поворотов, modCount) оставлено как в AVLTree, чтобы разница сводилась к метрикам.
+ * Лежит в пакете ru.mail.polis только ради доступа к RebalanceEvent; обход и удаление не поддерживаются.
+ */
+public final class UninstrumentedAVLTree<E extends Comparable<E>> extends AbstractSet<E> {
+
+    private final Comparator<E> comparator;
+    private Node<E> root;
+    private int size;
+    private int modCount;
+    private long rotationCount;
+
+    public UninstrumentedAVLTree() {
+        this(null);
+    }
+
+    public UninstrumentedAVLTree(Comparator<E> comparator) {
+        this.comparator = comparator;
+    }
+
+    @Override
+    public boolean add(E value) {
+        if (root == null){
+            root = new Node<>(value);
+            ++size;
+            ++modCount;
+            return true;
+        }
+        Node<E> curr = root;
+        Node<E> parent = curr;
+        int comp = 0;
+        while(curr != null){
+            parent = curr;
+            comp = compare(curr.value, value);
+            if (comp == 0) return false;
+            curr = (comp < 0)? curr.right : curr.left;
+        }
+        if (comp < 0){
+            parent.right = new Node<>(value,parent);
+        } else {
+            parent.left = new Node<>(value,parent);
+        }
+        ++size;
+        ++modCount;
+        RebalanceEvent event = new RebalanceEvent();
+        event.begin();
+        long rotations = rotationCount;
+        int levels = retrace(parent);
+        event.finish(this, "add", levels, rotations, rotationCount, size);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        if (root == null) return false;
+        Node<E> curr = root;
+        while (curr != null){
+            int comp = compare(curr.value, value);
+            if (comp == 0) return true;
+            curr = (comp < 0)? curr.right : curr.left;
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        throw new UnsupportedOperationException("iterator");
+    }
+
+    private int retrace(Node<E> node) {
+        int levels = 0;
+        while (node != null) {
+            levels++;
+            int oldHeight = node.height;
+            node = balance(node);
+            if (node.height == oldHeight) {
+                break;
+            }
+            node = node.parent;
+        }
+        return levels;
+    }
+
+    private Node<E> balance(Node<E> node) {
+        int diff = getHeight(node.right) - getHeight(node.left);
+        if (diff < -1) {
+            if (getHeight(node.left.left) < getHeight(node.left.right))
+                rotateLeft(node.left);
+            return rotateRight(node);
+        }
+        if (diff > 1) {
+            if (getHeight(node.right.right) < getHeight(node.right.left))
+                rotateRight(node.right);
+            return rotateLeft(node);
+        }
+        updateHeight(node);
+        return node;
+    }
+
+    private Node<E> rotateLeft(Node<E> node) {
+        rotationCount++;
+        Node<E> right = node.right;
+        right.parent = node.parent;
+        node.right = right.left;
+        right.left = node;
+        node.parent = right;
+        if (node.right != null)
+            node.right.parent = node;
+        replaceChild(right.parent, node, right);
+        updateHeight(node);
+        updateHeight(right);
+        return right;
+    }
+
+    private Node<E> rotateRight(Node<E> node) {
+        rotationCount++;
+        Node<E> left = node.left;
+        left.parent = node.parent;
+        node.left = left.right;
+        left.right = node;
+        node.parent = left;
+        if (node.left != null)
+            node.left.parent = node;
+        replaceChild(left.parent, node, left);
+        updateHeight(node);
+        updateHeight(left);
+        return left;
+    }
+
+    private void replaceChild(Node<E> parent, Node<E> old, Node<E> replacement) {
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.right == old) {
+            parent.right = replacement;
+        } else {
+            parent.left = replacement;
+        }
+    }
+
+    private static int getHeight(Node<?> node) {
+        return (node != null) ? node.height : -1;
+    }
+
+    private static void updateHeight(Node<?> node) {
+        node.height = (byte) (1 + Math.max(getHeight(node.left), getHeight(node.right)));
+    }
+
+    private int compare(E v1, E v2) {
+        return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    private static final class Node<E> {
+        E value;
+        Node<E> left, right, parent;
+        byte height;
+        Node(E value) {
+            this.value = value;
+        }
+        Node(E value, Node<E> parent) {
+            this.value = value;
+            this.parent = parent;
+        }
+    }
+}
@@ -1,17 +1,27 @@
 package ru.mail.polis;
 
 import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
-public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements BalancedSortedSet<E> {
+public class AVLTree<E extends Comparable<E>> extends AbstractSet<E>
+        implements BalancedSortedSet<E>, SortedRangeView.Source<E> {
 
     private final Comparator<E> comparator;
 
-    private Node root;
+    private Node<E> root;
     private int size;
+    private int modCount; //число структурных изменений, для итераторов
+    private long rotationCount;
+    private final Metrics metrics = Metrics.create(); //null, если метрики выключены
 
     public AVLTree() {
         this(null);
@@ -30,13 +40,15 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
      */
     @Override
     public boolean add(E value) {
+        if (Metrics.ENABLED) metrics.adds.increment();
         if (root == null){
-            root = new Node(value);
+            root = new Node<>(value);
             ++size;
+            ++modCount;
             return true;
         }
-        Node curr = root;
-        Node parent = curr;
+        Node<E> curr = root;
+        Node<E> parent = curr;
         int comp = 0;
         // спуск вниз для поиска элемента
         while(curr != null){
@@ -47,12 +59,17 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
         }
         // вставка
         if (comp < 0){
-            parent.right = new Node(value,parent);
+            parent.right = new Node<>(value,parent);
         } else {
-            parent.left = new Node(value,parent);
+            parent.left = new Node<>(value,parent);
         }
         ++size;
-        balance(parent);
+        ++modCount;
+        RebalanceEvent event = new RebalanceEvent();
+        event.begin();
+        long rotations = rotationCount;
+        int levels = retrace(parent);
+        event.finish(this, "add", levels, rotations, rotationCount, size);
         return true;
     }
 
@@ -65,18 +82,20 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
      */
     @Override
     public boolean remove(Object object) {
+        if (Metrics.ENABLED) metrics.removes.increment();
         @SuppressWarnings("unchecked")
         E value = (E) object;
         if (root == null) return false;
-        Node child = root;
+        Node<E> child = root;
         // спускаемся для поиска элемента
         while (child!=null) {
-            Node curr = child;
+            Node<E> curr = child;
             int comp = compare(curr.value, value);
             if (comp == 0){
                 //элемент найден
-                remove(curr);
                 --size;
+                ++modCount;
+                remove(curr);
                 return true;
             } else {
                 child = (comp < 0)? curr.right : curr.left;
@@ -86,111 +105,141 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
     }
 
     /**
-     * Рекурсивное удаление элемента
+     * Удаление узла: узел с двумя потомками получает значение предшественника, и удаляется
+     * узел предшественника. Удаляемый узел имеет не больше одного потомка, который занимает его место.
      * @param node - элемент
      */
-    private void remove(Node node) {
-        // если лист
-        if (node.left == null && node.right == null) {
-            if (node.parent == null) {
-                root = null;
+    private void remove(Node<E> node) {
+        if (node.left != null && node.right != null) {
+            Node<E> prev = node.left;
+            while (prev.right != null) prev = prev.right;
+            node.value = prev.value;
+            node = prev;
+        }
+        Node<E> child = (node.left != null) ? node.left : node.right;
+        Node<E> parent = node.parent;
+        if (child != null) {
+            child.parent = parent;
+        }
+        if (parent == null) {
+            root = child;
+        } else {
+            // удаляем связь у родителя
+            if (parent.left == node) {
+                parent.left = child;
             } else {
-                Node parent = node.parent;
-                // удаляем связь у родителя
-                if (parent.left != node) {
-                    parent.right = null;
-                } else {
-                    parent.left = null;
-                }
-                balance(parent);
+                parent.right = child;
             }
-            return;
+            RebalanceEvent event = new RebalanceEvent();
+            event.begin();
+            long rotations = rotationCount;
+            int levels = retrace(parent);
+            event.finish(this, "remove", levels, rotations, rotationCount, size);
         }
-        Node child;
-        if (node.left != null) {
-            child = node.left;
-            while (child.right != null) child = child.right;
-        } else {
-            child = node.right;
-            while (child.left != null) child = child.left;
+    }
+
+    /**
+     * Восстанавливает высоты и балансы циклом от node к корню.
+     * Останавливается на первом поддереве, высота которого не изменилась: выше ничего не поменялось.
+     * После вставки это происходит не позже первого поворота, после удаления - когда поворот или
+     * второе поддерево поглотили изменение высоты.
+     * @param node - самый нижний узел с изменившимся поддеревом
+     * @return сколько узлов пройдено
+     */
+    private int retrace(Node<E> node) {
+        int levels = 0;
+        while (node != null) {
+            levels++;
+            int oldHeight = node.height;
+            node = balance(node);
+            if (node.height == oldHeight) {
+                break;
+            }
+            node = node.parent;
         }
-        node.value = child.value;
-        remove(child);
+        return levels;
     }
 
-    private void balance(Node node) {
-        setDiff(node);
-        if (node.diff == -2) {
+    /**
+     * Пересчитывает высоту узла и при разнице высот поддеревьев 2 делает один или два поворота
+     * @return корень поддерева на месте node
+     */
+    private Node<E> balance(Node<E> node) {
+        int diff = getHeight(node.right) - getHeight(node.left);
+        if (diff < -1) {
             if (getHeight(node.left.left) < getHeight(node.left.right))
-                node.left = rotateLeft(node.left);
-            node = rotateRight(node);
-        } else if (node.diff == 2) {
-            if (getHeight(node.right.right) < getHeight(node.right.left))
-                node.right = rotateRight(node.right);
-            node = rotateLeft(node);
+                rotateLeft(node.left);
+            return rotateRight(node);
         }
-        if (node.parent != null) {
-            balance(node.parent);
-        } else {
-            root = node;
+        if (diff > 1) {
+            if (getHeight(node.right.right) < getHeight(node.right.left))
+                rotateRight(node.right);
+            return rotateLeft(node);
         }
+        updateHeight(node);
+        return node;
     }
-    private Node rotateLeft(Node node) {
-        Node right = node.right;
+
+    private Node<E> rotateLeft(Node<E> node) {
+        rotationCount++;
+        if (Metrics.ENABLED) metrics.rotations.increment();
+        Node<E> right = node.right;
         right.parent = node.parent;
         node.right = right.left;
         right.left = node;
         node.parent = right;
         if (node.right != null)
             node.right.parent = node;
-        if (right.parent != null) {
-            if (right.parent.right == node) {
-                right.parent.right = right;
-            } else {
-                right.parent.left = right;
-            }
-        }
-        setDiff(node);
-        setDiff(right);
+        replaceChild(right.parent, node, right);
+        updateHeight(node);
+        updateHeight(right);
         return right;
     }
 
-    private Node rotateRight(Node node) {
-        Node left = node.left;
+    private Node<E> rotateRight(Node<E> node) {
+        rotationCount++;
+        if (Metrics.ENABLED) metrics.rotations.increment();
+        Node<E> left = node.left;
         left.parent = node.parent;
         node.left = left.right;
         left.right = node;
         node.parent = left;
         if (node.left != null)
             node.left.parent = node;
-        if (left.parent != null) {
-            if (left.parent.right == node) {
-                left.parent.right = left;
-            } else {
-                left.parent.left = left;
-            }
-        }
-        setDiff(node);
-        setDiff(left);
+        replaceChild(left.parent, node, left);
+        updateHeight(node);
+        updateHeight(left);
         return left;
     }
 
+    /**
+     * Ставит replacement на место old у родителя parent (или в корень)
+     */
+    private void replaceChild(Node<E> parent, Node<E> old, Node<E> replacement) {
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.right == old) {
+            parent.right = replacement;
+        } else {
+            parent.left = replacement;
+        }
+    }
+
     /**
      * Получение высоты элемента
      * @param node - элемент
      * @return высота
      */
-    private int getHeight(Node node) {
+    private static int getHeight(Node<?> node) {
         return (node != null) ? node.height : -1;
     }
 
     /**
-     * Установка разницы высот и высоты
+     * Установка высоты по высотам потомков
      * @param node - элемент
      */
-    private void setDiff(Node node) {
-        node.height = 1+Math.max(getHeight(node.left), getHeight(node.right));
-        node.diff = getHeight(node.right) - getHeight(node.left);
+    private static void updateHeight(Node<?> node) {
+        node.height = (byte) (1 + Math.max(getHeight(node.left), getHeight(node.right)));
     }
 
     /**
@@ -202,10 +251,11 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
      */
     @Override
     public boolean contains(Object object) {
+        if (Metrics.ENABLED) metrics.lookups.increment();
         @SuppressWarnings("unchecked")
         E value = (E) object;
         if (root == null) return false;
-        Node curr = root;
+        Node<E> curr = root;
         while (curr != null){
             int comp = compare(curr.value, value);
             if (comp == 0) return true;
@@ -214,6 +264,69 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
         return false;
     }
 
+    /**
+     * Пакетный поиск: out[i] = contains(values[i]).
+     * Ключи сортируются, и каждый следующий поиск продолжается от ближайшего общего предка с путём
+     * предыдущего ключа. Стек хранит узлы этого пути со значениями не меньше предыдущего ключа (где спуск
+     * ушёл влево или нашёл ключ): их значения - верхние границы поддеревьев. Следующий ключ снимает границы
+     * меньше себя и спускается дальше с правого потомка последней снятой - общая часть пути не проходится
+     * заново. Если не снята ни одна граница, предыдущий ключ не найден, а следующий лежит между ним и
+     * границей на вершине стека, где предыдущий спуск уже дошёл до пустого поддерева.
+     */
+    public void containsAll(E[] values, boolean[] out) {
+        if (Metrics.ENABLED) metrics.lookups.add(values.length);
+        if (out.length < values.length) {
+            throw new IllegalArgumentException("out holds " + out.length + " results for " + values.length + " values");
+        }
+        ArrayDeque<Node<E>> bounds = new ArrayDeque<>();
+        Node<E> start = root; //откуда спускаться, если не снята ни одна граница
+        for (int i : SortedOrder.of(values, comparator)) {
+            E value = values[i];
+            Node<E> curr = start;
+            boolean found = false;
+            while (!bounds.isEmpty()) {
+                Node<E> bound = bounds.peek();
+                int comp = compare(bound.value, value);
+                if (comp >= 0) {
+                    found = comp == 0;
+                    break;
+                }
+                bounds.pop();
+                curr = bound.right;
+            }
+            while (!found && curr != null) {
+                int comp = compare(curr.value, value);
+                if (comp >= 0) {
+                    bounds.push(curr);
+                    found = comp == 0;
+                    curr = curr.left;
+                } else {
+                    curr = curr.right;
+                }
+            }
+            out[i] = found;
+            start = null;
+        }
+    }
+
+    /**
+     * Пакетная вставка в порядке возрастания: соседние вставки спускаются по почти одному пути,
+     * который уже лежит в кеше
+     *
+     * @return сколько элементов было вставлено
+     */
+    public int addBatch(E[] values) {
+        E[] sorted = values.clone();
+        Arrays.sort(sorted, this::compare);
+        int added = 0;
+        for (E value : sorted) {
+            if (add(value)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
     /**
      * Ищет наименьший элемент в дереве
      * @return Возвращает наименьший элемент в дереве
@@ -224,7 +337,7 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
         if (size == 0) {
             throw new NoSuchElementException("first");
         }
-        Node curr = root;
+        Node<E> curr = root;
         while ((curr.left)!= null){
             curr = curr.left;
         }
@@ -241,14 +354,57 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
         if (size == 0) {
             throw new NoSuchElementException("last");
         }
-        Node curr = root;
+        Node<E> curr = root;
         while ((curr.right)!= null){
             curr = curr.right;
         }
         return curr.value;
     }
 
+    /**
+     * Обходит элементы дерева в порядке возрастания без рекурсии
+     * @param action - действие над каждым элементом
+     */
+    void forEachInOrder(Consumer<? super E> action) {
+        ArrayDeque<Node<E>> stack = new ArrayDeque<>();
+        Node<E> curr = root;
+        while (curr != null || !stack.isEmpty()) {
+            while (curr != null) {
+                stack.push(curr);
+                curr = curr.left;
+            }
+            curr = stack.pop();
+            action.accept(curr.value);
+            curr = curr.right;
+        }
+    }
+
+    /**
+     * Заменяет содержимое дерева идеально сбалансированным деревом за O(n), без сравнений и поворотов
+     * @param size - количество элементов
+     * @param sorted - выдаёт элементы в порядке возрастания, без повторов
+     */
+    void buildFromSorted(int size, Supplier<? extends E> sorted) {
+        this.root = build(0, size - 1, null, sorted);
+        this.size = size;
+        this.modCount++;
+    }
+
+    private Node<E> build(int lo, int hi, Node<E> parent, Supplier<? extends E> sorted) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        Node<E> node = new Node<>(null, parent);
+        node.left = build(lo, mid - 1, node, sorted);
+        node.value = sorted.get();
+        node.right = build(mid + 1, hi, node, sorted);
+        updateHeight(node);
+        return node;
+    }
+
     private int compare(E v1, E v2) {
+        if (Metrics.ENABLED) metrics.comparisons.increment();
         return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
     }
 
@@ -262,6 +418,20 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
         return size;
     }
 
+    /**
+     * @return сколько поворотов сделано за время жизни дерева
+     */
+    public long getRotationCount() {
+        return rotationCount;
+    }
+
+    /**
+     * @return счётчики операций, сравнений и поворотов; нулевые, если метрики выключены (см. Metrics.ENABLED)
+     */
+    public Metrics getMetrics() {
+        return metrics != null ? metrics : Metrics.DISABLED;
+    }
+
     @Override
     public String toString() {
         return "AVLTree{" +
@@ -272,70 +442,245 @@ public class AVLTree<E extends Comparable<E>> extends AbstractSet<E> implements
 
     @Override
     public SortedSet<E> subSet(E fromElement, E toElement) {
-        throw new UnsupportedOperationException("subSet");
+        return new SortedRangeView<>(this, fromElement, toElement);
     }
 
     @Override
     public SortedSet<E> headSet(E toElement) {
-        throw new UnsupportedOperationException("headSet");
+        return new SortedRangeView<>(this, null, toElement);
     }
 
     @Override
     public SortedSet<E> tailSet(E fromElement) {
-        throw new UnsupportedOperationException("tailSet");
+        return new SortedRangeView<>(this, fromElement, null);
     }
 
     @Override
     public Iterator<E> iterator() {
-        throw new UnsupportedOperationException("iterator");
+        Node<E> curr = root;
+        while (curr != null && curr.left != null) {
+            curr = curr.left;
+        }
+        return new TreeIterator(curr);
+    }
+
+    @Override
+    public Iterator<E> iteratorFrom(E fromElement) {
+        return fromElement == null ? iterator() : new TreeIterator(ceilingNode(fromElement));
+    }
+
+    /**
+     * @return узел с наименьшим значением, не меньшим value, или null
+     */
+    private Node<E> ceilingNode(E value) {
+        Node<E> curr = root;
+        Node<E> found = null;
+        while (curr != null) {
+            int comp = compare(curr.value, value);
+            if (comp == 0) return curr;
+            if (comp > 0) {
+                found = curr;
+                curr = curr.left;
+            } else {
+                curr = curr.right;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Следующий по порядку узел через ссылки на родителей
+     */
+    private Node<E> successor(Node<E> node) {
+        if (node.right != null) {
+            node = node.right;
+            while (node.left != null) node = node.left;
+            return node;
+        }
+        Node<E> parent = node.parent;
+        while (parent != null && node == parent.right) {
+            node = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    /**
+     * Итератор по ссылкам на родителей: O(1) амортизированно на шаг, без стека.
+     * Удаление переносит значения между узлами, поэтому после remove следующий узел ищется заново.
+     */
+    private final class TreeIterator implements Iterator<E> {
+        private Node<E> next;
+        private E lastReturned;
+        private int expectedModCount = modCount;
+
+        TreeIterator(Node<E> next) {
+            this.next = next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next.value;
+            next = successor(next);
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            E following = next == null ? null : next.value;
+            AVLTree.this.remove(lastReturned);
+            next = following == null ? null : ceilingNode(following);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
     }
 
     /**
      * Обходит дерево и проверяет что высоты двух поддеревьев
-     * различны по высоте не более чем на 1
+     * различны по высоте не более чем на 1, а сохранённые в узлах высоты верны
      *
-     * @throws NotBalancedTreeException если высоты отличаются более чем на один
+     * @throws NotBalancedTreeException если высоты отличаются более чем на один; исключение несёт отчёт validate
      */
     @Override
     public void checkBalanced() throws NotBalancedTreeException {
-        traverseTreeAndCheckBalanced(root);
+        TreeCheckReport report = validate(null);
+        if (!report.isBalanced()) {
+            throw new NotBalancedTreeException(report);
+        }
+    }
+
+    /**
+     * Проверяет дерево без рекурсии: балансы и высоты узлов, порядок значений, ссылки на родителей и размер.
+     * Дерево не должно меняться во время проверки.
+     *
+     * @param pool - пул, по которому делится проверка верхних поддеревьев; null - проверка в текущем потоке
+     * @return отчёт с высотой и числом узлов или с первым найденным нарушением
+     */
+    public TreeCheckReport validate(ForkJoinPool pool) {
+        return new Validator<>(comparator).validate(root, size, pool);
+    }
+
+    /**
+     * @return высота, распределение глубин и ожидаемые сравнения при поиске; считается за один обход
+     */
+    public TreeStats stats() {
+        return TreeStats.collect(root, null, node -> node.left, node -> node.right, null,
+                TreeStats.avlHeightBound(size));
     }
 
-    private int traverseTreeAndCheckBalanced(Node curr) throws NotBalancedTreeException {
-        if (curr == null) {
-            return 1;
+    /**
+     * @return неизменяемая копия дерева в массиве в порядке Эйтцингера для частых поисков без изменений;
+     * дальнейшие изменения дерева на неё не влияют
+     */
+    public EytzingerSet<E> freeze() {
+        Object[] sorted = new Object[size];
+        int[] index = new int[1];
+        forEachInOrder(value -> sorted[index[0]++] = value);
+        return EytzingerSet.fromSorted(comparator, sorted);
+    }
+
+    private static final class Validator<E> extends TreeValidator<E, Node<E>> {
+
+        Validator(Comparator<? super E> comparator) {
+            super(comparator);
+        }
+
+        @Override
+        boolean isEmpty(Node<E> node) {
+            return node == null;
+        }
+
+        @Override
+        Node<E> left(Node<E> node) {
+            return node.left;
+        }
+
+        @Override
+        Node<E> right(Node<E> node) {
+            return node.right;
+        }
+
+        @Override
+        Node<E> parent(Node<E> node) {
+            return node.parent;
+        }
+
+        @Override
+        E value(Node<E> node) {
+            return node.value;
         }
-        int leftHeight = traverseTreeAndCheckBalanced(curr.left);
-        int rightHeight = traverseTreeAndCheckBalanced(curr.right);
-        if (Math.abs(leftHeight - rightHeight) > 1) {
-            throw NotBalancedTreeException.create("The heights of the two child subtrees of any node must be differ by at most one",
-                    leftHeight, rightHeight, curr.toString());
+
+        @Override
+        String check(Node<E> node, int leftHeight, int rightHeight, int leftBlackHeight, int rightBlackHeight) {
+            if (Math.abs(leftHeight - rightHeight) > 1) {
+                return "The heights of the two child subtrees of any node must be differ by at most one: "
+                        + "leftHeight = " + leftHeight + ", rightHeight = " + rightHeight;
+            }
+            //высота листа 0, а высота поддерева здесь считается в узлах
+            int height = Math.max(leftHeight, rightHeight);
+            if (node.height != height) {
+                return "Stored height " + node.height + " must match the subtree height " + height;
+            }
+            return null;
+        }
+
+        @Override
+        int blackHeight(Node<E> node, int childBlackHeight) {
+            return -1;
+        }
+
+        @Override
+        boolean hasBlackHeight() {
+            return false;
+        }
+
+        @Override
+        void describeState(Node<E> node, StringBuilder sb) {
+            sb.append(", h=").append(node.height);
         }
-        return Math.max(leftHeight, rightHeight) + 1;
     }
 
-    class Node {
+    static final class Node<E> {
         E value;
-        Node left, right, parent;
-        int height, diff;
+        Node<E> left, right, parent;
+        byte height; //высота поддерева, у листа 0; баланс считается по высотам потомков
         Node(E value) {
             this.value = value;
         }
-        Node(E value, Node parent) {
+        Node(E value, Node<E> parent) {
             this.value = value;
             this.parent = parent;
         }
 
         @Override
         public String toString() {
+            //только значения потомков: рекурсия по поддеревьям на большом дереве даёт огромную строку
             final StringBuilder sb = new StringBuilder("N{");
             sb.append("d=").append(value);
             if (left != null) {
-                sb.append(", l=").append(left);
+                sb.append(", l=").append(left.value);
             }
             if (right != null) {
-                sb.append(", r=").append(right);
+                sb.append(", r=").append(right.value);
             }
+            sb.append(", h=").append(height);
             sb.append('}');
             return sb.toString();
         }
@@ -0,0 +1,652 @@
+package ru.mail.polis;
+
+import java.lang.reflect.Array;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * B+ дерево в памяти.
+ * <p>
+ * Ключи лежат отсортированными массивами внутри узлов, поэтому на уровень дерева приходится
+ * один-два промаха кэша вместо одного промаха на каждое сравнение, как в AVLTree/RedBlackTree.
+ * Все элементы хранятся в листьях, листья связаны в двусвязный список для обхода диапазонов.
+ * <p>
+ * fanout - максимальное количество ключей в листе и детей у внутреннего узла.
+ * Любой узел кроме корня заполнен хотя бы наполовину.
+ */
+public class BPlusTreeSet<E extends Comparable<E>> extends AbstractSet<E>
+        implements BalancedSortedSet<E>, SortedRangeView.Source<E> {
+
+    public static final int DEFAULT_FANOUT = 64;
+    public static final int MIN_FANOUT = 4;
+
+    private final Comparator<E> comparator;
+    private final int fanout;
+    private final int minLeafKeys;
+    private final int minChildren;
+
+    private Node root;
+    private Leaf head;
+    private int height; //количество уровней над листьями
+    private int size;
+    private int modCount;
+
+    public BPlusTreeSet() {
+        this(null);
+    }
+
+    public BPlusTreeSet(Comparator<E> comparator) {
+        this(DEFAULT_FANOUT, comparator);
+    }
+
+    public BPlusTreeSet(int fanout, Comparator<E> comparator) {
+        if (fanout < MIN_FANOUT) {
+            throw new IllegalArgumentException("fanout must be at least " + MIN_FANOUT);
+        }
+        this.comparator = comparator;
+        this.fanout = fanout;
+        this.minLeafKeys = fanout / 2;
+        this.minChildren = (fanout + 1) / 2;
+        this.head = new Leaf();
+        this.root = head;
+    }
+
+    /**
+     * Вставляет элемент в дерево.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param value элемент который необходимо вставить
+     * @return true, если элемент в дереве отсутствовал
+     */
+    @Override
+    public boolean add(E value) {
+        Inner[] path = newArray(BPlusTreeSet.Inner.class, height);
+        int[] childIdx = new int[height];
+        Node curr = root;
+        for (int level = 0; level < height; level++) {
+            Inner inner = (Inner) curr;
+            int idx = upperBound(inner.keys, inner.count, value);
+            path[level] = inner;
+            childIdx[level] = idx;
+            curr = inner.children[idx];
+        }
+        Leaf leaf = (Leaf) curr;
+        int pos = lowerBound(leaf.keys, leaf.count, value);
+        if (pos < leaf.count && compare(key(leaf.keys, pos), value) == 0) {
+            return false;
+        }
+        insertAt(leaf.keys, leaf.count, pos, value);
+        leaf.count++;
+        size++;
+        modCount++;
+        if (leaf.count > fanout) {
+            splitUp(leaf, path, childIdx);
+        }
+        return true;
+    }
+
+    /**
+     * Делит переполненный узел пополам и вставляет разделитель в родителя,
+     * при необходимости повторяя это вверх до корня
+     */
+    private void splitUp(Node node, Inner[] path, int[] childIdx) {
+        for (int level = height - 1; ; level--) {
+            Object separator;
+            Node right;
+            if (node instanceof BPlusTreeSet.Leaf) {
+                Leaf leaf = (Leaf) node;
+                Leaf newLeaf = new Leaf();
+                int move = leaf.count / 2;
+                int keep = leaf.count - move;
+                System.arraycopy(leaf.keys, keep, newLeaf.keys, 0, move);
+                clear(leaf.keys, keep, leaf.count);
+                leaf.count = keep;
+                newLeaf.count = move;
+                newLeaf.next = leaf.next;
+                newLeaf.prev = leaf;
+                if (leaf.next != null) {
+                    leaf.next.prev = newLeaf;
+                }
+                leaf.next = newLeaf;
+                separator = newLeaf.keys[0];
+                right = newLeaf;
+            } else {
+                Inner inner = (Inner) node;
+                Inner newInner = new Inner();
+                // count ключей и count + 1 детей: средний ключ уходит в родителя
+                int mid = inner.count / 2;
+                int move = inner.count - mid - 1;
+                separator = inner.keys[mid];
+                System.arraycopy(inner.keys, mid + 1, newInner.keys, 0, move);
+                System.arraycopy(inner.children, mid + 1, newInner.children, 0, move + 1);
+                clear(inner.keys, mid, inner.count);
+                clear(inner.children, mid + 1, inner.count + 1);
+                inner.count = mid;
+                newInner.count = move;
+                right = newInner;
+            }
+            if (level < 0) {
+                Inner newRoot = new Inner();
+                newRoot.keys[0] = separator;
+                newRoot.children[0] = node;
+                newRoot.children[1] = right;
+                newRoot.count = 1;
+                root = newRoot;
+                height++;
+                return;
+            }
+            Inner parent = path[level];
+            int idx = childIdx[level];
+            insertAt(parent.keys, parent.count, idx, separator);
+            insertAt(parent.children, parent.count + 1, idx + 1, right);
+            parent.count++;
+            if (parent.count < fanout) {
+                return;
+            }
+            node = parent;
+        }
+    }
+
+    /**
+     * Удаляет элемент с таким же значением из дерева.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо удалить
+     * @return true, если элемент содержался в дереве
+     */
+    @Override
+    public boolean remove(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        Inner[] path = newArray(BPlusTreeSet.Inner.class, height);
+        int[] childIdx = new int[height];
+        Node curr = root;
+        for (int level = 0; level < height; level++) {
+            Inner inner = (Inner) curr;
+            int idx = upperBound(inner.keys, inner.count, value);
+            path[level] = inner;
+            childIdx[level] = idx;
+            curr = inner.children[idx];
+        }
+        Leaf leaf = (Leaf) curr;
+        int pos = lowerBound(leaf.keys, leaf.count, value);
+        if (pos == leaf.count || compare(key(leaf.keys, pos), value) != 0) {
+            return false;
+        }
+        removeAt(leaf.keys, leaf.count, pos);
+        leaf.count--;
+        size--;
+        modCount++;
+        rebalanceUp(leaf, path, childIdx);
+        return true;
+    }
+
+    /**
+     * Восстанавливает заполненность узлов после удаления:
+     * занимает ключ у соседа, если у него есть лишние, иначе сливается с ним
+     */
+    private void rebalanceUp(Node node, Inner[] path, int[] childIdx) {
+        for (int level = height - 1; level >= 0; level--) {
+            if (!isUnderflow(node)) {
+                return;
+            }
+            Inner parent = path[level];
+            int idx = childIdx[level];
+            Node left = idx > 0 ? parent.children[idx - 1] : null;
+            Node right = idx < parent.count ? parent.children[idx + 1] : null;
+            if (left != null && canLend(left)) {
+                borrowFromLeft(parent, idx, left, node);
+                return;
+            }
+            if (right != null && canLend(right)) {
+                borrowFromRight(parent, idx, node, right);
+                return;
+            }
+            if (left != null) {
+                merge(parent, idx - 1, left, node);
+            } else {
+                merge(parent, idx, node, right);
+            }
+            node = parent;
+        }
+        if (height > 0 && root.count == 0) {
+            root = ((Inner) root).children[0];
+            height--;
+        }
+    }
+
+    private boolean isUnderflow(Node node) {
+        return node instanceof BPlusTreeSet.Leaf ? node.count < minLeafKeys : node.count + 1 < minChildren;
+    }
+
+    private boolean canLend(Node node) {
+        return node instanceof BPlusTreeSet.Leaf ? node.count > minLeafKeys : node.count + 1 > minChildren;
+    }
+
+    private void borrowFromLeft(Inner parent, int idx, Node left, Node node) {
+        if (node instanceof BPlusTreeSet.Leaf) {
+            insertAt(node.keys, node.count, 0, left.keys[left.count - 1]);
+            left.keys[left.count - 1] = null;
+            parent.keys[idx - 1] = node.keys[0];
+        } else {
+            Inner inner = (Inner) node;
+            Inner leftInner = (Inner) left;
+            insertAt(inner.keys, inner.count, 0, parent.keys[idx - 1]);
+            insertAt(inner.children, inner.count + 1, 0, leftInner.children[left.count]);
+            parent.keys[idx - 1] = left.keys[left.count - 1];
+            left.keys[left.count - 1] = null;
+            leftInner.children[left.count] = null;
+        }
+        node.count++;
+        left.count--;
+    }
+
+    private void borrowFromRight(Inner parent, int idx, Node node, Node right) {
+        if (node instanceof BPlusTreeSet.Leaf) {
+            node.keys[node.count] = right.keys[0];
+            removeAt(right.keys, right.count, 0);
+            parent.keys[idx] = right.keys[0];
+        } else {
+            Inner inner = (Inner) node;
+            Inner rightInner = (Inner) right;
+            inner.keys[inner.count] = parent.keys[idx];
+            inner.children[inner.count + 1] = rightInner.children[0];
+            parent.keys[idx] = right.keys[0];
+            removeAt(right.keys, right.count, 0);
+            removeAt(rightInner.children, right.count + 1, 0);
+        }
+        node.count++;
+        right.count--;
+    }
+
+    /**
+     * Переносит всё содержимое right в left и удаляет right из родителя
+     *
+     * @param sep индекс разделителя между left и right в родителе
+     */
+    private void merge(Inner parent, int sep, Node left, Node right) {
+        if (left instanceof BPlusTreeSet.Leaf) {
+            Leaf leftLeaf = (Leaf) left;
+            Leaf rightLeaf = (Leaf) right;
+            System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+            left.count += right.count;
+            leftLeaf.next = rightLeaf.next;
+            if (rightLeaf.next != null) {
+                rightLeaf.next.prev = leftLeaf;
+            }
+        } else {
+            Inner leftInner = (Inner) left;
+            Inner rightInner = (Inner) right;
+            left.keys[left.count] = parent.keys[sep];
+            System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+            System.arraycopy(rightInner.children, 0, leftInner.children, left.count + 1, right.count + 1);
+            left.count += right.count + 1;
+        }
+        removeAt(parent.keys, parent.count, sep);
+        removeAt(parent.children, parent.count + 1, sep + 1);
+        parent.count--;
+    }
+
+    /**
+     * Ищет элемент с таким же значением в дереве.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо поискать
+     * @return true, если такой элемент содержится в дереве
+     */
+    @Override
+    public boolean contains(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        Leaf leaf = findLeaf(value);
+        int pos = lowerBound(leaf.keys, leaf.count, value);
+        return pos < leaf.count && compare(key(leaf.keys, pos), value) == 0;
+    }
+
+    private Leaf findLeaf(E value) {
+        Node curr = root;
+        for (int level = 0; level < height; level++) {
+            Inner inner = (Inner) curr;
+            curr = inner.children[upperBound(inner.keys, inner.count, value)];
+        }
+        return (Leaf) curr;
+    }
+
+    /**
+     * @return индекс первого ключа не меньше value или count
+     */
+    private int lowerBound(Object[] keys, int count, E value) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(key(keys, mid), value) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return индекс первого ключа больше value или count
+     */
+    private int upperBound(Object[] keys, int count, E value) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(key(keys, mid), value) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E key(Object[] keys, int idx) {
+        return (E) keys[idx];
+    }
+
+    /**
+     * Узлы - внутренние классы обобщённого BPlusTreeSet, а массив параметризованного типа напрямую
+     * не создать, поэтому массивы узлов создаются здесь по классу элемента
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(Class<?> type, int length) {
+        return (T[]) Array.newInstance(type, length);
+    }
+
+    private static void insertAt(Object[] array, int length, int idx, Object value) {
+        System.arraycopy(array, idx, array, idx + 1, length - idx);
+        array[idx] = value;
+    }
+
+    private static void removeAt(Object[] array, int length, int idx) {
+        System.arraycopy(array, idx + 1, array, idx, length - idx - 1);
+        array[length - 1] = null;
+    }
+
+    private static void clear(Object[] array, int from, int to) {
+        for (int i = from; i < to; i++) {
+            array[i] = null;
+        }
+    }
+
+    /**
+     * Ищет наименьший элемент в дереве
+     *
+     * @return Возвращает наименьший элемент в дереве
+     * @throws NoSuchElementException если дерево пустое
+     */
+    @Override
+    public E first() {
+        if (size == 0) {
+            throw new NoSuchElementException("first");
+        }
+        return key(head.keys, 0);
+    }
+
+    /**
+     * Ищет наибольший элемент в дереве
+     *
+     * @return Возвращает наибольший элемент в дереве
+     * @throws NoSuchElementException если дерево пустое
+     */
+    @Override
+    public E last() {
+        if (size == 0) {
+            throw new NoSuchElementException("last");
+        }
+        Node curr = root;
+        for (int level = 0; level < height; level++) {
+            curr = ((Inner) curr).children[curr.count];
+        }
+        return key(curr.keys, curr.count - 1);
+    }
+
+    private int compare(E v1, E v2) {
+        return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int getFanout() {
+        return fanout;
+    }
+
+    /**
+     * @return количество уровней дерева, включая уровень листьев
+     */
+    public int getHeight() {
+        return height + 1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("BPlusTree{");
+        sb.append("size=").append(size).append(", fanout=").append(fanout).append(", tree=");
+        for (Leaf leaf = head; leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.count; i++) {
+                sb.append(leaf.keys[i]).append(",");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return new SortedRangeView<>(this, fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return new SortedRangeView<>(this, null, toElement);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return new SortedRangeView<>(this, fromElement, null);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new LeafIterator(head, 0);
+    }
+
+    @Override
+    public Iterator<E> iteratorFrom(E fromElement) {
+        if (fromElement == null) {
+            return iterator();
+        }
+        Leaf leaf = findLeaf(fromElement);
+        return new LeafIterator(leaf, lowerBound(leaf.keys, leaf.count, fromElement));
+    }
+
+    /**
+     * Обходит дерево по уровням и проверяет, что
+     * 1) все листья находятся на одной глубине,
+     * 2) каждый узел кроме корня заполнен не меньше чем наполовину и не переполнен,
+     * 3) ключи в узлах упорядочены и лежат в границах, заданных разделителями родителя,
+     * 4) список листьев содержит все элементы по порядку.
+     *
+     * @throws NotBalancedTreeException если какое-либо свойство невыполнено
+     */
+    @Override
+    public void checkBalanced() throws NotBalancedTreeException {
+        ArrayDeque<Bounded> queue = new ArrayDeque<>();
+        queue.add(new Bounded(root, 0, null, null));
+        Leaf expectedLeaf = head;
+        int leafKeys = 0;
+        while (!queue.isEmpty()) {
+            Bounded item = queue.poll();
+            Node node = item.node;
+            if (node != root) {
+                if (isUnderflow(node)) {
+                    throw new NotBalancedTreeException("Node is less than half full at depth " + item.depth
+                            + ": " + describe(node));
+                }
+            }
+            if (node.count > (node instanceof BPlusTreeSet.Leaf ? fanout : fanout - 1)) {
+                throw new NotBalancedTreeException("Node overflow at depth " + item.depth + ": " + describe(node));
+            }
+            for (int i = 0; i < node.count; i++) {
+                E key = key(node.keys, i);
+                if (i > 0 && compare(key(node.keys, i - 1), key) >= 0) {
+                    throw new NotBalancedTreeException("Keys are not sorted at depth " + item.depth + ": " + describe(node));
+                }
+                if ((item.low != null && compare(key, item.low) < 0) || (item.high != null && compare(key, item.high) >= 0)) {
+                    throw new NotBalancedTreeException("Key " + key + " is out of separator bounds ["
+                            + item.low + ", " + item.high + ") at depth " + item.depth);
+                }
+            }
+            if (node instanceof BPlusTreeSet.Leaf) {
+                if (item.depth != height) {
+                    throw NotBalancedTreeException.create("All leaves must be at the same depth",
+                            item.depth, height, describe(node));
+                }
+                if (node != expectedLeaf) {
+                    throw new NotBalancedTreeException("Leaf list is out of order at " + describe(node));
+                }
+                expectedLeaf = expectedLeaf.next;
+                leafKeys += node.count;
+            } else {
+                Inner inner = (Inner) node;
+                for (int i = 0; i <= inner.count; i++) {
+                    queue.add(new Bounded(inner.children[i], item.depth + 1,
+                            i == 0 ? item.low : key(inner.keys, i - 1),
+                            i == inner.count ? item.high : key(inner.keys, i)));
+                }
+            }
+        }
+        if (expectedLeaf != null || leafKeys != size) {
+            throw new NotBalancedTreeException("Leaf list holds " + leafKeys + " keys, size = " + size);
+        }
+    }
+
+    private String describe(Node node) {
+        if (node.count == 0) {
+            return "N{count=0}";
+        }
+        return "N{count=" + node.count + ", first=" + node.keys[0] + ", last=" + node.keys[node.count - 1] + "}";
+    }
+
+    private final class Bounded {
+        final Node node;
+        final int depth;
+        final E low;
+        final E high;
+
+        Bounded(Node node, int depth, E low, E high) {
+            this.node = node;
+            this.depth = depth;
+            this.low = low;
+            this.high = high;
+        }
+    }
+
+    private final class LeafIterator implements Iterator<E> {
+        private Leaf leaf;
+        private int pos;
+        private E lastReturned;
+        private int expectedModCount = modCount;
+
+        LeafIterator(Leaf leaf, int pos) {
+            this.leaf = leaf;
+            this.pos = pos;
+            skipExhausted();
+        }
+
+        private void skipExhausted() {
+            while (leaf != null && pos >= leaf.count) {
+                leaf = leaf.next;
+                pos = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf != null;
+        }
+
+        @Override
+        public E next() {
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (leaf == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = key(leaf.keys, pos++);
+            skipExhausted();
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            BPlusTreeSet.this.remove(lastReturned);
+            // удаление могло перестроить листья - находим позицию заново
+            leaf = findLeaf(lastReturned);
+            pos = lowerBound(leaf.keys, leaf.count, lastReturned);
+            skipExhausted();
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    abstract class Node {
+        final Object[] keys;
+        int count;
+
+        Node(int capacity) {
+            this.keys = new Object[capacity];
+        }
+    }
+
+    /**
+     * Лист: до fanout ключей (плюс одно место под временное переполнение перед делением)
+     */
+    final class Leaf extends Node {
+        Leaf next, prev;
+
+        Leaf() {
+            super(fanout + 1);
+        }
+    }
+
+    /**
+     * Внутренний узел: count разделителей и count + 1 детей,
+     * keys[i] не больше любого ключа в children[i + 1] и больше любого ключа в children[i]
+     */
+    final class Inner extends Node {
+        final Node[] children;
+
+        Inner() {
+            super(fanout);
+            this.children = newArray(BPlusTreeSet.Node.class, fanout + 1);
+        }
+    }
+}
@@ -12,6 +12,7 @@ public class BinarySearchTree<E extends Comparable<E>> extends AbstractSet<E> im
     private final Comparator<E> comparator;
     private Node root;
     private int size;
+    private final Metrics metrics = Metrics.create(); //null, если метрики выключены
     public BinarySearchTree() {
         this(null);
     }
@@ -27,6 +28,7 @@ public class BinarySearchTree<E extends Comparable<E>> extends AbstractSet<E> im
 
     @Override
     public boolean contains(Object value) {
+        if (Metrics.ENABLED) metrics.lookups.increment();
         if (value == null) {
             throw new NullPointerException("value is null");
         }
@@ -50,6 +52,7 @@ public class BinarySearchTree<E extends Comparable<E>> extends AbstractSet<E> im
 
     @Override
     public boolean add(E value) {
+        if (Metrics.ENABLED) metrics.adds.increment();
         if (value == null) {
             throw new NullPointerException("value is null");
         }
@@ -84,6 +87,7 @@ public class BinarySearchTree<E extends Comparable<E>> extends AbstractSet<E> im
 
     @Override
     public boolean remove(Object value) {
+        if (Metrics.ENABLED) metrics.removes.increment();
         if (value == null) {
             throw new NullPointerException("value is null");
         }
@@ -148,6 +152,7 @@ public class BinarySearchTree<E extends Comparable<E>> extends AbstractSet<E> im
     }
 
     private int compare(E v1, E v2) {
+        if (Metrics.ENABLED) metrics.comparisons.increment();
         return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
     }
 
@@ -180,6 +185,21 @@ public class BinarySearchTree<E extends Comparable<E>> extends AbstractSet<E> im
         return size;
     }
 
+    /**
+     * @return счётчики операций и сравнений; нулевые, если метрики выключены (см. Metrics.ENABLED)
+     */
+    public Metrics getMetrics() {
+        return metrics != null ? metrics : Metrics.DISABLED;
+    }
+
+    /**
+     * @return высота, распределение глубин и ожидаемые сравнения при поиске; считается за один обход.
+     * Границы высоты у несбалансированного дерева нет, поэтому она равна size
+     */
+    public TreeStats stats() {
+        return TreeStats.collect(root, null, node -> node.left, node -> node.right, null, size);
+    }
+
     @Override
     public SortedSet<E> subSet(E fromElement, E toElement) {
         throw new UnsupportedOperationException();
@@ -0,0 +1,105 @@
+package ru.mail.polis;
+
+import java.util.Arrays;
+
+/**
+ * Блочный фильтр Блума для быстрого ответа "точно нет".
+ * <p>
+ * Биты лежат в long[], блок - 8 слов, то есть 64 байта, одна строка кеша. По хешу выбирается блок,
+ * а в каждом из 8 слов блока ставится по одному биту (split block): проверка читает одну строку кеша
+ * и не ветвится по словам. Ложноотрицательных ответов не бывает, ложноположительные - около 1-2%
+ * при 10 битах на элемент.
+ * <p>
+ * Удаление не поддерживается: владелец фильтра перестраивает его, когда удалённых элементов накопилось много.
+ */
+public final class BlockedBloomFilter {
+
+    /**
+     * Бит фильтра на один ожидаемый элемент
+     */
+    public static final int BITS_PER_ELEMENT = 10;
+
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BLOCK_SHIFT = 3;
+    /**
+     * Нечётные множители: каждый выбирает бит в своём слове блока из одного и того же хеша
+     */
+    private static final int[] SALT = {
+            0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d,
+            0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31
+    };
+
+    private final long[] words;
+    private final int blockCount;
+
+    /**
+     * @param expectedElements сколько элементов будет в фильтре, от этого зависит его размер
+     */
+    public BlockedBloomFilter(int expectedElements) {
+        long bits = Math.max(expectedElements, 1) * (long) BITS_PER_ELEMENT;
+        blockCount = (int) Math.min((bits + 511) >>> 9, Integer.MAX_VALUE >>> BLOCK_SHIFT);
+        words = new long[blockCount << BLOCK_SHIFT];
+    }
+
+    /**
+     * Добавляет элемент по его hashCode
+     */
+    public void add(int hashCode) {
+        long hash = mix(hashCode);
+        int base = block(hash);
+        int key = (int) hash;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            words[base + i] |= 1L << ((key * SALT[i]) >>> 26);
+        }
+    }
+
+    /**
+     * @return false, если элемента с таким hashCode в фильтре точно нет
+     */
+    public boolean mightContain(int hashCode) {
+        long hash = mix(hashCode);
+        int base = block(hash);
+        int key = (int) hash;
+        long missing = 0;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            missing |= ~words[base + i] & (1L << ((key * SALT[i]) >>> 26));
+        }
+        return missing == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * @return доля установленных бит; вероятность ложного ответа примерно равна её восьмой степени
+     */
+    public double getFillRatio() {
+        long set = 0;
+        for (long word : words) {
+            set += Long.bitCount(word);
+        }
+        return (double) set / ((long) words.length << 6);
+    }
+
+    /**
+     * Номер первого слова блока: старшие 32 бита хеша, умноженные на число блоков
+     */
+    private int block(long hash) {
+        return (int) (((hash >>> 32) * blockCount) >>> 32) << BLOCK_SHIFT;
+    }
+
+    /**
+     * Растягивает 32-битный hashCode на 64 бита: у слабых hashCode младшие биты плохо перемешаны
+     */
+    private static long mix(int hashCode) {
+        long hash = hashCode * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        hash *= 0xBF58476D1CE4E5B9L;
+        return hash ^ (hash >>> 29);
+    }
+}
@@ -5,18 +5,33 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
 
 public class ChainHashTable<E> extends AbstractSet<E> implements Set<E> {
 
     private final int INITIAL_CAPACITY = 8;
+    /**
+     * Сколько ключей пакетной операции обрабатывается за один проход по стадиям
+     */
+    private static final int BATCH = 32;
 //    private final float LOAD_FACTOR = 0.5f;
     private Object[] table;
     private int size;
+    private BlockedBloomFilter bloomFilter; //null, если фильтр не включён
+    private int bloomFilterRemoved; //удалено элементов после последней перестройки фильтра
+    private final Metrics metrics = Metrics.create(); //null, если метрики выключены
+    private ProbeRecorder probeRecorder; //null, если длины поиска не записываются
 
     public ChainHashTable() {
         this.table = new Object[INITIAL_CAPACITY];
     }
 
+    private ChainHashTable(int capacity) {
+        this.table = new Object[capacity];
+    }
+
     /**
      * Вставляет элемент в хеш-таблицу.
      * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
@@ -26,20 +41,34 @@ public class ChainHashTable<E> extends AbstractSet<E> implements Set<E> {
      */
     @Override
     public boolean add(E value) {
-        int idx = hash(value);
-        if (table[idx] == null) {
+        if (Metrics.ENABLED) metrics.adds.increment();
+        int hashCode = value.hashCode();
+        return add(value, hashCode, index(hashCode));
+    }
+
+    private boolean add(E value, int hashCode, int idx) {
+        if (bloomFilter != null && !bloomFilter.mightContain(hashCode)) {
+            //элемента точно нет: новый узел в голову цепочки без её обхода
+            Node<E> node = new Node<>(value);
+            node.next = getNode(idx);
+            table[idx] = node;
+        } else if (table[idx] == null) {
             table[idx] = new Node<>(value);
         } else {
             Node curr = getNode(idx);
-            while (curr.next != null && !value.equals(curr.value)) {
+            boolean found;
+            while (!(found = same(value, curr.value)) && curr.next != null) {
                 curr = curr.next;
             }
-            if (value.equals(curr.value)) {
+            if (found) {
                 return false;
             }
             curr.next = new Node<>(value);
         }
         size++;
+        if (bloomFilter != null) {
+            bloomFilter.add(hashCode);
+        }
         resize();
         return true;
     }
@@ -53,13 +82,18 @@ public class ChainHashTable<E> extends AbstractSet<E> implements Set<E> {
      */
     @Override
     public boolean remove(Object object) {
+        if (Metrics.ENABLED) metrics.removes.increment();
         @SuppressWarnings("unchecked")
         E value = (E) object;
+        int hashCode = value.hashCode();
+        if (bloomFilter != null && !bloomFilter.mightContain(hashCode)) {
+            return false;
+        }
 
         Node prev = null;
-        int idx = hash(value);
+        int idx = index(hashCode);
         Node curr = getNode(idx);
-        while (curr != null && !value.equals(curr.value)) {
+        while (curr != null && !same(value, curr.value)) {
             prev = curr;
             curr = curr.next;
         }
@@ -72,6 +106,9 @@ public class ChainHashTable<E> extends AbstractSet<E> implements Set<E> {
             curr.value = null;
             curr.next = null;
             size--;
+            if (bloomFilter != null && ++bloomFilterRemoved * 4 >= table.length) {
+                rebuildBloomFilter();
+            }
             return true;
         }
         return false;
@@ -86,19 +123,254 @@ public class ChainHashTable<E> extends AbstractSet<E> implements Set<E> {
      */
     @Override
     public boolean contains(Object object) {
+        if (Metrics.ENABLED) metrics.lookups.increment();
         @SuppressWarnings("unchecked")
         E value = (E) object;
+        int hashCode = value.hashCode();
+        return contains(value, hashCode, getNode(index(hashCode)));
+    }
+
+    /**
+     * @param head - голова цепочки элемента при текущем размере таблицы
+     */
+    private boolean contains(E value, int hashCode, Node<E> head) {
+        if (bloomFilter != null && !bloomFilter.mightContain(hashCode)) {
+            recordProbes(false, 0);
+            return false;
+        }
 
-        Node curr = getNode(hash(value));
-        while (curr != null && !value.equals(curr.value)) {
+        Node curr = head;
+        int length = 0;
+        while (curr != null) {
+            length++;
+            if (same(value, curr.value)) {
+                break;
+            }
             curr = curr.next;
         }
-        //Вышли по второму условию
+        recordProbes(curr != null, length);
         return curr != null;
     }
 
-    private int hash(E value) {
-        return Math.abs(value.hashCode()) % table.length;
+    /**
+     * Пакетный поиск: out[i] = contains(values[i]).
+     * Ключи идут группами: сначала считаются хеши и номера цепочек всей группы, потом читаются
+     * головы цепочек (независимые чтения, промахи кеша перекрываются), и только потом цепочки обходятся.
+     */
+    public void containsAll(E[] values, boolean[] out) {
+        if (Metrics.ENABLED) metrics.lookups.add(values.length);
+        if (out.length < values.length) {
+            throw new IllegalArgumentException("out holds " + out.length + " results for " + values.length + " values");
+        }
+        int[] hashCodes = new int[BATCH];
+        int[] indexes = new int[BATCH];
+        Object[] heads = new Object[BATCH];
+        for (int from = 0; from < values.length; from += BATCH) {
+            int count = Math.min(BATCH, values.length - from);
+            for (int j = 0; j < count; j++) {
+                hashCodes[j] = values[from + j].hashCode();
+                indexes[j] = index(hashCodes[j]);
+            }
+            for (int j = 0; j < count; j++) {
+                heads[j] = table[indexes[j]];
+            }
+            for (int j = 0; j < count; j++) {
+                @SuppressWarnings("unchecked")
+                Node<E> head = (Node<E>) heads[j];
+                if (head == null) {
+                    //пустая цепочка: промах длины 0, как у contains
+                    recordProbes(false, 0);
+                    out[from + j] = false;
+                } else {
+                    out[from + j] = contains(values[from + j], hashCodes[j], head);
+                }
+            }
+        }
+    }
+
+    /**
+     * Пакетная вставка. Перед каждой группой таблица заранее расширяется под всю группу,
+     * чтобы номера цепочек, посчитанные для группы, не устарели посреди неё.
+     *
+     * @return сколько элементов было вставлено
+     */
+    public int addBatch(E[] values) {
+        if (Metrics.ENABLED) metrics.adds.add(values.length);
+        int[] hashCodes = new int[BATCH];
+        int[] indexes = new int[BATCH];
+        int added = 0;
+        for (int from = 0; from < values.length; from += BATCH) {
+            int count = Math.min(BATCH, values.length - from);
+            int length = table.length;
+            while ((size + count) * 2 >= length) {
+                length <<= 1;
+            }
+            if (length != table.length) {
+                rehash(length);
+            }
+            for (int j = 0; j < count; j++) {
+                hashCodes[j] = values[from + j].hashCode();
+                indexes[j] = index(hashCodes[j]);
+            }
+            for (int j = 0; j < count; j++) {
+                if (add(values[from + j], hashCodes[j], indexes[j])) {
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Номер цепочки по hashCode() элемента; тот же hashCode() питает фильтр Блума
+     */
+    private int index(int hashCode) {
+        return Math.abs(hashCode) % table.length;
+    }
+
+    int getTableSize() {
+        return table.length;
+    }
+
+    /**
+     * @return счётчики операций, пройденных узлов цепочек (пробы), сравнений и перестроений;
+     * нулевые, если метрики выключены (см. Metrics.ENABLED)
+     */
+    public Metrics getMetrics() {
+        return metrics != null ? metrics : Metrics.DISABLED;
+    }
+
+    /**
+     * Сравнение с элементом очередного узла цепочки
+     */
+    private boolean same(E value, Object stored) {
+        if (Metrics.ENABLED) {
+            metrics.probes.increment();
+            metrics.comparisons.increment();
+        }
+        return value.equals(stored);
+    }
+
+    /**
+     * Начинает (или, при null, прекращает) запись длин поиска contains и containsAll: сколько узлов
+     * цепочки сравнено с искомым. Промах, отсечённый фильтром Блума, имеет длину 0
+     */
+    public void setProbeRecorder(ProbeRecorder probeRecorder) {
+        this.probeRecorder = probeRecorder;
+    }
+
+    private void recordProbes(boolean hit, int length) {
+        ProbeRecorder recorder = probeRecorder;
+        if (recorder != null) {
+            if (hit) {
+                recorder.recordHit(length);
+            } else {
+                recorder.recordMiss(length);
+            }
+        }
+    }
+
+    /**
+     * Собирает отчёт о состоянии таблицы за один проход по цепочкам.
+     * Длины цепочек считаются по всем ячейкам, а длины поиска - по выборкам примерно из sampleSize
+     * элементов и sampleSize ячеек, взятых через равный шаг: попадание - позиция элемента в цепочке,
+     * промах - длина всей цепочки ячейки (случайный отсутствующий ключ попадает в любую ячейку). Ожидаемые длины при идеальной хеш-функции: 1 + α/2 и α, где α = size / tableSize.
+     *
+     * @param sampleSize сколько элементов проверить; не меньше 1
+     */
+    public HashTableHealth healthReport(int sampleSize) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("sampleSize " + sampleSize + " is less than 1");
+        }
+        LengthHistogram.Builder hits = new LengthHistogram.Builder();
+        LengthHistogram.Builder misses = new LengthHistogram.Builder();
+        LengthHistogram.Builder chains = new LengthHistogram.Builder();
+        int stride = Math.max(1, size / sampleSize);
+        int bucketStride = Math.max(1, table.length / sampleSize);
+        int live = 0;
+        for (int idx = 0; idx < table.length; idx++) {
+            int length = 0;
+            for (Node<E> curr = getNode(idx); curr != null; curr = curr.next) {
+                length++;
+            }
+            chains.add(length);
+            if (idx % bucketStride == 0) {
+                misses.add(length);
+            }
+            for (int position = 1; position <= length; position++) {
+                if (live++ % stride == 0) {
+                    hits.add(position);
+                }
+            }
+        }
+        double load = (double) size / table.length;
+        return new HashTableHealth(table.length, size, 0,
+                hits.build(), misses.build(), chains.build(), 1 + load / 2, load);
+    }
+
+    /**
+     * Включает фильтр Блума перед таблицей: промахи contains и remove не обходят цепочку,
+     * а add нового элемента не ищет в ней дубликат.
+     * Фильтр заполняется по тем же hashCode(), что и номера цепочек. Он перестраивается при росте таблицы
+     * и когда удалённых элементов накопилась четверть размера таблицы.
+     */
+    public void enableBloomFilter() {
+        bloomFilter = new BlockedBloomFilter(table.length / 2);
+        rebuildBloomFilter();
+    }
+
+    public void disableBloomFilter() {
+        bloomFilter = null;
+    }
+
+    /**
+     * @return фильтр Блума или null, если он не включён
+     */
+    public BlockedBloomFilter getBloomFilter() {
+        return bloomFilter;
+    }
+
+    private void rebuildBloomFilter() {
+        bloomFilter.clear();
+        bloomFilterRemoved = 0;
+        for (int idx = 0; idx < table.length; idx++) {
+            for (Node<E> curr = getNode(idx); curr != null; curr = curr.next) {
+                bloomFilter.add(curr.value.hashCode());
+            }
+        }
+    }
+
+    /**
+     * Обходит цепочку ячейки idx от головы к хвосту
+     */
+    void forEachInBucket(int idx, Consumer<? super E> action) {
+        for (Node<E> curr = getNode(idx); curr != null; curr = curr.next) {
+            action.accept(curr.value);
+        }
+    }
+
+    /**
+     * Восстанавливает таблицу из готовой раскладки цепочек без повторного хеширования
+     * @param tableSize - количество ячеек
+     * @param chainLength - длина цепочки ячейки по её номеру
+     * @param values - выдаёт элементы цепочек подряд, от первой ячейки к последней
+     */
+    static <E> ChainHashTable<E> restore(int tableSize, IntUnaryOperator chainLength, Supplier<? extends E> values) {
+        ChainHashTable<E> restored = new ChainHashTable<>(tableSize);
+        for (int idx = 0; idx < tableSize; idx++) {
+            Node<E> tail = null;
+            for (int i = chainLength.applyAsInt(idx); i > 0; i--) {
+                Node<E> node = new Node<>(values.get());
+                if (tail == null) {
+                    restored.table[idx] = node;
+                } else {
+                    tail.next = node;
+                }
+                tail = node;
+                restored.size++;
+            }
+        }
+        return restored;
     }
 
     @SuppressWarnings("unchecked")
@@ -106,28 +378,42 @@ public class ChainHashTable<E> extends AbstractSet<E> implements Set<E> {
         return (Node<E>) table[idx];
     }
 
-    @SuppressWarnings("unchecked")
     private void resize() {
         if (size * 2 < table.length) {
             return;
         }
+        rehash(table.length << 1);
+    }
+
+    /**
+     * Перекладывает узлы в новую таблицу, не создавая их заново: элементы уникальны,
+     * поэтому каждый узел просто подвешивается в голову своей новой цепочки
+     */
+    @SuppressWarnings("unchecked")
+    private void rehash(int length) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        ResizeEvent event = new ResizeEvent();
+        event.begin();
         Object[] old = this.table;
-        size = 0;
-        table = new Object[table.length << 1];
+        table = new Object[length];
         for (int i = 0; i < old.length; i++) {
-            Node<E> node = (Node<E>) old[i];
-            if (node != null) {
-                Node<E> curr = node;
-                while (curr != null) {
-                    Node next = curr.next;
-                    //FIXME: insert value in head (all unique)
-                    add(curr.value);
-                    curr.next = null;
-                    curr.value = null;
-                    curr = next;
-                }
-                old[i] = null;
+            Node<E> curr = (Node<E>) old[i];
+            while (curr != null) {
+                Node<E> next = curr.next;
+                int idx = index(curr.value.hashCode());
+                curr.next = getNode(idx);
+                table[idx] = curr;
+                curr = next;
             }
+            old[i] = null;
+        }
+        if (bloomFilter != null) {
+            enableBloomFilter();
+        }
+        event.finish(this, old.length, length, size);
+        if (Metrics.ENABLED) {
+            metrics.resizes.increment();
+            metrics.resizeNanos.add(System.nanoTime() - start);
         }
     }
 
@@ -0,0 +1,1032 @@
+package ru.mail.polis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.zip.CRC32;
+
+/**
+ * B+ дерево в файле, отображённом в память, со страницами фиксированного размера.
+ * <p>
+ * Изменения делаются копированием при записи: страница, попавшая в последний commit,
+ * никогда не перезаписывается - вместо неё выделяется новая, и так вверх до корня.
+ * commit() сбрасывает новые страницы на диск и только потом записывает метастраницу
+ * с новым корнем. Метастраниц две, они пишутся по очереди и защищены контрольной суммой,
+ * поэтому после сбоя файл открывается в состоянии последнего успешного commit.
+ * Открытие читает только метастраницу и список свободных страниц, дерево не перестраивается.
+ * <p>
+ * Ключи хранятся в закодированном виде, поэтому кодек должен иметь фиксированный размер.
+ * Раскодированные узлы держатся в LRU-кэше страниц. Класс не потокобезопасен,
+ * файл должен быть открыт не более чем одним экземпляром на запись.
+ */
+public class DiskBPlusTree<E extends Comparable<E>> extends AbstractSet<E>
+        implements BalancedSortedSet<E>, SortedRangeView.Source<E>, Closeable {
+
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    public static final int DEFAULT_CACHE_PAGES = 4096;
+
+    private static final int MAGIC = 0x42505431; // "BPT1"
+    private static final int VERSION = 1;
+    private static final long NO_PAGE = -1;
+    private static final int SEGMENT_BYTES = 1 << 24;
+
+    private static final int LEAF = 1;
+    private static final int INNER = 2;
+    private static final int NODE_HEADER = 8; // тип и количество ключей
+    private static final int FREE_LIST_HEADER = 12; // следующая страница списка и количество записей
+
+    // метастраница - нулевая страница файла, в ней два слота по META_SLOT байт
+    private static final int META_SLOT = 512;
+    private static final int META_MAGIC = 0;
+    private static final int META_VERSION = 4;
+    private static final int META_PAGE_SIZE = 8;
+    private static final int META_KEY_SIZE = 12;
+    private static final int META_TX = 16;
+    private static final int META_ROOT = 24;
+    private static final int META_HEIGHT = 32;
+    private static final int META_SIZE = 36;
+    private static final int META_PAGE_COUNT = 44;
+    private static final int META_FREE_LIST = 52;
+    private static final int META_CHECKSUM = 60;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ElementCodec<E> codec;
+    private final Comparator<E> comparator;
+    private final int pageSize;
+    private final int keySize;
+    private final int maxLeafKeys;
+    private final int maxInnerKeys;
+    private final int pagesPerSegment;
+
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final BitSet dirtySegments = new BitSet();
+    private final Map<Long, Node> cache;
+
+    private long txId;
+    private long root;
+    private int height; //количество уровней над листьями
+    private long size;
+    private long pageCount;
+    private boolean dirty;
+    private int modCount;
+
+    /**
+     * Страницы, свободные относительно последнего commit - их можно переиспользовать сразу
+     */
+    private final ArrayDeque<Long> reusable = new ArrayDeque<>();
+    /**
+     * Страницы, освобождённые после последнего commit - на них ещё ссылается записанный корень
+     */
+    private final ArrayDeque<Long> pendingFree = new ArrayDeque<>();
+    /**
+     * Страницы, выделенные после последнего commit - их можно менять на месте
+     */
+    private final Set<Long> fresh = new HashSet<>();
+    /**
+     * Страницы, в которых записан список свободных страниц последнего commit
+     */
+    private List<Long> freeListPages = new ArrayList<>();
+
+    /**
+     * Открывает файл с деревом или создаёт новый, если файла нет
+     */
+    public static <E extends Comparable<E>> DiskBPlusTree<E> open(Path file, ElementCodec<E> codec) throws IOException {
+        return open(file, codec, null, DEFAULT_PAGE_SIZE, DEFAULT_CACHE_PAGES);
+    }
+
+    /**
+     * Открывает файл с деревом или создаёт новый, если файла нет
+     *
+     * @param comparator порядок элементов, должен совпадать с порядком, в котором файл создавался
+     * @param pageSize   размер страницы для нового файла; у существующего берётся из файла
+     * @param cachePages сколько раскодированных страниц держать в памяти
+     */
+    public static <E extends Comparable<E>> DiskBPlusTree<E> open(Path file, ElementCodec<E> codec,
+                                                                 Comparator<E> comparator,
+                                                                 int pageSize, int cachePages) throws IOException {
+        if (codec.fixedSize() <= 0) {
+            throw new IllegalArgumentException("Codec must have a fixed size");
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                DiskBPlusTree<E> tree = new DiskBPlusTree<>(file, channel, codec, comparator, pageSize, cachePages);
+                tree.initEmpty();
+                return tree;
+            }
+            ByteBuffer meta = ByteBuffer.allocate(2 * META_SLOT);
+            while (meta.hasRemaining() && channel.read(meta, meta.position()) >= 0) {
+                /* читаем обе копии метаданных */
+            }
+            int slot = latestValidMeta(meta);
+            if (slot < 0) {
+                throw new IOException("No valid metadata in " + file);
+            }
+            int storedPageSize = meta.getInt(slot * META_SLOT + META_PAGE_SIZE);
+            int storedKeySize = meta.getInt(slot * META_SLOT + META_KEY_SIZE);
+            if (storedKeySize != codec.fixedSize()) {
+                throw new IOException("Key size mismatch: file has " + storedKeySize
+                        + " bytes, codec has " + codec.fixedSize());
+            }
+            DiskBPlusTree<E> tree = new DiskBPlusTree<>(file, channel, codec, comparator, storedPageSize, cachePages);
+            tree.loadMeta(slot);
+            return tree;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private DiskBPlusTree(Path file, FileChannel channel, ElementCodec<E> codec, Comparator<E> comparator,
+                          int pageSize, int cachePages) {
+        this.file = file;
+        this.channel = channel;
+        this.codec = codec;
+        this.comparator = comparator;
+        this.pageSize = pageSize;
+        this.keySize = codec.fixedSize();
+        this.maxLeafKeys = (pageSize - NODE_HEADER) / keySize;
+        this.maxInnerKeys = (pageSize - NODE_HEADER - Long.BYTES) / (keySize + Long.BYTES);
+        if (pageSize < 2 * META_SLOT || maxInnerKeys < 3) {
+            throw new IllegalArgumentException("Page size " + pageSize + " is too small for keys of " + keySize + " bytes");
+        }
+        this.pagesPerSegment = Math.max(1, SEGMENT_BYTES / pageSize);
+        this.cache = new LinkedHashMap<Long, Node>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Node> eldest) {
+                return size() > cachePages;
+            }
+        };
+    }
+
+    private void initEmpty() throws IOException {
+        pageCount = 1; // нулевая страница - метаданные
+        Node leaf = new Node(allocate(), true);
+        store(leaf);
+        root = leaf.page;
+        height = 0;
+        size = 0;
+        dirty = true;
+        commit();
+    }
+
+    private static int latestValidMeta(ByteBuffer meta) {
+        int best = -1;
+        long bestTx = -1;
+        for (int slot = 0; slot < 2; slot++) {
+            int base = slot * META_SLOT;
+            if (meta.getInt(base + META_MAGIC) != MAGIC || meta.getInt(base + META_VERSION) != VERSION) {
+                continue;
+            }
+            if (meta.getLong(base + META_CHECKSUM) != checksum(meta, base)) {
+                continue;
+            }
+            long tx = meta.getLong(base + META_TX);
+            if (tx > bestTx) {
+                bestTx = tx;
+                best = slot;
+            }
+        }
+        return best;
+    }
+
+    private static long checksum(ByteBuffer meta, int base) {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < META_CHECKSUM; i++) {
+            crc.update(meta.get(base + i));
+        }
+        return crc.getValue();
+    }
+
+    private void loadMeta(int slot) {
+        ByteBuffer meta = pageBuffer(0);
+        int base = slot * META_SLOT;
+        txId = meta.getLong(base + META_TX);
+        root = meta.getLong(base + META_ROOT);
+        height = meta.getInt(base + META_HEIGHT);
+        size = meta.getLong(base + META_SIZE);
+        pageCount = meta.getLong(base + META_PAGE_COUNT);
+        reusable.clear();
+        pendingFree.clear();
+        fresh.clear();
+        freeListPages = new ArrayList<>();
+        for (long page = meta.getLong(base + META_FREE_LIST); page != NO_PAGE; ) {
+            ByteBuffer buf = pageBuffer(page);
+            freeListPages.add(page);
+            int count = buf.getInt(Long.BYTES);
+            for (int i = 0; i < count; i++) {
+                reusable.push(buf.getLong(FREE_LIST_HEADER + i * Long.BYTES));
+            }
+            page = buf.getLong(0);
+        }
+        cache.clear();
+        dirty = false;
+    }
+
+    /**
+     * Делает все изменения после предыдущего commit устойчивыми к сбою
+     */
+    public void commit() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        // список свободных страниц нового состояния: всё, на что не ссылается новый корень
+        int perPage = (pageSize - FREE_LIST_HEADER) / Long.BYTES;
+        List<Long> listPages = new ArrayList<>();
+        while ((long) listPages.size() * perPage < reusable.size() + pendingFree.size() + freeListPages.size()) {
+            listPages.add(reusable.isEmpty() ? pageCount++ : reusable.pop());
+        }
+        List<Long> entries = new ArrayList<>(reusable.size() + pendingFree.size() + freeListPages.size());
+        entries.addAll(reusable);
+        entries.addAll(pendingFree);
+        entries.addAll(freeListPages);
+        for (int p = 0; p < listPages.size(); p++) {
+            ByteBuffer buf = pageBuffer(listPages.get(p));
+            int from = p * perPage;
+            int count = Math.min(perPage, entries.size() - from);
+            buf.putLong(0, p + 1 < listPages.size() ? listPages.get(p + 1) : NO_PAGE);
+            buf.putInt(Long.BYTES, count);
+            for (int i = 0; i < count; i++) {
+                buf.putLong(FREE_LIST_HEADER + i * Long.BYTES, entries.get(from + i));
+            }
+            markDirty(listPages.get(p));
+        }
+        // сначала данные, потом метаданные
+        forceDirtySegments();
+        txId++;
+        writeMeta((int) (txId & 1), listPages.isEmpty() ? NO_PAGE : listPages.get(0));
+        forceDirtySegments();
+
+        reusable.addAll(pendingFree);
+        reusable.addAll(freeListPages);
+        pendingFree.clear();
+        fresh.clear();
+        freeListPages = listPages;
+        dirty = false;
+    }
+
+    /**
+     * Отменяет все изменения после последнего commit
+     */
+    public void rollback() {
+        ByteBuffer meta = pageBuffer(0);
+        loadMeta(latestValidMeta(meta));
+        modCount++;
+    }
+
+    private void writeMeta(int slot, long freeListHead) {
+        ByteBuffer meta = pageBuffer(0);
+        int base = slot * META_SLOT;
+        meta.putInt(base + META_MAGIC, MAGIC);
+        meta.putInt(base + META_VERSION, VERSION);
+        meta.putInt(base + META_PAGE_SIZE, pageSize);
+        meta.putInt(base + META_KEY_SIZE, keySize);
+        meta.putLong(base + META_TX, txId);
+        meta.putLong(base + META_ROOT, root);
+        meta.putInt(base + META_HEIGHT, height);
+        meta.putLong(base + META_SIZE, size);
+        meta.putLong(base + META_PAGE_COUNT, pageCount);
+        meta.putLong(base + META_FREE_LIST, freeListHead);
+        meta.putLong(base + META_CHECKSUM, checksum(meta, base));
+        markDirty(0);
+    }
+
+    private void forceDirtySegments() {
+        for (int seg = dirtySegments.nextSetBit(0); seg >= 0; seg = dirtySegments.nextSetBit(seg + 1)) {
+            segments.get(seg).force();
+        }
+        dirtySegments.clear();
+    }
+
+    /**
+     * Сохраняет изменения и закрывает файл
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            segments.clear();
+            cache.clear();
+            channel.close();
+        }
+    }
+
+    private ByteBuffer pageBuffer(long page) {
+        int seg = (int) (page / pagesPerSegment);
+        int offset = (int) (page % pagesPerSegment) * pageSize;
+        ByteBuffer buf = segment(seg).duplicate();
+        buf.position(offset);
+        buf.limit(offset + pageSize);
+        return buf.slice();
+    }
+
+    private MappedByteBuffer segment(int seg) {
+        try {
+            while (segments.size() <= seg) {
+                long segmentBytes = (long) pagesPerSegment * pageSize;
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, segments.size() * segmentBytes, segmentBytes));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return segments.get(seg);
+    }
+
+    private void markDirty(long page) {
+        dirtySegments.set((int) (page / pagesPerSegment));
+    }
+
+    private long allocate() {
+        long page = reusable.isEmpty() ? pageCount++ : reusable.pop();
+        fresh.add(page);
+        return page;
+    }
+
+    private void free(long page) {
+        cache.remove(page);
+        if (fresh.remove(page)) {
+            reusable.push(page);
+        } else {
+            pendingFree.push(page);
+        }
+    }
+
+    /**
+     * Возвращает узел, который можно менять: если его страница уже записана commit-ом,
+     * узел переезжает на новую страницу, а старая освобождается после следующего commit
+     */
+    private Node writable(Node node) {
+        if (!fresh.contains(node.page)) {
+            cache.remove(node.page);
+            pendingFree.push(node.page);
+            node.page = allocate();
+            cache.put(node.page, node);
+        }
+        dirty = true;
+        return node;
+    }
+
+    private Node load(long page) {
+        Node node = cache.get(page);
+        if (node != null) {
+            return node;
+        }
+        ByteBuffer buf = pageBuffer(page);
+        int type = buf.getInt(0);
+        if (type != LEAF && type != INNER) {
+            throw new IllegalStateException("Page " + page + " of " + file + " is not a tree node");
+        }
+        node = new Node(page, type == LEAF);
+        node.count = buf.getInt(4);
+        int keysOffset = keysOffset(node.leaf);
+        for (int i = 0; i < node.count; i++) {
+            buf.position(keysOffset + i * keySize);
+            node.keys[i] = codec.decode(buf);
+        }
+        if (!node.leaf) {
+            for (int i = 0; i <= node.count; i++) {
+                node.children[i] = buf.getLong(NODE_HEADER + i * Long.BYTES);
+            }
+        }
+        cache.put(page, node);
+        return node;
+    }
+
+    private void store(Node node) {
+        ByteBuffer buf = pageBuffer(node.page);
+        buf.putInt(0, node.leaf ? LEAF : INNER);
+        buf.putInt(4, node.count);
+        int keysOffset = keysOffset(node.leaf);
+        for (int i = 0; i < node.count; i++) {
+            buf.position(keysOffset + i * keySize);
+            codec.encode(key(node, i), buf);
+        }
+        if (!node.leaf) {
+            for (int i = 0; i <= node.count; i++) {
+                buf.putLong(NODE_HEADER + i * Long.BYTES, node.children[i]);
+            }
+        }
+        markDirty(node.page);
+        cache.put(node.page, node);
+    }
+
+    private int keysOffset(boolean leaf) {
+        return leaf ? NODE_HEADER : NODE_HEADER + (maxInnerKeys + 1) * Long.BYTES;
+    }
+
+    /**
+     * Вставляет элемент в дерево.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param value элемент который необходимо вставить
+     * @return true, если элемент в дереве отсутствовал
+     */
+    @Override
+    public boolean add(E value) {
+        Node[] path = newPath();
+        int[] childIdx = new int[height];
+        Node leaf = descend(value, path, childIdx);
+        int pos = lowerBound(leaf, value);
+        if (pos < leaf.count && compare(key(leaf, pos), value) == 0) {
+            return false;
+        }
+        leaf = writable(leaf);
+        insertAt(leaf.keys, leaf.count, pos, value);
+        leaf.count++;
+        size++;
+        modCount++;
+
+        Node child = leaf;
+        Node right = null;
+        Object separator = null;
+        if (leaf.count > maxLeafKeys) {
+            right = splitLeaf(leaf);
+            separator = right.keys[0];
+        }
+        for (int level = height - 1; level >= 0; level--) {
+            store(child);
+            if (right != null) {
+                store(right);
+            }
+            Node parent = path[level];
+            int idx = childIdx[level];
+            if (right == null && parent.children[idx] == child.page) {
+                return true;
+            }
+            parent = writable(parent);
+            parent.children[idx] = child.page;
+            if (right != null) {
+                insertAt(parent.keys, parent.count, idx, separator);
+                insertAt(parent.children, parent.count + 1, idx + 1, right.page);
+                parent.count++;
+                right = null;
+                if (parent.count > maxInnerKeys) {
+                    separator = parent.keys[parent.count / 2];
+                    right = splitInner(parent);
+                }
+            }
+            child = parent;
+        }
+        store(child);
+        if (right != null) {
+            store(right);
+            Node newRoot = new Node(allocate(), false);
+            newRoot.keys[0] = separator;
+            newRoot.children[0] = child.page;
+            newRoot.children[1] = right.page;
+            newRoot.count = 1;
+            store(newRoot);
+            child = newRoot;
+            height++;
+        }
+        root = child.page;
+        return true;
+    }
+
+    private Node splitLeaf(Node leaf) {
+        Node right = new Node(allocate(), true);
+        int move = leaf.count / 2;
+        int keep = leaf.count - move;
+        System.arraycopy(leaf.keys, keep, right.keys, 0, move);
+        clear(leaf.keys, keep, leaf.count);
+        leaf.count = keep;
+        right.count = move;
+        return right;
+    }
+
+    /**
+     * Средний ключ узла уходит в родителя, правая половина - в новый узел
+     */
+    private Node splitInner(Node inner) {
+        Node right = new Node(allocate(), false);
+        int mid = inner.count / 2;
+        int move = inner.count - mid - 1;
+        System.arraycopy(inner.keys, mid + 1, right.keys, 0, move);
+        System.arraycopy(inner.children, mid + 1, right.children, 0, move + 1);
+        clear(inner.keys, mid, inner.count);
+        inner.count = mid;
+        right.count = move;
+        return right;
+    }
+
+    /**
+     * Удаляет элемент с таким же значением из дерева.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо удалить
+     * @return true, если элемент содержался в дереве
+     */
+    @Override
+    public boolean remove(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        Node[] path = newPath();
+        int[] childIdx = new int[height];
+        Node leaf = descend(value, path, childIdx);
+        int pos = lowerBound(leaf, value);
+        if (pos == leaf.count || compare(key(leaf, pos), value) != 0) {
+            return false;
+        }
+        leaf = writable(leaf);
+        removeAt(leaf.keys, leaf.count, pos);
+        leaf.count--;
+        size--;
+        modCount++;
+
+        Node node = leaf;
+        for (int level = height - 1; level >= 0; level--) {
+            Node parent = path[level];
+            int idx = childIdx[level];
+            if (!isUnderflow(node)) {
+                store(node);
+                if (parent.children[idx] == node.page) {
+                    return true;
+                }
+                parent = writable(parent);
+                parent.children[idx] = node.page;
+                node = parent;
+                continue;
+            }
+            parent = writable(parent);
+            parent.children[idx] = node.page;
+            Node left = idx > 0 ? load(parent.children[idx - 1]) : null;
+            Node right = idx < parent.count ? load(parent.children[idx + 1]) : null;
+            if (left != null && canLend(left)) {
+                left = writable(left);
+                parent.children[idx - 1] = left.page;
+                borrowFromLeft(parent, idx, left, node);
+                store(left);
+                store(node);
+            } else if (right != null && canLend(right)) {
+                right = writable(right);
+                parent.children[idx + 1] = right.page;
+                borrowFromRight(parent, idx, node, right);
+                store(right);
+                store(node);
+            } else if (left != null) {
+                left = writable(left);
+                parent.children[idx - 1] = left.page;
+                merge(parent, idx - 1, left, node);
+                store(left);
+                free(node.page);
+            } else {
+                merge(parent, idx, node, right);
+                store(node);
+                free(right.page);
+            }
+            node = parent;
+        }
+        if (height > 0 && node.count == 0) {
+            root = node.children[0];
+            free(node.page);
+            height--;
+        } else {
+            store(node);
+            root = node.page;
+        }
+        return true;
+    }
+
+    private boolean isUnderflow(Node node) {
+        return node.count < (node.leaf ? maxLeafKeys : maxInnerKeys) / 2;
+    }
+
+    private boolean canLend(Node node) {
+        return node.count > (node.leaf ? maxLeafKeys : maxInnerKeys) / 2;
+    }
+
+    private void borrowFromLeft(Node parent, int idx, Node left, Node node) {
+        if (node.leaf) {
+            insertAt(node.keys, node.count, 0, left.keys[left.count - 1]);
+            parent.keys[idx - 1] = node.keys[0];
+        } else {
+            insertAt(node.keys, node.count, 0, parent.keys[idx - 1]);
+            insertAt(node.children, node.count + 1, 0, left.children[left.count]);
+            parent.keys[idx - 1] = left.keys[left.count - 1];
+        }
+        left.keys[left.count - 1] = null;
+        node.count++;
+        left.count--;
+    }
+
+    private void borrowFromRight(Node parent, int idx, Node node, Node right) {
+        if (node.leaf) {
+            node.keys[node.count] = right.keys[0];
+            removeAt(right.keys, right.count, 0);
+            parent.keys[idx] = right.keys[0];
+        } else {
+            node.keys[node.count] = parent.keys[idx];
+            node.children[node.count + 1] = right.children[0];
+            parent.keys[idx] = right.keys[0];
+            removeAt(right.keys, right.count, 0);
+            removeAt(right.children, right.count + 1, 0);
+        }
+        node.count++;
+        right.count--;
+    }
+
+    /**
+     * Переносит всё содержимое right в left и удаляет right из родителя
+     *
+     * @param sep индекс разделителя между left и right в родителе
+     */
+    private void merge(Node parent, int sep, Node left, Node right) {
+        if (left.leaf) {
+            System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+            left.count += right.count;
+        } else {
+            left.keys[left.count] = parent.keys[sep];
+            System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+            System.arraycopy(right.children, 0, left.children, left.count + 1, right.count + 1);
+            left.count += right.count + 1;
+        }
+        removeAt(parent.keys, parent.count, sep);
+        removeAt(parent.children, parent.count + 1, sep + 1);
+        parent.count--;
+    }
+
+    /**
+     * Ищет элемент с таким же значением в дереве.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо поискать
+     * @return true, если такой элемент содержится в дереве
+     */
+    @Override
+    public boolean contains(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        Node curr = load(root);
+        for (int level = 0; level < height; level++) {
+            curr = load(curr.children[upperBound(curr, value)]);
+        }
+        int pos = lowerBound(curr, value);
+        return pos < curr.count && compare(key(curr, pos), value) == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node[] newPath() {
+        return (Node[]) new DiskBPlusTree<?>.Node[height + 1];
+    }
+
+    private Node descend(E value, Node[] path, int[] childIdx) {
+        Node curr = load(root);
+        for (int level = 0; level < height; level++) {
+            int idx = upperBound(curr, value);
+            path[level] = curr;
+            childIdx[level] = idx;
+            curr = load(curr.children[idx]);
+        }
+        path[height] = curr;
+        return curr;
+    }
+
+    /**
+     * @return индекс первого ключа не меньше value или count
+     */
+    private int lowerBound(Node node, E value) {
+        int lo = 0;
+        int hi = node.count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(key(node, mid), value) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return индекс первого ключа больше value или count
+     */
+    private int upperBound(Node node, E value) {
+        int lo = 0;
+        int hi = node.count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(key(node, mid), value) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E key(Node node, int idx) {
+        return (E) node.keys[idx];
+    }
+
+    private static void insertAt(Object[] array, int length, int idx, Object value) {
+        System.arraycopy(array, idx, array, idx + 1, length - idx);
+        array[idx] = value;
+    }
+
+    private static void insertAt(long[] array, int length, int idx, long value) {
+        System.arraycopy(array, idx, array, idx + 1, length - idx);
+        array[idx] = value;
+    }
+
+    private static void removeAt(Object[] array, int length, int idx) {
+        System.arraycopy(array, idx + 1, array, idx, length - idx - 1);
+        array[length - 1] = null;
+    }
+
+    private static void removeAt(long[] array, int length, int idx) {
+        System.arraycopy(array, idx + 1, array, idx, length - idx - 1);
+    }
+
+    private static void clear(Object[] array, int from, int to) {
+        for (int i = from; i < to; i++) {
+            array[i] = null;
+        }
+    }
+
+    /**
+     * Ищет наименьший элемент в дереве
+     *
+     * @return Возвращает наименьший элемент в дереве
+     * @throws NoSuchElementException если дерево пустое
+     */
+    @Override
+    public E first() {
+        if (size == 0) {
+            throw new NoSuchElementException("first");
+        }
+        Node curr = load(root);
+        for (int level = 0; level < height; level++) {
+            curr = load(curr.children[0]);
+        }
+        return key(curr, 0);
+    }
+
+    /**
+     * Ищет наибольший элемент в дереве
+     *
+     * @return Возвращает наибольший элемент в дереве
+     * @throws NoSuchElementException если дерево пустое
+     */
+    @Override
+    public E last() {
+        if (size == 0) {
+            throw new NoSuchElementException("last");
+        }
+        Node curr = load(root);
+        for (int level = 0; level < height; level++) {
+            curr = load(curr.children[curr.count]);
+        }
+        return key(curr, curr.count - 1);
+    }
+
+    private int compare(E v1, E v2) {
+        return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    public long longSize() {
+        return size;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return количество страниц файла, включая свободные и метастраницу
+     */
+    public long getPageCount() {
+        return pageCount;
+    }
+
+    @Override
+    public String toString() {
+        return "DiskBPlusTree{" +
+                "file=" + file +
+                ", size=" + size +
+                ", height=" + (height + 1) +
+                ", pages=" + pageCount +
+                '}';
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return new SortedRangeView<>(this, fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return new SortedRangeView<>(this, null, toElement);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return new SortedRangeView<>(this, fromElement, null);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new PathIterator(null);
+    }
+
+    @Override
+    public Iterator<E> iteratorFrom(E fromElement) {
+        return new PathIterator(fromElement);
+    }
+
+    /**
+     * Обходит дерево по уровням и проверяет, что
+     * 1) все листья находятся на одной глубине,
+     * 2) каждая страница кроме корня заполнена не меньше чем наполовину,
+     * 3) ключи упорядочены и лежат в границах, заданных разделителями родителя,
+     * 4) на каждую страницу ссылаются не более одного раза и она не числится свободной.
+     *
+     * @throws NotBalancedTreeException если какое-либо свойство невыполнено
+     */
+    @Override
+    public void checkBalanced() throws NotBalancedTreeException {
+        Set<Long> free = new HashSet<>(reusable);
+        free.addAll(pendingFree);
+        free.addAll(freeListPages);
+        Set<Long> seen = new HashSet<>();
+        ArrayDeque<Object[]> queue = new ArrayDeque<>();
+        queue.add(new Object[]{root, 0, null, null});
+        long keys = 0;
+        while (!queue.isEmpty()) {
+            Object[] item = queue.poll();
+            long page = (Long) item[0];
+            int depth = (Integer) item[1];
+            @SuppressWarnings("unchecked")
+            E low = (E) item[2];
+            @SuppressWarnings("unchecked")
+            E high = (E) item[3];
+            if (page <= 0 || page >= pageCount || !seen.add(page) || free.contains(page)) {
+                throw new NotBalancedTreeException("Page " + page + " is referenced twice, free or out of file bounds");
+            }
+            Node node = load(page);
+            if (page != root && isUnderflow(node)) {
+                throw new NotBalancedTreeException("Page " + page + " is less than half full: count = " + node.count);
+            }
+            for (int i = 0; i < node.count; i++) {
+                E key = key(node, i);
+                if (i > 0 && compare(key(node, i - 1), key) >= 0) {
+                    throw new NotBalancedTreeException("Keys are not sorted in page " + page);
+                }
+                if ((low != null && compare(key, low) < 0) || (high != null && compare(key, high) >= 0)) {
+                    throw new NotBalancedTreeException("Key " + key + " in page " + page
+                            + " is out of separator bounds [" + low + ", " + high + ")");
+                }
+            }
+            if (node.leaf) {
+                if (depth != height) {
+                    throw NotBalancedTreeException.create("All leaves must be at the same depth",
+                            depth, height, "page " + page);
+                }
+                keys += node.count;
+            } else {
+                for (int i = 0; i <= node.count; i++) {
+                    queue.add(new Object[]{node.children[i], depth + 1,
+                            i == 0 ? low : key(node, i - 1),
+                            i == node.count ? high : key(node, i)});
+                }
+            }
+        }
+        if (keys != size) {
+            throw new NotBalancedTreeException("Leaves hold " + keys + " keys, size = " + size);
+        }
+    }
+
+    /**
+     * Обход по стеку пути от корня: листья не связаны между собой,
+     * иначе копирование при записи затрагивало бы соседние листья
+     */
+    private final class PathIterator implements Iterator<E> {
+        private Node[] nodes;
+        private int[] pos;
+        private boolean hasNext;
+        private E lastReturned;
+        private int expectedModCount;
+
+        PathIterator(E fromElement) {
+            seek(fromElement);
+        }
+
+        private void seek(E fromElement) {
+            nodes = newPath();
+            pos = new int[height + 1];
+            Node curr = load(root);
+            for (int level = 0; level < height; level++) {
+                nodes[level] = curr;
+                pos[level] = fromElement == null ? 0 : upperBound(curr, fromElement);
+                curr = load(curr.children[pos[level]]);
+            }
+            nodes[height] = curr;
+            pos[height] = fromElement == null ? 0 : lowerBound(curr, fromElement);
+            hasNext = pos[height] < curr.count || advanceLeaf();
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Переходит к следующему непустому листу
+         *
+         * @return false, если листья закончились
+         */
+        private boolean advanceLeaf() {
+            int level = height - 1;
+            while (level >= 0 && pos[level] >= nodes[level].count) {
+                level--;
+            }
+            if (level < 0) {
+                return false;
+            }
+            pos[level]++;
+            for (int l = level + 1; l <= height; l++) {
+                nodes[l] = load(nodes[l - 1].children[pos[l - 1]]);
+                pos[l] = 0;
+            }
+            return nodes[height].count > 0 || advanceLeaf();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public E next() {
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            Node leaf = nodes[height];
+            lastReturned = key(leaf, pos[height]++);
+            hasNext = pos[height] < leaf.count || advanceLeaf();
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            DiskBPlusTree.this.remove(lastReturned);
+            // страницы пути могли переехать - находим позицию заново
+            seek(lastReturned);
+            lastReturned = null;
+        }
+    }
+
+    private final class Node {
+        long page;
+        final boolean leaf;
+        int count;
+        final Object[] keys;
+        final long[] children;
+
+        Node(long page, boolean leaf) {
+            this.page = page;
+            this.leaf = leaf;
+            // одно лишнее место под временное переполнение перед делением
+            this.keys = new Object[(leaf ? maxLeafKeys : maxInnerKeys) + 1];
+            this.children = leaf ? null : new long[maxInnerKeys + 2];
+        }
+    }
+}
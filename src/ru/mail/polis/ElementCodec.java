@@ -0,0 +1,34 @@
+package ru.mail.polis;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Двоичное представление элементов для хранения вне кучи (в файлах и буферах)
+ */
+public interface ElementCodec<E> {
+
+    /**
+     * Обозначает, что размер закодированного элемента зависит от значения
+     */
+    int VARIABLE_SIZE = -1;
+
+    /**
+     * @return размер любого закодированного элемента в байтах или VARIABLE_SIZE
+     */
+    int fixedSize();
+
+    /**
+     * @return количество байт, которое займёт value
+     */
+    int encodedSize(E value);
+
+    /**
+     * Записывает value в buffer начиная с текущей позиции и сдвигает позицию на encodedSize(value)
+     */
+    void encode(E value, ByteBuffer buffer);
+
+    /**
+     * Читает элемент из buffer начиная с текущей позиции и сдвигает позицию за его конец
+     */
+    E decode(ByteBuffer buffer);
+}
@@ -0,0 +1,182 @@
+package ru.mail.polis;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Кодеки для стандартных типов
+ */
+public final class ElementCodecs {
+
+    public static final ElementCodec<Integer> INTEGER = new ElementCodec<Integer>() {
+        @Override
+        public int fixedSize() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public int encodedSize(Integer value) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void encode(Integer value, ByteBuffer buffer) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    };
+
+    public static final ElementCodec<Long> LONG = new ElementCodec<Long>() {
+        @Override
+        public int fixedSize() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public int encodedSize(Long value) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void encode(Long value, ByteBuffer buffer) {
+            buffer.putLong(value);
+        }
+
+        @Override
+        public Long decode(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    };
+
+    /**
+     * Строка в UTF-8 с длиной в формате varint, null допускается
+     */
+    public static final ElementCodec<String> STRING = new ElementCodec<String>() {
+        @Override
+        public int fixedSize() {
+            return VARIABLE_SIZE;
+        }
+
+        @Override
+        public int encodedSize(String value) {
+            return stringSize(value);
+        }
+
+        @Override
+        public void encode(String value, ByteBuffer buffer) {
+            putString(value, buffer);
+        }
+
+        @Override
+        public String decode(ByteBuffer buffer) {
+            return getString(buffer);
+        }
+    };
+
+    private ElementCodecs() {
+        /* empty */
+    }
+
+    /**
+     * @return количество байт, которое займёт строка вместе с длиной
+     */
+    static int stringSize(String value) {
+        if (value == null) {
+            return 1;
+        }
+        int bytes = utf8Length(value);
+        return varIntSize(bytes + 1) + bytes;
+    }
+
+    /**
+     * Пишет длину в байтах плюс один (0 - null) и символы в UTF-8.
+     * Суррогатные пары кодируются как два трёхбайтовых символа, поэтому
+     * длина считается без выделения памяти и кодирование однозначно обратимо.
+     */
+    static void putString(String value, ByteBuffer buffer) {
+        if (value == null) {
+            buffer.put((byte) 0);
+            return;
+        }
+        putVarInt(utf8Length(value) + 1, buffer);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int bytes = getVarInt(buffer) - 1;
+        if (bytes < 0) {
+            return null;
+        }
+        char[] chars = new char[bytes];
+        int length = 0;
+        int end = buffer.position() + bytes;
+        while (buffer.position() < end) {
+            int b = buffer.get() & 0xFF;
+            if (b < 0x80) {
+                chars[length++] = (char) b;
+            } else if (b < 0xE0) {
+                chars[length++] = (char) (((b & 0x1F) << 6) | (buffer.get() & 0x3F));
+            } else {
+                int b2 = buffer.get() & 0x3F;
+                chars[length++] = (char) (((b & 0x0F) << 12) | (b2 << 6) | (buffer.get() & 0x3F));
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    private static int utf8Length(String value) {
+        int bytes = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x800) {
+                bytes += 2;
+            } else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+    static int varIntSize(int value) {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    static void putVarInt(int value, ByteBuffer buffer) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package ru.mail.polis;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.function.IntConsumer;
+
+import static ru.mail.polis.EytzingerSet.checkSize;
+import static ru.mail.polis.EytzingerSet.firstIndex;
+import static ru.mail.polis.EytzingerSet.lastIndex;
+import static ru.mail.polis.EytzingerSet.lastLeftTurn;
+import static ru.mail.polis.EytzingerSet.lastRightTurn;
+import static ru.mail.polis.EytzingerSet.nextIndex;
+
+/**
+ * EytzingerSet для ключей int: массив int[] вместо ссылок на Integer, поэтому спуск читает сами ключи,
+ * а не разыменовывает ссылку на каждом уровне, и 16 ключей соседних узлов умещаются в строку кеша.
+ * <p>
+ * Методы навигации возвращают long: найденный ключ или NOT_FOUND, чтобы не упаковывать результат.
+ */
+public final class EytzingerIntSet {
+
+    /**
+     * Результат ceiling, floor, higher и lower, если такого ключа нет; вне диапазона int
+     */
+    public static final long NOT_FOUND = Long.MIN_VALUE;
+
+    private final int[] keys; //keys[0] не используется
+    private final int size;
+
+    private EytzingerIntSet(int[] keys, int size) {
+        this.keys = keys;
+        this.size = size;
+    }
+
+    /**
+     * @param values - ключи в любом порядке, повторы допускаются
+     */
+    public static EytzingerIntSet of(int... values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[size - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return fromSorted(sorted, size);
+    }
+
+    /**
+     * Замораживает множество с естественным порядком, например AVLTree&lt;Integer&gt; или его freeze()
+     *
+     * @throws IllegalArgumentException если у множества свой компаратор
+     */
+    public static EytzingerIntSet of(SortedSet<Integer> set) {
+        Comparator<? super Integer> comparator = set.comparator();
+        if (comparator != null && !comparator.equals(Comparator.naturalOrder())) {
+            throw new IllegalArgumentException("Set must use the natural order of int keys");
+        }
+        //обход уже идёт по возрастанию, поэтому ключи сразу раскладываются по ячейкам без промежуточного массива
+        int size = set.size();
+        checkSize(size);
+        int[] keys = new int[size + 1];
+        int k = firstIndex(size);
+        for (Integer value : set) {
+            keys[k] = value;
+            k = nextIndex(k, size);
+        }
+        return new EytzingerIntSet(keys, size);
+    }
+
+    private static EytzingerIntSet fromSorted(int[] sorted, int size) {
+        checkSize(size);
+        int[] keys = new int[size + 1];
+        int k = firstIndex(size);
+        for (int i = 0; i < size; i++) {
+            keys[k] = sorted[i];
+            k = nextIndex(k, size);
+        }
+        return new EytzingerIntSet(keys, size);
+    }
+
+    /**
+     * Спуск до выхода за массив: вправо, если ключ меньше key (или не больше при inclusive)
+     */
+    private int descend(int key, boolean inclusive) {
+        int[] keys = this.keys;
+        int size = this.size;
+        int k = 1;
+        if (inclusive) {
+            while (k <= size) {
+                k = 2 * k + (keys[k] <= key ? 1 : 0);
+            }
+        } else {
+            while (k <= size) {
+                k = 2 * k + (keys[k] < key ? 1 : 0);
+            }
+        }
+        return k;
+    }
+
+    private long keyAt(int k) {
+        return k == 0 ? NOT_FOUND : keys[k];
+    }
+
+    public boolean contains(int key) {
+        int k = lastLeftTurn(descend(key, false));
+        return k != 0 && keys[k] == key;
+    }
+
+    /**
+     * @return наименьший ключ не меньше key или NOT_FOUND
+     */
+    public long ceiling(int key) {
+        return keyAt(lastLeftTurn(descend(key, false)));
+    }
+
+    /**
+     * @return наименьший ключ больше key или NOT_FOUND
+     */
+    public long higher(int key) {
+        return keyAt(lastLeftTurn(descend(key, true)));
+    }
+
+    /**
+     * @return наибольший ключ не больше key или NOT_FOUND
+     */
+    public long floor(int key) {
+        return keyAt(lastRightTurn(descend(key, true)));
+    }
+
+    /**
+     * @return наибольший ключ меньше key или NOT_FOUND
+     */
+    public long lower(int key) {
+        return keyAt(lastRightTurn(descend(key, false)));
+    }
+
+    public int first() {
+        if (size == 0) {
+            throw new NoSuchElementException("first");
+        }
+        return keys[firstIndex(size)];
+    }
+
+    public int last() {
+        if (size == 0) {
+            throw new NoSuchElementException("last");
+        }
+        return keys[lastIndex(size)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Обходит ключи в порядке возрастания
+     */
+    public void forEach(IntConsumer action) {
+        for (int k = firstIndex(size); k != 0; k = nextIndex(k, size)) {
+            action.accept(keys[k]);
+        }
+    }
+
+    /**
+     * @return ключи в порядке возрастания
+     */
+    public int[] toArray() {
+        int[] sorted = new int[size];
+        int i = 0;
+        for (int k = firstIndex(size); k != 0; k = nextIndex(k, size)) {
+            sorted[i++] = keys[k];
+        }
+        return sorted;
+    }
+
+    @Override
+    public String toString() {
+        return "EytzingerIntSet{size=" + size + "}";
+    }
+}
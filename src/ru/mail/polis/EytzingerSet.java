@@ -0,0 +1,249 @@
+package ru.mail.polis;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * Неизменяемое отсортированное множество, элементы которого лежат в массиве в порядке Эйтцингера:
+ * корень неявного дерева поиска - в ячейке 1, потомки ячейки k - в 2k и 2k + 1, то есть дерево
+ * записано по уровням (в порядке обхода в ширину).
+ * <p>
+ * Поиск - спуск k = 2k + (elements[k] < key) без ветвления по результату сравнения: верхние уровни
+ * всех поисков лежат в нескольких первых строках кеша, а нижние уровни одного спуска идут по индексам,
+ * которые зависят только от сравнений. Команды prefetch в Java нет, а чтение ячейки на несколько уровней
+ * ниже с неиспользуемым результатом JIT выбрасывает; сохранять результат в поле нельзя - множество читают
+ * параллельно, и запись в общий объект на каждом поиске стоила бы больше, чем экономит. Поэтому заранее
+ * здесь ничего не читается.
+ * По окончании спуска биты k записывают путь (1 - шаг вправо), поэтому ceiling, floor, higher и lower
+ * получаются из одного спуска сдвигом k на число младших единиц или нулей.
+ * <p>
+ * Создаётся методом freeze() у AVLTree и RedBlackTree. Изменяющие методы бросают
+ * UnsupportedOperationException. Массив хранит ссылки, и каждое сравнение всё равно читает сам элемент
+ * из кучи, поэтому для ключей int есть EytzingerIntSet без упаковки в Integer.
+ */
+public final class EytzingerSet<E> extends AbstractSet<E> implements SortedSet<E>, SortedRangeView.Source<E> {
+
+    static final int MAX_SIZE = 1 << 30;
+
+    private final Comparator<? super E> comparator;
+    private final Object[] elements; //elements[0] не используется
+    private final int size;
+
+    private EytzingerSet(Comparator<? super E> comparator, Object[] elements, int size) {
+        this.comparator = comparator;
+        this.elements = elements;
+        this.size = size;
+    }
+
+    /**
+     * @param sorted - элементы в порядке возрастания по comparator, без повторов
+     */
+    static <E> EytzingerSet<E> fromSorted(Comparator<? super E> comparator, Object[] sorted) {
+        checkSize(sorted.length);
+        Object[] elements = new Object[sorted.length + 1];
+        int k = firstIndex(sorted.length);
+        for (Object value : sorted) {
+            elements[k] = value;
+            k = nextIndex(k, sorted.length);
+        }
+        return new EytzingerSet<>(comparator, elements, sorted.length);
+    }
+
+    /**
+     * Спуск считает 2k + 1 в int, поэтому элементов меньше 2^30
+     */
+    static void checkSize(int size) {
+        if (size >= MAX_SIZE) {
+            throw new IllegalArgumentException("Too many elements for the Eytzinger layout: " + size);
+        }
+    }
+
+    /**
+     * @return ячейка наименьшего элемента среди size элементов (самая левая), 0 для пустого массива
+     */
+    static int firstIndex(int size) {
+        return Integer.highestOneBit(size);
+    }
+
+    /**
+     * @return ячейка наибольшего элемента (самая правая), 0 для пустого массива
+     */
+    static int lastIndex(int size) {
+        return Integer.highestOneBit(size + 1) - 1;
+    }
+
+    /**
+     * @return ячейка следующего по порядку элемента или 0, если k - последний
+     */
+    static int nextIndex(int k, int size) {
+        if (2 * k + 1 <= size) {
+            k = 2 * k + 1;
+            while (2 * k <= size) {
+                k = 2 * k;
+            }
+            return k;
+        }
+        // поднимаемся, пока k - правый потомок, и ещё на один уровень
+        return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+    }
+
+    /**
+     * @param k - индекс за пределами массива после спуска
+     * @return ячейка последнего узла, из которого спуск ушёл влево (наименьший элемент правее пути), или 0
+     */
+    static int lastLeftTurn(int k) {
+        return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+    }
+
+    /**
+     * @param k - индекс за пределами массива после спуска
+     * @return ячейка последнего узла, из которого спуск ушёл вправо (наибольший элемент левее пути), или 0
+     */
+    static int lastRightTurn(int k) {
+        return k >>> (Integer.numberOfTrailingZeros(k) + 1);
+    }
+
+    /**
+     * Спуск до выхода за массив: вправо, если элемент меньше key (или не больше при inclusive)
+     */
+    private int descend(E key, boolean inclusive) {
+        int size = this.size;
+        int k = 1;
+        if (inclusive) {
+            while (k <= size) {
+                k = 2 * k + (compare(element(k), key) <= 0 ? 1 : 0);
+            }
+        } else {
+            while (k <= size) {
+                k = 2 * k + (compare(element(k), key) < 0 ? 1 : 0);
+            }
+        }
+        return k;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E element(int k) {
+        return (E) elements[k];
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E v1, E v2) {
+        return comparator == null ? ((Comparable<? super E>) v1).compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        int k = lastLeftTurn(descend(value, false));
+        return k != 0 && compare(element(k), value) == 0;
+    }
+
+    /**
+     * @return наименьший элемент не меньше value или null
+     */
+    public E ceiling(E value) {
+        return element(lastLeftTurn(descend(value, false)));
+    }
+
+    /**
+     * @return наименьший элемент больше value или null
+     */
+    public E higher(E value) {
+        return element(lastLeftTurn(descend(value, true)));
+    }
+
+    /**
+     * @return наибольший элемент не больше value или null
+     */
+    public E floor(E value) {
+        return element(lastRightTurn(descend(value, true)));
+    }
+
+    /**
+     * @return наибольший элемент меньше value или null
+     */
+    public E lower(E value) {
+        return element(lastRightTurn(descend(value, false)));
+    }
+
+    @Override
+    public E first() {
+        if (size == 0) {
+            throw new NoSuchElementException("first");
+        }
+        return element(firstIndex(size));
+    }
+
+    @Override
+    public E last() {
+        if (size == 0) {
+            throw new NoSuchElementException("last");
+        }
+        return element(lastIndex(size));
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "EytzingerSet{size=" + size + "}";
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return new SortedRangeView<>(this, fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return new SortedRangeView<>(this, null, toElement);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return new SortedRangeView<>(this, fromElement, null);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return iteratorAt(firstIndex(size));
+    }
+
+    @Override
+    public Iterator<E> iteratorFrom(E fromElement) {
+        return fromElement == null ? iterator() : iteratorAt(lastLeftTurn(descend(fromElement, false)));
+    }
+
+    private Iterator<E> iteratorAt(int start) {
+        return new Iterator<E>() {
+            private int next = start;
+
+            @Override
+            public boolean hasNext() {
+                return next != 0;
+            }
+
+            @Override
+            public E next() {
+                if (next == 0) {
+                    throw new NoSuchElementException();
+                }
+                E value = element(next);
+                next = nextIndex(next, size);
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,136 @@
+package ru.mail.polis;
+
+import java.util.Locale;
+
+/**
+ * Снимок состояния хеш-таблицы, собранный её методом healthReport: заполненность, удалённые ячейки,
+ * распределения длин поиска и кластеризация.
+ * <p>
+ * Длины поиска меряются на выборке живых элементов и сравниваются с тем, что дала бы идеальная
+ * хеш-функция при той же заполненности. Отношение больше 1.5-2 - повод смотреть на hashCode():
+ * среднее ещё может быть приличным, а хвост (p99, max) уже длинный.
+ * <ul>
+ * <li>OpenHashTable: длина поиска - число просмотренных ячеек; кластеры - серии подряд идущих
+ * непустых ячеек (включая удалённые).</li>
+ * <li>ChainHashTable: длина поиска - число сравнений в цепочке; кластеры - длины цепочек всех ячеек,
+ * включая пустые (длина 0).</li>
+ * </ul>
+ */
+public final class HashTableHealth {
+
+    private final int tableSize;
+    private final int size;
+    private final int tombstones;
+    private final LengthHistogram hitLengths;
+    private final LengthHistogram missLengths;
+    private final LengthHistogram clusterLengths;
+    private final double expectedHitLength;
+    private final double expectedMissLength;
+
+    HashTableHealth(int tableSize, int size, int tombstones,
+                    LengthHistogram hitLengths, LengthHistogram missLengths, LengthHistogram clusterLengths,
+                    double expectedHitLength, double expectedMissLength) {
+        this.tableSize = tableSize;
+        this.size = size;
+        this.tombstones = tombstones;
+        this.hitLengths = hitLengths;
+        this.missLengths = missLengths;
+        this.clusterLengths = clusterLengths;
+        this.expectedHitLength = expectedHitLength;
+        this.expectedMissLength = expectedMissLength;
+    }
+
+    public int getTableSize() {
+        return tableSize;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public double getLoadFactor() {
+        return (double) size / tableSize;
+    }
+
+    /**
+     * @return число удалённых ячеек; у ChainHashTable всегда 0
+     */
+    public int getTombstones() {
+        return tombstones;
+    }
+
+    /**
+     * @return доля удалённых ячеек от размера таблицы: они удлиняют промахи так же, как живые элементы
+     */
+    public double getTombstoneDensity() {
+        return (double) tombstones / tableSize;
+    }
+
+    /**
+     * @return длины успешного поиска элементов выборки
+     */
+    public LengthHistogram getHitLengths() {
+        return hitLengths;
+    }
+
+    /**
+     * @return длины неуспешного поиска: по последовательности проб элемента выборки без его собственной
+     * ячейки (OpenHashTable) или по цепочке целиком для выборки ячеек (ChainHashTable)
+     */
+    public LengthHistogram getMissLengths() {
+        return missLengths;
+    }
+
+    /**
+     * @return серии непустых ячеек (OpenHashTable) или длины цепочек (ChainHashTable)
+     */
+    public LengthHistogram getClusterLengths() {
+        return clusterLengths;
+    }
+
+    /**
+     * @return средняя длина успешного поиска при идеальной хеш-функции и текущей заполненности
+     */
+    public double getExpectedHitLength() {
+        return expectedHitLength;
+    }
+
+    public double getExpectedMissLength() {
+        return expectedMissLength;
+    }
+
+    /**
+     * @return во сколько раз средний успешный поиск длиннее ожидаемого
+     */
+    public double getHitExcess() {
+        return excess(hitLengths.getMean(), expectedHitLength);
+    }
+
+    public double getMissExcess() {
+        return excess(missLengths.getMean(), expectedMissLength);
+    }
+
+    /**
+     * @return индекс дисперсии длин кластеров (дисперсия / среднее). Для цепочек при хорошей хеш-функции
+     * длины распределены почти по Пуассону и индекс около 1; заметно больше 1 - элементы сбиваются в кучи
+     */
+    public double getDispersionIndex() {
+        double mean = clusterLengths.getMean();
+        return mean == 0 ? 0 : clusterLengths.getVariance() / mean;
+    }
+
+    private static double excess(double actual, double expected) {
+        return expected == 0 ? 0 : actual / expected;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "HashTableHealth{tableSize=%d, size=%d, load=%.3f, tombstones=%d (%.3f)"
+                        + ", hit=%.2f/%.2f, miss=%.2f/%.2f, dispersion=%.2f"
+                        + ", hitLengths=%s, missLengths=%s, clusterLengths=%s}",
+                tableSize, size, getLoadFactor(), tombstones, getTombstoneDensity(),
+                hitLengths.getMean(), expectedHitLength, missLengths.getMean(), expectedMissLength,
+                getDispersionIndex(), hitLengths, missLengths, clusterLengths);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.mail.polis;
+
+/**
+ * Составной ключ вторичного индекса (значение поля, id студента).
+ * Добавка id делает ключ уникальным, поэтому студенты с одинаковым значением поля
+ * лежат в дереве рядом и упорядочены по id.
+ */
+final class IndexEntry<K extends Comparable<? super K>> implements Comparable<IndexEntry<K>> {
+
+    final K key;
+    final long id;
+    final Student student;
+
+    IndexEntry(K key, long id, Student student) {
+        this.key = key;
+        this.id = id;
+        this.student = student;
+    }
+
+    /**
+     * @return ключ для поиска: меньше всех записей со значением key и id не меньше fromId
+     */
+    static <K extends Comparable<? super K>> IndexEntry<K> probe(K key, long fromId) {
+        return new IndexEntry<>(key, fromId, null);
+    }
+
+    @Override
+    public int compareTo(IndexEntry<K> other) {
+        int comp = key.compareTo(other.key);
+        return comp != 0 ? comp : Long.compare(id, other.id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IndexEntry<?> other = (IndexEntry<?>) o;
+        return id == other.id && key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * key.hashCode() + Long.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + key + ", " + id + ")";
+    }
+}
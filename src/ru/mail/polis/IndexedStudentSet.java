@@ -0,0 +1,334 @@
+package ru.mail.polis;
+
+import java.time.LocalDate;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Множество студентов с первичным индексом по id и вторичными индексами по полям.
+ * <p>
+ * Каждый индекс - сбалансированное дерево (RedBlackTree или AVLTree) из составных ключей
+ * (значение поля, id), так что повторяющиеся значения поля не мешают друг другу.
+ * Все индексы обновляются при add и remove. Запросы по значению и по диапазону значений
+ * спускаются в дерево за O(log n) и дальше идут по порядку, не просматривая всех студентов.
+ * <p>
+ * Индексировать можно только поля, которые не меняются, пока студент лежит в множестве:
+ * иначе запись в индексе не найдётся при удалении. Студенты с одинаковым id считаются
+ * одним и тем же студентом.
+ */
+public class IndexedStudentSet extends AbstractSet<Student> {
+
+    /**
+     * Дерево, на котором строится индекс
+     */
+    public enum TreeKind {
+        RED_BLACK_TREE, AVL_TREE
+    }
+
+    /**
+     * Индексируемое поле студента
+     */
+    public static final class Field<K extends Comparable<? super K>> {
+
+        public static final Field<Integer> GROUP_ID = new Field<>("groupId", Student::getGroupId);
+        public static final Field<Integer> YEAR_OF_ADMISSION = new Field<>("yearOfAdmission", Student::getYearOfAdmission);
+        public static final Field<LocalDate> BIRTHDAY = new Field<>("birthday", Student::getBirthday);
+        public static final Field<String> LAST_NAME = new Field<>("lastName", Student::getLastName);
+        public static final Field<String> FIRST_NAME = new Field<>("firstName", Student::getFirstName);
+
+        private final String name;
+        private final Function<Student, K> extractor;
+
+        public Field(String name, Function<Student, K> extractor) {
+            this.name = name;
+            this.extractor = extractor;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        K get(Student student) {
+            return extractor.apply(student);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Вторичный индекс по одному полю
+     */
+    public final class Index<K extends Comparable<? super K>> {
+
+        private final Field<K> field;
+        private final BalancedSortedSet<IndexEntry<K>> tree;
+        private final SortedRangeView.Source<IndexEntry<K>> source;
+
+        private <T extends BalancedSortedSet<IndexEntry<K>> & SortedRangeView.Source<IndexEntry<K>>> Index(Field<K> field, T tree) {
+            this.field = field;
+            this.tree = tree;
+            this.source = tree;
+        }
+
+        public Field<K> getField() {
+            return field;
+        }
+
+        BalancedSortedSet<IndexEntry<K>> getTree() {
+            return tree;
+        }
+
+        private void add(Student student) {
+            tree.add(new IndexEntry<>(field.get(student), student.getId(), student));
+        }
+
+        private void remove(Student student) {
+            tree.remove(IndexEntry.probe(field.get(student), student.getId()));
+        }
+
+        /**
+         * @return студенты со значением поля, равным key, в порядке id
+         */
+        public Iterable<Student> equalTo(K key) {
+            return between(key, key);
+        }
+
+        /**
+         * @return студенты со значением поля в [fromInclusive, toInclusive], по возрастанию (значение, id);
+         * null вместо границы - диапазон не ограничен с этой стороны
+         */
+        public Iterable<Student> between(K fromInclusive, K toInclusive) {
+            return () -> new RangeIterator<>(entriesFrom(fromInclusive, Long.MIN_VALUE), toInclusive);
+        }
+
+        /**
+         * @return студенты со значением поля не меньше fromInclusive
+         */
+        public Iterable<Student> atLeast(K fromInclusive) {
+            return between(fromInclusive, null);
+        }
+
+        /**
+         * @return итератор по записям индекса, начиная с (key, fromId); key == null - с начала индекса
+         */
+        Iterator<IndexEntry<K>> entriesFrom(K key, long fromId) {
+            return key == null ? source.iterator() : source.iteratorFrom(IndexEntry.probe(key, fromId));
+        }
+
+        @Override
+        public String toString() {
+            return "Index{" + field + ", " + tree.getClass().getSimpleName() + ", size=" + tree.size() + "}";
+        }
+    }
+
+    /**
+     * Обход записей индекса до верхней границы значения включительно (null - без границы)
+     */
+    private static final class RangeIterator<K extends Comparable<? super K>> implements Iterator<Student> {
+        private final Iterator<IndexEntry<K>> entries;
+        private final K toInclusive;
+        private IndexEntry<K> next;
+
+        RangeIterator(Iterator<IndexEntry<K>> entries, K toInclusive) {
+            this.entries = entries;
+            this.toInclusive = toInclusive;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            if (entries.hasNext()) {
+                IndexEntry<K> entry = entries.next();
+                if (toInclusive == null || entry.key.compareTo(toInclusive) <= 0) {
+                    next = entry;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Student next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Student student = next.student;
+            advance();
+            return student;
+        }
+    }
+
+    private final TreeKind treeKind;
+    private final RedBlackTree<IndexEntry<Long>> primary = new RedBlackTree<>();
+    private final List<Index<?>> indexes = new ArrayList<>();
+
+    public IndexedStudentSet() {
+        this(TreeKind.RED_BLACK_TREE);
+    }
+
+    /**
+     * @param treeKind дерево для вторичных индексов
+     */
+    public IndexedStudentSet(TreeKind treeKind) {
+        this.treeKind = treeKind;
+    }
+
+    /**
+     * Создаёт вторичный индекс по полю и заполняет его уже добавленными студентами.
+     * Если индекс по этому полю уже есть, возвращает его.
+     */
+    public <K extends Comparable<? super K>> Index<K> addIndex(Field<K> field) {
+        Index<K> existing = getIndex(field);
+        if (existing != null) {
+            return existing;
+        }
+        Index<K> index = treeKind == TreeKind.AVL_TREE
+                ? new Index<>(field, new AVLTree<>())
+                : new Index<>(field, new RedBlackTree<>());
+        for (IndexEntry<Long> entry : primary) {
+            index.add(entry.student);
+        }
+        indexes.add(index);
+        return index;
+    }
+
+    /**
+     * @return индекс по полю или null, если его нет
+     */
+    @SuppressWarnings("unchecked")
+    public <K extends Comparable<? super K>> Index<K> getIndex(Field<K> field) {
+        for (Index<?> index : indexes) {
+            if (index.field == field) {
+                return (Index<K>) index;
+            }
+        }
+        return null;
+    }
+
+    public List<Index<?>> getIndexes() {
+        return new ArrayList<>(indexes);
+    }
+
+    /**
+     * @return студент с таким id или null
+     */
+    public Student getById(long id) {
+        Iterator<IndexEntry<Long>> it = primary.iteratorFrom(IndexEntry.probe(id, id));
+        if (it.hasNext()) {
+            IndexEntry<Long> entry = it.next();
+            if (entry.id == id) {
+                return entry.student;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Добавляет студента во все индексы
+     *
+     * @return true, если студента с таким id не было
+     */
+    @Override
+    public boolean add(Student student) {
+        if (!primary.add(new IndexEntry<>(student.getId(), student.getId(), student))) {
+            return false;
+        }
+        for (Index<?> index : indexes) {
+            index.add(student);
+        }
+        return true;
+    }
+
+    /**
+     * Удаляет студента из всех индексов
+     *
+     * @return true, если такой студент был в множестве
+     */
+    @Override
+    public boolean remove(Object object) {
+        if (!(object instanceof Student)) {
+            return false;
+        }
+        Student stored = getById(((Student) object).getId());
+        if (stored == null || !stored.equals(object)) {
+            return false;
+        }
+        primary.remove(IndexEntry.probe(stored.getId(), stored.getId()));
+        removeFromSecondary(stored);
+        return true;
+    }
+
+    private void removeFromSecondary(Student stored) {
+        for (Index<?> index : indexes) {
+            index.remove(stored);
+        }
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        if (!(object instanceof Student)) {
+            return false;
+        }
+        Student stored = getById(((Student) object).getId());
+        return stored != null && stored.equals(object);
+    }
+
+    @Override
+    public int size() {
+        return primary.size();
+    }
+
+    /**
+     * Обход в порядке id; remove удаляет студента из всех индексов
+     */
+    @Override
+    public Iterator<Student> iterator() {
+        Iterator<IndexEntry<Long>> entries = primary.iterator();
+        return new Iterator<Student>() {
+            private Student lastReturned;
+
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Student next() {
+                lastReturned = entries.next().student;
+                return lastReturned;
+            }
+
+            @Override
+            public void remove() {
+                entries.remove();
+                removeFromSecondary(lastReturned);
+            }
+        };
+    }
+
+    /**
+     * Проверяет сбалансированность всех деревьев и совпадение их размеров
+     *
+     * @throws NotBalancedTreeException если дерево разбалансировано или индекс рассогласован
+     */
+    public void checkIndexes() throws NotBalancedTreeException {
+        primary.checkBalanced();
+        for (Index<?> index : indexes) {
+            index.tree.checkBalanced();
+            if (index.tree.size() != primary.size()) {
+                throw new NotBalancedTreeException(index + " holds " + index.tree.size()
+                        + " entries, primary index holds " + primary.size());
+            }
+        }
+    }
+}
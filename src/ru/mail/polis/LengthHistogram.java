@@ -0,0 +1,136 @@
+package ru.mail.polis;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Неизменяемая гистограмма длин (длин пробирования, длин цепочек): count(length) - сколько раз
+ * встретилась длина length. Длины от MAX_EXACT и больше складываются в последнюю корзину,
+ * но максимум и среднее считаются по настоящим значениям.
+ */
+public final class LengthHistogram {
+
+    public static final int MAX_EXACT = 64;
+
+    private final long[] counts;
+    private final long total;
+    private final long sum;
+    private final long sumOfSquares;
+    private final int max;
+
+    LengthHistogram(long[] counts, long sum, long sumOfSquares, int max) {
+        this.counts = counts;
+        this.sum = sum;
+        this.sumOfSquares = sumOfSquares;
+        this.max = max;
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        this.total = total;
+    }
+
+    /**
+     * Изменяемая гистограмма для однопоточного заполнения при сканировании
+     */
+    static final class Builder {
+        private final long[] counts = new long[MAX_EXACT + 1];
+        private long sum;
+        private long sumOfSquares;
+        private int max;
+
+        void add(int length) {
+            counts[Math.min(length, MAX_EXACT)]++;
+            sum += length;
+            sumOfSquares += (long) length * length;
+            max = Math.max(max, length);
+        }
+
+        LengthHistogram build() {
+            return new LengthHistogram(counts.clone(), sum, sumOfSquares, max);
+        }
+    }
+
+    /**
+     * @return сколько раз встретилась длина length; для length >= MAX_EXACT - все длины от MAX_EXACT
+     */
+    public long count(int length) {
+        return counts[Math.min(length, MAX_EXACT)];
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    /**
+     * @return дисперсия по настоящим значениям, включая попавшие в последнюю корзину
+     */
+    public double getVariance() {
+        if (total == 0) {
+            return 0;
+        }
+        double mean = getMean();
+        return Math.max(0, (double) sumOfSquares / total - mean * mean);
+    }
+
+    /**
+     * @param quantile от 0 до 1
+     * @return наименьшая длина L, такая что доля значений не больше L не меньше quantile;
+     * MAX_EXACT, если она попала в последнюю корзину
+     */
+    public int percentile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("quantile " + quantile + " is not in [0, 1]");
+        }
+        long threshold = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int length = 0; length < counts.length; length++) {
+            seen += counts[length];
+            if (seen >= threshold && seen > 0) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{n=").append(total)
+                .append(String.format(Locale.ROOT, ", mean=%.2f", getMean()))
+                .append(", p50=").append(percentile(0.5))
+                .append(", p99=").append(percentile(0.99))
+                .append(", max=").append(max)
+                .append(", counts=[");
+        int last = counts.length - 1;
+        while (last > 0 && counts[last] == 0) {
+            last--;
+        }
+        for (int length = 0; length <= last; length++) {
+            if (length > 0) sb.append(", ");
+            sb.append(length == MAX_EXACT ? length + "+" : String.valueOf(length)).append(':').append(counts[length]);
+        }
+        return sb.append("]}").toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LengthHistogram)) return false;
+        LengthHistogram other = (LengthHistogram) o;
+        return sum == other.sum && sumOfSquares == other.sumOfSquares && max == other.max
+                && Arrays.equals(counts, other.counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(counts) + Long.hashCode(sum);
+    }
+}
@@ -0,0 +1,552 @@
+package ru.mail.polis;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Неблокирующее несбалансированное дерево поиска (Natarajan, Mittal "Fast Concurrent Lock-Free Binary
+ * Search Trees", PPoPP 2014). Для случайных ключей высота дерева и так O(log n), а без поворотов
+ * каждое изменение - один CAS на вставку и два-три на удаление.
+ * <p>
+ * Дерево внешнее: значения лежат только в листьях, внутренние узлы лишь направляют поиск и всегда имеют
+ * двух потомков. Ключ внутреннего узла разделяет поддеревья: слева значения меньше него, справа -
+ * не меньше. У служебных узлов ключа нет (null), и он больше любого значения.
+ * <p>
+ * Удаление помечает ребро к листу флагом (точка линеаризации), затем ребро к брату листа - тегом,
+ * чтобы его больше никто не изменил, и одним CAS переподвешивает брата к ближайшему предку
+ * с непомеченным ребром. Помеченные рёбра хранятся как Mark, оборачивающий узел, - как в LockFreeSkipList.
+ * Поток, наткнувшийся на чужое недоделанное удаление, сам его доделывает.
+ * <p>
+ * contains, first, last и итераторы ничего не изменяют и не ждут других потоков.
+ * Итераторы и size() слабо согласованы: видят состояние на какой-то момент обхода.
+ */
+public class LockFreeBinarySearchTree<E extends Comparable<E>> extends AbstractSet<E>
+        implements BalancedSortedSet<E>, SortedRangeView.Source<E> {
+
+    private static final VarHandle LEFT;
+    private static final VarHandle RIGHT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            LEFT = lookup.findVarHandle(Node.class, "left", Object.class);
+            RIGHT = lookup.findVarHandle(Node.class, "right", Object.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Comparator<E> comparator;
+    /**
+     * Служебные узлы R и S: R.left = S, все значения в поддереве S.left, самый правый лист которого -
+     * служебный и никогда не удаляется. Поэтому у любого листа со значением есть родитель и дед.
+     */
+    private final Node<E> root;
+    private final Node<E> sentinel;
+    private final LongAdder size = new LongAdder();
+
+    public LockFreeBinarySearchTree() {
+        this(null);
+    }
+
+    public LockFreeBinarySearchTree(Comparator<E> comparator) {
+        this.comparator = comparator;
+        this.sentinel = new Node<>(null, new Node<>(null), new Node<>(null));
+        this.root = new Node<>(null, sentinel, new Node<>(null));
+    }
+
+    /**
+     * Вставляет элемент в дерево.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param value элемент который необходимо вставить
+     * @return true, если элемент в дереве отсутствовал
+     */
+    @Override
+    public boolean add(E value) {
+        SeekRecord<E> record = new SeekRecord<>();
+        Node<E> newLeaf = new Node<>(value);
+        while (true) {
+            seek(value, record);
+            Node<E> leaf = record.leaf;
+            Node<E> parent = record.parent;
+            if (leaf.key != null && compare(value, leaf.key) == 0) {
+                return false;
+            }
+            boolean right = !less(value, parent);
+            Node<E> internal = less(value, leaf)
+                    ? new Node<>(leaf.key, newLeaf, leaf)
+                    : new Node<>(value, leaf, newLeaf);
+            // точка линеаризации - замена листа новым внутренним узлом
+            if (cas(parent, right, leaf, internal)) {
+                size.increment();
+                return true;
+            }
+            Object edge = child(parent, right);
+            if (edge instanceof Mark && ((Mark) edge).node == leaf) {
+                // лист или его брата удаляют - помогаем закончить
+                cleanup(value, record);
+            }
+        }
+    }
+
+    /**
+     * Удаляет элемент с таким же значением из дерева.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо удалить
+     * @return true, если элемент содержался в дереве
+     */
+    @Override
+    public boolean remove(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        SeekRecord<E> record = new SeekRecord<>();
+        Node<E> victim = null; // пока null, ребро к листу ещё не помечено
+        while (true) {
+            seek(value, record);
+            Node<E> parent = record.parent;
+            boolean right = !less(value, parent);
+            if (victim == null) {
+                Node<E> leaf = record.leaf;
+                if (leaf.key == null || compare(value, leaf.key) != 0) {
+                    return false;
+                }
+                // точка линеаризации - пометка ребра к листу
+                if (cas(parent, right, leaf, new Mark(leaf, true, false))) {
+                    victim = leaf;
+                    size.decrement();
+                    if (cleanup(value, record)) {
+                        return true;
+                    }
+                } else {
+                    Object edge = child(parent, right);
+                    if (edge instanceof Mark && ((Mark) edge).node == leaf) {
+                        cleanup(value, record);
+                    }
+                }
+            } else {
+                // лист уже вырезал другой поток
+                if (record.leaf != victim || cleanup(value, record)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Спуск к листу, на котором заканчивается поиск key. Кроме листа и его родителя запоминает
+     * ближайшего предка (ancestor), ребро от которого к следующему узлу пути (successor) не помечено:
+     * удаление переподвешивает поддерево именно туда
+     */
+    private void seek(E key, SeekRecord<E> record) {
+        Node<E> ancestor = root;
+        Node<E> successor = sentinel;
+        Node<E> parent = sentinel;
+        Object parentEdge = sentinel.left;
+        Node<E> leaf = node(parentEdge);
+        Object currentEdge = less(key, leaf) ? leaf.left : leaf.right;
+        Node<E> current = node(currentEdge);
+        while (current != null) {
+            if (!isTagged(parentEdge)) {
+                ancestor = parent;
+                successor = leaf;
+            }
+            parent = leaf;
+            leaf = current;
+            parentEdge = currentEdge;
+            currentEdge = less(key, current) ? current.left : current.right;
+            current = node(currentEdge);
+        }
+        record.ancestor = ancestor;
+        record.successor = successor;
+        record.parent = parent;
+        record.leaf = leaf;
+    }
+
+    /**
+     * Вырезает родителя помеченного листа на пути к key: тегирует ребро к остающемуся потомку
+     * и ставит этого потомка на место successor
+     *
+     * @return true, если переподвешивание удалось
+     */
+    private boolean cleanup(E key, SeekRecord<E> record) {
+        Node<E> ancestor = record.ancestor;
+        Node<E> parent = record.parent;
+        boolean successorRight = !less(key, ancestor);
+        boolean childRight = !less(key, parent);
+        // если лист на пути не помечен, удаляют его брата, и остаётся лист на пути
+        boolean survivorRight = isFlagged(child(parent, childRight)) != childRight;
+        Object survivor;
+        while (true) {
+            survivor = child(parent, survivorRight);
+            if (isTagged(survivor)) {
+                break;
+            }
+            Mark tagged = new Mark(node(survivor), isFlagged(survivor), true);
+            if (cas(parent, survivorRight, survivor, tagged)) {
+                survivor = tagged;
+                break;
+            }
+        }
+        // флаг (остающийся лист тоже могут удалять) переносится, тег снимается
+        Node<E> survivorNode = node(survivor);
+        Object update = isFlagged(survivor) ? new Mark(survivorNode, true, false) : survivorNode;
+        return cas(ancestor, successorRight, record.successor, update);
+    }
+
+    /**
+     * Ищет элемент с таким же значением в дереве.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо поискать
+     * @return true, если такой элемент содержится в дереве
+     */
+    @Override
+    public boolean contains(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        Object edge = sentinel.left;
+        Node<E> curr = node(edge);
+        while (true) {
+            Object next = less(value, curr) ? curr.left : curr.right;
+            if (next == null) {
+                break;
+            }
+            edge = next;
+            curr = node(edge);
+        }
+        // лист с помеченным ребром уже удалён
+        return curr.key != null && !isFlagged(edge) && compare(value, curr.key) == 0;
+    }
+
+    /**
+     * Ищет наименьший элемент в дереве
+     *
+     * @return Возвращает наименьший элемент в дереве
+     * @throws NoSuchElementException если дерево пустое
+     */
+    @Override
+    public E first() {
+        Iterator<E> iterator = iterator();
+        if (!iterator.hasNext()) {
+            throw new NoSuchElementException("first");
+        }
+        return iterator.next();
+    }
+
+    /**
+     * Ищет наибольший элемент в дереве обходом справа налево
+     *
+     * @return Возвращает наибольший элемент в дереве
+     * @throws NoSuchElementException если дерево пустое
+     */
+    @Override
+    public E last() {
+        ArrayDeque<Object> pending = new ArrayDeque<>();
+        pending.push(sentinel.left);
+        while (!pending.isEmpty()) {
+            Object edge = pending.pop();
+            Node<E> curr = node(edge);
+            for (Object left = curr.left; left != null; left = curr.left) {
+                pending.push(left);
+                edge = curr.right;
+                curr = node(edge);
+            }
+            if (curr.key != null && !isFlagged(edge)) {
+                return curr.key;
+            }
+        }
+        throw new NoSuchElementException("last");
+    }
+
+    /**
+     * @return true, если key меньше ключа узла; служебный ключ null больше любого значения
+     */
+    private boolean less(E key, Node<E> node) {
+        return node.key == null || compare(key, node.key) < 0;
+    }
+
+    private int compare(E v1, E v2) {
+        return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    private static boolean cas(Node<?> parent, boolean right, Object expected, Object update) {
+        return right
+                ? RIGHT.compareAndSet(parent, expected, update)
+                : LEFT.compareAndSet(parent, expected, update);
+    }
+
+    private static Object child(Node<?> parent, boolean right) {
+        return right ? parent.right : parent.left;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Node<E> node(Object edge) {
+        return (Node<E>) (edge instanceof Mark ? ((Mark) edge).node : edge);
+    }
+
+    private static boolean isFlagged(Object edge) {
+        return edge instanceof Mark && ((Mark) edge).flag;
+    }
+
+    private static boolean isTagged(Object edge) {
+        return edge instanceof Mark && ((Mark) edge).tag;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    /**
+     * @return количество элементов; при конкурентных изменениях значение приблизительное
+     */
+    @Override
+    public int size() {
+        return size.intValue();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !iterator().hasNext();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("LockFreeBST{");
+        sb.append("size=").append(size()).append(", tree=");
+        for (E value : this) {
+            sb.append(value).append(",");
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return new SortedRangeView<>(this, fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return new SortedRangeView<>(this, null, toElement);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return new SortedRangeView<>(this, fromElement, null);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new TreeIterator(null);
+    }
+
+    @Override
+    public Iterator<E> iteratorFrom(E fromElement) {
+        return new TreeIterator(fromElement);
+    }
+
+    /**
+     * Слабо согласованный итератор: не бросает ConcurrentModificationException, пропускает листья
+     * с помеченными рёбрами и может как увидеть, так и не увидеть параллельные вставки.
+     * Вырезанные узлы по-прежнему указывают на своих потомков, поэтому обход, начатый до удаления,
+     * продолжается; значения не больше уже выданного пропускаются, так что порядок всегда возрастающий.
+     */
+    private final class TreeIterator implements Iterator<E> {
+        private final ArrayDeque<Object> pending = new ArrayDeque<>(); //рёбра к ещё не пройденным поддеревьям
+        private E bound; //выдаются только значения больше bound (или не меньше, пока ничего не выдано)
+        private boolean inclusive = true;
+        private E next;
+        private E lastReturned;
+
+        TreeIterator(E fromElement) {
+            bound = fromElement;
+            Object edge = sentinel.left;
+            if (fromElement != null) {
+                // поддеревья левее fromElement сразу отбрасываются
+                Node<E> curr = node(edge);
+                for (Object left = curr.left; left != null; left = curr.left) {
+                    if (less(fromElement, curr)) {
+                        pending.push(curr.right);
+                        edge = left;
+                    } else {
+                        edge = curr.right;
+                    }
+                    curr = node(edge);
+                }
+            }
+            pending.push(edge);
+            advance();
+        }
+
+        private void advance() {
+            while (!pending.isEmpty()) {
+                Object edge = pending.pop();
+                Node<E> curr = node(edge);
+                for (Object left = curr.left; left != null; left = curr.left) {
+                    pending.push(curr.right);
+                    edge = left;
+                    curr = node(edge);
+                }
+                if (curr.key != null && !isFlagged(edge) && aboveBound(curr.key)) {
+                    next = curr.key;
+                    return;
+                }
+            }
+            next = null;
+        }
+
+        private boolean aboveBound(E value) {
+            if (bound == null) {
+                return true;
+            }
+            int comp = compare(value, bound);
+            return inclusive ? comp >= 0 : comp > 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            bound = next;
+            inclusive = false;
+            advance();
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            LockFreeBinarySearchTree.this.remove(lastReturned);
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * Проверяет, что каждый лист лежит в границах, заданных ключами внутренних узлов на пути к нему,
+     * что помеченных рёбер не осталось и что листьев столько же, сколько элементов.
+     * Баланс не проверяется: дерево несбалансированное.
+     * Проверка рассчитана на состояние без параллельных изменений.
+     *
+     * @throws NotBalancedTreeException если порядок нарушен или дерево испорчено
+     */
+    @Override
+    public void checkBalanced() throws NotBalancedTreeException {
+        // на стеке поддеревья вместе с границами: low <= ключи листьев < high, null - без границы
+        ArrayDeque<Object[]> stack = new ArrayDeque<>();
+        stack.push(new Object[]{sentinel.left, null, null});
+        long leaves = 0;
+        int sentinels = 0;
+        while (!stack.isEmpty()) {
+            Object[] frame = stack.pop();
+            Object edge = frame[0];
+            @SuppressWarnings("unchecked")
+            E low = (E) frame[1];
+            @SuppressWarnings("unchecked")
+            E high = (E) frame[2];
+            if (edge instanceof Mark) {
+                throw new NotBalancedTreeException("Marked edge to " + node(edge) + " left after all operations");
+            }
+            Node<E> curr = node(edge);
+            if (curr.left == null) {
+                if (curr.key == null) {
+                    if (high != null) {
+                        throw new NotBalancedTreeException("Sentinel leaf is not the rightmost one, high = " + high);
+                    }
+                    sentinels++;
+                    continue;
+                }
+                if (low != null && compare(curr.key, low) < 0 || high != null && compare(curr.key, high) >= 0) {
+                    throw new NotBalancedTreeException("Leaf " + curr.key + " is out of its subtree range ["
+                            + low + ", " + high + ")");
+                }
+                leaves++;
+                continue;
+            }
+            if (curr.right == null) {
+                throw new NotBalancedTreeException("Internal node " + curr + " must have two children");
+            }
+            if (curr.key != null && (low != null && compare(curr.key, low) < 0
+                    || high != null && compare(curr.key, high) >= 0)) {
+                throw new NotBalancedTreeException("Internal node " + curr + " is out of its subtree range ["
+                        + low + ", " + high + ")");
+            }
+            stack.push(new Object[]{curr.right, curr.key != null ? curr.key : low, high});
+            stack.push(new Object[]{curr.left, low, curr.key != null ? curr.key : high});
+        }
+        if (sentinels != 1) {
+            throw new NotBalancedTreeException("Expected one sentinel leaf, found " + sentinels);
+        }
+        if (leaves != size()) {
+            throw new NotBalancedTreeException("Tree holds " + leaves + " leaves, size = " + size());
+        }
+    }
+
+    /**
+     * Результат спуска: лист, его родитель и место, куда переподвешивается поддерево при вырезании
+     */
+    private static final class SeekRecord<E> {
+        Node<E> ancestor;
+        Node<E> successor;
+        Node<E> parent;
+        Node<E> leaf;
+    }
+
+    /**
+     * Узел дерева: у листа оба потомка null, у внутреннего узла - оба не null.
+     * Ссылка на потомка - сам узел или Mark с флагом и тегом.
+     */
+    static final class Node<E> {
+        final E key;
+        volatile Object left;
+        volatile Object right;
+
+        Node(E key) {
+            this.key = key;
+        }
+
+        Node(E key, Object left, Object right) {
+            this.key = key;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public String toString() {
+            return "Node{" + "key=" + (key != null ? key : "inf") + (left == null ? ", leaf" : "") + "}";
+        }
+    }
+
+    /**
+     * Помеченное ребро: flag - лист удаляется, tag - ребро больше не меняется, родитель будет вырезан
+     */
+    static final class Mark {
+        final Object node;
+        final boolean flag;
+        final boolean tag;
+
+        Mark(Object node, boolean flag, boolean tag) {
+            this.node = node;
+            this.flag = flag;
+            this.tag = tag;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package ru.mail.polis;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Неблокирующий список с пропусками (Herlihy, Shavit "The Art of Multiprocessor Programming", гл. 14).
+ * <p>
+ * Узел считается удалённым, как только помечена его ссылка на нулевом уровне.
+ * Помеченные узлы физически вырезаются при последующих поисках в add/remove.
+ * contains, first, last и итераторы ничего не изменяют и не ждут других потоков.
+ * Итераторы и size() слабо согласованы: видят состояние на какой-то момент обхода.
+ */
+public class LockFreeSkipList<E extends Comparable<E>> extends AbstractSet<E>
+        implements BalancedSortedSet<E>, SortedRangeView.Source<E> {
+
+    private static final int MAX_LEVEL = 32;
+    /**
+     * Уровни, на которых ожидается меньше узлов, при проверке распределения не учитываются
+     */
+    private static final int MIN_EXPECTED_NODES = 64;
+    /**
+     * Допустимое отклонение количества узлов на уровне от ожидаемого (в разах)
+     */
+    private static final int LEVEL_DEVIATION = 4;
+
+    private final Comparator<E> comparator;
+    private final Node<E> head = new Node<>(null, MAX_LEVEL - 1);
+    private final LongAdder size = new LongAdder();
+
+    public LockFreeSkipList() {
+        this(null);
+    }
+
+    public LockFreeSkipList(Comparator<E> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Вставляет элемент в список.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param value элемент который необходимо вставить
+     * @return true, если элемент в списке отсутствовал
+     */
+    @Override
+    public boolean add(E value) {
+        int topLevel = randomLevel();
+        Node<E>[] preds = newLevels();
+        Node<E>[] succs = newLevels();
+        while (true) {
+            if (find(value, preds, succs)) {
+                return false;
+            }
+            Node<E> node = new Node<>(value, topLevel);
+            for (int level = 0; level <= topLevel; level++) {
+                node.next.set(level, succs[level]);
+            }
+            // точка линеаризации - появление узла на нулевом уровне
+            if (!preds[0].next.compareAndSet(0, succs[0], node)) {
+                continue;
+            }
+            size.increment();
+            linkUpperLevels(node, preds, succs);
+            return true;
+        }
+    }
+
+    /**
+     * @return массив предшественников или преемников на каждом уровне для find
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> Node<E>[] newLevels() {
+        return (Node<E>[]) new Node<?>[MAX_LEVEL];
+    }
+
+    private void linkUpperLevels(Node<E> node, Node<E>[] preds, Node<E>[] succs) {
+        for (int level = 1; level <= node.topLevel; level++) {
+            while (true) {
+                Node<E> succ = succs[level];
+                Object expected = node.next.get(level);
+                // узел уже удаляют - достраивать верхние уровни незачем
+                if (expected instanceof Marker) {
+                    return;
+                }
+                if (expected != succ && !node.next.compareAndSet(level, expected, succ)) {
+                    return;
+                }
+                if (preds[level].next.compareAndSet(level, succ, node)) {
+                    break;
+                }
+                find(node.value, preds, succs);
+                if (succs[0] != node) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Удаляет элемент с таким же значением из списка.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо удалить
+     * @return true, если элемент содержался в списке
+     */
+    @Override
+    public boolean remove(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        Node<E>[] preds = newLevels();
+        Node<E>[] succs = newLevels();
+        if (!find(value, preds, succs)) {
+            return false;
+        }
+        Node<E> victim = succs[0];
+        // сначала помечаем верхние уровни, чтобы узел перестал быть виден сверху
+        for (int level = victim.topLevel; level >= 1; level--) {
+            Object succ = victim.next.get(level);
+            while (!(succ instanceof Marker)) {
+                victim.next.compareAndSet(level, succ, new Marker(succ));
+                succ = victim.next.get(level);
+            }
+        }
+        while (true) {
+            Object succ = victim.next.get(0);
+            if (succ instanceof Marker) {
+                // элемент удалил другой поток
+                return false;
+            }
+            // точка линеаризации - пометка ссылки на нулевом уровне
+            if (victim.next.compareAndSet(0, succ, new Marker(succ))) {
+                size.decrement();
+                // физически вырезаем узел
+                find(value, preds, succs);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ищет для каждого уровня последний узел меньше value (preds) и следующий за ним (succs),
+     * попутно вырезая помеченные узлы
+     *
+     * @return true, если на нулевом уровне найден узел равный value
+     */
+    private boolean find(E value, Node<E>[] preds, Node<E>[] succs) {
+        retry:
+        while (true) {
+            Node<E> pred = head;
+            Node<E> curr = null;
+            for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+                curr = successor(pred.next.get(level));
+                while (curr != null) {
+                    Object link = curr.next.get(level);
+                    Node<E> succ = successor(link);
+                    if (link instanceof Marker) {
+                        if (!pred.next.compareAndSet(level, curr, succ)) {
+                            continue retry;
+                        }
+                        curr = succ;
+                    } else if (compare(curr.value, value) < 0) {
+                        pred = curr;
+                        curr = succ;
+                    } else {
+                        break;
+                    }
+                }
+                preds[level] = pred;
+                succs[level] = curr;
+            }
+            return curr != null && compare(curr.value, value) == 0;
+        }
+    }
+
+    /**
+     * Ищет первый неудалённый узел не меньше value, ничего не изменяя
+     *
+     * @param value нижняя граница, null - первый узел списка
+     * @return узел или null, если такого нет
+     */
+    private Node<E> ceilingNode(E value) {
+        Node<E> pred = head;
+        Node<E> curr = null;
+        for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+            curr = successor(pred.next.get(level));
+            while (curr != null) {
+                Object link = curr.next.get(level);
+                if (link instanceof Marker) {
+                    curr = successor(link);
+                } else if (value != null && compare(curr.value, value) < 0) {
+                    pred = curr;
+                    curr = successor(link);
+                } else {
+                    break;
+                }
+            }
+        }
+        return curr;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Node<E> successor(Object link) {
+        return (Node<E>) (link instanceof Marker ? ((Marker) link).successor : link);
+    }
+
+    /**
+     * Ищет элемент с таким же значением в списке.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо поискать
+     * @return true, если такой элемент содержится в списке
+     */
+    @Override
+    public boolean contains(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        Node<E> node = ceilingNode(value);
+        return node != null && compare(node.value, value) == 0;
+    }
+
+    /**
+     * Ищет наименьший элемент в списке
+     *
+     * @return Возвращает наименьший элемент в списке
+     * @throws NoSuchElementException если список пуст
+     */
+    @Override
+    public E first() {
+        Node<E> node = ceilingNode(null);
+        if (node == null) {
+            throw new NoSuchElementException("first");
+        }
+        return node.value;
+    }
+
+    /**
+     * Ищет наибольший элемент в списке
+     *
+     * @return Возвращает наибольший элемент в списке
+     * @throws NoSuchElementException если список пуст
+     */
+    @Override
+    public E last() {
+        Node<E> pred = head;
+        for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+            Node<E> curr = successor(pred.next.get(level));
+            while (curr != null) {
+                if (!curr.isDeleted()) {
+                    pred = curr;
+                }
+                curr = successor(curr.next.get(level));
+            }
+        }
+        if (pred == head) {
+            throw new NoSuchElementException("last");
+        }
+        return pred.value;
+    }
+
+    private int compare(E v1, E v2) {
+        return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    private static int randomLevel() {
+        // уровень k выпадает с вероятностью 2^-(k+1)
+        return Integer.numberOfTrailingZeros(ThreadLocalRandom.current().nextInt() | (1 << (MAX_LEVEL - 1)));
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    /**
+     * @return количество элементов; при конкурентных изменениях значение приблизительное
+     */
+    @Override
+    public int size() {
+        return size.intValue();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return ceilingNode(null) == null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("SkipList{");
+        sb.append("size=").append(size()).append(", list=");
+        for (E value : this) {
+            sb.append(value).append(",");
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return new SortedRangeView<>(this, fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return new SortedRangeView<>(this, null, toElement);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return new SortedRangeView<>(this, fromElement, null);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return iteratorFrom(null);
+    }
+
+    /**
+     * Слабо согласованный итератор: не бросает ConcurrentModificationException,
+     * пропускает удалённые узлы и может как увидеть, так и не увидеть параллельные вставки.
+     */
+    @Override
+    public Iterator<E> iteratorFrom(E fromElement) {
+        Node<E> start = ceilingNode(fromElement);
+        return new Iterator<E>() {
+            private Node<E> next = start;
+            private Node<E> lastReturned;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public E next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = next;
+                next = nextAlive(next);
+                return lastReturned.value;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                LockFreeSkipList.this.remove(lastReturned.value);
+                lastReturned = null;
+            }
+        };
+    }
+
+    private Node<E> nextAlive(Node<E> node) {
+        Node<E> curr = successor(node.next.get(0));
+        while (curr != null && curr.isDeleted()) {
+            curr = successor(curr.next.get(0));
+        }
+        return curr;
+    }
+
+    /**
+     * Проверяет порядок элементов на каждом уровне и распределение узлов по уровням:
+     * на уровне k должно быть около size / 2^k узлов.
+     * Проверка рассчитана на состояние без параллельных изменений.
+     *
+     * @throws NotBalancedTreeException если порядок нарушен или распределение выродилось
+     */
+    @Override
+    public void checkBalanced() throws NotBalancedTreeException {
+        long[] counts = new long[MAX_LEVEL];
+        for (int level = 0; level < MAX_LEVEL; level++) {
+            Node<E> prev = null;
+            for (Node<E> curr = successor(head.next.get(level)); curr != null; curr = successor(curr.next.get(level))) {
+                if (curr.isDeleted()) {
+                    continue;
+                }
+                if (prev != null && compare(prev.value, curr.value) >= 0) {
+                    throw new NotBalancedTreeException("Level " + level + " is not sorted: "
+                            + prev.value + " before " + curr.value);
+                }
+                if (curr.topLevel < level) {
+                    throw new NotBalancedTreeException("Node " + curr.value + " of height " + curr.topLevel
+                            + " is linked at level " + level);
+                }
+                prev = curr;
+                counts[level]++;
+            }
+        }
+        for (int level = 1; level < MAX_LEVEL; level++) {
+            if (counts[level] > counts[level - 1]) {
+                throw new NotBalancedTreeException("Level " + level + " has more nodes than level " + (level - 1)
+                        + ": " + counts[level] + " > " + counts[level - 1]);
+            }
+            long expected = counts[0] >> level;
+            if (expected >= MIN_EXPECTED_NODES
+                    && (counts[level] * LEVEL_DEVIATION < expected || counts[level] > expected * LEVEL_DEVIATION)) {
+                throw new NotBalancedTreeException("Level distribution degenerated at level " + level
+                        + ": expected about " + expected + " nodes, found " + counts[level]);
+            }
+        }
+    }
+
+    /**
+     * Ссылки на следующие узлы по уровням.
+     * Помеченная ссылка хранится как Marker, оборачивающий следующий узел,
+     * что дешевле AtomicMarkableReference: на каждом шаге на одно разыменование меньше.
+     */
+    static final class Node<E> {
+        final E value;
+        final AtomicReferenceArray<Object> next;
+        final int topLevel;
+
+        Node(E value, int topLevel) {
+            this.value = value;
+            this.topLevel = topLevel;
+            this.next = new AtomicReferenceArray<>(topLevel + 1);
+        }
+
+        boolean isDeleted() {
+            return next.get(0) instanceof Marker;
+        }
+
+        @Override
+        public String toString() {
+            return "Node{" + "value=" + value + ", topLevel=" + topLevel + "}";
+        }
+    }
+
+    static final class Marker {
+        final Object successor;
+
+        Marker(Object successor) {
+            this.successor = successor;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ru.mail.polis;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики работы структуры данных: операции, сравнения, повороты, пробы, перестроения.
+ * <p>
+ * Включаются системным свойством {@code -Dru.mail.polis.metrics=true}. Флаг ENABLED - static final,
+ * поэтому при выключенных метриках JIT выбрасывает все проверки {@code if (Metrics.ENABLED)} вместе
+ * с подсчётом, а структуры не создают своих счётчиков. Счётчики - LongAdder: запись из нескольких
+ * потоков не упирается в одну ячейку.
+ * <p>
+ * Что считается, зависит от структуры: у деревьев - сравнения и повороты, у хеш-таблиц - сравнения
+ * через equals, пробы (просмотренные ячейки OpenHashTable или узлы цепочек ChainHashTable)
+ * и перестроения таблицы с их длительностью.
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("ru.mail.polis.metrics");
+
+    /**
+     * Общий пустой экземпляр для структур, у которых метрики выключены
+     */
+    static final Metrics DISABLED = new Metrics();
+
+    final LongAdder adds = new LongAdder();
+    final LongAdder removes = new LongAdder();
+    final LongAdder lookups = new LongAdder();
+    final LongAdder comparisons = new LongAdder();
+    final LongAdder rotations = new LongAdder();
+    final LongAdder probes = new LongAdder();
+    final LongAdder resizes = new LongAdder();
+    final LongAdder resizeNanos = new LongAdder();
+
+    Metrics() {
+    }
+
+    /**
+     * @return новые счётчики, если метрики включены, иначе null
+     */
+    static Metrics create() {
+        return ENABLED ? new Metrics() : null;
+    }
+
+    public long getAdds() {
+        return adds.sum();
+    }
+
+    public long getRemoves() {
+        return removes.sum();
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return add + remove + contains
+     */
+    public long getOperations() {
+        return getAdds() + getRemoves() + getLookups();
+    }
+
+    public long getComparisons() {
+        return comparisons.sum();
+    }
+
+    public long getRotations() {
+        return rotations.sum();
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getResizes() {
+        return resizes.sum();
+    }
+
+    public long getResizeNanos() {
+        return resizeNanos.sum();
+    }
+
+    public double getComparisonsPerOperation() {
+        long operations = getOperations();
+        return operations == 0 ? 0 : (double) getComparisons() / operations;
+    }
+
+    public double getProbesPerOperation() {
+        long operations = getOperations();
+        return operations == 0 ? 0 : (double) getProbes() / operations;
+    }
+
+    /**
+     * Обнуляет все счётчики. Записи, идущие одновременно со сбросом, могут частично потеряться
+     */
+    public void reset() {
+        if (this == DISABLED) {
+            return;
+        }
+        adds.reset();
+        removes.reset();
+        lookups.reset();
+        comparisons.reset();
+        rotations.reset();
+        probes.reset();
+        resizes.reset();
+        resizeNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "Metrics{adds=" + getAdds()
+                + ", removes=" + getRemoves()
+                + ", lookups=" + getLookups()
+                + ", comparisons=" + getComparisons()
+                + ", rotations=" + getRotations()
+                + ", probes=" + getProbes()
+                + ", resizes=" + getResizes()
+                + ", resizeNanos=" + getResizeNanos()
+                + "}";
+    }
+}
@@ -6,8 +6,23 @@ package ru.mail.polis;
  */
 public class NotBalancedTreeException extends Exception {
 
+    private final transient TreeCheckReport report;
+
     public NotBalancedTreeException(String message) {
         super(message);
+        this.report = null;
+    }
+
+    public NotBalancedTreeException(TreeCheckReport report) {
+        super(report.toString());
+        this.report = report;
+    }
+
+    /**
+     * @return подробный отчёт проверки или null, если дерево проверялось без него
+     */
+    public TreeCheckReport getReport() {
+        return report;
     }
 
     public static NotBalancedTreeException create(String message, int leftHeight, int rightHeight, String nodeInfo) {
@@ -6,9 +6,23 @@ import java.util.*;
 public class OpenHashTable<E extends OpenHashTableEntity> extends AbstractSet<E> implements Set<E> {
 
     private static final int INITIAL_CAPACITY = 8;
+    /**
+     * Сколько ключей пакетной операции обрабатывается за один проход по стадиям
+     */
+    private static final int BATCH = 32;
+    /**
+     * Заглушка для удалённой ячейки, значение которой неизвестно (например, после загрузки снимка)
+     */
+    private static final OpenHashTableEntity TOMBSTONE = (tableSize, probId) -> {
+        throw new UnsupportedOperationException("tombstone");
+    };
     private int size; //количество элементов в хеш-таблице
     private E[] table;
     private boolean[] deleted;
+    private BlockedBloomFilter bloomFilter; //null, если фильтр не включён
+    private int bloomFilterRemoved; //удалено элементов после последней перестройки фильтра
+    private final Metrics metrics = Metrics.create(); //null, если метрики выключены
+    private ProbeRecorder probeRecorder; //null, если длины поиска не записываются
 
     public OpenHashTable() {
         this(INITIAL_CAPACITY);
@@ -28,17 +42,51 @@ public class OpenHashTable<E extends OpenHashTableEntity> extends AbstractSet<E>
      */
     @Override
     public boolean add(E value) {
-        int idx = value.hashCode(table.length, 0);
+        if (Metrics.ENABLED) metrics.adds.increment();
+        return add(value, value.hashCode(table.length, 0));
+    }
+
+    /**
+     * @param idx - первая проба элемента при текущем размере таблицы
+     */
+    private boolean add(E value, int idx) {
+        if (bloomFilter != null && !bloomFilter.mightContain(value.hashCode())) {
+            insert(value, idx, -1);
+            return true;
+        }
+        int free = -1; //первая удалённая ячейка; искать дубликат нужно дальше неё, до пустой ячейки
         for (int i = 1; i < table.length; i++) {
-            if (value.equals(table[idx]) && !deleted[idx]) return false;
-            if (table[idx] == null || deleted[idx]) break;
+            countProbe();
+            if (table[idx] == null) break;
+            if (deleted[idx]) {
+                if (free < 0) free = idx;
+            } else if (same(value, table[idx])) return false;
             idx = value.hashCode(table.length, i);
         }
+        insert(value, idx, free);
+        return true;
+    }
+
+    /**
+     * Кладёт отсутствующий в таблице элемент в первую удалённую ячейку free или, если её нет, продолжает
+     * пробирование с ячейки idx до первой свободной
+     */
+    private void insert(E value, int idx, int free) {
+        if (free < 0) {
+            for (int i = 1; table[idx] != null && !deleted[idx]; i++) {
+                countProbe();
+                idx = value.hashCode(table.length, i);
+            }
+        } else {
+            idx = free;
+        }
         table[idx] = value;
         deleted[idx] = false;
         size++;
+        if (bloomFilter != null) {
+            bloomFilter.add(value.hashCode());
+        }
         resize();
-        return true;
     }
 
     /**
@@ -50,14 +98,22 @@ public class OpenHashTable<E extends OpenHashTableEntity> extends AbstractSet<E>
      */
     @Override
     public boolean remove(Object object) {
+        if (Metrics.ENABLED) metrics.removes.increment();
         @SuppressWarnings("unchecked")
         E value = (E) object;
+        if (bloomFilter != null && !bloomFilter.mightContain(value.hashCode())) {
+            return false;
+        }
         int idx = value.hashCode(table.length, 0);
         for (int i = 1; i < table.length; i++) {
+            countProbe();
             if (table[idx] != null) {
-                if (table[idx].equals(value) && !deleted[idx]) {
+                if (!deleted[idx] && same(value, table[idx])) {
                     deleted[idx] = true;
                     size--;
+                    if (bloomFilter != null && ++bloomFilterRemoved * 4 >= table.length) {
+                        rebuildBloomFilter();
+                    }
                     return true;
                 }
             } else return false;
@@ -75,20 +131,106 @@ public class OpenHashTable<E extends OpenHashTableEntity> extends AbstractSet<E>
      */
     @Override
     public boolean contains(Object object) {
+        if (Metrics.ENABLED) metrics.lookups.increment();
         @SuppressWarnings("unchecked")
         E value = (E) object;
-        int idx = value.hashCode(table.length, 0);
+        return contains(value, value.hashCode(table.length, 0));
+    }
+
+    /**
+     * @param idx - первая проба элемента при текущем размере таблицы
+     */
+    private boolean contains(E value, int idx) {
+        if (bloomFilter != null && !bloomFilter.mightContain(value.hashCode())) {
+            recordProbes(false, 0);
+            return false;
+        }
         for (int i = 1; i < table.length; i++) {
+            countProbe();
             if (table[idx] != null) {
-                if (table[idx].equals(value) && !deleted[idx]) {
+                if (!deleted[idx] && same(value, table[idx])) {
+                    recordProbes(true, i);
                     return true;
                 }
-            } else return false;
+            } else {
+                recordProbes(false, i);
+                return false;
+            }
             idx = value.hashCode(table.length, i);
         }
+        recordProbes(false, table.length - 1);
         return false;
     }
 
+    /**
+     * Пакетный поиск: out[i] = contains(values[i]).
+     * Ключи идут группами: сначала считаются первые пробы всей группы, потом читаются их ячейки
+     * (независимые чтения, промахи кеша перекрываются), и только потом каждый ключ сравнивается и
+     * при необходимости пробируется дальше. Пустая первая ячейка - ответ без equals.
+     */
+    public void containsAll(E[] values, boolean[] out) {
+        if (Metrics.ENABLED) metrics.lookups.add(values.length);
+        if (out.length < values.length) {
+            throw new IllegalArgumentException("out holds " + out.length + " results for " + values.length + " values");
+        }
+        int[] first = new int[BATCH];
+        Object[] slots = new Object[BATCH];
+        for (int from = 0; from < values.length; from += BATCH) {
+            int count = Math.min(BATCH, values.length - from);
+            for (int j = 0; j < count; j++) {
+                first[j] = values[from + j].hashCode(table.length, 0);
+            }
+            for (int j = 0; j < count; j++) {
+                slots[j] = table[first[j]];
+            }
+            for (int j = 0; j < count; j++) {
+                if (slots[j] == null) {
+                    //пустая первая ячейка: промах длины 1, как у contains
+                    countProbe();
+                    recordProbes(false, 1);
+                    out[from + j] = false;
+                } else {
+                    out[from + j] = contains(values[from + j], first[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Пакетная вставка. Перед каждой группой таблица заранее расширяется под всю группу,
+     * чтобы первые пробы, посчитанные для группы, не устарели посреди неё.
+     *
+     * @return сколько элементов было вставлено
+     */
+    public int addBatch(E[] values) {
+        if (Metrics.ENABLED) metrics.adds.add(values.length);
+        int[] first = new int[BATCH];
+        Object[] slots = new Object[BATCH];
+        int added = 0;
+        for (int from = 0; from < values.length; from += BATCH) {
+            int count = Math.min(BATCH, values.length - from);
+            while ((size + count) * 2 >= table.length) {
+                rehash(table.length * 2);
+            }
+            for (int j = 0; j < count; j++) {
+                first[j] = values[from + j].hashCode(table.length, 0);
+            }
+            for (int j = 0; j < count; j++) {
+                slots[j] = table[first[j]];
+            }
+            for (int j = 0; j < count; j++) {
+                //пустая первая ячейка - элемента точно нет, но её мог занять ключ этой же группы
+                if (slots[j] == null && table[first[j]] == null) {
+                    insert(values[from + j], first[j], -1);
+                    added++;
+                } else if (add(values[from + j], first[j])) {
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
     @Override
     public int size() {
         return size;
@@ -98,22 +240,206 @@ public class OpenHashTable<E extends OpenHashTableEntity> extends AbstractSet<E>
         return table.length;
     }
 
+    /**
+     * @return счётчики операций, проб, сравнений и перестроений; нулевые, если метрики выключены
+     * (см. Metrics.ENABLED)
+     */
+    public Metrics getMetrics() {
+        return metrics != null ? metrics : Metrics.DISABLED;
+    }
+
+    private void countProbe() {
+        if (Metrics.ENABLED) metrics.probes.increment();
+    }
+
+    private boolean same(E value, E stored) {
+        if (Metrics.ENABLED) metrics.comparisons.increment();
+        return value.equals(stored);
+    }
+
+    /**
+     * Начинает (или, при null, прекращает) запись длин поиска contains и containsAll: сколько ячеек
+     * просмотрено до найденного элемента или до пустой ячейки. Промах, отсечённый фильтром Блума, имеет длину 0
+     */
+    public void setProbeRecorder(ProbeRecorder probeRecorder) {
+        this.probeRecorder = probeRecorder;
+    }
+
+    private void recordProbes(boolean hit, int length) {
+        ProbeRecorder recorder = probeRecorder;
+        if (recorder != null) {
+            if (hit) {
+                recorder.recordHit(length);
+            } else {
+                recorder.recordMiss(length);
+            }
+        }
+    }
+
+    /**
+     * Собирает отчёт о состоянии таблицы за один проход по ячейкам.
+     * Удалённые ячейки и серии непустых ячеек считаются по всей таблице, а длины поиска - по выборке
+     * примерно из sampleSize живых элементов, взятых через равный шаг: для каждого проходится его
+     * последовательность проб до его ячейки (попадание) и, начиная со второй пробы, до первой пустой
+     * ячейки (промах). Ожидаемые длины - для равномерного хеширования:
+     * (1/α)ln(1/(1-α)) при попадании и 1/(1-α) при промахе, где α - доля непустых ячеек, включая удалённые.
+     *
+     * @param sampleSize сколько элементов проверить; не меньше 1
+     */
+    public HashTableHealth healthReport(int sampleSize) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("sampleSize " + sampleSize + " is less than 1");
+        }
+        LengthHistogram.Builder hits = new LengthHistogram.Builder();
+        LengthHistogram.Builder misses = new LengthHistogram.Builder();
+        LengthHistogram.Builder runs = new LengthHistogram.Builder();
+        int stride = Math.max(1, size / sampleSize);
+        int tombstones = 0;
+        int live = 0;
+        //серию, которая переходит через конец таблицы в начало, считаем одной: начинаем с пустой ячейки
+        int start = 0;
+        while (start < table.length && table[start] != null) {
+            start++;
+        }
+        int run = 0;
+        for (int i = 1; i <= table.length; i++) {
+            int idx = (start + i) % table.length;
+            if (table[idx] == null) {
+                if (run > 0) runs.add(run);
+                run = 0;
+                continue;
+            }
+            run++;
+            if (deleted[idx]) {
+                tombstones++;
+            } else if (live++ % stride == 0) {
+                sampleProbes(table[idx], idx, hits, misses);
+            }
+        }
+        if (run > 0) runs.add(run);
+        double occupied = (double) (size + tombstones) / table.length;
+        double expectedHit = occupied == 0 ? 1 : Math.log(1 / (1 - occupied)) / occupied;
+        double expectedMiss = 1 / (1 - occupied);
+        return new HashTableHealth(table.length, size, tombstones,
+                hits.build(), misses.build(), runs.build(), expectedHit, expectedMiss);
+    }
+
+    /**
+     * Длины поиска, которые насчитал бы contains: для самого элемента из ячейки slot и для отсутствующего
+     * ключа, который пробирует те же ячейки, что и элемент, начиная со второй
+     */
+    private void sampleProbes(E value, int slot, LengthHistogram.Builder hits, LengthHistogram.Builder misses) {
+        int i = 0;
+        while (value.hashCode(table.length, i) != slot) {
+            i++;
+        }
+        hits.add(i + 1);
+        //первая ячейка последовательности всегда занята самим элементом, поэтому промах начинаем со второй
+        i = 1;
+        while (i < table.length - 1 && table[value.hashCode(table.length, i)] != null) {
+            i++;
+        }
+        misses.add(i);
+    }
+
+    /**
+     * Включает фильтр Блума перед таблицей: промахи contains и remove, а также проверка на дубликат в add
+     * в большинстве случаев обходятся без пробирования и equals.
+     * Фильтр заполняется по hashCode() элементов, поэтому hashCode() должен быть согласован с equals.
+     * Он перестраивается при росте таблицы и когда удалённых элементов накопилась четверть размера таблицы.
+     */
+    public void enableBloomFilter() {
+        bloomFilter = new BlockedBloomFilter(table.length / 2);
+        rebuildBloomFilter();
+    }
+
+    public void disableBloomFilter() {
+        bloomFilter = null;
+    }
+
+    /**
+     * @return фильтр Блума или null, если он не включён
+     */
+    public BlockedBloomFilter getBloomFilter() {
+        return bloomFilter;
+    }
+
+    private void rebuildBloomFilter() {
+        bloomFilter.clear();
+        bloomFilterRemoved = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null && !deleted[i]) {
+                bloomFilter.add(table[i].hashCode());
+            }
+        }
+    }
+
     @Override
     public Iterator<E> iterator() {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * @return значение ячейки или null, если ячейка пуста или удалена
+     */
+    E slot(int idx) {
+        return deleted[idx] ? null : table[idx];
+    }
+
+    /**
+     * @return true, если ячейка когда-то была занята, а потом удалена
+     */
+    boolean isDeleted(int idx) {
+        return deleted[idx];
+    }
+
+    /**
+     * Восстанавливает таблицу из готовой раскладки по ячейкам без повторного хеширования
+     * @param slots - элементы по ячейкам, null для пустых и удалённых
+     * @param deleted - отметки удалённых ячеек
+     */
+    @SuppressWarnings("unchecked")
+    static <E extends OpenHashTableEntity> OpenHashTable<E> restore(E[] slots, boolean[] deleted) {
+        OpenHashTable<E> restored = new OpenHashTable<>(slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            if (deleted[i]) {
+                restored.table[i] = (E) TOMBSTONE;
+                restored.deleted[i] = true;
+            } else if (slots[i] != null) {
+                restored.table[i] = slots[i];
+                restored.size++;
+            }
+        }
+        return restored;
+    }
+
     private void resize() {
         float loadFactor = (float) size / table.length;
         if (loadFactor < 0.5f) return;
-        OpenHashTable<E> newTable = new OpenHashTable<>(table.length * 2);
+        rehash(table.length * 2);
+    }
+
+    private void rehash(int capacity) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        ResizeEvent event = new ResizeEvent();
+        event.begin();
+        int oldCapacity = table.length;
+        OpenHashTable<E> newTable = new OpenHashTable<>(capacity);
         ArrayList<E> objects = new ArrayList<>(size);
-        for (E entry : table)
-            if (entry != null)
-                objects.add(entry);
+        for (int i = 0; i < table.length; i++)
+            if (table[i] != null && !deleted[i])
+                objects.add(table[i]);
 
         newTable.addAll(objects);
         table = newTable.table;
         deleted = newTable.deleted;
+        if (bloomFilter != null) {
+            enableBloomFilter();
+        }
+        event.finish(this, oldCapacity, capacity, size);
+        if (Metrics.ENABLED) {
+            metrics.resizes.increment();
+            metrics.resizeNanos.add(System.nanoTime() - start);
+        }
     }
 }
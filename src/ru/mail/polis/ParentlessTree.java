@@ -0,0 +1,249 @@
+package ru.mail.polis;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Общая часть двоичных деревьев поиска без ссылок на родителя (ScapegoatTree, SplayTree): узел из значения
+ * и двух потомков, итератор на стеке предков, представления диапазонов и проверка порядка значений и размера.
+ * Вставку, удаление, поиск, балансировку и метрики реализуют наследники.
+ */
+abstract class ParentlessTree<E extends Comparable<E>> extends AbstractSet<E>
+        implements BalancedSortedSet<E>, SortedRangeView.Source<E> {
+
+    final Comparator<E> comparator;
+
+    Node<E> root;
+    int size;
+    int modCount; //число добавлений и удалений, для итераторов
+    int shapeCount; //число перестроек без изменения содержимого: итераторам нужно заново найти позицию
+
+    ParentlessTree(Comparator<E> comparator) {
+        this.comparator = comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> Node<E>[] newNodes(int length) {
+        return (Node<E>[]) new Node<?>[length];
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return new SortedRangeView<>(this, fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return new SortedRangeView<>(this, null, toElement);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return new SortedRangeView<>(this, fromElement, null);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new TreeIterator(null);
+    }
+
+    @Override
+    public Iterator<E> iteratorFrom(E fromElement) {
+        return new TreeIterator(fromElement);
+    }
+
+    /**
+     * Итератор на стеке предков, сам дерево не перестраивает.
+     * Если форма дерева изменилась без изменения содержимого (shapeCount) или элемент удалён через итератор,
+     * итератор заново спускается от корня к следующему значению; исключение бросается только после
+     * add и remove в обход итератора.
+     */
+    private final class TreeIterator implements Iterator<E> {
+        private final ArrayDeque<Node<E>> stack = new ArrayDeque<>();
+        private E next;
+        private E lastReturned;
+        private int expectedModCount = modCount;
+        private int expectedShapeCount;
+
+        TreeIterator(E fromElement) {
+            seek(fromElement);
+        }
+
+        /**
+         * Кладёт на стек узлы, после которых обход продолжится, начиная с наименьшего не меньшего from
+         * @param from - null для наименьшего элемента дерева
+         */
+        private void seek(E from) {
+            stack.clear();
+            Node<E> curr = root;
+            while (curr != null) {
+                int comp = from == null ? -1 : compareQuietly(from, curr.value);
+                if (comp <= 0) {
+                    stack.push(curr);
+                    if (comp == 0) {
+                        break;
+                    }
+                    curr = curr.left;
+                } else {
+                    curr = curr.right;
+                }
+            }
+            next = stack.isEmpty() ? null : stack.peek().value;
+            expectedShapeCount = shapeCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            if (shapeCount != expectedShapeCount) {
+                seek(next);
+            }
+            Node<E> node = stack.pop();
+            for (Node<E> curr = node.right; curr != null; curr = curr.left) {
+                stack.push(curr);
+            }
+            lastReturned = node.value;
+            next = stack.isEmpty() ? null : stack.peek().value;
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            ParentlessTree.this.remove(lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+            expectedShapeCount = shapeCount - 1; //удаление могло перестроить дерево: следующий next найдёт позицию
+        }
+    }
+
+    /**
+     * Сравнение для итератора: не учитывается в метриках и не трогает дерево
+     */
+    int compareQuietly(E v1, E v2) {
+        return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    /**
+     * @throws NotBalancedTreeException если validate нашёл нарушение; исключение несёт его отчёт
+     */
+    @Override
+    public void checkBalanced() throws NotBalancedTreeException {
+        TreeCheckReport report = validate(null);
+        if (!report.isBalanced()) {
+            throw new NotBalancedTreeException(report);
+        }
+    }
+
+    /**
+     * Проверяет дерево без рекурсии: порядок значений и размер. Дерево не должно меняться во время проверки.
+     *
+     * @param pool - пул, по которому делится проверка верхних поддеревьев; null - проверка в текущем потоке
+     */
+    public TreeCheckReport validate(ForkJoinPool pool) {
+        return new Validator<>(comparator).validate(root, size, pool);
+    }
+
+    static final class Validator<E> extends TreeValidator<E, Node<E>> {
+
+        Validator(Comparator<? super E> comparator) {
+            super(comparator);
+        }
+
+        @Override
+        boolean isEmpty(Node<E> node) {
+            return node == null;
+        }
+
+        @Override
+        Node<E> left(Node<E> node) {
+            return node.left;
+        }
+
+        @Override
+        Node<E> right(Node<E> node) {
+            return node.right;
+        }
+
+        @Override
+        Node<E> parent(Node<E> node) {
+            return null;
+        }
+
+        @Override
+        boolean hasParents() {
+            return false;
+        }
+
+        @Override
+        E value(Node<E> node) {
+            return node.value;
+        }
+
+        @Override
+        String check(Node<E> node, int leftHeight, int rightHeight, int leftBlackHeight, int rightBlackHeight) {
+            return null;
+        }
+
+        @Override
+        int blackHeight(Node<E> node, int childBlackHeight) {
+            return -1;
+        }
+
+        @Override
+        boolean hasBlackHeight() {
+            return false;
+        }
+
+        @Override
+        void describeState(Node<E> node, StringBuilder sb) {
+        }
+    }
+
+    static final class Node<E> {
+        E value;
+        Node<E> left, right;
+
+        Node(E value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return "N{d=" + value
+                    + (left != null ? ", l=" + left.value : "")
+                    + (right != null ? ", r=" + right.value : "") + "}";
+        }
+    }
+}
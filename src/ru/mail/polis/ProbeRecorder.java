@@ -0,0 +1,104 @@
+package ru.mail.polis;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Непрерывная запись длин поиска в хеш-таблице: для каждого contains - сколько ячеек (OpenHashTable)
+ * или узлов цепочки (ChainHashTable) просмотрено, отдельно для попаданий и промахов.
+ * <p>
+ * Подключается к таблице через setProbeRecorder и отключается передачей null; без рекордера таблица
+ * платит только за проверку поля на null. Корзины - LongAdder, поэтому один рекордер можно подключить
+ * к нескольким таблицам и писать в него из нескольких потоков.
+ */
+public final class ProbeRecorder {
+
+    private final Lengths hits = new Lengths();
+    private final Lengths misses = new Lengths();
+
+    /**
+     * Обычная запись - одно увеличение счётчика корзины. Сумма, сумма квадратов и максимум для коротких
+     * длин восстанавливаются по корзинам при снимке, отдельно копятся только длины из последней корзины
+     */
+    private static final class Lengths {
+        private final LongAdder[] counts = new LongAdder[LengthHistogram.MAX_EXACT + 1];
+        private final LongAdder overflowSum = new LongAdder();
+        private final LongAdder overflowSumOfSquares = new LongAdder();
+        private final LongAccumulator overflowMax = new LongAccumulator(Math::max, 0);
+
+        Lengths() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        void record(int length) {
+            if (length < LengthHistogram.MAX_EXACT) {
+                counts[length].increment();
+            } else {
+                counts[LengthHistogram.MAX_EXACT].increment();
+                overflowSum.add(length);
+                overflowSumOfSquares.add((long) length * length);
+                overflowMax.accumulate(length);
+            }
+        }
+
+        LengthHistogram snapshot() {
+            long[] snapshot = new long[counts.length];
+            long sum = overflowSum.sum();
+            long sumOfSquares = overflowSumOfSquares.sum();
+            int max = (int) overflowMax.get();
+            for (int length = 0; length < LengthHistogram.MAX_EXACT; length++) {
+                snapshot[length] = counts[length].sum();
+                sum += length * snapshot[length];
+                sumOfSquares += (long) length * length * snapshot[length];
+                if (snapshot[length] > 0) {
+                    max = Math.max(max, length);
+                }
+            }
+            snapshot[LengthHistogram.MAX_EXACT] = counts[LengthHistogram.MAX_EXACT].sum();
+            return new LengthHistogram(snapshot, sum, sumOfSquares, max);
+        }
+
+        void reset() {
+            for (LongAdder count : counts) {
+                count.reset();
+            }
+            overflowSum.reset();
+            overflowSumOfSquares.reset();
+            overflowMax.reset();
+        }
+    }
+
+    void recordHit(int length) {
+        hits.record(length);
+    }
+
+    void recordMiss(int length) {
+        misses.record(length);
+    }
+
+    /**
+     * @return длины успешных поисков, записанные с момента создания или последнего reset
+     */
+    public LengthHistogram getHits() {
+        return hits.snapshot();
+    }
+
+    /**
+     * @return длины неуспешных поисков
+     */
+    public LengthHistogram getMisses() {
+        return misses.snapshot();
+    }
+
+    public void reset() {
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ProbeRecorder{hits=" + getHits() + ", misses=" + getMisses() + "}";
+    }
+}
@@ -0,0 +1,55 @@
+package ru.mail.polis;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Событие JFR: восстановление баланса дерева после вставки или удаления - подъём от изменённого узла
+ * с перекрашиваниями, пересчётом высот и поворотами. Обычно это несколько уровней и доли микросекунды;
+ * в запись попадают только подъёмы дольше порога, то есть длинные цепочки по высоте дерева
+ * и промахи кеша по пути.
+ * <p>
+ * Пока запись JFR не идёт, объект события не выходит за пределы метода и JIT убирает его целиком.
+ */
+@Name("ru.mail.polis.Rebalance")
+@Label("Tree Rebalance")
+@Category({"Search DS", "Trees"})
+@Description("Retracing from a modified node towards the root after add or remove")
+@Threshold("20 us")
+final class RebalanceEvent extends jdk.jfr.Event {
+
+    @Label("Structure")
+    String structure;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Levels")
+    @Description("Number of levels climbed towards the root")
+    int levels;
+
+    @Label("Rotations")
+    int rotations;
+
+    @Label("Elements")
+    int size;
+
+    /**
+     * Завершает событие и пишет его, если запись включена и порог пройден
+     * @param rotationsBefore - счётчик поворотов дерева до начала события
+     */
+    void finish(Object tree, String operation, int levels, long rotationsBefore, long rotationsAfter, int size) {
+        end();
+        if (shouldCommit()) {
+            this.structure = tree.getClass().getSimpleName();
+            this.operation = operation;
+            this.levels = levels;
+            this.rotations = (int) (rotationsAfter - rotationsBefore);
+            this.size = size;
+            commit();
+        }
+    }
+}
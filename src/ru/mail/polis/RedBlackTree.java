@@ -1,10 +1,17 @@
 package ru.mail.polis;
 
 import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static ru.mail.polis.RedBlackTree.Color.BLACK;
 import static ru.mail.polis.RedBlackTree.Color.RED;
@@ -15,11 +22,15 @@ import static ru.mail.polis.RedBlackTree.Color.RED;
 @interface NotNull {
 }
 
-public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implements BalancedSortedSet<E> {
+public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E>
+        implements BalancedSortedSet<E>, SortedRangeView.Source<E> {
 
     private final Comparator<E> comparator;
     private Node<E> root;
     private int size;
+    private int modCount; //число структурных изменений, для итераторов
+    private long rotationCount;
+    private final Metrics metrics = Metrics.create(); //null, если метрики выключены
     private Node<E> nil;
 
     public RedBlackTree() {
@@ -34,6 +45,8 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
     }
 
     private void rotateLeft(Node<E> node) {
+        rotationCount++;
+        if (Metrics.ENABLED) metrics.rotations.increment();
         Node<E> curr = node.right;
         node.right = curr.left;
         if (curr.left != nil)
@@ -51,6 +64,8 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
     }
 
     private void rotateRight(Node<E> node) {
+        rotationCount++;
+        if (Metrics.ENABLED) metrics.rotations.increment();
         Node<E> curr = node.left;
         node.left = curr.right;
         if (curr.right != nil)
@@ -76,6 +91,7 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
      */
     @Override
     public boolean add(E value) {
+        if (Metrics.ENABLED) metrics.adds.increment();
         Node<E> curr = root;
         Node<E> parent = null;
         int comp = 0;
@@ -87,22 +103,183 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
             curr = (comp < 0) ? curr.right : curr.left;
         }
         assert parent != nil;
+        attach(parent, comp, value);
+        return true;
+    }
+
+    /**
+     * Подвешивает новый красный узел к parent и восстанавливает свойства дерева
+     * @param parent - последний узел спуска, null для пустого дерева
+     * @param comp - результат сравнения parent.value с value
+     * @return новый узел
+     */
+    private Node<E> attach(Node<E> parent, int comp, E value) {
         Node<E> temp = new Node<>(value, RED, parent);
         temp.left = temp.right = nil;
         if (parent == null) root = temp;
         else if (comp < 0) parent.right = temp;
         else parent.left = temp;
         ++size;
-        insertFix(temp);
-        return true;
+        ++modCount;
+        RebalanceEvent event = new RebalanceEvent();
+        event.begin();
+        long rotations = rotationCount;
+        int levels = insertFix(temp);
+        event.finish(this, "add", levels, rotations, rotationCount, size);
+        return temp;
+    }
+
+    /**
+     * Вставляет элементы через палец, если вход отсортирован или почти отсортирован (в любую сторону):
+     * тогда каждая вставка начинается рядом с предыдущей, а не от корня.
+     * На перемешанном входе подъём от пальца почти всегда доходит до корня и только мешает,
+     * поэтому такой вход вставляется обычным add.
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> values) {
+        if (!(values instanceof SortedSet) && !isMostlySorted(values)) {
+            return super.addAll(values);
+        }
+        Finger finger = finger();
+        boolean changed = false;
+        for (E value : values) {
+            changed |= finger.add(value);
+        }
+        return changed;
+    }
+
+    /**
+     * Один проход по соседним парам: не больше четверти пар идут против общего направления
+     */
+    private boolean isMostlySorted(Collection<? extends E> values) {
+        int ascents = 0;
+        int descents = 0;
+        E prev = null;
+        for (E value : values) {
+            if (prev != null) {
+                int comp = compare(prev, value);
+                if (comp < 0) ascents++;
+                else if (comp > 0) descents++;
+            }
+            prev = value;
+        }
+        return Math.min(ascents, descents) * 4 <= ascents + descents;
+    }
+
+    /**
+     * @return новый палец, пока не указывающий ни на какой узел
+     */
+    public Finger finger() {
+        return new Finger();
+    }
+
+    /**
+     * Палец - запомненный узел последнего обращения. Поиск от него поднимается по ссылкам на родителей
+     * только до ближайшего предка, под которым может лежать искомое значение, и спускается оттуда.
+     * Для соседних по порядку ключей это O(log d) сравнений вместо O(log n), где d - расстояние
+     * между ключами в порядке дерева. Худший случай - граница крупных поддеревьев: подъём почти до корня.
+     * <p>
+     * Изменения дерева в обход пальца (add, remove, другой палец) сбрасывают его, и следующий поиск идёт от корня.
+     */
+    public final class Finger {
+        private Node<E> node = nil;
+        private int expectedModCount = modCount;
+
+        private Finger() {
+        }
+
+        /**
+         * Вставляет элемент, начиная поиск места от пальца; палец переходит на вставленный или найденный узел
+         *
+         * @return true, если элемент в дереве отсутствовал
+         */
+        public boolean add(E value) {
+            if (Metrics.ENABLED) metrics.adds.increment();
+            Node<E> curr = start(value);
+            Node<E> parent = null;
+            int comp = 0;
+            while (curr != nil) {
+                parent = curr;
+                comp = compare(curr.value, value);
+                if (comp == 0) {
+                    node = curr;
+                    return false;
+                }
+                curr = (comp < 0) ? curr.right : curr.left;
+            }
+            node = attach(parent, comp, value);
+            expectedModCount = modCount;
+            return true;
+        }
+
+        /**
+         * Ищет элемент, начиная от пальца; палец переходит на последний пройденный узел
+         *
+         * @return true, если такой элемент содержится в дереве
+         */
+        public boolean contains(E value) {
+            if (Metrics.ENABLED) metrics.lookups.increment();
+            Node<E> curr = start(value);
+            while (curr != nil) {
+                node = curr;
+                int comp = compare(curr.value, value);
+                if (comp == 0) return true;
+                curr = (comp < 0) ? curr.right : curr.left;
+            }
+            return false;
+        }
+
+        /**
+         * @return значение узла под пальцем или null, если палец сброшен
+         */
+        public E get() {
+            return node == nil || expectedModCount != modCount ? null : node.value;
+        }
+
+        private Node<E> start(E value) {
+            if (expectedModCount != modCount) {
+                node = nil;
+                expectedModCount = modCount;
+            }
+            return node == nil ? root : climb(node, value);
+        }
+    }
+
+    /**
+     * Поднимается от узла finger к самому нижнему поддереву, в котором может лежать value.
+     * Для value правее пальца границу поддерева задают предки, к которым поднялись слева
+     * (для value левее - справа), сравнивать value нужно только с ними. Первый такой предок
+     * "за" value останавливает подъём; каждый предок "перед" value сдвигает начало спуска на себя.
+     * Если граничных предков нет (палец на правом краю дерева), спуск начинается прямо от пальца.
+     */
+    private Node<E> climb(Node<E> finger, E value) {
+        int comp = compare(finger.value, value);
+        if (comp == 0) return finger;
+        Node<E> start = finger;
+        Node<E> curr = finger;
+        while (curr.parent != null) {
+            Node<E> parent = curr.parent;
+            if (comp < 0 ? curr == parent.left : curr == parent.right) {
+                int bound = compare(parent.value, value);
+                if (bound == 0 || (bound > 0) == (comp < 0)) {
+                    return bound == 0 ? parent : start;
+                }
+                start = parent;
+            }
+            curr = parent;
+        }
+        return start;
     }
 
     /**
      * Перебалансировка после вставки
      * @param node - с кого начинать
+     * @return сколько шагов сделано
      */
-    private void insertFix(@NotNull Node<E> node) {
+    private int insertFix(@NotNull Node<E> node) {
+        int levels = 0;
         while (node != root && node.parent.color == RED) {
+            levels++;
             @NotNull Node<E> parent = node.parent;
             if (bro(parent).color == RED) {
                 @NotNull Node<E> y = bro(parent);
@@ -129,6 +306,7 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
             }
         }
         root.color = BLACK;
+        return levels;
     }
 
     /**
@@ -171,10 +349,12 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
      */
     @Override
     public boolean remove(Object object) {
+        if (Metrics.ENABLED) metrics.removes.increment();
         @SuppressWarnings("unchecked")
         Node<E> removeNode = findNode((E) object);
         if (removeNode == nil) return false;
         size--;
+        modCount++;
         remove(removeNode);
         return true;
     }
@@ -191,18 +371,27 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
         else
             y.parent.right = x;
         if (node != y) node.value = y.value;
-        if (y.color == BLACK) removeFix(x);
+        if (y.color == BLACK) {
+            RebalanceEvent event = new RebalanceEvent();
+            event.begin();
+            long rotations = rotationCount;
+            int levels = removeFix(x);
+            event.finish(this, "remove", levels, rotations, rotationCount, size);
+        }
     }
 
     /**
      * Перебалансировка после удаления
      *
      * @param node - not null, откуда начинаем балансировку
+     * @return сколько шагов сделано
      */
-    private void removeFix(Node<E> node) {
+    private int removeFix(Node<E> node) {
         Node<E> temp;
+        int levels = 0;
 
         while (node != root && node.color == BLACK) {
+            levels++;
             temp = bro(node);
             boolean isLeft = (node == node.parent.left);
             if (temp.color == RED) {
@@ -240,6 +429,7 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
             }
         }
         node.color = BLACK;
+        return levels;
     }
 
     /**
@@ -251,11 +441,75 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
      */
     @Override
     public boolean contains(Object object) {
+        if (Metrics.ENABLED) metrics.lookups.increment();
         @SuppressWarnings("unchecked")
         E value = (E) object;
         return findNode(value) != nil;
     }
 
+    /**
+     * Пакетный поиск: out[i] = contains(values[i]).
+     * Ключи сортируются, и каждый следующий поиск продолжается от ближайшего общего предка с путём
+     * предыдущего ключа. Стек хранит узлы этого пути со значениями не меньше предыдущего ключа (где спуск
+     * ушёл влево или нашёл ключ): их значения - верхние границы поддеревьев. Следующий ключ снимает границы
+     * меньше себя и спускается дальше с правого потомка последней снятой - общая часть пути не проходится
+     * заново. Если не снята ни одна граница, предыдущий ключ не найден, а следующий лежит между ним и
+     * границей на вершине стека, где предыдущий спуск уже дошёл до пустого поддерева.
+     */
+    public void containsAll(E[] values, boolean[] out) {
+        if (Metrics.ENABLED) metrics.lookups.add(values.length);
+        if (out.length < values.length) {
+            throw new IllegalArgumentException("out holds " + out.length + " results for " + values.length + " values");
+        }
+        ArrayDeque<Node<E>> bounds = new ArrayDeque<>();
+        Node<E> start = root; //откуда спускаться, если не снята ни одна граница
+        for (int i : SortedOrder.of(values, comparator)) {
+            E value = values[i];
+            Node<E> curr = start;
+            boolean found = false;
+            while (!bounds.isEmpty()) {
+                Node<E> bound = bounds.peek();
+                int comp = compare(bound.value, value);
+                if (comp >= 0) {
+                    found = comp == 0;
+                    break;
+                }
+                bounds.pop();
+                curr = bound.right;
+            }
+            while (!found && curr != nil) {
+                int comp = compare(curr.value, value);
+                if (comp >= 0) {
+                    bounds.push(curr);
+                    found = comp == 0;
+                    curr = curr.left;
+                } else {
+                    curr = curr.right;
+                }
+            }
+            out[i] = found;
+            start = nil;
+        }
+    }
+
+    /**
+     * Пакетная вставка в порядке возрастания: соседние вставки спускаются по почти одному пути,
+     * который уже лежит в кеше
+     *
+     * @return сколько элементов было вставлено
+     */
+    public int addBatch(E[] values) {
+        E[] sorted = values.clone();
+        Arrays.sort(sorted, this::compare);
+        int added = 0;
+        for (E value : sorted) {
+            if (add(value)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
     /**
      * Ищет наименьший элемент в дереве
      *
@@ -292,7 +546,68 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
         return curr.value;
     }
 
+    /**
+     * Обходит элементы дерева в порядке возрастания без рекурсии
+     * @param action - действие над каждым элементом
+     */
+    void forEachInOrder(Consumer<? super E> action) {
+        ArrayDeque<Node<E>> stack = new ArrayDeque<>();
+        Node<E> curr = root;
+        while (curr != nil || !stack.isEmpty()) {
+            while (curr != nil) {
+                stack.push(curr);
+                curr = curr.left;
+            }
+            curr = stack.pop();
+            action.accept(curr.value);
+            curr = curr.right;
+        }
+    }
+
+    /**
+     * Заменяет содержимое дерева идеально сбалансированным деревом за O(n), без сравнений и поворотов.
+     * Все узлы чёрные, кроме узлов самого нижнего уровня, если он заполнен не полностью -
+     * тогда чёрная высота всех путей совпадает.
+     * @param size - количество элементов
+     * @param sorted - выдаёт элементы в порядке возрастания, без повторов
+     */
+    void buildFromSorted(int size, Supplier<? extends E> sorted) {
+        int redLevel = 0;
+        for (int m = size - 1; m >= 0; m = m / 2 - 1) {
+            redLevel++;
+        }
+        Node<E> built = build(0, size - 1, 0, redLevel, sorted);
+        if (built != nil) {
+            built.parent = null;
+        }
+        this.root = built;
+        this.size = size;
+        this.modCount++;
+    }
+
+    private Node<E> build(int lo, int hi, int level, int redLevel, Supplier<? extends E> sorted) {
+        if (lo > hi) {
+            return nil;
+        }
+        int mid = (lo + hi) >>> 1;
+        Node<E> node = new Node<>(null, BLACK);
+        node.left = build(lo, mid - 1, level + 1, redLevel, sorted);
+        node.value = sorted.get();
+        node.right = build(mid + 1, hi, level + 1, redLevel, sorted);
+        if (node.left != nil) {
+            node.left.parent = node;
+        }
+        if (node.right != nil) {
+            node.right.parent = node;
+        }
+        if (level == redLevel) {
+            node.color = RED;
+        }
+        return node;
+    }
+
     private int compare(E v1, E v2) {
+        if (Metrics.ENABLED) metrics.comparisons.increment();
         return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
     }
 
@@ -306,6 +621,20 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
         return size;
     }
 
+    /**
+     * @return сколько поворотов сделано за время жизни дерева
+     */
+    public long getRotationCount() {
+        return rotationCount;
+    }
+
+    /**
+     * @return счётчики операций, сравнений и поворотов; нулевые, если метрики выключены (см. Metrics.ENABLED)
+     */
+    public Metrics getMetrics() {
+        return metrics != null ? metrics : Metrics.DISABLED;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("RBTree{");
@@ -324,22 +653,112 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
 
     @Override
     public SortedSet<E> subSet(E fromElement, E toElement) {
-        throw new UnsupportedOperationException("subSet");
+        return new SortedRangeView<>(this, fromElement, toElement);
     }
 
     @Override
     public SortedSet<E> headSet(E toElement) {
-        throw new UnsupportedOperationException("headSet");
+        return new SortedRangeView<>(this, null, toElement);
     }
 
     @Override
     public SortedSet<E> tailSet(E fromElement) {
-        throw new UnsupportedOperationException("tailSet");
+        return new SortedRangeView<>(this, fromElement, null);
     }
 
     @Override
     public Iterator<E> iterator() {
-        throw new UnsupportedOperationException("iterator");
+        Node<E> curr = root;
+        while (curr != nil && curr.left != nil) {
+            curr = curr.left;
+        }
+        return new TreeIterator(curr);
+    }
+
+    @Override
+    public Iterator<E> iteratorFrom(E fromElement) {
+        return fromElement == null ? iterator() : new TreeIterator(ceilingNode(fromElement));
+    }
+
+    /**
+     * @return узел с наименьшим значением, не меньшим value, или nil
+     */
+    private Node<E> ceilingNode(E value) {
+        Node<E> curr = root;
+        Node<E> found = nil;
+        while (curr != nil) {
+            int comp = compare(curr.value, value);
+            if (comp == 0) return curr;
+            if (comp > 0) {
+                found = curr;
+                curr = curr.left;
+            } else {
+                curr = curr.right;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Следующий по порядку узел или nil. В отличие от successor, не полагается на nil у родителя корня
+     */
+    private Node<E> nextNode(Node<E> node) {
+        if (node.right != nil) {
+            return successor(node);
+        }
+        Node<E> parent = node.parent;
+        while (parent != null && node == parent.right) {
+            node = parent;
+            parent = parent.parent;
+        }
+        return parent == null ? nil : parent;
+    }
+
+    /**
+     * Итератор по ссылкам на родителей: O(1) амортизированно на шаг, без стека.
+     * Удаление переносит значения между узлами, поэтому после remove следующий узел ищется заново.
+     */
+    private final class TreeIterator implements Iterator<E> {
+        private Node<E> next;
+        private E lastReturned;
+        private int expectedModCount = modCount;
+
+        TreeIterator(Node<E> next) {
+            this.next = next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != nil;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == nil) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next.value;
+            next = nextNode(next);
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            E following = next == nil ? null : next.value;
+            RedBlackTree.this.remove(lastReturned);
+            next = following == null ? nil : ceilingNode(following);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
     }
 
     /**
@@ -349,40 +768,111 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
      * 2) Если узел красный, то его потомки должны быть чёрными (обратное не всегда верно)
      * 3) Все пути от узла до листьев содержат одинаковое количество чёрных узлов (чёрная высота)
      *
-     * @throws NotBalancedTreeException если какое-либо свойство невыполнено
+     * @throws NotBalancedTreeException если какое-либо свойство невыполнено; исключение несёт отчёт validate
      */
     @Override
     public void checkBalanced() throws NotBalancedTreeException {
-        if (root != nil) {
-            if (root.color != BLACK) {
-                throw new NotBalancedTreeException("Root must be black");
-            }
-            traverseTreeAndCheckBalanced(root);
+        TreeCheckReport report = validate(null);
+        if (!report.isBalanced()) {
+            throw new NotBalancedTreeException(report);
         }
     }
 
-    private int traverseTreeAndCheckBalanced(Node node) throws NotBalancedTreeException {
-        if (node == nil) {
-            return 1;
+    /**
+     * Проверяет дерево без рекурсии: свойства красно-чёрного дерева, порядок значений, ссылки на родителей
+     * и размер. Дерево не должно меняться во время проверки.
+     *
+     * @param pool - пул, по которому делится проверка верхних поддеревьев; null - проверка в текущем потоке
+     * @return отчёт с высотой, чёрной высотой и числом узлов или с первым найденным нарушением
+     */
+    public TreeCheckReport validate(ForkJoinPool pool) {
+        return new Validator<>(comparator, nil).validate(root, size, pool);
+    }
+
+    /**
+     * @return высота, распределение глубин, ожидаемые сравнения при поиске и доля красных узлов;
+     * считается за один обход
+     */
+    public TreeStats stats() {
+        return TreeStats.collect(root, nil, node -> node.left, node -> node.right, node -> node.color == RED,
+                TreeStats.redBlackHeightBound(size));
+    }
+
+    /**
+     * @return неизменяемая копия дерева в массиве в порядке Эйтцингера для частых поисков без изменений;
+     * дальнейшие изменения дерева на неё не влияют
+     */
+    public EytzingerSet<E> freeze() {
+        Object[] sorted = new Object[size];
+        int[] index = new int[1];
+        forEachInOrder(value -> sorted[index[0]++] = value);
+        return EytzingerSet.fromSorted(comparator, sorted);
+    }
+
+    private static final class Validator<E> extends TreeValidator<E, Node<E>> {
+
+        private final Node<E> nil;
+
+        Validator(Comparator<? super E> comparator, Node<E> nil) {
+            super(comparator);
+            this.nil = nil;
         }
-        int leftBlackHeight = traverseTreeAndCheckBalanced(node.left);
-        int rightBlackHeight = traverseTreeAndCheckBalanced(node.right);
-        if (leftBlackHeight != rightBlackHeight) {
-            throw NotBalancedTreeException.create("Black height must be equal.", leftBlackHeight, rightBlackHeight, node.toString());
+
+        @Override
+        boolean isEmpty(Node<E> node) {
+            return node == nil;
         }
-        if (node.color == RED) {
-            checkRedNodeRule(node);
-            return leftBlackHeight;
+
+        @Override
+        Node<E> left(Node<E> node) {
+            return node.left;
         }
-        return leftBlackHeight + 1;
-    }
 
-    private void checkRedNodeRule(Node node) throws NotBalancedTreeException {
-        if (node.left != null && node.left.color != BLACK) {
-            throw new NotBalancedTreeException("If a node is red, then left child must be black.\n" + node.toString());
+        @Override
+        Node<E> right(Node<E> node) {
+            return node.right;
         }
-        if (node.right != null && node.right.color != BLACK) {
-            throw new NotBalancedTreeException("If a node is red, then right child must be black.\n" + node.toString());
+
+        @Override
+        Node<E> parent(Node<E> node) {
+            return node.parent;
+        }
+
+        @Override
+        E value(Node<E> node) {
+            return node.value;
+        }
+
+        @Override
+        String checkRoot(Node<E> root) {
+            return root.color != BLACK ? "Root must be black" : super.checkRoot(root);
+        }
+
+        @Override
+        String check(Node<E> node, int leftHeight, int rightHeight, int leftBlackHeight, int rightBlackHeight) {
+            if (leftBlackHeight != rightBlackHeight) {
+                return "Black height must be equal: "
+                        + "leftBlackHeight = " + leftBlackHeight + ", rightBlackHeight = " + rightBlackHeight;
+            }
+            if (node.color == RED && (node.left.color != BLACK || node.right.color != BLACK)) {
+                return "If a node is red, then both its children must be black";
+            }
+            return null;
+        }
+
+        @Override
+        int blackHeight(Node<E> node, int childBlackHeight) {
+            return node.color == BLACK ? childBlackHeight + 1 : childBlackHeight;
+        }
+
+        @Override
+        boolean hasBlackHeight() {
+            return true;
+        }
+
+        @Override
+        void describeState(Node<E> node, StringBuilder sb) {
+            sb.append(", c=").append(node.color);
         }
     }
 
@@ -408,10 +898,10 @@ public class RedBlackTree<E extends Comparable<E>> extends AbstractSet<E> implem
 
         @Override
         public String toString() {
-            assert !(left == null || right == null);
+            //только значения потомков: рекурсия по поддеревьям на большом дереве даёт огромную строку
             return "Node{" + "value=" + value +
-                    ", left=" + left +
-                    ", right=" + right +
+                    ", left=" + (left != null ? left.value : null) +
+                    ", right=" + (right != null ? right.value : null) +
                     ", color=" + color + "}";
         }
     }
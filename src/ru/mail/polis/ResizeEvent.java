@@ -0,0 +1,48 @@
+package ru.mail.polis;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Событие JFR: перестроение хеш-таблицы под новый размер. Длительность события - время перестроения,
+ * стек - операция, которая его вызвала.
+ * <p>
+ * По умолчанию пишутся перестроения дольше порога из аннотации Threshold; в настройках записи
+ * (.jfc или Recording.enable(...).withThreshold) порог можно поменять или отключить событие.
+ */
+@Name("ru.mail.polis.Resize")
+@Label("Hash Table Resize")
+@Category({"Search DS", "Hash Tables"})
+@Description("Rehash of a hash table into a new backing array")
+@Threshold("100 us")
+final class ResizeEvent extends jdk.jfr.Event {
+
+    @Label("Structure")
+    String structure;
+
+    @Label("Old Capacity")
+    int oldCapacity;
+
+    @Label("New Capacity")
+    int newCapacity;
+
+    @Label("Elements")
+    int size;
+
+    /**
+     * Завершает событие и пишет его, если запись включена и порог пройден
+     */
+    void finish(Object table, int oldCapacity, int newCapacity, int size) {
+        end();
+        if (shouldCommit()) {
+            this.structure = table.getClass().getSimpleName();
+            this.oldCapacity = oldCapacity;
+            this.newCapacity = newCapacity;
+            this.size = size;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,1123 @@
+package ru.mail.polis;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.function.IntConsumer;
+
+/**
+ * Сжатое битовое множество Integer в духе Roaring bitmap.
+ * <p>
+ * Ключ делится на старшие и младшие 16 бит. Старшие 16 бит ищутся двоичным поиском в отсортированном массиве
+ * keys, а младшие хранятся в контейнере своего блока из 65536 чисел. Контейнер бывает трёх видов:
+ * <ul>
+ * <li>массив - отсортированный char[] до ARRAY_MAX значений, 2 байта на ключ;</li>
+ * <li>битовая карта - long[1024], 8 КБ на блок, то есть бит на число диапазона;</li>
+ * <li>отрезки - пары (начало, длина - 1), 4 байта на отрезок подряд идущих ключей.</li>
+ * </ul>
+ * Массив, в который добавляется ARRAY_MAX + 1-й ключ, становится битовой картой, а карта, в которой
+ * осталось ARRAY_MAX ключей, снова становится массивом. Отрезки появляются после runOptimize() и остаются
+ * отрезками, пока их не больше MAX_RUNS, то есть пока они не длиннее битовой карты.
+ * <p>
+ * Объединение и пересечение (union, intersection) идут по блокам: контейнеры с одинаковыми старшими битами
+ * объединяются массивами или словами битовой карты, не перебирая ключи по одному. serialize() пишет контейнеры
+ * как есть, поэтому размер сериализованной формы примерно равен размеру в памяти.
+ * <p>
+ * Ключи сравниваются как int: старший бит меняется на противоположный, чтобы беззнаковый порядок блоков
+ * совпадал со знаковым порядком ключей. null не допускается.
+ */
+public final class RoaringSet extends AbstractSet<Integer>
+        implements SortedSet<Integer>, SortedRangeView.Source<Integer> {
+
+    static final int ARRAY_MAX = 4096;
+    static final int MAX_RUNS = 2047;
+    private static final int BITMAP_WORDS = 1 << 10;
+    private static final int INITIAL_CAPACITY = 4;
+    private static final long NOT_FOUND = Long.MIN_VALUE;
+
+    private static final byte ARRAY = 0;
+    private static final byte BITMAP = 1;
+    private static final byte RUN = 2;
+
+    private char[] keys = new char[INITIAL_CAPACITY];
+    private Container[] containers = new Container[INITIAL_CAPACITY];
+    private int count;
+    private int size;
+
+    public static RoaringSet of(int... values) {
+        RoaringSet set = new RoaringSet();
+        for (int value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        if (!(object instanceof Integer)) {
+            return false;
+        }
+        int bits = (Integer) object ^ Integer.MIN_VALUE;
+        int i = find((char) (bits >>> 16));
+        return i >= 0 && containers[i].contains((char) bits);
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        int bits = value ^ Integer.MIN_VALUE;
+        char high = (char) (bits >>> 16);
+        int i = find(high);
+        if (i < 0) {
+            insertContainer(-i - 1, high, new ArrayContainer((char) bits));
+            size++;
+            return true;
+        }
+        Container container = containers[i];
+        int before = container.cardinality();
+        containers[i] = container = container.add((char) bits);
+        if (container.cardinality() == before) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        if (!(object instanceof Integer)) {
+            return false;
+        }
+        int bits = (Integer) object ^ Integer.MIN_VALUE;
+        int i = find((char) (bits >>> 16));
+        if (i < 0) {
+            return false;
+        }
+        Container container = containers[i];
+        int before = container.cardinality();
+        containers[i] = container = container.remove((char) bits);
+        if (container.cardinality() == before) {
+            return false;
+        }
+        size--;
+        if (container.cardinality() == 0) {
+            removeContainer(i);
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        keys = new char[INITIAL_CAPACITY];
+        containers = new Container[INITIAL_CAPACITY];
+        count = 0;
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Integer first() {
+        if (size == 0) {
+            throw new NoSuchElementException("first");
+        }
+        return key(keys[0], containers[0].first());
+    }
+
+    @Override
+    public Integer last() {
+        if (size == 0) {
+            throw new NoSuchElementException("last");
+        }
+        return key(keys[count - 1], containers[count - 1].last());
+    }
+
+    /**
+     * @return наименьший элемент не меньше value или null
+     */
+    public Integer ceiling(Integer value) {
+        return boxed(ceilingKey(value));
+    }
+
+    /**
+     * @return наименьший элемент больше value или null
+     */
+    public Integer higher(Integer value) {
+        return value == Integer.MAX_VALUE ? null : boxed(ceilingKey(value + 1));
+    }
+
+    /**
+     * @return наибольший элемент не больше value или null
+     */
+    public Integer floor(Integer value) {
+        return boxed(floorKey(value));
+    }
+
+    /**
+     * @return наибольший элемент меньше value или null
+     */
+    public Integer lower(Integer value) {
+        return value == Integer.MIN_VALUE ? null : boxed(floorKey(value - 1));
+    }
+
+    /**
+     * Обходит элементы в порядке возрастания без упаковки в Integer
+     */
+    public void forEachInt(IntConsumer action) {
+        for (int i = 0; i < count; i++) {
+            int base = keys[i] << 16 ^ Integer.MIN_VALUE;
+            containers[i].forEachLow(low -> action.accept(base | low));
+        }
+    }
+
+    /**
+     * Переводит в отрезки те контейнеры, которым так нужно меньше памяти
+     *
+     * @return сколько контейнеров переведено
+     */
+    public int runOptimize() {
+        int converted = 0;
+        for (int i = 0; i < count; i++) {
+            Container container = containers[i];
+            if (!(container instanceof RunContainer)
+                    && RunContainer.sizeInBytes(container.countRuns()) < container.sizeInBytes()) {
+                containers[i] = RunContainer.from(container);
+                converted++;
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * @return новое множество из элементов a и b; a и b не меняются
+     */
+    public static RoaringSet union(RoaringSet a, RoaringSet b) {
+        RoaringSet result = new RoaringSet();
+        int i = 0;
+        int j = 0;
+        while (i < a.count || j < b.count) {
+            int order = i == a.count ? 1 : j == b.count ? -1 : Character.compare(a.keys[i], b.keys[j]);
+            if (order < 0) {
+                result.appendContainer(a.keys[i], a.containers[i].copy());
+                i++;
+            } else if (order > 0) {
+                result.appendContainer(b.keys[j], b.containers[j].copy());
+                j++;
+            } else {
+                result.appendContainer(a.keys[i], or(a.containers[i], b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return новое множество из общих элементов a и b; a и b не меняются
+     */
+    public static RoaringSet intersection(RoaringSet a, RoaringSet b) {
+        RoaringSet result = new RoaringSet();
+        int i = 0;
+        int j = 0;
+        while (i < a.count && j < b.count) {
+            int order = Character.compare(a.keys[i], b.keys[j]);
+            if (order < 0) {
+                i++;
+            } else if (order > 0) {
+                j++;
+            } else {
+                Container container = and(a.containers[i], b.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.appendContainer(a.keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return размер формы serialize() в байтах
+     */
+    public int serializedSize() {
+        int bytes = Integer.BYTES;
+        for (int i = 0; i < count; i++) {
+            bytes += Character.BYTES + Byte.BYTES + containers[i].serializedSize();
+        }
+        return bytes;
+    }
+
+    /**
+     * Записывает множество в buffer начиная с текущей позиции: число контейнеров, затем для каждого старшие
+     * 16 бит, вид контейнера и его содержимое. Позиция сдвигается на serializedSize()
+     */
+    public void serialize(ByteBuffer buffer) {
+        buffer.putInt(count);
+        for (int i = 0; i < count; i++) {
+            buffer.putChar(keys[i]);
+            buffer.put(containers[i].type());
+            containers[i].serialize(buffer);
+        }
+    }
+
+    /**
+     * Читает множество, записанное serialize(), начиная с текущей позиции buffer
+     *
+     * @throws IllegalArgumentException если данные не похожи на форму serialize()
+     */
+    public static RoaringSet deserialize(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0 || count > 1 << 16) {
+            throw new IllegalArgumentException("Bad container count: " + count);
+        }
+        RoaringSet set = new RoaringSet();
+        for (int i = 0; i < count; i++) {
+            char high = buffer.getChar();
+            if (i > 0 && high <= set.keys[i - 1]) {
+                throw new IllegalArgumentException("Containers are not sorted at " + i);
+            }
+            byte type = buffer.get();
+            Container container;
+            switch (type) {
+                case ARRAY:
+                    container = ArrayContainer.deserialize(buffer);
+                    break;
+                case BITMAP:
+                    container = BitmapContainer.deserialize(buffer);
+                    break;
+                case RUN:
+                    container = RunContainer.deserialize(buffer);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown container type: " + type);
+            }
+            if (container.cardinality() == 0) {
+                throw new IllegalArgumentException("Empty container at " + i);
+            }
+            set.appendContainer(high, container);
+        }
+        return set;
+    }
+
+    /**
+     * @return количество контейнеров каждого вида: массивов, битовых карт и отрезков
+     */
+    public int[] containerCounts() {
+        int[] counts = new int[3];
+        for (int i = 0; i < count; i++) {
+            counts[containers[i].type()]++;
+        }
+        return counts;
+    }
+
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return null;
+    }
+
+    @Override
+    public SortedSet<Integer> subSet(Integer fromElement, Integer toElement) {
+        return new SortedRangeView<>(this, fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<Integer> headSet(Integer toElement) {
+        return new SortedRangeView<>(this, null, toElement);
+    }
+
+    @Override
+    public SortedSet<Integer> tailSet(Integer fromElement) {
+        return new SortedRangeView<>(this, fromElement, null);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return iteratorAt(size == 0 ? NOT_FOUND : first());
+    }
+
+    @Override
+    public Iterator<Integer> iteratorFrom(Integer fromElement) {
+        return fromElement == null ? iterator() : iteratorAt(ceilingKey(fromElement));
+    }
+
+    /**
+     * Итератор помнит следующий ключ, а не позицию в контейнере, поэтому переживает изменения множества
+     */
+    private Iterator<Integer> iteratorAt(long start) {
+        return new Iterator<Integer>() {
+            private long next = start;
+            private long lastReturned = NOT_FOUND;
+
+            @Override
+            public boolean hasNext() {
+                return next != NOT_FOUND;
+            }
+
+            @Override
+            public Integer next() {
+                if (next == NOT_FOUND) {
+                    throw new NoSuchElementException();
+                }
+                int value = (int) next;
+                lastReturned = value;
+                next = value == Integer.MAX_VALUE ? NOT_FOUND : ceilingKey(value + 1);
+                return value;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == NOT_FOUND) {
+                    throw new IllegalStateException();
+                }
+                RoaringSet.this.remove((int) lastReturned);
+                lastReturned = NOT_FOUND;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "RoaringSet{size=" + size + ", containers=" + count + "}";
+    }
+
+    private long ceilingKey(int value) {
+        int bits = value ^ Integer.MIN_VALUE;
+        char high = (char) (bits >>> 16);
+        int i = find(high);
+        if (i >= 0) {
+            int low = containers[i].ceiling(bits & 0xFFFF);
+            if (low >= 0) {
+                return key(high, low);
+            }
+            i++;
+        } else {
+            i = -i - 1;
+        }
+        return i < count ? key(keys[i], containers[i].first()) : NOT_FOUND;
+    }
+
+    private long floorKey(int value) {
+        int bits = value ^ Integer.MIN_VALUE;
+        char high = (char) (bits >>> 16);
+        int i = find(high);
+        if (i >= 0) {
+            int low = containers[i].floor(bits & 0xFFFF);
+            if (low >= 0) {
+                return key(high, low);
+            }
+            i--;
+        } else {
+            i = -i - 2;
+        }
+        return i >= 0 ? key(keys[i], containers[i].last()) : NOT_FOUND;
+    }
+
+    private static int key(char high, int low) {
+        return (high << 16 | low) ^ Integer.MIN_VALUE;
+    }
+
+    private static Integer boxed(long key) {
+        return key == NOT_FOUND ? null : (int) key;
+    }
+
+    private int find(char high) {
+        return Arrays.binarySearch(keys, 0, count, high);
+    }
+
+    private void insertContainer(int i, char high, Container container) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * count);
+            containers = Arrays.copyOf(containers, 2 * count);
+        }
+        System.arraycopy(keys, i, keys, i + 1, count - i);
+        System.arraycopy(containers, i, containers, i + 1, count - i);
+        keys[i] = high;
+        containers[i] = container;
+        count++;
+    }
+
+    private void removeContainer(int i) {
+        System.arraycopy(keys, i + 1, keys, i, count - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, count - i - 1);
+        containers[--count] = null;
+    }
+
+    private void appendContainer(char high, Container container) {
+        insertContainer(count, high, container);
+        size += container.cardinality();
+    }
+
+    private static Container or(Container a, Container b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer
+                && a.cardinality() + b.cardinality() <= ARRAY_MAX) {
+            return ArrayContainer.merge((ArrayContainer) a, (ArrayContainer) b);
+        }
+        long[] words = new long[BITMAP_WORDS];
+        a.orInto(words);
+        b.orInto(words);
+        return BitmapContainer.fromWords(words);
+    }
+
+    private static Container and(Container a, Container b) {
+        if (b instanceof ArrayContainer) {
+            return ((ArrayContainer) b).filter(a);
+        }
+        if (a instanceof ArrayContainer) {
+            return ((ArrayContainer) a).filter(b);
+        }
+        long[] words = new long[BITMAP_WORDS];
+        long[] other = new long[BITMAP_WORDS];
+        a.orInto(words);
+        b.orInto(other);
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            words[w] &= other[w];
+        }
+        return BitmapContainer.fromWords(words);
+    }
+
+    /**
+     * Младшие 16 бит ключей одного блока. add и remove возвращают контейнер, который нужно сохранить вместо
+     * этого: вид меняется, когда другой становится компактнее
+     */
+    private abstract static class Container {
+
+        abstract byte type();
+
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        abstract Container add(char low);
+
+        abstract Container remove(char low);
+
+        abstract int first();
+
+        abstract int last();
+
+        /**
+         * @return наименьшее значение не меньше low или -1
+         */
+        abstract int ceiling(int low);
+
+        /**
+         * @return наибольшее значение не больше low или -1
+         */
+        abstract int floor(int low);
+
+        abstract void forEachLow(IntConsumer action);
+
+        abstract void orInto(long[] words);
+
+        /**
+         * @return количество отрезков подряд идущих значений
+         */
+        abstract int countRuns();
+
+        abstract int sizeInBytes();
+
+        abstract Container copy();
+
+        int serializedSize() {
+            return sizeInBytes();
+        }
+
+        abstract void serialize(ByteBuffer buffer);
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer(char value) {
+            values = new char[INITIAL_CAPACITY];
+            values[0] = value;
+            cardinality = 1;
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        static ArrayContainer from(Container container) {
+            char[] values = new char[container.cardinality()];
+            int[] n = {0};
+            container.forEachLow(low -> values[n[0]++] = (char) low);
+            return new ArrayContainer(values, values.length);
+        }
+
+        static ArrayContainer merge(ArrayContainer a, ArrayContainer b) {
+            char[] values = new char[a.cardinality + b.cardinality];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < a.cardinality && j < b.cardinality) {
+                char x = a.values[i];
+                char y = b.values[j];
+                values[n++] = x <= y ? x : y;
+                i += x <= y ? 1 : 0;
+                j += y <= x ? 1 : 0;
+            }
+            while (i < a.cardinality) {
+                values[n++] = a.values[i++];
+            }
+            while (j < b.cardinality) {
+                values[n++] = b.values[j++];
+            }
+            return new ArrayContainer(values, n);
+        }
+
+        /**
+         * @return значения этого контейнера, которые есть в other
+         */
+        ArrayContainer filter(Container other) {
+            char[] common = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    common[n++] = values[i];
+                }
+            }
+            return new ArrayContainer(common, n);
+        }
+
+        static ArrayContainer deserialize(ByteBuffer buffer) {
+            int cardinality = buffer.getChar() + 1;
+            if (cardinality > ARRAY_MAX) {
+                throw new IllegalArgumentException("Array container is too large: " + cardinality);
+            }
+            char[] values = new char[cardinality];
+            for (int i = 0; i < cardinality; i++) {
+                values[i] = buffer.getChar();
+                if (i > 0 && values[i] <= values[i - 1]) {
+                    throw new IllegalArgumentException("Array container is not sorted");
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+
+        @Override
+        byte type() {
+            return ARRAY;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        @Override
+        Container add(char low) {
+            int i = Arrays.binarySearch(values, 0, cardinality, low);
+            if (i >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return BitmapContainer.from(this).add(low);
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(2 * cardinality, ARRAY_MAX));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int i = Arrays.binarySearch(values, 0, cardinality, low);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        int first() {
+            return values[0];
+        }
+
+        @Override
+        int last() {
+            return values[cardinality - 1];
+        }
+
+        @Override
+        int ceiling(int low) {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            if (i >= 0) {
+                return low;
+            }
+            i = -i - 1;
+            return i < cardinality ? values[i] : -1;
+        }
+
+        @Override
+        int floor(int low) {
+            int i = Arrays.binarySearch(values, 0, cardinality, (char) low);
+            if (i >= 0) {
+                return low;
+            }
+            i = -i - 1;
+            return i > 0 ? values[i - 1] : -1;
+        }
+
+        @Override
+        void forEachLow(IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(values[i]);
+            }
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+        }
+
+        @Override
+        int countRuns() {
+            int runs = cardinality == 0 ? 0 : 1;
+            for (int i = 1; i < cardinality; i++) {
+                runs += values[i] != values[i - 1] + 1 ? 1 : 0;
+            }
+            return runs;
+        }
+
+        @Override
+        int sizeInBytes() {
+            return Character.BYTES * (cardinality + 1);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+        }
+
+        @Override
+        void serialize(ByteBuffer buffer) {
+            buffer.putChar((char) (cardinality - 1));
+            for (int i = 0; i < cardinality; i++) {
+                buffer.putChar(values[i]);
+            }
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static BitmapContainer from(Container container) {
+            long[] words = new long[BITMAP_WORDS];
+            container.orInto(words);
+            return new BitmapContainer(words, container.cardinality());
+        }
+
+        /**
+         * @return битовая карта или массив, если значений не больше ARRAY_MAX
+         */
+        static Container fromWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+            return cardinality > ARRAY_MAX ? bitmap : ArrayContainer.from(bitmap);
+        }
+
+        static Container deserialize(ByteBuffer buffer) {
+            long[] words = new long[BITMAP_WORDS];
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                words[w] = buffer.getLong();
+            }
+            return fromWords(words);
+        }
+
+        @Override
+        byte type() {
+            return BITMAP;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & 1L << low) != 0;
+        }
+
+        @Override
+        Container add(char low) {
+            long word = words[low >>> 6];
+            words[low >>> 6] = word | 1L << low;
+            cardinality += (word & 1L << low) == 0 ? 1 : 0;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long word = words[low >>> 6];
+            if ((word & 1L << low) == 0) {
+                return this;
+            }
+            words[low >>> 6] = word & ~(1L << low);
+            cardinality--;
+            return cardinality > ARRAY_MAX ? this : ArrayContainer.from(this);
+        }
+
+        @Override
+        int first() {
+            return ceiling(0);
+        }
+
+        @Override
+        int last() {
+            return floor(0xFFFF);
+        }
+
+        @Override
+        int ceiling(int low) {
+            int w = low >>> 6;
+            long word = words[w] & -1L << low;
+            while (word == 0) {
+                if (++w == BITMAP_WORDS) {
+                    return -1;
+                }
+                word = words[w];
+            }
+            return w << 6 | Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        int floor(int low) {
+            int w = low >>> 6;
+            long word = words[w] & -1L >>> (63 - (low & 63));
+            while (word == 0) {
+                if (--w < 0) {
+                    return -1;
+                }
+                word = words[w];
+            }
+            return w << 6 | 63 - Long.numberOfLeadingZeros(word);
+        }
+
+        @Override
+        void forEachLow(IntConsumer action) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    action.accept(w << 6 | Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                words[w] |= this.words[w];
+            }
+        }
+
+        @Override
+        int countRuns() {
+            //отрезок начинается с единицы, перед которой ноль (с учётом старшего бита предыдущего слова)
+            int runs = 0;
+            long carry = 0;
+            for (long word : words) {
+                runs += Long.bitCount(word & ~(word << 1 | carry));
+                carry = word >>> 63;
+            }
+            return runs;
+        }
+
+        @Override
+        int sizeInBytes() {
+            return Long.BYTES * BITMAP_WORDS;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        void serialize(ByteBuffer buffer) {
+            for (long word : words) {
+                buffer.putLong(word);
+            }
+        }
+    }
+
+    private static final class RunContainer extends Container {
+
+        /**
+         * Пары (начало, длина - 1) по возрастанию начала, отрезки не касаются друг друга
+         */
+        private char[] runs;
+        private int runCount;
+        private int cardinality;
+
+        private RunContainer(char[] runs, int runCount, int cardinality) {
+            this.runs = runs;
+            this.runCount = runCount;
+            this.cardinality = cardinality;
+        }
+
+        static int sizeInBytes(int runCount) {
+            return Character.BYTES * (2 * runCount + 1);
+        }
+
+        static RunContainer from(Container container) {
+            char[] runs = new char[2 * container.countRuns()];
+            int[] n = {0, -2};
+            container.forEachLow(low -> {
+                int run = n[0];
+                if (run > 0 && low == n[1] + 1) {
+                    runs[run - 1]++;
+                } else {
+                    runs[run] = (char) low;
+                    n[0] = run + 2;
+                }
+                n[1] = low;
+            });
+            return new RunContainer(runs, n[0] / 2, container.cardinality());
+        }
+
+        static RunContainer deserialize(ByteBuffer buffer) {
+            int runCount = buffer.getChar();
+            if (runCount == 0 || runCount > MAX_RUNS) {
+                throw new IllegalArgumentException("Bad run count: " + runCount);
+            }
+            char[] runs = new char[2 * runCount];
+            int cardinality = 0;
+            int end = -2;
+            for (int r = 0; r < runCount; r++) {
+                char start = buffer.getChar();
+                char length = buffer.getChar();
+                if (start <= end + 1 || start + length > 0xFFFF) {
+                    throw new IllegalArgumentException("Bad run " + r);
+                }
+                runs[2 * r] = start;
+                runs[2 * r + 1] = length;
+                cardinality += length + 1;
+                end = start + length;
+            }
+            return new RunContainer(runs, runCount, cardinality);
+        }
+
+        private int start(int r) {
+            return runs[2 * r];
+        }
+
+        private int end(int r) {
+            return runs[2 * r] + runs[2 * r + 1];
+        }
+
+        /**
+         * @return последний отрезок с началом не больше low или -1
+         */
+        private int runIndex(int low) {
+            int lo = 0;
+            int hi = runCount - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (start(mid) <= low) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return hi;
+        }
+
+        private void setRun(int r, int start, int end) {
+            runs[2 * r] = (char) start;
+            runs[2 * r + 1] = (char) (end - start);
+        }
+
+        private void insertRun(int r, int start, int end) {
+            if (2 * runCount == runs.length) {
+                runs = Arrays.copyOf(runs, Math.max(2 * runs.length, 2 * INITIAL_CAPACITY));
+            }
+            System.arraycopy(runs, 2 * r, runs, 2 * r + 2, 2 * (runCount - r));
+            runCount++;
+            setRun(r, start, end);
+        }
+
+        private void deleteRun(int r) {
+            System.arraycopy(runs, 2 * r + 2, runs, 2 * r, 2 * (runCount - r - 1));
+            runCount--;
+        }
+
+        /**
+         * Слишком дробные отрезки заменяются массивом или битовой картой
+         */
+        private Container compact() {
+            if (runCount <= MAX_RUNS) {
+                return this;
+            }
+            return cardinality > ARRAY_MAX ? BitmapContainer.from(this) : ArrayContainer.from(this);
+        }
+
+        @Override
+        byte type() {
+            return RUN;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            int r = runIndex(low);
+            return r >= 0 && low <= end(r);
+        }
+
+        @Override
+        Container add(char low) {
+            int r = runIndex(low);
+            if (r >= 0 && low <= end(r)) {
+                return this;
+            }
+            boolean joinsPrevious = r >= 0 && end(r) + 1 == low;
+            boolean joinsNext = r + 1 < runCount && start(r + 1) == low + 1;
+            if (joinsPrevious && joinsNext) {
+                setRun(r, start(r), end(r + 1));
+                deleteRun(r + 1);
+            } else if (joinsPrevious) {
+                setRun(r, start(r), low);
+            } else if (joinsNext) {
+                setRun(r + 1, low, end(r + 1));
+            } else {
+                insertRun(r + 1, low, low);
+            }
+            cardinality++;
+            return compact();
+        }
+
+        @Override
+        Container remove(char low) {
+            int r = runIndex(low);
+            if (r < 0 || low > end(r)) {
+                return this;
+            }
+            int start = start(r);
+            int end = end(r);
+            if (start == end) {
+                deleteRun(r);
+            } else if (low == start) {
+                setRun(r, start + 1, end);
+            } else if (low == end) {
+                setRun(r, start, end - 1);
+            } else {
+                setRun(r, start, low - 1);
+                insertRun(r + 1, low + 1, end);
+            }
+            cardinality--;
+            return compact();
+        }
+
+        @Override
+        int first() {
+            return start(0);
+        }
+
+        @Override
+        int last() {
+            return end(runCount - 1);
+        }
+
+        @Override
+        int ceiling(int low) {
+            int r = runIndex(low);
+            if (r >= 0 && low <= end(r)) {
+                return low;
+            }
+            return r + 1 < runCount ? start(r + 1) : -1;
+        }
+
+        @Override
+        int floor(int low) {
+            int r = runIndex(low);
+            return r < 0 ? -1 : Math.min(low, end(r));
+        }
+
+        @Override
+        void forEachLow(IntConsumer action) {
+            for (int r = 0; r < runCount; r++) {
+                for (int low = start(r), end = end(r); low <= end; low++) {
+                    action.accept(low);
+                }
+            }
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int r = 0; r < runCount; r++) {
+                int from = start(r);
+                int to = end(r);
+                int first = from >>> 6;
+                int last = to >>> 6;
+                if (first == last) {
+                    words[first] |= -1L << from & -1L >>> (63 - (to & 63));
+                    continue;
+                }
+                words[first] |= -1L << from;
+                for (int w = first + 1; w < last; w++) {
+                    words[w] = -1L;
+                }
+                words[last] |= -1L >>> (63 - (to & 63));
+            }
+        }
+
+        @Override
+        int countRuns() {
+            return runCount;
+        }
+
+        @Override
+        int sizeInBytes() {
+            return sizeInBytes(runCount);
+        }
+
+        @Override
+        Container copy() {
+            return new RunContainer(Arrays.copyOf(runs, 2 * runCount), runCount, cardinality);
+        }
+
+        @Override
+        void serialize(ByteBuffer buffer) {
+            buffer.putChar((char) runCount);
+            for (int i = 0; i < 2 * runCount; i++) {
+                buffer.putChar(runs[i]);
+            }
+        }
+    }
+}
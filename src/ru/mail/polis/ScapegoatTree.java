@@ -0,0 +1,360 @@
+package ru.mail.polis;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Дерево козла отпущения (scapegoat tree, Гальперин и Ривест): узел хранит только значение и двух потомков,
+ * как в BinarySearchTree, без высоты, цвета и ссылки на родителя.
+ * <p>
+ * Баланс держится по глубине: если новый узел оказался глубже h(size) = floor(log_{1/alpha} size), на пути
+ * к нему есть предок, у которого один из потомков весит больше alpha от его поддерева (козёл отпущения).
+ * Это поддерево перестраивается в идеально сбалансированное за время, линейное от его размера.
+ * Удаление не перестраивает дерево, пока size не станет меньше alpha * maxSize, после чего
+ * перестраивается всё дерево. Поэтому глубина любого узла не больше h(maxSize), поиск - O(log n) в худшем
+ * случае, а вставка и удаление - O(log n) амортизированно.
+ */
+public class ScapegoatTree<E extends Comparable<E>> extends ParentlessTree<E> {
+
+    public static final double DEFAULT_ALPHA = 0.7;
+
+    private final double alpha;
+    private final double logInverseAlpha;
+
+    private int maxSize; //наибольший size с последней перестройки всего дерева
+    private long rebuildCount;
+    private long rebuiltNodes;
+    private Node<E>[] path; //путь вставки: ссылок на родителя нет
+    private final Metrics metrics = Metrics.create(); //null, если метрики выключены
+
+    public ScapegoatTree() {
+        this(null);
+    }
+
+    public ScapegoatTree(Comparator<E> comparator) {
+        this(comparator, DEFAULT_ALPHA);
+    }
+
+    /**
+     * @param alpha - допустимая доля веса одного потомка в поддереве, от 0.5 (почти идеальный баланс,
+     *              частые перестройки) до 1 (редкие перестройки, более высокое дерево)
+     */
+    public ScapegoatTree(Comparator<E> comparator, double alpha) {
+        super(comparator);
+        if (!(alpha > 0.5 && alpha < 1)) {
+            throw new IllegalArgumentException("alpha must be in (0.5, 1): " + alpha);
+        }
+        this.alpha = alpha;
+        this.logInverseAlpha = Math.log(1 / alpha);
+        this.path = newNodes(32);
+    }
+
+    /**
+     * @return наибольшая допустимая глубина узла (у корня 0) в дереве из size узлов
+     */
+    private int depthBound(int size) {
+        return size < 2 ? 0 : (int) Math.floor(Math.log(size) / logInverseAlpha);
+    }
+
+    /**
+     * Вставляет элемент в дерево.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param value элемент который необходимо вставить
+     * @return true, если элемент в дереве отсутствовал
+     */
+    @Override
+    public boolean add(E value) {
+        if (Metrics.ENABLED) metrics.adds.increment();
+        if (root == null) {
+            root = new Node<>(value);
+            size = maxSize = 1;
+            ++modCount;
+            return true;
+        }
+        int depth = 0;
+        Node<E> curr = root;
+        while (true) {
+            int comp = compare(value, curr.value);
+            if (comp == 0) {
+                return false;
+            }
+            if (depth + 1 == path.length) {
+                path = Arrays.copyOf(path, path.length * 2);
+            }
+            path[depth++] = curr;
+            Node<E> next = comp < 0 ? curr.left : curr.right;
+            if (next == null) {
+                Node<E> node = new Node<>(value);
+                if (comp < 0) {
+                    curr.left = node;
+                } else {
+                    curr.right = node;
+                }
+                path[depth] = node;
+                break;
+            }
+            curr = next;
+        }
+        ++size;
+        ++modCount;
+        maxSize = Math.max(maxSize, size);
+        if (depth > depthBound(size)) {
+            rebuildScapegoat(depth);
+        }
+        Arrays.fill(path, 0, depth + 1, null);
+        return true;
+    }
+
+    /**
+     * Поднимается от нового узла path[depth] и перестраивает поддерево первого предка, нарушившего
+     * alpha-баланс по весу. Размер поддерева предка - размер уже пройденного потомка, размер второго
+     * потомка и единица, поэтому подсчёт весов стоит столько же, сколько перестройка.
+     */
+    private void rebuildScapegoat(int depth) {
+        int childSize = 1;
+        for (int i = depth - 1; i >= 0; i--) {
+            Node<E> node = path[i];
+            Node<E> sibling = node.left == path[i + 1] ? node.right : node.left;
+            int nodeSize = childSize + 1 + sizeOf(sibling);
+            if (childSize > alpha * nodeSize) {
+                Node<E> rebuilt = rebuild(node, nodeSize);
+                if (i == 0) {
+                    root = rebuilt;
+                } else if (path[i - 1].left == node) {
+                    path[i - 1].left = rebuilt;
+                } else {
+                    path[i - 1].right = rebuilt;
+                }
+                return;
+            }
+            childSize = nodeSize;
+        }
+        //козёл отпущения есть всегда; сюда можно попасть только из-за округления логарифма
+        root = rebuild(root, size);
+    }
+
+    /**
+     * Удаляет элемент с таким же значением из дерева.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо вставить
+     * @return true, если элемент содержался в дереве
+     */
+    @Override
+    public boolean remove(Object object) {
+        if (Metrics.ENABLED) metrics.removes.increment();
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        Node<E> parent = null;
+        Node<E> curr = root;
+        while (curr != null) {
+            int comp = compare(value, curr.value);
+            if (comp == 0) {
+                break;
+            }
+            parent = curr;
+            curr = comp < 0 ? curr.left : curr.right;
+        }
+        if (curr == null) {
+            return false;
+        }
+        Node<E> replacement;
+        if (curr.left == null) {
+            replacement = curr.right;
+        } else if (curr.right == null) {
+            replacement = curr.left;
+        } else {
+            //наименьший из больших занимает место удаляемого узла
+            Node<E> nextParent = curr;
+            Node<E> next = curr.right;
+            while (next.left != null) {
+                nextParent = next;
+                next = next.left;
+            }
+            if (nextParent != curr) {
+                nextParent.left = next.right;
+                next.right = curr.right;
+            }
+            next.left = curr.left;
+            replacement = next;
+        }
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == curr) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+        --size;
+        ++modCount;
+        if (size < alpha * maxSize) {
+            root = rebuild(root, size);
+            maxSize = size;
+        }
+        return true;
+    }
+
+    /**
+     * Ищет элемент с таким же значением в дереве.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо поискать
+     * @return true, если такой элемент содержится в дереве
+     */
+    @Override
+    public boolean contains(Object object) {
+        if (Metrics.ENABLED) metrics.lookups.increment();
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        Node<E> curr = root;
+        while (curr != null) {
+            int comp = compare(value, curr.value);
+            if (comp == 0) {
+                return true;
+            }
+            curr = comp < 0 ? curr.left : curr.right;
+        }
+        return false;
+    }
+
+    /**
+     * Размер поддерева. Глубина дерева ограничена h(maxSize), поэтому рекурсия неглубокая
+     */
+    private static <E> int sizeOf(Node<E> node) {
+        return node == null ? 0 : 1 + sizeOf(node.left) + sizeOf(node.right);
+    }
+
+    /**
+     * Перестраивает поддерево из count узлов в идеально сбалансированное: узлы выписываются по порядку
+     * в массив и заново связываются делением пополам, новые узлы не создаются. Рекурсия в flatten и link
+     * не глубже высоты дерева, а она ограничена h(maxSize)
+     *
+     * @return новый корень поддерева
+     */
+    private Node<E> rebuild(Node<E> node, int count) {
+        if (count == 0) {
+            return null;
+        }
+        rebuildCount++;
+        rebuiltNodes += count;
+        if (Metrics.ENABLED) metrics.rotations.add(count);
+        Node<E>[] nodes = newNodes(count);
+        flatten(node, nodes, 0);
+        return link(nodes, 0, count);
+    }
+
+    /**
+     * Выписывает поддерево в nodes по порядку, начиная с index
+     *
+     * @return индекс после последнего выписанного узла
+     */
+    private static <E> int flatten(Node<E> node, Node<E>[] nodes, int index) {
+        while (node != null) {
+            index = flatten(node.left, nodes, index);
+            nodes[index++] = node;
+            node = node.right;
+        }
+        return index;
+    }
+
+    private static <E> Node<E> link(Node<E>[] nodes, int from, int to) {
+        if (from == to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        Node<E> node = nodes[middle];
+        node.left = link(nodes, from, middle);
+        node.right = link(nodes, middle + 1, to);
+        return node;
+    }
+
+    private int compare(E v1, E v2) {
+        if (Metrics.ENABLED) metrics.comparisons.increment();
+        return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    @Override
+    public E first() {
+        if (root == null) {
+            throw new NoSuchElementException("first");
+        }
+        Node<E> curr = root;
+        while (curr.left != null) {
+            curr = curr.left;
+        }
+        return curr.value;
+    }
+
+    @Override
+    public E last() {
+        if (root == null) {
+            throw new NoSuchElementException("last");
+        }
+        Node<E> curr = root;
+        while (curr.right != null) {
+            curr = curr.right;
+        }
+        return curr.value;
+    }
+
+    public double getAlpha() {
+        return alpha;
+    }
+
+    /**
+     * @return сколько раз перестраивались поддеревья (в том числе всё дерево после удалений)
+     */
+    public long getRebuildCount() {
+        return rebuildCount;
+    }
+
+    /**
+     * @return сколько узлов перелинковано всеми перестройками; в метриках они учитываются как повороты
+     */
+    public long getRebuiltNodes() {
+        return rebuiltNodes;
+    }
+
+    /**
+     * @return счётчики операций и сравнений; нулевые, если метрики выключены (см. Metrics.ENABLED)
+     */
+    public Metrics getMetrics() {
+        return metrics != null ? metrics : Metrics.DISABLED;
+    }
+
+    /**
+     * @return высота, распределение глубин и ожидаемые сравнения при поиске; граница высоты - h(maxSize) + 1
+     */
+    public TreeStats stats() {
+        return TreeStats.collect(root, null, node -> node.left, node -> node.right, null,
+                size == 0 ? 0 : depthBound(maxSize) + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "ScapegoatTree{size=" + size + ", alpha=" + alpha + "}";
+    }
+
+    /**
+     * Проверяет дерево без рекурсии: порядок значений, размер и глубину - высота не больше h(maxSize) + 1 узлов.
+     * Дерево не должно меняться во время проверки.
+     *
+     * @param pool - пул, по которому делится проверка верхних поддеревьев; null - проверка в текущем потоке
+     */
+    @Override
+    public TreeCheckReport validate(ForkJoinPool pool) {
+        TreeCheckReport report = super.validate(pool);
+        if (report.isBalanced() && size > 0) {
+            int bound = depthBound(maxSize) + 1;
+            if (report.getHeight() > bound) {
+                return TreeCheckReport.violated(report.getNodeCount(), -1, -1,
+                        "Height " + report.getHeight() + " exceeds the alpha-height bound " + bound
+                                + " for maxSize = " + maxSize, "", new Validator<E>(comparator).describe(root));
+            }
+        }
+        return report;
+    }
+}
@@ -0,0 +1,448 @@
+package ru.mail.polis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static ru.mail.polis.ElementCodecs.getVarInt;
+import static ru.mail.polis.ElementCodecs.putVarInt;
+import static ru.mail.polis.ElementCodecs.varIntSize;
+
+/**
+ * Снимки деревьев и хеш-таблиц в компактном двоичном формате.
+ * <p>
+ * Формат (все числа big-endian):
+ * <pre>
+ * заголовок: magic (int), версия (short), вид структуры (byte), резерв (byte),
+ *            количество элементов (long), количество ячеек таблицы (int), размер элемента (int)
+ * тело:      деревья - элементы в порядке возрастания;
+ *            OpenHashTable - для каждой ячейки байт состояния (0 - пусто, 1 - элемент, 2 - удалено) и элемент;
+ *            ChainHashTable - для каждой ячейки длина цепочки (varint) и элементы цепочки
+ * окончание: CRC32 заголовка и тела (long)
+ * </pre>
+ * Элемент переменной длины предваряется своей длиной в формате varint.
+ * <p>
+ * Деревья загружаются построением идеально сбалансированного дерева за O(n), без сравнений.
+ * Хеш-таблицы загружаются по сохранённой раскладке ячеек без вычисления хешей, поэтому
+ * хеш-функция элементов должна давать одинаковые значения в разных запусках JVM
+ * (см. Student.hashCode). Это проверяется при загрузке по первому элементу.
+ * Деревья нужно загружать с тем же компаратором, с которым они сохранялись.
+ */
+public final class Snapshots {
+
+    private static final int MAGIC = 0x534E4150; // "SNAP"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int FOOTER_SIZE = Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private static final byte AVL_TREE = 1;
+    private static final byte RED_BLACK_TREE = 2;
+    private static final byte OPEN_HASH_TABLE = 3;
+    private static final byte CHAIN_HASH_TABLE = 4;
+
+    private static final byte EMPTY_SLOT = 0;
+    private static final byte LIVE_SLOT = 1;
+    private static final byte DELETED_SLOT = 2;
+
+    private Snapshots() {
+        /* empty */
+    }
+
+    public static <E extends Comparable<E>> void save(AVLTree<E> tree, ElementCodec<E> codec, Path file) throws IOException {
+        try (Output<E> out = new Output<>(file, codec)) {
+            out.header(AVL_TREE, tree.size(), 0);
+            tree.forEachInOrder(out::elementUnchecked);
+            out.commit();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public static <E extends Comparable<E>> void save(RedBlackTree<E> tree, ElementCodec<E> codec, Path file) throws IOException {
+        try (Output<E> out = new Output<>(file, codec)) {
+            out.header(RED_BLACK_TREE, tree.size(), 0);
+            tree.forEachInOrder(out::elementUnchecked);
+            out.commit();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public static <E extends OpenHashTableEntity> void save(OpenHashTable<E> table, ElementCodec<E> codec, Path file) throws IOException {
+        try (Output<E> out = new Output<>(file, codec)) {
+            int tableSize = table.getTableSize();
+            out.header(OPEN_HASH_TABLE, table.size(), tableSize);
+            for (int i = 0; i < tableSize; i++) {
+                E value = table.slot(i);
+                if (value != null) {
+                    out.reserve(1).put(LIVE_SLOT);
+                    out.element(value);
+                } else {
+                    out.reserve(1).put(table.isDeleted(i) ? DELETED_SLOT : EMPTY_SLOT);
+                }
+            }
+            out.commit();
+        }
+    }
+
+    public static <E> void save(ChainHashTable<E> table, ElementCodec<E> codec, Path file) throws IOException {
+        try (Output<E> out = new Output<>(file, codec)) {
+            int tableSize = table.getTableSize();
+            out.header(CHAIN_HASH_TABLE, table.size(), tableSize);
+            int[] length = new int[1];
+            for (int i = 0; i < tableSize; i++) {
+                length[0] = 0;
+                table.forEachInBucket(i, value -> length[0]++);
+                putVarInt(length[0], out.reserve(varIntSize(length[0])));
+                table.forEachInBucket(i, out::elementUnchecked);
+            }
+            out.commit();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public static <E extends Comparable<E>> AVLTree<E> loadAVLTree(Path file, ElementCodec<E> codec,
+                                                                  Comparator<E> comparator) throws IOException {
+        try (Input<E> in = new Input<>(file, codec, AVL_TREE)) {
+            AVLTree<E> tree = new AVLTree<>(comparator);
+            tree.buildFromSorted(in.intCount(), in::elementUnchecked);
+            in.finish();
+            return tree;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public static <E extends Comparable<E>> RedBlackTree<E> loadRedBlackTree(Path file, ElementCodec<E> codec,
+                                                                            Comparator<E> comparator) throws IOException {
+        try (Input<E> in = new Input<>(file, codec, RED_BLACK_TREE)) {
+            RedBlackTree<E> tree = new RedBlackTree<>(comparator);
+            tree.buildFromSorted(in.intCount(), in::elementUnchecked);
+            in.finish();
+            return tree;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public static <E extends OpenHashTableEntity> OpenHashTable<E> loadOpenHashTable(Path file, ElementCodec<E> codec) throws IOException {
+        try (Input<E> in = new Input<>(file, codec, OPEN_HASH_TABLE)) {
+            int tableSize = in.tableSize;
+            @SuppressWarnings("unchecked")
+            E[] slots = (E[]) new OpenHashTableEntity[tableSize];
+            boolean[] deleted = new boolean[tableSize];
+            E first = null;
+            for (int i = 0; i < tableSize; i++) {
+                byte state = in.require(1).get();
+                if (state == LIVE_SLOT) {
+                    slots[i] = in.element();
+                    if (first == null) {
+                        first = slots[i];
+                    }
+                } else if (state == DELETED_SLOT) {
+                    deleted[i] = true;
+                } else if (state != EMPTY_SLOT) {
+                    throw new IOException("Corrupted slot state " + state + " in " + file);
+                }
+            }
+            in.finish();
+            OpenHashTable<E> table = OpenHashTable.restore(slots, deleted);
+            checkHashStable(table, first, in.count, file);
+            return table;
+        }
+    }
+
+    public static <E> ChainHashTable<E> loadChainHashTable(Path file, ElementCodec<E> codec) throws IOException {
+        try (Input<E> in = new Input<>(file, codec, CHAIN_HASH_TABLE)) {
+            Object[] first = new Object[1];
+            ChainHashTable<E> table = ChainHashTable.restore(in.tableSize,
+                    idx -> getVarInt(in.requireUnchecked(5)),
+                    () -> {
+                        E value = in.elementUnchecked();
+                        if (first[0] == null) {
+                            first[0] = value;
+                        }
+                        return value;
+                    });
+            in.finish();
+            checkHashStable(table, first[0], in.count, file);
+            return table;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void checkHashStable(Set<?> table, Object first, long count, Path file) throws IOException {
+        if (table.size() != count) {
+            throw new IOException("Snapshot " + file + " declares " + count + " elements, found " + table.size());
+        }
+        if (first != null && !table.contains(first)) {
+            throw new IOException("Element hash codes differ from the ones the snapshot " + file
+                    + " was saved with; reload it by inserting elements one by one");
+        }
+    }
+
+    /**
+     * Буферизованная запись через прямой буфер с подсчётом контрольной суммы.
+     * Запись идёт во временный файл рядом с целевым; commit() сбрасывает его на диск и атомарно
+     * переименовывает поверх целевого, поэтому при сбое посреди записи предыдущий снимок остаётся целым.
+     * close() без commit() удаляет временный файл.
+     */
+    private static final class Output<E> implements Closeable {
+        private final Path file;
+        private final Path temp;
+        private final FileChannel channel;
+        private final ElementCodec<E> codec;
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private boolean committed;
+
+        Output(Path file, ElementCodec<E> codec) throws IOException {
+            this.file = file;
+            this.temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".", ".tmp");
+            try {
+                this.channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            this.codec = codec;
+        }
+
+        void header(byte kind, long count, int tableSize) throws IOException {
+            ByteBuffer buf = reserve(HEADER_SIZE);
+            buf.putInt(MAGIC);
+            buf.putShort(VERSION);
+            buf.put(kind);
+            buf.put((byte) 0);
+            buf.putLong(count);
+            buf.putInt(tableSize);
+            buf.putInt(codec.fixedSize());
+        }
+
+        /**
+         * @return буфер, в котором гарантированно есть bytes свободных байт
+         */
+        ByteBuffer reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+                if (buffer.capacity() < bytes) {
+                    buffer = ByteBuffer.allocateDirect(bytes);
+                }
+            }
+            return buffer;
+        }
+
+        void element(E value) throws IOException {
+            int fixedSize = codec.fixedSize();
+            if (fixedSize != ElementCodec.VARIABLE_SIZE) {
+                codec.encode(value, reserve(fixedSize));
+            } else {
+                int size = codec.encodedSize(value);
+                ByteBuffer buf = reserve(varIntSize(size) + size);
+                putVarInt(size, buf);
+                codec.encode(value, buf);
+            }
+        }
+
+        void elementUnchecked(E value) {
+            try {
+                element(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Дописывает контрольную сумму, сбрасывает файл на диск и заменяет им целевой
+         */
+        void commit() throws IOException {
+            flush();
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+            channel.close();
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                channel.close();
+            } finally {
+                if (!committed) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Буферизованное чтение из файла через прямой буфер с проверкой контрольной суммы
+     */
+    private static final class Input<E> implements Closeable {
+        private final Path file;
+        private final FileChannel channel;
+        private final ElementCodec<E> codec;
+        private final CRC32 crc = new CRC32();
+        private final long bodyEnd;
+        private long filePosition;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        final long count;
+        final int tableSize;
+
+        Input(Path file, ElementCodec<E> codec, byte expectedKind) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.codec = codec;
+            try {
+                this.bodyEnd = channel.size() - FOOTER_SIZE;
+                buffer.flip();
+                if (bodyEnd < HEADER_SIZE) {
+                    throw new IOException("Snapshot " + file + " is truncated");
+                }
+                ByteBuffer header = require(HEADER_SIZE);
+                if (header.getInt() != MAGIC) {
+                    throw new IOException(file + " is not a snapshot");
+                }
+                short version = header.getShort();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported snapshot version " + version + " in " + file);
+                }
+                byte kind = header.get();
+                if (kind != expectedKind) {
+                    throw new IOException("Snapshot " + file + " holds structure kind " + kind + ", expected " + expectedKind);
+                }
+                header.get();
+                this.count = header.getLong();
+                this.tableSize = header.getInt();
+                int fixedSize = header.getInt();
+                if (fixedSize != codec.fixedSize()) {
+                    throw new IOException("Element size mismatch: snapshot has " + fixedSize + ", codec has " + codec.fixedSize());
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        int intCount() throws IOException {
+            if (count > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is too large: " + count);
+            }
+            return (int) count;
+        }
+
+        /**
+         * @return буфер, в котором гарантированно есть bytes непрочитанных байт тела
+         */
+        ByteBuffer require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return buffer;
+            }
+            if (buffer.capacity() < bytes) {
+                ByteBuffer bigger = ByteBuffer.allocateDirect(bytes);
+                bigger.put(buffer);
+                buffer = bigger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < bytes) {
+                int start = buffer.position();
+                int limit = (int) Math.min(buffer.capacity(), start + bodyEnd - filePosition);
+                if (limit <= start) {
+                    throw new IOException("Unexpected end of snapshot " + file);
+                }
+                buffer.limit(limit);
+                int read = channel.read(buffer, filePosition);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of snapshot " + file);
+                }
+                ByteBuffer fresh = buffer.duplicate();
+                fresh.flip();
+                fresh.position(start);
+                crc.update(fresh);
+                filePosition += read;
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        ByteBuffer requireUnchecked(int bytes) {
+            try {
+                return require((int) Math.min(bytes, bodyEnd - filePosition + buffer.remaining()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        E element() throws IOException {
+            int fixedSize = codec.fixedSize();
+            if (fixedSize != ElementCodec.VARIABLE_SIZE) {
+                return codec.decode(require(fixedSize));
+            }
+            int size = getVarInt(requireUnchecked(5));
+            ByteBuffer buf = require(size);
+            int end = buf.position() + size;
+            E value = codec.decode(buf);
+            if (buf.position() != end) {
+                throw new IOException("Codec read " + (buf.position() - end + size) + " bytes of " + size + " in " + file);
+            }
+            return value;
+        }
+
+        E elementUnchecked() {
+            try {
+                return element();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Проверяет, что тело прочитано полностью и контрольная сумма совпадает
+         */
+        void finish() throws IOException {
+            if (buffer.hasRemaining() || filePosition != bodyEnd) {
+                throw new IOException("Trailing data in snapshot " + file);
+            }
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            while (footer.hasRemaining() && channel.read(footer, bodyEnd + footer.position()) >= 0) {
+                /* читаем контрольную сумму */
+            }
+            if (footer.getLong(0) != crc.getValue()) {
+                throw new IOException("Checksum mismatch in snapshot " + file);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
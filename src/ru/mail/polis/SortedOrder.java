@@ -0,0 +1,81 @@
+package ru.mail.polis;
+
+import java.util.Comparator;
+
+/**
+ * Порядок сортировки без перестановки самих элементов: для пакетных операций деревьев, которым нужно
+ * обойти ключи по возрастанию и записать результат на исходное место
+ */
+final class SortedOrder {
+
+    /**
+     * Отрезки короче этого сортируются вставками
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private SortedOrder() {
+        /* empty */
+    }
+
+    /**
+     * Сортировка слиянием массива номеров: устойчивая, O(n log n) сравнений в худшем случае
+     * и n - 1 сравнение на уже упорядоченном входе
+     *
+     * @param order - порядок элементов; null - естественный порядок
+     * @return номера элементов values в порядке возрастания элементов
+     */
+    static <E> int[] of(E[] values, Comparator<? super E> order) {
+        @SuppressWarnings("unchecked")
+        Comparator<? super E> comparator = order != null ? order : (Comparator<? super E>) Comparator.naturalOrder();
+        int[] indices = new int[values.length];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+        if (indices.length > INSERTION_SORT_THRESHOLD) {
+            sort(values, comparator, indices, indices.clone(), 0, indices.length);
+        } else {
+            insertionSort(values, comparator, indices, 0, indices.length);
+        }
+        return indices;
+    }
+
+    /**
+     * Сортирует indices[from, to); buffer[from, to) на входе совпадает с indices и служит местом для слияния
+     */
+    private static <E> void sort(E[] values, Comparator<? super E> comparator, int[] indices, int[] buffer,
+                                 int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(values, comparator, indices, from, to);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        //половины сортируются в buffer и сливаются обратно в indices
+        sort(values, comparator, buffer, indices, from, middle);
+        sort(values, comparator, buffer, indices, middle, to);
+        if (comparator.compare(values[buffer[middle - 1]], values[buffer[middle]]) <= 0) {
+            System.arraycopy(buffer, from, indices, from, to - from);
+            return;
+        }
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            if (right == to || left < middle && comparator.compare(values[buffer[left]], values[buffer[right]]) <= 0) {
+                indices[i] = buffer[left++];
+            } else {
+                indices[i] = buffer[right++];
+            }
+        }
+    }
+
+    private static <E> void insertionSort(E[] values, Comparator<? super E> comparator, int[] indices,
+                                          int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            int index = indices[i];
+            E value = values[index];
+            int j = i - 1;
+            while (j >= from && comparator.compare(values[indices[j]], value) > 0) {
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            indices[j + 1] = index;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package ru.mail.polis;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * Представление диапазона [fromElement, toElement) отсортированного множества.
+ * Все изменения пробрасываются в исходное множество, обход идёт по его итератору,
+ * поэтому гарантии согласованности совпадают с гарантиями исходного множества.
+ * null в качестве границы означает отсутствие ограничения с этой стороны.
+ */
+final class SortedRangeView<E> extends AbstractSet<E> implements SortedSet<E> {
+
+    /**
+     * Множество, умеющее начинать обход с произвольного элемента
+     */
+    interface Source<E> extends SortedSet<E> {
+
+        /**
+         * @param fromElement нижняя граница (включительно), null - с наименьшего элемента
+         * @return итератор по элементам не меньшим fromElement в порядке возрастания
+         */
+        Iterator<E> iteratorFrom(E fromElement);
+    }
+
+    private final Source<E> source;
+    private final E fromElement;
+    private final E toElement;
+
+    SortedRangeView(Source<E> source, E fromElement, E toElement) {
+        this.source = source;
+        this.fromElement = fromElement;
+        this.toElement = toElement;
+        if (fromElement != null && toElement != null && compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E v1, E v2) {
+        Comparator<? super E> comparator = source.comparator();
+        return comparator == null ? ((Comparable<E>) v1).compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    private boolean tooLow(E value) {
+        return fromElement != null && compare(value, fromElement) < 0;
+    }
+
+    private boolean tooHigh(E value) {
+        return toElement != null && compare(value, toElement) >= 0;
+    }
+
+    private boolean inRange(E value) {
+        return !tooLow(value) && !tooHigh(value);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<E> delegate = source.iteratorFrom(fromElement);
+        return new Iterator<E>() {
+            private E next = advance();
+
+            private E advance() {
+                if (delegate.hasNext()) {
+                    E value = delegate.next();
+                    if (!tooHigh(value)) {
+                        return value;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public E next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                E value = next;
+                next = advance();
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public boolean add(E value) {
+        if (!inRange(value)) {
+            throw new IllegalArgumentException("value out of range");
+        }
+        return source.add(value);
+    }
+
+    @Override
+    public boolean remove(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        return inRange(value) && source.remove(value);
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        return inRange(value) && source.contains(value);
+    }
+
+    /**
+     * Размер диапазона считается обходом, то есть за O(k)
+     */
+    @Override
+    public int size() {
+        int count = 0;
+        for (Iterator<E> it = iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !iterator().hasNext();
+    }
+
+    @Override
+    public E first() {
+        Iterator<E> it = iterator();
+        if (!it.hasNext()) {
+            throw new NoSuchElementException("first");
+        }
+        return it.next();
+    }
+
+    @Override
+    public E last() {
+        Iterator<E> it = iterator();
+        if (!it.hasNext()) {
+            throw new NoSuchElementException("last");
+        }
+        E last = it.next();
+        while (it.hasNext()) {
+            last = it.next();
+        }
+        return last;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return source.comparator();
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        checkBound(fromElement);
+        checkBound(toElement);
+        return new SortedRangeView<>(source, fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        checkBound(toElement);
+        return new SortedRangeView<>(source, fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        checkBound(fromElement);
+        return new SortedRangeView<>(source, fromElement, toElement);
+    }
+
+    private void checkBound(E bound) {
+        if (tooLow(bound) || (toElement != null && compare(bound, toElement) > 0)) {
+            throw new IllegalArgumentException("bound out of range");
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package ru.mail.polis;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/**
+ * Расширяющееся (splay) дерево Слейтора и Тарьяна с расширением сверху вниз.
+ * <p>
+ * Каждая операция поднимает найденный узел (или последний узел на пути поиска) в корень, поэтому часто
+ * запрашиваемые ключи держатся у корня, а амортизированная стоимость операции - O(log n). При скошенном
+ * доступе (небольшая доля ключей получает почти все запросы) поиск горячего ключа проходит несколько
+ * уровней вместо полной высоты AVL- или красно-чёрного дерева. Ссылок на родителя у узлов нет.
+ * <p>
+ * Поиск здесь тоже перестраивает дерево, поэтому дерево нельзя читать из нескольких потоков без
+ * блокировки. В режиме ReadMode.SEMI_SPLAY поиск делает полурасширение: путь до найденного узла примерно
+ * вдвое укорачивается, а поворотов и записей в узлы примерно вдвое меньше, чем при полном расширении.
+ * Вставка и удаление всегда расширяют полностью.
+ * <p>
+ * Баланса у дерева нет, поэтому checkBalanced проверяет только порядок значений и размер.
+ */
+public class SplayTree<E extends Comparable<E>> extends ParentlessTree<E> {
+
+    /**
+     * Что делает с деревом поиск (contains)
+     */
+    public enum ReadMode {
+        /**
+         * Найденный узел поднимается в корень
+         */
+        SPLAY,
+        /**
+         * Полурасширение снизу вверх: на каждой паре уровней один поворот (зиг-зиг) или два (зиг-заг),
+         * после которых подъём продолжается с узла, занявшего место деда
+         */
+        SEMI_SPLAY
+    }
+
+    private final ReadMode readMode;
+
+    private long rotationCount;
+    private final Node<E> header = new Node<>(null); //временные левое и правое деревья при расширении
+    private Node<E>[] path; //путь поиска для полурасширения
+    private final Metrics metrics = Metrics.create(); //null, если метрики выключены
+
+    public SplayTree() {
+        this(null);
+    }
+
+    public SplayTree(Comparator<E> comparator) {
+        this(comparator, ReadMode.SPLAY);
+    }
+
+    public SplayTree(Comparator<E> comparator, ReadMode readMode) {
+        super(comparator);
+        this.readMode = readMode;
+        this.path = newNodes(32);
+    }
+
+    /**
+     * Вставляет элемент в дерево.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param value элемент который необходимо вставить
+     * @return true, если элемент в дереве отсутствовал
+     */
+    @Override
+    public boolean add(E value) {
+        if (Metrics.ENABLED) metrics.adds.increment();
+        if (root == null) {
+            root = new Node<>(value);
+            ++size;
+            ++modCount;
+            return true;
+        }
+        root = splay(root, value);
+        int comp = compare(value, root.value);
+        if (comp == 0) {
+            return false;
+        }
+        // новый узел становится корнем, старый корень - его потомком
+        Node<E> node = new Node<>(value);
+        if (comp < 0) {
+            node.left = root.left;
+            node.right = root;
+            root.left = null;
+        } else {
+            node.right = root.right;
+            node.left = root;
+            root.right = null;
+        }
+        root = node;
+        ++size;
+        ++modCount;
+        return true;
+    }
+
+    /**
+     * Удаляет элемент с таким же значением из дерева.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо вставить
+     * @return true, если элемент содержался в дереве
+     */
+    @Override
+    public boolean remove(Object object) {
+        if (Metrics.ENABLED) metrics.removes.increment();
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        if (root == null) {
+            return false;
+        }
+        root = splay(root, value);
+        if (compare(value, root.value) != 0) {
+            return false;
+        }
+        if (root.left == null) {
+            root = root.right;
+        } else {
+            // наибольший узел левого поддерева поднимается в его корень, правого потомка у него нет
+            Node<E> right = root.right;
+            root = splay(root.left, value);
+            root.right = right;
+        }
+        --size;
+        ++modCount;
+        return true;
+    }
+
+    /**
+     * Ищет элемент с таким же значением в дереве и поднимает его (или последний узел пути) к корню.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо поискать
+     * @return true, если такой элемент содержится в дереве
+     */
+    @Override
+    public boolean contains(Object object) {
+        if (Metrics.ENABLED) metrics.lookups.increment();
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        if (root == null) {
+            return false;
+        }
+        if (readMode == ReadMode.SPLAY) {
+            root = splay(root, value);
+            return compare(value, root.value) == 0;
+        }
+        int depth = -1;
+        Node<E> curr = root;
+        int comp = 0;
+        while (curr != null) {
+            if (++depth == path.length) {
+                path = Arrays.copyOf(path, path.length * 2);
+            }
+            path[depth] = curr;
+            comp = compare(value, curr.value);
+            if (comp == 0) break;
+            curr = comp < 0 ? curr.left : curr.right;
+        }
+        semiSplay(depth);
+        Arrays.fill(path, 0, depth + 1, null);
+        return comp == 0;
+    }
+
+    /**
+     * Расширение сверху вниз: спуск к value, при котором пройденные узлы раскладываются в левое
+     * (меньшие value) и правое (большие) деревья, а два шага в одну сторону сопровождаются поворотом.
+     * В конце последний узел пути становится корнем, а левое и правое деревья - его поддеревьями.
+     *
+     * @return новый корень: узел со значением value или последний узел пути поиска
+     */
+    private Node<E> splay(Node<E> node, E value) {
+        Node<E> left = header;  // наибольший узел левого дерева
+        Node<E> right = header; // наименьший узел правого дерева
+        header.left = header.right = null;
+        while (true) {
+            int comp = compare(value, node.value);
+            if (comp < 0) {
+                if (node.left == null) break;
+                if (compare(value, node.left.value) < 0) {
+                    node = rotateRight(node);
+                    if (node.left == null) break;
+                }
+                right.left = node;
+                right = node;
+                node = node.left;
+                countLink();
+            } else if (comp > 0) {
+                if (node.right == null) break;
+                if (compare(value, node.right.value) > 0) {
+                    node = rotateLeft(node);
+                    if (node.right == null) break;
+                }
+                left.right = node;
+                left = node;
+                node = node.right;
+                countLink();
+            } else {
+                break;
+            }
+        }
+        left.right = node.left;
+        right.left = node.right;
+        node.left = header.right;
+        node.right = header.left;
+        header.left = header.right = null;
+        ++shapeCount;
+        return node;
+    }
+
+    /**
+     * Полурасширение снизу вверх по пути path[0..depth]: узел path[depth] поднимается на два уровня за шаг,
+     * в зиг-зиг случае поворачивается только родитель, и подъём продолжается с него
+     */
+    private void semiSplay(int depth) {
+        if (depth > 0) {
+            ++shapeCount;
+        }
+        while (depth > 0) {
+            Node<E> node = path[depth];
+            Node<E> parent = path[depth - 1];
+            if (depth == 1) {
+                root = parent.left == node ? rotateRight(parent) : rotateLeft(parent);
+                return;
+            }
+            Node<E> grand = path[depth - 2];
+            Node<E> top;
+            boolean nodeLeft = parent.left == node;
+            boolean parentLeft = grand.left == parent;
+            if (nodeLeft == parentLeft) {
+                // зиг-зиг: родитель занимает место деда
+                top = parentLeft ? rotateRight(grand) : rotateLeft(grand);
+            } else {
+                // зиг-заг: узел занимает место деда
+                if (nodeLeft) {
+                    grand.right = rotateRight(parent);
+                    top = rotateLeft(grand);
+                } else {
+                    grand.left = rotateLeft(parent);
+                    top = rotateRight(grand);
+                }
+            }
+            depth -= 2;
+            if (depth == 0) {
+                root = top;
+            } else if (path[depth - 1].left == grand) {
+                path[depth - 1].left = top;
+            } else {
+                path[depth - 1].right = top;
+            }
+            path[depth] = top;
+        }
+    }
+
+    /**
+     * Перенос узла в левое или правое дерево при расширении сверху вниз: при расширении снизу вверх
+     * на его месте был бы поворот, поэтому он тоже считается поворотом
+     */
+    private void countLink() {
+        rotationCount++;
+        if (Metrics.ENABLED) metrics.rotations.increment();
+    }
+
+    /**
+     * @return правый потомок node, ставший корнем поддерева
+     */
+    private Node<E> rotateLeft(Node<E> node) {
+        rotationCount++;
+        if (Metrics.ENABLED) metrics.rotations.increment();
+        Node<E> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        return right;
+    }
+
+    /**
+     * @return левый потомок node, ставший корнем поддерева
+     */
+    private Node<E> rotateRight(Node<E> node) {
+        rotationCount++;
+        if (Metrics.ENABLED) metrics.rotations.increment();
+        Node<E> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        return left;
+    }
+
+    /**
+     * Ищет наименьший элемент в дереве и поднимает его в корень
+     * @return Возвращает наименьший элемент в дереве
+     * @throws NoSuchElementException если дерево пустое
+     */
+    @Override
+    public E first() {
+        if (size == 0) {
+            throw new NoSuchElementException("first");
+        }
+        Node<E> curr = root;
+        while (curr.left != null) {
+            curr = curr.left;
+        }
+        root = splay(root, curr.value);
+        return root.value;
+    }
+
+    /**
+     * Ищет наибольший элемент в дереве и поднимает его в корень
+     * @return Возвращает наибольший элемент в дереве
+     * @throws NoSuchElementException если дерево пустое
+     */
+    @Override
+    public E last() {
+        if (size == 0) {
+            throw new NoSuchElementException("last");
+        }
+        Node<E> curr = root;
+        while (curr.right != null) {
+            curr = curr.right;
+        }
+        root = splay(root, curr.value);
+        return root.value;
+    }
+
+    private int compare(E v1, E v2) {
+        if (Metrics.ENABLED) metrics.comparisons.increment();
+        return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    public ReadMode getReadMode() {
+        return readMode;
+    }
+
+    /**
+     * @return сколько поворотов сделано за время жизни дерева, в том числе при поиске;
+     * перенос узла в левое или правое дерево при расширении сверху вниз тоже считается поворотом
+     */
+    public long getRotationCount() {
+        return rotationCount;
+    }
+
+    /**
+     * @return счётчики операций, сравнений и поворотов; нулевые, если метрики выключены (см. Metrics.ENABLED)
+     */
+    public Metrics getMetrics() {
+        return metrics != null ? metrics : Metrics.DISABLED;
+    }
+
+    /**
+     * @return высота, распределение глубин и ожидаемые сравнения при поиске на текущей форме дерева
+     */
+    public TreeStats stats() {
+        return TreeStats.collect(root, null, node -> node.left, node -> node.right, null, size);
+    }
+
+    @Override
+    public String toString() {
+        return "SplayTree{size=" + size + ", readMode=" + readMode + "}";
+    }
+}
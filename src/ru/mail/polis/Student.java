@@ -1,6 +1,7 @@
 package ru.mail.polis;
 
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by Nechaev Mikhail
@@ -8,7 +9,7 @@ import java.time.LocalDate;
  */
 public class Student extends CheckedOpenHashTableEntity {
 
-    private static int counter = 0;
+    private static final AtomicLong counter = new AtomicLong();
 
     //NotNullable поля
     private long id; //Уникальный идентификатор студента
@@ -26,8 +27,15 @@ public class Student extends CheckedOpenHashTableEntity {
     @Override
     public int hashCode(int tableSize, int probId) throws IllegalArgumentException {
         if (probId < 0 || probId >= tableSize) throw new IllegalArgumentException();
-        int hash1 = Math.abs(hashCode()) % tableSize;
-        int hash2 = 1 + (Math.abs(hashCode2()) % (tableSize - 1));
+        return probe(hashCode(), hashCode2(), tableSize, probId);
+    }
+
+    /**
+     * Двойное хеширование по двум уже посчитанным хешам, общее для Student и StudentRecord
+     */
+    static int probe(int hashCode, int hashCode2, int tableSize, int probId) {
+        int hash1 = Math.abs(hashCode) % tableSize;
+        int hash2 = 1 + (Math.abs(hashCode2) % (tableSize - 1));
         if (hash2 % 2 == 0) hash2++;
         return (hash1 + probId * hash2) % tableSize;
     }
@@ -37,7 +45,7 @@ public class Student extends CheckedOpenHashTableEntity {
     }
 
     public Student(String firstName, String lastName, Gender gender, LocalDate birthday, int groupId, int yearOfAdmission) {
-        this.id = counter++;
+        this.id = counter.getAndIncrement();
         this.firstName = firstName;
         this.lastName = lastName;
         this.gender = gender;
@@ -54,6 +62,38 @@ public class Student extends CheckedOpenHashTableEntity {
         this.mobile = mobile;
     }
 
+    /**
+     * Восстанавливает студента с уже выданным идентификатором (например, при чтении с диска).
+     * Счётчик сдвигается за id, чтобы новые студенты в этой JVM не получили восстановленный идентификатор
+     */
+    Student(long id, String firstName, String lastName, Gender gender, LocalDate birthday, int groupId,
+            int yearOfAdmission, String photoReference, String email, String mobile) {
+        //сначала чтение: зарезервированные StudentGenerator id уже меньше счётчика, запись не нужна
+        if (counter.get() <= id) {
+            counter.accumulateAndGet(id + 1, Math::max);
+        }
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.gender = gender;
+        this.birthday = birthday;
+        this.groupId = groupId;
+        this.yearOfAdmission = yearOfAdmission;
+        this.photoReference = photoReference;
+        this.email = email;
+        this.mobile = mobile;
+    }
+
+    /**
+     * Резервирует count подряд идущих идентификаторов, безопасно для нескольких потоков
+     *
+     * @return первый зарезервированный идентификатор
+     */
+    static long reserveIds(long count) {
+        if (count < 0) throw new IllegalArgumentException("count < 0");
+        return counter.getAndAdd(count);
+    }
+
     public long getId() {
         return id;
     }
@@ -131,7 +171,7 @@ public class Student extends CheckedOpenHashTableEntity {
         int result = (int) (id ^ (id >>> 32));
         result = 31 * result + firstName.hashCode();
         result = 31 * result + lastName.hashCode();
-        result = 31 * result + gender.hashCode();
+        result = 31 * result + gender.ordinal(); //не hashCode(): он у enum свой в каждом запуске JVM
         result = 31 * result + birthday.hashCode();
         result = 31 * result + groupId;
         result = 31 * result + yearOfAdmission;
@@ -140,11 +180,11 @@ public class Student extends CheckedOpenHashTableEntity {
         result = 31 * result + (mobile != null ? mobile.hashCode() : 0);
         return result;
     }
-    private int hashCode2() {
+    int hashCode2() {
         int result = (int) (id ^ (id >>> 32));
         result = 17 * result + firstName.hashCode();
         result = 17 * result + lastName.hashCode();
-        result = 17 * result + gender.hashCode();
+        result = 17 * result + gender.ordinal();
         result = 17 * result + birthday.hashCode();
         result = 17 * result + groupId;
         result = 17 * result + yearOfAdmission;
@@ -0,0 +1,70 @@
+package ru.mail.polis;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+import static ru.mail.polis.ElementCodecs.getString;
+import static ru.mail.polis.ElementCodecs.putString;
+import static ru.mail.polis.ElementCodecs.stringSize;
+
+/**
+ * Кодек студента переменной длины: фиксированная часть (id, дата рождения в днях от эпохи,
+ * группа, год поступления, пол) и строки в UTF-8 с длиной в формате varint.
+ * Идентификатор сохраняется, поэтому раскодированный студент равен исходному.
+ */
+public final class StudentCodec implements ElementCodec<Student> {
+
+    public static final StudentCodec INSTANCE = new StudentCodec();
+
+    private static final int FIXED_PART = Long.BYTES + Integer.BYTES + Integer.BYTES + Short.BYTES + Byte.BYTES;
+    private static final Student.Gender[] GENDERS = Student.Gender.values();
+
+    private StudentCodec() {
+        /* empty */
+    }
+
+    @Override
+    public int fixedSize() {
+        return VARIABLE_SIZE;
+    }
+
+    @Override
+    public int encodedSize(Student value) {
+        return FIXED_PART
+                + stringSize(value.getFirstName())
+                + stringSize(value.getLastName())
+                + stringSize(value.getPhotoReference())
+                + stringSize(value.getEmail())
+                + stringSize(value.getMobile());
+    }
+
+    @Override
+    public void encode(Student value, ByteBuffer buffer) {
+        buffer.putLong(value.getId());
+        buffer.putInt((int) value.getBirthday().toEpochDay());
+        buffer.putInt(value.getGroupId());
+        buffer.putShort((short) value.getYearOfAdmission());
+        buffer.put((byte) value.getGender().ordinal());
+        putString(value.getFirstName(), buffer);
+        putString(value.getLastName(), buffer);
+        putString(value.getPhotoReference(), buffer);
+        putString(value.getEmail(), buffer);
+        putString(value.getMobile(), buffer);
+    }
+
+    @Override
+    public Student decode(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        LocalDate birthday = LocalDate.ofEpochDay(buffer.getInt());
+        int groupId = buffer.getInt();
+        int yearOfAdmission = buffer.getShort();
+        Student.Gender gender = GENDERS[buffer.get()];
+        String firstName = getString(buffer);
+        String lastName = getString(buffer);
+        String photoReference = getString(buffer);
+        String email = getString(buffer);
+        String mobile = getString(buffer);
+        return new Student(id, firstName, lastName, gender, birthday, groupId, yearOfAdmission,
+                photoReference, email, mobile);
+    }
+}
@@ -0,0 +1,178 @@
+package ru.mail.polis;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import ru.mail.polis.Student.Gender;
+
+import static ru.mail.polis.SimpleStudentGenerator.EMAIL_SUFFIX;
+import static ru.mail.polis.SimpleStudentGenerator.MAX_LETTER_CODE;
+import static ru.mail.polis.SimpleStudentGenerator.MAX_YEARS_AFTER_ADMISSION;
+import static ru.mail.polis.SimpleStudentGenerator.MAX_YEARS_AFTER_BIRTHDAY;
+import static ru.mail.polis.SimpleStudentGenerator.MIN_GROUP_ID;
+import static ru.mail.polis.SimpleStudentGenerator.MIN_LETTER_CODE;
+import static ru.mail.polis.SimpleStudentGenerator.MIN_PHONE_NUMBER;
+import static ru.mail.polis.SimpleStudentGenerator.MIN_YEAR_OF_ADMISSION;
+import static ru.mail.polis.SimpleStudentGenerator.MIN_YEAR_OF_BIRTHDAY;
+import static ru.mail.polis.SimpleStudentGenerator.URL_PREFIX;
+import static ru.mail.polis.SimpleStudentGenerator.femaleFirstNames;
+import static ru.mail.polis.SimpleStudentGenerator.lastNames;
+import static ru.mail.polis.SimpleStudentGenerator.maleFirstNames;
+
+/**
+ * Воспроизводимый генератор студентов для параллельной загрузки.
+ * <p>
+ * Распределение полей то же, что у SimpleStudentGenerator, но вместо общего Random каждый блок
+ * из BLOCK_SIZE студентов получает свой SplittableRandom, посеянный от (seed, номер блока).
+ * Spliterator делится только по границам блоков, поэтому поток с одним seed даёт одних и тех же студентов
+ * в одном и том же порядке при любом разбиении, в том числе в parallel().
+ * <p>
+ * Идентификаторы для всего потока резервируются одним атомарным шагом, студент с номером i
+ * получает id = первый + i. Разные потоки и генераторы не пересекаются по id,
+ * а внутри потока id отличаются от запуска к запуску только сдвигом.
+ */
+public final class StudentGenerator {
+
+    static final int BLOCK_SIZE = 1024;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final int EMAIL_LETTERS = 10;
+    private static final int MIN_PHOTO_ID = 1000000;
+
+    private final long seed;
+
+    public StudentGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return последовательный поток из count студентов; для параллельной генерации вызовите parallel()
+     */
+    public Stream<Student> stream(long count) {
+        return StreamSupport.stream(spliterator(count), false);
+    }
+
+    /**
+     * Резервирует count идентификаторов и возвращает делимый Spliterator по студентам
+     */
+    public Spliterator<Student> spliterator(long count) {
+        long firstId = Student.reserveIds(count);
+        return new StudentSpliterator(0, count, firstId, null);
+    }
+
+    /**
+     * Зерно блока пропускается через финализатор: SplittableRandom сам прибавляет GOLDEN_GAMMA на каждом шаге,
+     * поэтому зёрна, отличающиеся на кратное GOLDEN_GAMMA, дали бы соседним блокам сдвинутые копии одной
+     * последовательности и одинаковых студентов
+     */
+    private SplittableRandom blockRandom(long block) {
+        return new SplittableRandom(mix64(seed + (block + 1) * GOLDEN_GAMMA));
+    }
+
+    /**
+     * Финализатор Stafford (вариант 13), тот же, что в SplittableRandom
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static Student generate(SplittableRandom random, long id) {
+        Gender gender = random.nextBoolean() ? Gender.MALE : Gender.FEMALE;
+        String[] firstNames = gender == Gender.MALE ? maleFirstNames : femaleFirstNames;
+        String firstName = firstNames[random.nextInt(firstNames.length)];
+        String lastName = lastNames[random.nextInt(lastNames.length)];
+        LocalDate birthday = LocalDate.of(MIN_YEAR_OF_BIRTHDAY.getYear() + random.nextInt(MAX_YEARS_AFTER_BIRTHDAY + 1),
+                1 + random.nextInt(12), 1 + random.nextInt(28));
+        int groupId = MIN_GROUP_ID + random.nextInt(100);
+        int yearOfAdmission = MIN_YEAR_OF_ADMISSION.getYear() + random.nextInt(MAX_YEARS_AFTER_ADMISSION + 1);
+        String photoReference = random.nextBoolean() ? URL_PREFIX + (MIN_PHOTO_ID + random.nextInt(MIN_PHOTO_ID)) : null;
+        String email = random.nextBoolean() ? email(random) : null;
+        String mobile = random.nextBoolean() ? Integer.toString(MIN_PHONE_NUMBER + random.nextInt(MIN_PHONE_NUMBER)) : null;
+        return new Student(id, firstName, lastName, gender, birthday, groupId, yearOfAdmission, photoReference, email, mobile);
+    }
+
+    /**
+     * Собирает адрес в один массив символов: одна строка вместо StringBuilder и лямбды на символ
+     */
+    private static String email(SplittableRandom random) {
+        char[] chars = new char[EMAIL_LETTERS + EMAIL_SUFFIX.length()];
+        for (int i = 0; i < EMAIL_LETTERS; i++) {
+            chars[i] = (char) random.nextInt(MIN_LETTER_CODE, MAX_LETTER_CODE + 1);
+        }
+        EMAIL_SUFFIX.getChars(0, EMAIL_SUFFIX.length(), chars, EMAIL_LETTERS);
+        return new String(chars);
+    }
+
+    /**
+     * Студенты с номерами [index, fence). Если index не на границе блока, random продолжает начатый блок
+     */
+    private final class StudentSpliterator implements Spliterator<Student> {
+        private long index;
+        private final long fence;
+        private final long firstId;
+        private SplittableRandom random;
+
+        StudentSpliterator(long index, long fence, long firstId, SplittableRandom random) {
+            this.index = index;
+            this.fence = fence;
+            this.firstId = firstId;
+            this.random = random;
+        }
+
+        private Student next() {
+            if (random == null || index % BLOCK_SIZE == 0) {
+                random = blockRandom(index / BLOCK_SIZE);
+            }
+            Student student = generate(random, firstId + index);
+            index++;
+            return student;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Student> action) {
+            if (index >= fence) {
+                return false;
+            }
+            action.accept(next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Student> action) {
+            while (index < fence) {
+                action.accept(next());
+            }
+        }
+
+        /**
+         * Делит пополам по границе блока. Начатый блок остаётся в первой половине вместе с его random
+         */
+        @Override
+        public Spliterator<Student> trySplit() {
+            long start = random == null ? index : (index / BLOCK_SIZE + 1) * BLOCK_SIZE;
+            long middle = (start + (fence - start) / 2) / BLOCK_SIZE * BLOCK_SIZE;
+            if (middle <= index || middle >= fence) {
+                return null;
+            }
+            Spliterator<Student> prefix = new StudentSpliterator(index, middle, firstId, random);
+            index = middle;
+            random = null;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE | DISTINCT;
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package ru.mail.polis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import ru.mail.polis.IndexedStudentSet.Field;
+import ru.mail.polis.IndexedStudentSet.Index;
+
+/**
+ * Конъюнктивный запрос к IndexedStudentSet: "группа 1042 И поступил в 2015 И родился после 1995".
+ * <p>
+ * План строится при каждом вызове iterator():
+ * <ol>
+ * <li>для каждого условия по индексированному полю оценивается число подходящих записей
+ * (подсчётом по индексу, но не больше ESTIMATE_LIMIT и не дальше, чем в CURSOR_RATIO раз от лучшей
+ * оценки), условия сортируются по этой оценке;</li>
+ * <li>самое избирательное условие ведущее, остальные становятся курсорами по id, если их оценка
+ * не больше чем в CURSOR_RATIO раз хуже ведущего, иначе проверяются на готовом студенте:
+ * проверка поля дешевле seek, а пропускать записи курсор может, только если его выборка сравнима с ведущей;</li>
+ * <li>курсор по равенству идёт прямо по дереву, где записи (значение, id) с одним значением упорядочены по id;
+ * диапазон с оценкой не больше ESTIMATE_LIMIT выгружается в массив id, отсортированный по id;</li>
+ * <li>курсоры пересекаются leapfrog-join: отстающий курсор догоняет наибольший id через seek.
+ * Seek сначала делает несколько шагов вперёд, а если не догнал - спускается в дерево за ceiling
+ * (в массиве - экспоненциальный поиск с последующим бинарным).</li>
+ * </ol>
+ * Результат выдаётся лениво, limit останавливает перебор. Студенты идут по возрастанию id,
+ * кроме случая, когда ведущим оказался широкий диапазон: тогда в порядке его индекса.
+ * Условия по неиндексированным полям проверяются на каждом кандидате; если индексов нет совсем,
+ * просматриваются все студенты.
+ */
+public class StudentQuery implements Iterable<Student> {
+
+    static final int ESTIMATE_LIMIT = 4096;
+    static final int CURSOR_RATIO = 4;
+    private static final int GALLOP_STEPS = 8;
+
+    private final IndexedStudentSet students;
+    private final List<Condition<?>> conditions = new ArrayList<>();
+    private long limit = Long.MAX_VALUE;
+
+    public StudentQuery(IndexedStudentSet students) {
+        this.students = students;
+    }
+
+    public <K extends Comparable<? super K>> StudentQuery whereEquals(Field<K> field, K value) {
+        conditions.add(new Condition<>(field, value, value));
+        return this;
+    }
+
+    public <K extends Comparable<? super K>> StudentQuery whereBetween(Field<K> field, K fromInclusive, K toInclusive) {
+        conditions.add(new Condition<>(field, fromInclusive, toInclusive));
+        return this;
+    }
+
+    public <K extends Comparable<? super K>> StudentQuery whereAtLeast(Field<K> field, K fromInclusive) {
+        conditions.add(new Condition<>(field, fromInclusive, null));
+        return this;
+    }
+
+    public <K extends Comparable<? super K>> StudentQuery whereAtMost(Field<K> field, K toInclusive) {
+        conditions.add(new Condition<>(field, null, toInclusive));
+        return this;
+    }
+
+    public StudentQuery limit(long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit < 0");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    @Override
+    public Iterator<Student> iterator() {
+        return plan().execute();
+    }
+
+    public Stream<Student> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.NONNULL | Spliterator.DISTINCT | Spliterator.ORDERED), false);
+    }
+
+    /**
+     * @return описание плана: курсоры в порядке избирательности и проверяемые условия
+     */
+    public String explain() {
+        return plan().toString();
+    }
+
+    /**
+     * Условие field в [from, to], null - граница отсутствует
+     */
+    private static final class Condition<K extends Comparable<? super K>> {
+        final Field<K> field;
+        final K from;
+        final K to;
+        Index<K> index;
+        int estimate;
+
+        Condition(Field<K> field, K from, K to) {
+            this.field = field;
+            this.from = from;
+            this.to = to;
+        }
+
+        boolean isEquality() {
+            return from != null && to != null && from.compareTo(to) == 0;
+        }
+
+        boolean inRange(K value) {
+            return (from == null || value.compareTo(from) >= 0) && (to == null || value.compareTo(to) <= 0);
+        }
+
+        boolean test(Student student) {
+            return inRange(field.get(student));
+        }
+
+        /**
+         * Считает записи индекса в диапазоне, но не больше limit + 1
+         */
+        void estimate(IndexedStudentSet students, int limit) {
+            index = students.getIndex(field);
+            if (index == null) {
+                estimate = Integer.MAX_VALUE;
+                return;
+            }
+            estimate = 0;
+            for (Iterator<IndexEntry<K>> it = index.entriesFrom(from, Long.MIN_VALUE);
+                 it.hasNext() && estimate <= limit; estimate++) {
+                K key = it.next().key;
+                if (to != null && key.compareTo(to) > 0) {
+                    break;
+                }
+            }
+        }
+
+        Cursor cursor() {
+            if (isEquality()) {
+                return new TreeCursor<>(index, from);
+            }
+            List<Student> matched = new ArrayList<>(estimate);
+            for (Iterator<IndexEntry<K>> it = index.entriesFrom(from, Long.MIN_VALUE); it.hasNext(); ) {
+                IndexEntry<K> entry = it.next();
+                if (to != null && entry.key.compareTo(to) > 0) {
+                    break;
+                }
+                matched.add(entry.student);
+            }
+            matched.sort(Comparator.comparingLong(Student::getId));
+            return new ArrayCursor(matched);
+        }
+
+        @Override
+        public String toString() {
+            String range = isEquality() ? field + " = " + from
+                    : field + " in [" + (from == null ? "-inf" : from) + ", " + (to == null ? "+inf" : to) + "]";
+            return range + (index == null ? " (no index)" : " (~" + estimate + ")");
+        }
+    }
+
+    /**
+     * Курсор по возрастающим id студентов, подходящих под одно условие
+     */
+    private interface Cursor {
+        boolean atEnd();
+
+        long id();
+
+        Student student();
+
+        void next();
+
+        /**
+         * Переходит к первому id, не меньшему target
+         */
+        void seek(long target);
+    }
+
+    /**
+     * Курсор по записям (key, id) с фиксированным key: они лежат в дереве подряд и упорядочены по id
+     */
+    private static final class TreeCursor<K extends Comparable<? super K>> implements Cursor {
+        private final Index<K> index;
+        private final K key;
+        private Iterator<IndexEntry<K>> entries;
+        private IndexEntry<K> current;
+
+        TreeCursor(Index<K> index, K key) {
+            this.index = index;
+            this.key = key;
+            this.entries = index.entriesFrom(key, Long.MIN_VALUE);
+            next();
+        }
+
+        @Override
+        public boolean atEnd() {
+            return current == null;
+        }
+
+        @Override
+        public long id() {
+            return current.id;
+        }
+
+        @Override
+        public Student student() {
+            return current.student;
+        }
+
+        @Override
+        public void next() {
+            current = null;
+            if (entries.hasNext()) {
+                IndexEntry<K> entry = entries.next();
+                if (entry.key.compareTo(key) == 0) {
+                    current = entry;
+                }
+            }
+        }
+
+        @Override
+        public void seek(long target) {
+            for (int i = 0; i < GALLOP_STEPS && current != null && current.id < target; i++) {
+                next();
+            }
+            if (current != null && current.id < target) {
+                entries = index.entriesFrom(key, target);
+                next();
+            }
+        }
+    }
+
+    /**
+     * Курсор по выгруженному диапазону, отсортированному по id
+     */
+    private static final class ArrayCursor implements Cursor {
+        private final Student[] students;
+        private final long[] ids;
+        private int pos;
+
+        ArrayCursor(List<Student> sorted) {
+            this.students = sorted.toArray(new Student[0]);
+            this.ids = new long[students.length];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = students[i].getId();
+            }
+        }
+
+        @Override
+        public boolean atEnd() {
+            return pos >= ids.length;
+        }
+
+        @Override
+        public long id() {
+            return ids[pos];
+        }
+
+        @Override
+        public Student student() {
+            return students[pos];
+        }
+
+        @Override
+        public void next() {
+            pos++;
+        }
+
+        /**
+         * Экспоненциальный поиск от текущей позиции, затем бинарный в найденном окне
+         */
+        @Override
+        public void seek(long target) {
+            if (atEnd() || ids[pos] >= target) {
+                return;
+            }
+            int low = pos;
+            int step = 1;
+            while (low + step < ids.length && ids[low + step] < target) {
+                low += step;
+                step <<= 1;
+            }
+            int high = Math.min(low + step, ids.length);
+            int found = Arrays.binarySearch(ids, low + 1, high, target);
+            pos = found >= 0 ? found : -found - 1;
+        }
+    }
+
+    private Plan plan() {
+        List<Condition<?>> ordered = new ArrayList<>(conditions);
+        //дальше лучшего в CURSOR_RATIO раз считать незачем: такое условие всё равно станет остаточным
+        int cap = ESTIMATE_LIMIT;
+        for (Condition<?> condition : ordered) {
+            condition.estimate(students, cap);
+            if (condition.estimate <= cap) {
+                cap = (int) Math.min(cap, (long) Math.max(condition.estimate, 1) * CURSOR_RATIO);
+            }
+        }
+        //при равной оценке равенство лучше: его курсор не требует выгрузки
+        ordered.sort(Comparator.comparingInt((Condition<?> condition) -> condition.estimate)
+                .thenComparing(condition -> !condition.isEquality()));
+        Plan plan = new Plan(limit);
+        Condition<?> driver = ordered.isEmpty() || ordered.get(0).index == null ? null : ordered.get(0);
+        boolean wide = driver != null && !isCheapCursor(driver);
+        for (Condition<?> condition : ordered) {
+            if (condition == driver) {
+                if (wide) {
+                    plan.wideDriver = driver;
+                } else {
+                    plan.cursors.add(driver);
+                }
+            } else if (driver != null && !wide && condition.index != null && isCheapCursor(condition)
+                    && (long) condition.estimate <= (long) Math.max(driver.estimate, 1) * CURSOR_RATIO) {
+                plan.cursors.add(condition);
+            } else {
+                plan.residual.add(condition);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Курсор по равенству идёт по дереву, диапазон же приходится выгружать и сортировать по id
+     */
+    private static boolean isCheapCursor(Condition<?> condition) {
+        return condition.isEquality() || condition.estimate <= ESTIMATE_LIMIT;
+    }
+
+    /**
+     * Выбранный план: курсоры для пересечения, широкий ведущий диапазон (если есть) и остаточные условия
+     */
+    private final class Plan {
+        final long limit;
+        final List<Condition<?>> cursors = new ArrayList<>();
+        final List<Condition<?>> residual = new ArrayList<>();
+        Condition<?> wideDriver;
+
+        Plan(long limit) {
+            this.limit = limit;
+        }
+
+        Iterator<Student> execute() {
+            Iterator<Student> candidates;
+            if (!cursors.isEmpty()) {
+                Cursor[] opened = new Cursor[cursors.size()];
+                for (int i = 0; i < opened.length; i++) {
+                    opened[i] = cursors.get(i).cursor();
+                }
+                candidates = new LeapfrogIterator(opened);
+            } else if (wideDriver != null) {
+                candidates = rangeStudents(wideDriver);
+            } else {
+                candidates = students.iterator();
+            }
+            return new FilterIterator(candidates, residual, limit);
+        }
+
+        private <K extends Comparable<? super K>> Iterator<Student> rangeStudents(Condition<K> condition) {
+            return condition.index.between(condition.from, condition.to).iterator();
+        }
+
+        @Override
+        public String toString() {
+            return "Plan{cursors=" + cursors + ", wideDriver=" + wideDriver + ", residual=" + residual
+                    + (limit == Long.MAX_VALUE ? "" : ", limit=" + limit) + "}";
+        }
+    }
+
+    /**
+     * Leapfrog-пересечение курсоров: каждый курсор по очереди догоняет наибольший текущий id
+     */
+    private static final class LeapfrogIterator implements Iterator<Student> {
+        private final Cursor[] cursors;
+        private int p;
+        private Student next;
+        private boolean started;
+
+        LeapfrogIterator(Cursor[] cursors) {
+            this.cursors = cursors;
+        }
+
+        private Student search() {
+            int k = cursors.length;
+            for (Cursor cursor : cursors) {
+                if (cursor.atEnd()) return null;
+            }
+            long max = cursors[(p + k - 1) % k].id();
+            while (true) {
+                Cursor cursor = cursors[p];
+                if (cursor.id() == max) {
+                    return cursor.student();
+                }
+                cursor.seek(max);
+                if (cursor.atEnd()) return null;
+                max = cursor.id();
+                p = (p + 1) % k;
+            }
+        }
+
+        private void start() {
+            started = true;
+            for (Cursor cursor : cursors) {
+                if (cursor.atEnd()) return;
+            }
+            //курсоры по возрастанию текущего id, чтобы последний держал максимум
+            Arrays.sort(cursors, Comparator.comparingLong(Cursor::id));
+            p = 0;
+            next = search();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!started) start();
+            return next != null;
+        }
+
+        @Override
+        public Student next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Student result = next;
+            Cursor cursor = cursors[p];
+            cursor.next();
+            if (cursor.atEnd()) {
+                this.next = null;
+            } else {
+                p = (p + 1) % cursors.length;
+                this.next = search();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Проверка остаточных условий и ограничение количества
+     */
+    private static final class FilterIterator implements Iterator<Student> {
+        private final Iterator<Student> candidates;
+        private final List<Condition<?>> residual;
+        private long remaining;
+        private Student next;
+
+        FilterIterator(Iterator<Student> candidates, List<Condition<?>> residual, long limit) {
+            this.candidates = candidates;
+            this.residual = residual;
+            this.remaining = limit;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            if (remaining <= 0) {
+                return;
+            }
+            while (candidates.hasNext()) {
+                Student candidate = candidates.next();
+                if (matches(candidate)) {
+                    next = candidate;
+                    remaining--;
+                    return;
+                }
+            }
+        }
+
+        private boolean matches(Student student) {
+            for (Condition<?> condition : residual) {
+                if (!condition.test(student)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Student next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Student result = next;
+            advance();
+            return result;
+        }
+    }
+}
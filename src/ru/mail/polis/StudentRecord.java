@@ -0,0 +1,225 @@
+package ru.mail.polis;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Студент в двоичном виде фиксированной длины и flyweight-представление над ним.
+ * <p>
+ * Экземпляр ничего не хранит, кроме ссылки на буфер и смещения записи, и читает поля прямо из буфера
+ * (кучи, прямого или отображённого в память). Переключение на другую запись через wrap не выделяет память,
+ * поэтому один экземпляр можно переиспользовать при обходе миллионов записей.
+ * <p>
+ * Раскладка записи (RECORD_SIZE байт, big-endian - порядок по умолчанию у ByteBuffer):
+ * <pre>
+ *   0 id (long)             8 hashCode (int)         12 hashCode2 (int)
+ *  16 birthday, дни от эпохи (int)                  20 groupId (int)
+ *  24 yearOfAdmission (short)                        26 gender (byte)        27 резерв
+ *  28 firstName  64 lastName  100 photoReference  164 email  216 mobile
+ * </pre>
+ * Строка хранится как байт (длина в UTF-8 + 1, 0 - null) и байты UTF-8, остаток поля заполнен нулями.
+ * Поэтому в поле ширины w помещается строка до w - 1 байт UTF-8:
+ * <pre>
+ *   firstName 35   lastName 35   photoReference 63   email 51   mobile 15
+ * </pre>
+ * Хеши студента посчитаны при записи, поэтому hashCode(tableSize, probId) совпадает со Student,
+ * а из-за нулевого заполнения равные студенты дают побайтно равные записи.
+ */
+public final class StudentRecord implements OpenHashTableEntity {
+
+    private static final int ID = 0;
+    private static final int HASH = 8;
+    private static final int HASH2 = 12;
+    private static final int BIRTHDAY = 16;
+    private static final int GROUP_ID = 20;
+    private static final int YEAR_OF_ADMISSION = 24;
+    private static final int GENDER = 26;
+    private static final int FIRST_NAME = 28;
+    private static final int LAST_NAME = 64;
+    private static final int PHOTO_REFERENCE = 100;
+    private static final int EMAIL = 164;
+    private static final int MOBILE = 216;
+
+    public static final int RECORD_SIZE = 232;
+
+    private static final Student.Gender[] GENDERS = Student.Gender.values();
+
+    private ByteBuffer buffer;
+    private int offset;
+
+    /**
+     * Переключает представление на запись по смещению offset
+     *
+     * @return this
+     */
+    public StudentRecord wrap(ByteBuffer buffer, int offset) {
+        checkBounds(buffer, offset);
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    private static void checkBounds(ByteBuffer buffer, int offset) {
+        if (buffer.order() != ByteOrder.BIG_ENDIAN) {
+            throw new IllegalArgumentException("Records are laid out big-endian, buffer is " + buffer.order());
+        }
+        if (offset < 0 || offset > buffer.capacity() - RECORD_SIZE) {
+            throw new IndexOutOfBoundsException("offset " + offset + " in buffer of " + buffer.capacity() + " bytes");
+        }
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Записывает студента по смещению offset, не меняя позицию буфера
+     *
+     * @throws IllegalArgumentException если строковое поле не помещается в отведённое ему место
+     */
+    public static void write(Student student, ByteBuffer buffer, int offset) {
+        checkBounds(buffer, offset);
+        buffer.putLong(offset + ID, student.getId());
+        buffer.putInt(offset + HASH, student.hashCode());
+        buffer.putInt(offset + HASH2, student.hashCode2());
+        buffer.putInt(offset + BIRTHDAY, (int) student.getBirthday().toEpochDay());
+        buffer.putInt(offset + GROUP_ID, student.getGroupId());
+        buffer.putShort(offset + YEAR_OF_ADMISSION, (short) student.getYearOfAdmission());
+        buffer.put(offset + GENDER, (byte) student.getGender().ordinal());
+        buffer.put(offset + GENDER + 1, (byte) 0);
+        putString(student.getFirstName(), buffer, offset + FIRST_NAME, LAST_NAME - FIRST_NAME);
+        putString(student.getLastName(), buffer, offset + LAST_NAME, PHOTO_REFERENCE - LAST_NAME);
+        putString(student.getPhotoReference(), buffer, offset + PHOTO_REFERENCE, EMAIL - PHOTO_REFERENCE);
+        putString(student.getEmail(), buffer, offset + EMAIL, MOBILE - EMAIL);
+        putString(student.getMobile(), buffer, offset + MOBILE, RECORD_SIZE - MOBILE);
+    }
+
+    private static void putString(String value, ByteBuffer buffer, int position, int width) {
+        int length = 0;
+        if (value != null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            length = bytes.length + 1;
+            if (length > width) {
+                throw new IllegalArgumentException("String of " + bytes.length + " bytes does not fit into "
+                        + (width - 1) + ": " + value);
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                buffer.put(position + 1 + i, bytes[i]);
+            }
+        }
+        buffer.put(position, (byte) length);
+        for (int i = Math.max(length, 1); i < width; i++) {
+            buffer.put(position + i, (byte) 0);
+        }
+    }
+
+    private String getString(int field) {
+        int length = buffer.get(offset + field) & 0xFF;
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + field + 1 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public long getId() {
+        return buffer.getLong(offset + ID);
+    }
+
+    public long getBirthdayEpochDay() {
+        return buffer.getInt(offset + BIRTHDAY);
+    }
+
+    public LocalDate getBirthday() {
+        return LocalDate.ofEpochDay(getBirthdayEpochDay());
+    }
+
+    public int getGroupId() {
+        return buffer.getInt(offset + GROUP_ID);
+    }
+
+    public int getYearOfAdmission() {
+        return buffer.getShort(offset + YEAR_OF_ADMISSION);
+    }
+
+    public Student.Gender getGender() {
+        return GENDERS[buffer.get(offset + GENDER)];
+    }
+
+    public String getFirstName() {
+        return getString(FIRST_NAME);
+    }
+
+    public String getLastName() {
+        return getString(LAST_NAME);
+    }
+
+    public String getPhotoReference() {
+        return getString(PHOTO_REFERENCE);
+    }
+
+    public String getEmail() {
+        return getString(EMAIL);
+    }
+
+    public String getMobile() {
+        return getString(MOBILE);
+    }
+
+    /**
+     * @return обычный студент с теми же полями и идентификатором
+     */
+    public Student toStudent() {
+        return new Student(getId(), getFirstName(), getLastName(), getGender(), getBirthday(), getGroupId(),
+                getYearOfAdmission(), getPhotoReference(), getEmail(), getMobile());
+    }
+
+    @Override
+    public int hashCode(int tableSize, int probId) throws IllegalArgumentException {
+        if (probId < 0 || probId >= tableSize) throw new IllegalArgumentException();
+        return Student.probe(buffer.getInt(offset + HASH), buffer.getInt(offset + HASH2), tableSize, probId);
+    }
+
+    /**
+     * Совпадает с hashCode() студента в текущей записи, поэтому меняется после wrap
+     */
+    @Override
+    public int hashCode() {
+        return buffer.getInt(offset + HASH);
+    }
+
+    /**
+     * Побайтное сравнение записей, без чтения строк
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StudentRecord other = (StudentRecord) o;
+        return sameBytes(buffer, offset, other.buffer, other.offset);
+    }
+
+    static boolean sameBytes(ByteBuffer buffer, int offset, ByteBuffer otherBuffer, int otherOffset) {
+        //RECORD_SIZE делится на 8, сравниваем по long
+        for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+            if (buffer.getLong(offset + i) != otherBuffer.getLong(otherOffset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "StudentRecord{offset=" + offset + ", " + toStudent() + "}";
+    }
+}
@@ -0,0 +1,167 @@
+package ru.mail.polis;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.IntConsumer;
+
+/**
+ * Хеш-таблица с открытой адресацией над записями StudentRecord, лежащими в одном буфере.
+ * <p>
+ * В ячейках хранятся только смещения записей (int на ячейку), сами студенты остаются в буфере
+ * и не создаются как объекты. Пробирование то же, что у OpenHashTable со Student (двойное хеширование
+ * по хешам из записи), равенство - побайтное сравнение записей. Коэффициент заполнения не больше 0.5,
+ * удалённые ячейки помечаются и переиспользуются при вставке.
+ */
+public class StudentRecordTable {
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+
+    private final ByteBuffer records;
+    private final StudentRecord probe = new StudentRecord();
+    private final ByteBuffer scratch = ByteBuffer.allocate(StudentRecord.RECORD_SIZE);
+    private int[] table; //смещение записи + 1, EMPTY или DELETED
+    private int size;
+    private int deleted;
+
+    /**
+     * @param records буфер, в котором лежат добавляемые записи
+     */
+    public StudentRecordTable(ByteBuffer records) {
+        if (records.order() != ByteOrder.BIG_ENDIAN) {
+            throw new IllegalArgumentException("Records are laid out big-endian, buffer is " + records.order());
+        }
+        this.records = records;
+        this.table = new int[INITIAL_CAPACITY];
+    }
+
+    public ByteBuffer getRecords() {
+        return records;
+    }
+
+    /**
+     * Добавляет запись, лежащую в буфере таблицы по смещению offset
+     *
+     * @return true, если равной записи в таблице не было
+     */
+    public boolean add(int offset) {
+        probe.wrap(records, offset);
+        int free = -1;
+        for (int i = 0; i < table.length; i++) {
+            int idx = probe.hashCode(table.length, i);
+            int slot = table[idx];
+            if (slot == EMPTY) {
+                if (free < 0) free = idx;
+                break;
+            }
+            if (slot == DELETED) {
+                if (free < 0) free = idx;
+            } else if (StudentRecord.sameBytes(records, slot - 1, records, offset)) {
+                return false;
+            }
+        }
+        if (table[free] == DELETED) deleted--;
+        table[free] = offset + 1;
+        size++;
+        resize();
+        return true;
+    }
+
+    /**
+     * @return смещение записи, равной record, или -1
+     */
+    public int find(StudentRecord record) {
+        for (int i = 0; i < table.length; i++) {
+            int idx = record.hashCode(table.length, i);
+            int slot = table[idx];
+            if (slot == EMPTY) {
+                return -1;
+            }
+            if (slot != DELETED && StudentRecord.sameBytes(records, slot - 1, record.getBuffer(), record.getOffset())) {
+                return slot - 1;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(StudentRecord record) {
+        return find(record) >= 0;
+    }
+
+    /**
+     * Ищет обычного студента: он кодируется во внутренний буфер и сравнивается с записями побайтно.
+     * Строки студента должны помещаться в раскладку StudentRecord.
+     */
+    public boolean contains(Student student) {
+        StudentRecord.write(student, scratch, 0);
+        return contains(probe.wrap(scratch, 0));
+    }
+
+    /**
+     * Удаляет запись, равную record; байты в буфере не меняются
+     *
+     * @return true, если такая запись была в таблице
+     */
+    public boolean remove(StudentRecord record) {
+        for (int i = 0; i < table.length; i++) {
+            int idx = record.hashCode(table.length, i);
+            int slot = table[idx];
+            if (slot == EMPTY) {
+                return false;
+            }
+            if (slot != DELETED && StudentRecord.sameBytes(records, slot - 1, record.getBuffer(), record.getOffset())) {
+                table[idx] = DELETED;
+                deleted++;
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Вызывает action для смещения каждой записи в таблице в порядке ячеек
+     */
+    public void forEachOffset(IntConsumer action) {
+        for (int slot : table) {
+            if (slot != EMPTY && slot != DELETED) {
+                action.accept(slot - 1);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTableSize() {
+        return table.length;
+    }
+
+    /**
+     * Увеличивает таблицу вдвое, когда живые и удалённые ячейки занимают половину.
+     * Удалённые ячейки при перестроении отбрасываются, поэтому после большого числа удалений
+     * таблица может перестроиться без роста.
+     */
+    private void resize() {
+        if ((size + deleted) * 2 < table.length) {
+            return;
+        }
+        int[] old = table;
+        table = new int[size * 4 >= old.length ? old.length * 2 : old.length];
+        deleted = 0;
+        for (int slot : old) {
+            if (slot != EMPTY && slot != DELETED) {
+                probe.wrap(records, slot - 1);
+                for (int i = 0; ; i++) {
+                    int idx = probe.hashCode(table.length, i);
+                    if (table[idx] == EMPTY) {
+                        table[idx] = slot;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
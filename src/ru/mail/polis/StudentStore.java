@@ -0,0 +1,301 @@
+package ru.mail.polis;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Хранилище студентов по столбцам.
+ * <p>
+ * Каждое поле лежит в своём примитивном массиве: id - long[], дата рождения - дни от эпохи в int[],
+ * группа - int[], год поступления - short[], пол - byte[]. Имена и фамилии, которые у генератора
+ * повторяются, закодированы словарём: в столбце хранится номер строки в словаре.
+ * Уникальные необязательные поля (фото, почта, телефон) лежат как есть, null - отсутствие значения.
+ * <p>
+ * Отбор по столбцу - это один проход по примитивному массиву без ветвлений, слово из 64 бит собирается
+ * в регистре и пишется в память один раз. Результат - BitSet номеров строк,
+ * которые можно пересекать через BitSet.and. Строки доступны через лёгкие дескрипторы Row.
+ * Удаление не поддерживается: хранилище только дописывается.
+ */
+public class StudentStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Student.Gender[] GENDERS = Student.Gender.values();
+
+    private final Dictionary firstNames = new Dictionary();
+    private final Dictionary lastNames = new Dictionary();
+
+    private int size;
+    private long[] ids;
+    private int[] firstNameCodes;
+    private int[] lastNameCodes;
+    private byte[] genders;
+    private int[] birthdays;
+    private int[] groupIds;
+    private short[] yearsOfAdmission;
+    private String[] photoReferences;
+    private String[] emails;
+    private String[] mobiles;
+
+    public StudentStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public StudentStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        ids = new long[capacity];
+        firstNameCodes = new int[capacity];
+        lastNameCodes = new int[capacity];
+        genders = new byte[capacity];
+        birthdays = new int[capacity];
+        groupIds = new int[capacity];
+        yearsOfAdmission = new short[capacity];
+        photoReferences = new String[capacity];
+        emails = new String[capacity];
+        mobiles = new String[capacity];
+    }
+
+    /**
+     * Словарь строк столбца: строка - номер в порядке первого появления
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        /**
+         * @return номер строки или -1, если такой строки в столбце нет
+         */
+        int code(String value) {
+            Integer code = codes.get(value);
+            return code == null ? -1 : code;
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    /**
+     * Дескриптор строки хранилища: только ссылка на хранилище и номер строки
+     */
+    public final class Row {
+        private final int index;
+
+        private Row(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getId() {
+            return ids[index];
+        }
+
+        public String getFirstName() {
+            return firstNames.decode(firstNameCodes[index]);
+        }
+
+        public String getLastName() {
+            return lastNames.decode(lastNameCodes[index]);
+        }
+
+        public Student.Gender getGender() {
+            return GENDERS[genders[index]];
+        }
+
+        public LocalDate getBirthday() {
+            return LocalDate.ofEpochDay(birthdays[index]);
+        }
+
+        public int getGroupId() {
+            return groupIds[index];
+        }
+
+        public int getYearOfAdmission() {
+            return yearsOfAdmission[index];
+        }
+
+        public String getPhotoReference() {
+            return photoReferences[index];
+        }
+
+        public String getEmail() {
+            return emails[index];
+        }
+
+        public String getMobile() {
+            return mobiles[index];
+        }
+
+        public Student toStudent() {
+            return new Student(getId(), getFirstName(), getLastName(), getGender(), getBirthday(), getGroupId(),
+                    getYearOfAdmission(), getPhotoReference(), getEmail(), getMobile());
+        }
+
+        @Override
+        public String toString() {
+            return "Row{index=" + index + ", " + toStudent() + "}";
+        }
+    }
+
+    /**
+     * Дописывает студента в конец хранилища
+     *
+     * @return номер добавленной строки
+     */
+    public int append(Student student) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        ids[row] = student.getId();
+        firstNameCodes[row] = firstNames.encode(student.getFirstName());
+        lastNameCodes[row] = lastNames.encode(student.getLastName());
+        genders[row] = (byte) student.getGender().ordinal();
+        birthdays[row] = (int) student.getBirthday().toEpochDay();
+        groupIds[row] = student.getGroupId();
+        yearsOfAdmission[row] = (short) student.getYearOfAdmission();
+        photoReferences[row] = student.getPhotoReference();
+        emails[row] = student.getEmail();
+        mobiles[row] = student.getMobile();
+        return row;
+    }
+
+    /**
+     * Дописывает всех студентов, расширяя столбцы один раз
+     */
+    public void appendAll(Collection<? extends Student> students) {
+        ensureCapacity(size + students.size());
+        for (Student student : students) {
+            append(student);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        firstNameCodes = Arrays.copyOf(firstNameCodes, newCapacity);
+        lastNameCodes = Arrays.copyOf(lastNameCodes, newCapacity);
+        genders = Arrays.copyOf(genders, newCapacity);
+        birthdays = Arrays.copyOf(birthdays, newCapacity);
+        groupIds = Arrays.copyOf(groupIds, newCapacity);
+        yearsOfAdmission = Arrays.copyOf(yearsOfAdmission, newCapacity);
+        photoReferences = Arrays.copyOf(photoReferences, newCapacity);
+        emails = Arrays.copyOf(emails, newCapacity);
+        mobiles = Arrays.copyOf(mobiles, newCapacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Row row(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("row " + index + " of " + size);
+        }
+        return new Row(index);
+    }
+
+    /**
+     * @return количество различных имён и фамилий в словарях
+     */
+    public int getDictionarySize() {
+        return firstNames.size() + lastNames.size();
+    }
+
+    public BitSet whereGroupId(int groupId) {
+        return whereBetween(groupIds, groupId, groupId);
+    }
+
+    public BitSet whereYearOfAdmission(int from, int toInclusive) {
+        long[] words = new long[wordCount()];
+        short[] column = yearsOfAdmission;
+        for (int w = 0; w < words.length; w++) {
+            int base = w << 6;
+            int end = Math.min(base + 64, size);
+            long word = 0;
+            for (int i = base; i < end; i++) {
+                long value = column[i];
+                //без ветвления: бит равен 1, если значение в диапазоне; в long, как в whereBetween
+                word |= ((from - value - 1) & (value - toInclusive - 1)) >>> 63 << i;
+            }
+            words[w] = word;
+        }
+        return BitSet.valueOf(words);
+    }
+
+    public BitSet whereBirthday(LocalDate from, LocalDate toInclusive) {
+        return whereBetween(birthdays, (int) from.toEpochDay(), (int) toInclusive.toEpochDay());
+    }
+
+    public BitSet whereGender(Student.Gender gender) {
+        long[] words = new long[wordCount()];
+        byte[] column = genders;
+        int code = gender.ordinal();
+        for (int w = 0; w < words.length; w++) {
+            int base = w << 6;
+            int end = Math.min(base + 64, size);
+            long word = 0;
+            for (int i = base; i < end; i++) {
+                word |= (long) (((column[i] ^ code) - 1) >>> 31) << i;
+            }
+            words[w] = word;
+        }
+        return BitSet.valueOf(words);
+    }
+
+    public BitSet whereFirstName(String firstName) {
+        int code = firstNames.code(firstName);
+        return code < 0 ? new BitSet() : whereBetween(firstNameCodes, code, code);
+    }
+
+    public BitSet whereLastName(String lastName) {
+        int code = lastNames.code(lastName);
+        return code < 0 ? new BitSet() : whereBetween(lastNameCodes, code, code);
+    }
+
+    /**
+     * Строки, у которых значение столбца лежит в [from, toInclusive].
+     * Разности считаются в long, чтобы не переполниться на краях int.
+     */
+    private BitSet whereBetween(int[] column, int from, int toInclusive) {
+        long[] words = new long[wordCount()];
+        for (int w = 0; w < words.length; w++) {
+            int base = w << 6;
+            int end = Math.min(base + 64, size);
+            long word = 0;
+            for (int i = base; i < end; i++) {
+                long value = column[i];
+                word |= ((from - value - 1) & (value - toInclusive - 1)) >>> 63 << i;
+            }
+            words[w] = word;
+        }
+        return BitSet.valueOf(words);
+    }
+
+    private int wordCount() {
+        return (size + 63) >>> 6;
+    }
+}
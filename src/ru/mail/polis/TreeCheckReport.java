@@ -0,0 +1,122 @@
+package ru.mail.polis;
+
+/**
+ * Результат проверки дерева: размеры, высоты и, если дерево испорчено, первое найденное нарушение.
+ * <p>
+ * Размер отчёта не зависит от размера дерева: путь до дефектного узла хранится не длиннее MAX_PATH
+ * последних шагов, а окрестность узла - значения самого узла, родителя и потомков, каждое
+ * обрезано до MAX_VALUE_LENGTH символов.
+ */
+public final class TreeCheckReport {
+
+    public static final int MAX_PATH = 64;
+    public static final int MAX_VALUE_LENGTH = 64;
+
+    private final long nodeCount;
+    private final int height;
+    private final int blackHeight;
+    private final String violation;
+    private final int depth;
+    private final String path;
+    private final String context;
+
+    private TreeCheckReport(long nodeCount, int height, int blackHeight,
+                            String violation, int depth, String path, String context) {
+        this.nodeCount = nodeCount;
+        this.height = height;
+        this.blackHeight = blackHeight;
+        this.violation = violation;
+        this.depth = depth;
+        this.path = path;
+        this.context = context;
+    }
+
+    static TreeCheckReport balanced(long nodeCount, int height, int blackHeight) {
+        return new TreeCheckReport(nodeCount, height, blackHeight, null, -1, null, null);
+    }
+
+    /**
+     * @param path - шаги от корня: 'L' - в левое поддерево, 'R' - в правое; обрезается до последних MAX_PATH
+     */
+    static TreeCheckReport violated(long nodeCount, int height, int blackHeight,
+                                    String violation, CharSequence path, String context) {
+        int depth = path.length();
+        String tail = depth <= MAX_PATH
+                ? path.toString()
+                : "..." + path.subSequence(depth - MAX_PATH, depth);
+        return new TreeCheckReport(nodeCount, height, blackHeight, violation, depth, tail, context);
+    }
+
+    /**
+     * @return toString() значения, обрезанный до MAX_VALUE_LENGTH символов
+     */
+    static String brief(Object value) {
+        String string = String.valueOf(value);
+        return string.length() <= MAX_VALUE_LENGTH ? string : string.substring(0, MAX_VALUE_LENGTH) + "...";
+    }
+
+    public boolean isBalanced() {
+        return violation == null;
+    }
+
+    /**
+     * @return описание нарушенного свойства или null, если дерево корректно
+     */
+    public String getViolation() {
+        return violation;
+    }
+
+    /**
+     * @return сколько узлов проверено; при нарушении - сколько успели проверить до него
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return высота дерева в узлах (у пустого 0); при нарушении - -1
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return чёрная высота красно-чёрного дерева без учёта листьев nil; -1 для других деревьев и при нарушении
+     */
+    public int getBlackHeight() {
+        return blackHeight;
+    }
+
+    /**
+     * @return глубина дефектного узла (у корня 0) или -1
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return путь от корня до дефектного узла ('L'/'R', не длиннее MAX_PATH последних шагов) или null
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return дефектный узел и его соседи или null
+     */
+    public String getContext() {
+        return context;
+    }
+
+    @Override
+    public String toString() {
+        if (isBalanced()) {
+            return "TreeCheckReport{balanced, nodes=" + nodeCount + ", height=" + height
+                    + (blackHeight >= 0 ? ", blackHeight=" + blackHeight : "") + "}";
+        }
+        return "TreeCheckReport{" + violation
+                + "\ndepth = " + depth + ", path = " + (path.isEmpty() ? "root" : path)
+                + "\nnode = " + context
+                + "\nnodes checked = " + nodeCount + "}";
+    }
+}
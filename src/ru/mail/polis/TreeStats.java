@@ -0,0 +1,182 @@
+package ru.mail.polis;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Снимок формы двоичного дерева поиска: высота против теоретической границы, распределение глубин узлов,
+ * ожидаемое число сравнений при успешном и неуспешном поиске и доля красных узлов.
+ * <p>
+ * Ожидаемые сравнения считаются для равновероятных ключей: успешный поиск ключа на глубине d стоит
+ * d + 1 сравнений, неуспешный заканчивается в одном из size + 1 пустых потомков, сумма глубин
+ * которых равна сумме глубин узлов плюс 2 * size. На отсортированном входе BinarySearchTree
+ * вырождается в список, и это сразу видно по отношению высоты к минимальной.
+ */
+public final class TreeStats {
+
+    private final int size;
+    private final int height;
+    private final int heightBound;
+    private final LengthHistogram depths;
+    private final long internalPathLength;
+    private final long redCount;
+
+    private TreeStats(int size, int height, int heightBound, LengthHistogram depths,
+                      long internalPathLength, long redCount) {
+        this.size = size;
+        this.height = height;
+        this.heightBound = heightBound;
+        this.depths = depths;
+        this.internalPathLength = internalPathLength;
+        this.redCount = redCount;
+    }
+
+    /**
+     * Собирает статистику за один обход в прямом порядке на явном стеке: глубина рекурсии не зависит
+     * от высоты дерева, а стек вырожденного дерева не растёт выше одного-двух узлов.
+     *
+     * @param empty - пустое поддерево (null или nil)
+     * @param red - красный ли узел; null, если у дерева нет цветов
+     * @param heightBound - наибольшая высота, допустимая для дерева этого вида с size узлами
+     */
+    static <N> TreeStats collect(N root, N empty, UnaryOperator<N> left, UnaryOperator<N> right,
+                                 Predicate<N> red, int heightBound) {
+        LengthHistogram.Builder depths = new LengthHistogram.Builder();
+        ArrayDeque<N> nodes = new ArrayDeque<>();
+        int[] nodeDepths = new int[16];
+        int size = 0;
+        int height = 0;
+        long internalPathLength = 0;
+        long redCount = 0;
+        if (root != empty) {
+            nodes.push(root);
+            nodeDepths[0] = 0;
+        }
+        while (!nodes.isEmpty()) {
+            N node = nodes.pop();
+            int depth = nodeDepths[nodes.size()];
+            size++;
+            height = Math.max(height, depth + 1);
+            internalPathLength += depth;
+            depths.add(depth);
+            if (red != null && red.test(node)) {
+                redCount++;
+            }
+            N leftChild = left.apply(node);
+            N rightChild = right.apply(node);
+            if (nodes.size() + 2 > nodeDepths.length) {
+                nodeDepths = Arrays.copyOf(nodeDepths, nodeDepths.length * 2);
+            }
+            if (rightChild != empty) {
+                nodeDepths[nodes.size()] = depth + 1;
+                nodes.push(rightChild);
+            }
+            if (leftChild != empty) {
+                nodeDepths[nodes.size()] = depth + 1;
+                nodes.push(leftChild);
+            }
+        }
+        return new TreeStats(size, height, heightBound, depths.build(), internalPathLength, red != null ? redCount : -1);
+    }
+
+    /**
+     * @return граница высоты AVL-дерева: 1.4405 log2(n + 2) - 0.3277
+     */
+    static int avlHeightBound(int size) {
+        return (int) Math.floor(1.4405 * log2(size + 2) - 0.3277);
+    }
+
+    /**
+     * @return граница высоты красно-чёрного дерева: 2 log2(n + 1)
+     */
+    static int redBlackHeightBound(int size) {
+        return (int) Math.floor(2 * log2(size + 1));
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return высота в узлах, у пустого дерева 0
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return наименьшая возможная высота дерева из size узлов: ceil(log2(size + 1))
+     */
+    public int getMinimalHeight() {
+        return 32 - Integer.numberOfLeadingZeros(size);
+    }
+
+    /**
+     * @return теоретическая граница высоты для дерева этого вида; для несбалансированного дерева - size
+     */
+    public int getHeightBound() {
+        return heightBound;
+    }
+
+    /**
+     * @return во сколько раз дерево выше идеально сбалансированного
+     */
+    public double getHeightRatio() {
+        return size == 0 ? 1 : (double) height / getMinimalHeight();
+    }
+
+    /**
+     * @return глубины узлов, у корня 0
+     */
+    public LengthHistogram getDepths() {
+        return depths;
+    }
+
+    /**
+     * @return сумма глубин всех узлов
+     */
+    public long getInternalPathLength() {
+        return internalPathLength;
+    }
+
+    /**
+     * @return среднее число сравнений при поиске присутствующего ключа
+     */
+    public double getExpectedHitComparisons() {
+        return size == 0 ? 0 : 1 + (double) internalPathLength / size;
+    }
+
+    /**
+     * @return среднее число сравнений при поиске отсутствующего ключа
+     */
+    public double getExpectedMissComparisons() {
+        return (double) (internalPathLength + 2L * size) / (size + 1);
+    }
+
+    /**
+     * @return доля красных узлов; -1, если у дерева нет цветов
+     */
+    public double getRedRatio() {
+        if (redCount < 0) {
+            return -1;
+        }
+        return size == 0 ? 0 : (double) redCount / size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "TreeStats{size=%d, height=%d (minimal %d, bound %d), hit=%.2f, miss=%.2f%s, depths=%s}",
+                size, height, getMinimalHeight(), heightBound,
+                getExpectedHitComparisons(), getExpectedMissComparisons(),
+                redCount >= 0 ? String.format(Locale.ROOT, ", red=%.3f", getRedRatio()) : "",
+                depths);
+    }
+}
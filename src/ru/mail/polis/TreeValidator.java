@@ -0,0 +1,329 @@
+package ru.mail.polis;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Проверка двоичного дерева поиска без рекурсии: обход в обратном порядке (потомки раньше узла) на явном
+ * стеке, поэтому вырожденное дерево любой глубины не переполняет стек потока. Для каждого узла
+ * проверяются порядок значений, обратные ссылки потомков на родителя и свойства конкретного дерева
+ * (check), а вверх передаются только размер, высоты, минимум и максимум поддерева.
+ * <p>
+ * Стек хранит по одной переиспользуемой записи на уровень, так что проход по дереву не создаёт объектов
+ * на каждый узел. С пулом ForkJoinPool верхние уровни делятся на независимые поддеревья, которые
+ * проверяются параллельно и сводятся у общего предка.
+ * <p>
+ * Дерево не должно меняться во время проверки: её нужно запускать под той же блокировкой, что и запись.
+ *
+ * @param <N> - тип узла
+ */
+abstract class TreeValidator<E, N> {
+
+    /**
+     * Поддеревья меньше этого не делятся между потоками
+     */
+    private static final int MIN_PARALLEL_DEPTH = 2;
+
+    private final Comparator<? super E> order;
+
+    /**
+     * @param comparator - порядок дерева; null - естественный порядок
+     */
+    @SuppressWarnings("unchecked")
+    TreeValidator(Comparator<? super E> comparator) {
+        this.order = comparator != null ? comparator : (Comparator<? super E>) Comparator.naturalOrder();
+    }
+
+    /**
+     * @return true для пустого поддерева (null или nil)
+     */
+    abstract boolean isEmpty(N node);
+
+    abstract N left(N node);
+
+    abstract N right(N node);
+
+    abstract N parent(N node);
+
+    abstract E value(N node);
+
+    /**
+     * Проверяет свойства дерева в узле по уже посчитанным высотам его поддеревьев
+     *
+     * @return описание нарушения или null
+     */
+    abstract String check(N node, int leftHeight, int rightHeight, int leftBlackHeight, int rightBlackHeight);
+
+    /**
+     * @return чёрная высота непустого поддерева с корнем node, если у его поддеревьев она childBlackHeight
+     * (у пустого поддерева 0); -1, если у дерева нет чёрной высоты
+     */
+    abstract int blackHeight(N node, int childBlackHeight);
+
+    /**
+     * @return true, если у дерева есть чёрная высота
+     */
+    abstract boolean hasBlackHeight();
+
+    /**
+     * @return false, если у узлов нет ссылок на родителя и проверять их не нужно
+     */
+    boolean hasParents() {
+        return true;
+    }
+
+    /**
+     * Проверяет корень отдельно от остальных узлов
+     *
+     * @return описание нарушения или null
+     */
+    String checkRoot(N root) {
+        return hasParents() && parent(root) != null ? "Root must have no parent" : null;
+    }
+
+    /**
+     * Короткое описание узла для отчёта: без рекурсии по поддеревьям
+     */
+    String describe(N node) {
+        StringBuilder sb = new StringBuilder("N{d=").append(TreeCheckReport.brief(value(node)));
+        describeState(node, sb);
+        sb.append(", l=").append(isEmpty(left(node)) ? "-" : TreeCheckReport.brief(value(left(node))));
+        sb.append(", r=").append(isEmpty(right(node)) ? "-" : TreeCheckReport.brief(value(right(node))));
+        N parent = hasParents() ? parent(node) : null;
+        sb.append(", p=").append(parent == null || isEmpty(parent) ? "-" : TreeCheckReport.brief(value(parent)));
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Дописывает к описанию узла его служебные поля (высоту, цвет)
+     */
+    abstract void describeState(N node, StringBuilder sb);
+
+    /**
+     * @param size - сколько элементов должно быть в дереве
+     * @param pool - пул для параллельной проверки или null для проверки в текущем потоке
+     */
+    TreeCheckReport validate(N root, int size, ForkJoinPool pool) {
+        if (isEmpty(root)) {
+            return size == 0
+                    ? TreeCheckReport.balanced(0, 0, hasBlackHeight() ? 0 : -1)
+                    : TreeCheckReport.violated(0, -1, -1, "Tree is empty, size = " + size, "", "-");
+        }
+        String rootViolation = checkRoot(root);
+        if (rootViolation != null) {
+            return TreeCheckReport.violated(0, -1, -1, rootViolation, "", describe(root));
+        }
+        Subtree result;
+        if (pool == null || pool.getParallelism() < 2) {
+            result = walk(root, "");
+        } else {
+            int splitDepth = MIN_PARALLEL_DEPTH + 32 - Integer.numberOfLeadingZeros(pool.getParallelism() - 1);
+            result = pool.invoke(new Task(root, "", splitDepth));
+        }
+        if (result.violation != null) {
+            return TreeCheckReport.violated(result.count, -1, -1, result.violation, result.path, result.context);
+        }
+        if (result.count != size) {
+            return TreeCheckReport.violated(result.count, -1, -1,
+                    "Tree holds " + result.count + " nodes, size = " + size, "", describe(root));
+        }
+        return TreeCheckReport.balanced(result.count, result.height, hasBlackHeight() ? result.blackHeight : -1);
+    }
+
+    /**
+     * Сводка по поддереву: то, что нужно предку, или первое нарушение в нём
+     */
+    private final class Subtree {
+        long count;
+        int height;
+        int blackHeight;
+        E min;
+        E max;
+        String violation;
+        String path;
+        String context;
+    }
+
+    /**
+     * Узел на стеке обхода вместе с уже посчитанными сводками его поддеревьев
+     */
+    private final class Frame {
+        N node;
+        boolean right; //узел - правый потомок предыдущего на стеке
+        int state; //0 - не начат, 1 - левое поддерево пройдено, 2 - оба пройдены
+        long count;
+        int leftHeight, rightHeight;
+        int leftBlackHeight, rightBlackHeight;
+        E leftMin, leftMax, rightMin, rightMax;
+
+        void reset(N node, boolean right) {
+            this.node = node;
+            this.right = right;
+            this.state = 0;
+            this.count = 1;
+            this.leftHeight = this.rightHeight = 0;
+            this.leftBlackHeight = this.rightBlackHeight = 0;
+            this.leftMin = this.leftMax = this.rightMin = this.rightMax = null;
+        }
+
+        void setChild(boolean right, long count, int height, int blackHeight, E min, E max) {
+            this.count += count;
+            if (right) {
+                rightHeight = height;
+                rightBlackHeight = blackHeight;
+                rightMin = min;
+                rightMax = max;
+            } else {
+                leftHeight = height;
+                leftBlackHeight = blackHeight;
+                leftMin = min;
+                leftMax = max;
+            }
+        }
+    }
+
+    /**
+     * Проверяет узел, оба поддерева которого уже сведены в frame
+     *
+     * @return описание нарушения или null
+     */
+    private String finish(Frame frame) {
+        N node = frame.node;
+        E value = value(node);
+        N left = left(node);
+        N right = right(node);
+        if (hasParents() && !isEmpty(left) && parent(left) != node) {
+            return "Left child must link back to its parent";
+        }
+        if (hasParents() && !isEmpty(right) && parent(right) != node) {
+            return "Right child must link back to its parent";
+        }
+        if (frame.leftMax != null && order.compare(frame.leftMax, value) >= 0) {
+            return "Left subtree holds " + TreeCheckReport.brief(frame.leftMax) + " which is not less than the node";
+        }
+        if (frame.rightMin != null && order.compare(value, frame.rightMin) >= 0) {
+            return "Right subtree holds " + TreeCheckReport.brief(frame.rightMin) + " which is not greater than the node";
+        }
+        return check(node, frame.leftHeight, frame.rightHeight, frame.leftBlackHeight, frame.rightBlackHeight);
+    }
+
+    private Subtree summarize(Frame frame) {
+        Subtree subtree = new Subtree();
+        subtree.count = frame.count;
+        subtree.height = Math.max(frame.leftHeight, frame.rightHeight) + 1;
+        subtree.blackHeight = blackHeight(frame.node, frame.leftBlackHeight);
+        subtree.min = frame.leftMin != null ? frame.leftMin : value(frame.node);
+        subtree.max = frame.rightMax != null ? frame.rightMax : value(frame.node);
+        return subtree;
+    }
+
+    private Subtree violation(long count, String violation, CharSequence path, N node) {
+        Subtree subtree = new Subtree();
+        subtree.count = count;
+        subtree.violation = violation;
+        subtree.path = path.toString();
+        subtree.context = describe(node);
+        return subtree;
+    }
+
+    /**
+     * Последовательная проверка непустого поддерева
+     *
+     * @param prefix - путь от корня дерева до root
+     */
+    private Subtree walk(N root, String prefix) {
+        ArrayList<Frame> stack = new ArrayList<>();
+        stack.add(new Frame());
+        stack.get(0).reset(root, false);
+        int top = 0;
+        long checked = 0;
+        while (true) {
+            Frame frame = stack.get(top);
+            N child = null;
+            if (frame.state == 0) {
+                frame.state = 1;
+                child = left(frame.node);
+            }
+            if (frame.state == 1 && (child == null || isEmpty(child))) {
+                frame.state = 2;
+                child = right(frame.node);
+            }
+            if (child != null && !isEmpty(child)) {
+                if (++top == stack.size()) {
+                    stack.add(new Frame());
+                }
+                stack.get(top).reset(child, frame.state == 2);
+                continue;
+            }
+            checked++;
+            String violation = finish(frame);
+            if (violation != null) {
+                StringBuilder path = new StringBuilder(prefix);
+                for (int i = 1; i <= top; i++) {
+                    path.append(stack.get(i).right ? 'R' : 'L');
+                }
+                return violation(checked, violation, path, frame.node);
+            }
+            if (top == 0) {
+                return summarize(frame);
+            }
+            top--;
+            stack.get(top).setChild(frame.right, frame.count,
+                    Math.max(frame.leftHeight, frame.rightHeight) + 1,
+                    blackHeight(frame.node, frame.leftBlackHeight),
+                    frame.leftMin != null ? frame.leftMin : value(frame.node),
+                    frame.rightMax != null ? frame.rightMax : value(frame.node));
+        }
+    }
+
+    /**
+     * Верхние уровни дерева: поддеревья проверяются параллельно, узел - после них
+     */
+    private final class Task extends RecursiveTask<Subtree> {
+        private static final long serialVersionUID = 1L;
+
+        private final N node;
+        private final String path;
+        private final int splitDepth;
+
+        Task(N node, String path, int splitDepth) {
+            this.node = node;
+            this.path = path;
+            this.splitDepth = splitDepth;
+        }
+
+        @Override
+        protected Subtree compute() {
+            N left = left(node);
+            N right = right(node);
+            if (path.length() >= splitDepth || isEmpty(left) || isEmpty(right)) {
+                return walk(node, path);
+            }
+            Task leftTask = new Task(left, path + 'L', splitDepth);
+            leftTask.fork();
+            Subtree rightResult = new Task(right, path + 'R', splitDepth).compute();
+            Subtree leftResult = leftTask.join();
+            if (leftResult.violation != null) {
+                return leftResult;
+            }
+            if (rightResult.violation != null) {
+                rightResult.count += leftResult.count;
+                return rightResult;
+            }
+            Frame frame = new Frame();
+            frame.reset(node, false);
+            frame.state = 2;
+            frame.setChild(false, leftResult.count, leftResult.height, leftResult.blackHeight,
+                    leftResult.min, leftResult.max);
+            frame.setChild(true, rightResult.count, rightResult.height, rightResult.blackHeight,
+                    rightResult.min, rightResult.max);
+            String violation = finish(frame);
+            if (violation != null) {
+                return violation(frame.count, violation, path, node);
+            }
+            return summarize(frame);
+        }
+    }
+}
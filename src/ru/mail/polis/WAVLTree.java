@@ -0,0 +1,474 @@
+package ru.mail.polis;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * WAVL-дерево (weak AVL, Haeupler, Sen, Tarjan): сбалансированное по рангам дерево поиска.
+ * <p>
+ * У каждого узла есть ранг, у отсутствующего потомка ранг -1. Разность рангов родителя и потомка
+ * равна 1 или 2, у листа ранг 0. Пока не было удалений, ранг равен высоте и дерево является AVL-деревом,
+ * поэтому высота не больше 1.44 log n; с удалениями - не больше 2 log n.
+ * <p>
+ * Вставка делает не больше двух поворотов, удаление - тоже не больше двух (в отличие от AVL, где удаление
+ * может поворачивать на каждом уровне). Остальная работа - изменение рангов, O(1) амортизированно.
+ * Восстановление идёт циклом снизу вверх и останавливается, как только правила рангов выполнены.
+ */
+public class WAVLTree<E extends Comparable<E>> extends AbstractSet<E>
+        implements BalancedSortedSet<E>, SortedRangeView.Source<E> {
+
+    private final Comparator<E> comparator;
+
+    private Node root;
+    private int size;
+    private int modCount; //число структурных изменений, для итераторов
+    private long rotationCount;
+
+    public WAVLTree() {
+        this(null);
+    }
+
+    public WAVLTree(Comparator<E> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Вставляет элемент в дерево.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param value элемент который необходимо вставить
+     * @return true, если элемент в дереве отсутствовал
+     */
+    @Override
+    public boolean add(E value) {
+        if (root == null) {
+            root = new Node(value, null);
+            ++size;
+            ++modCount;
+            return true;
+        }
+        Node curr = root;
+        Node parent;
+        int comp;
+        do {
+            parent = curr;
+            comp = compare(curr.value, value);
+            if (comp == 0) return false;
+            curr = (comp < 0) ? curr.right : curr.left;
+        } while (curr != null);
+        Node node = new Node(value, parent);
+        if (comp < 0) {
+            parent.right = node;
+        } else {
+            parent.left = node;
+        }
+        ++size;
+        ++modCount;
+        insertFix(node);
+        return true;
+    }
+
+    /**
+     * Восстановление после вставки: node - узел с разностью рангов 0 относительно родителя (или без нарушения).
+     * Родитель с разностями (0, 1) повышается, и нарушение уходит вверх; при (0, 2) один или два поворота
+     * завершают восстановление.
+     */
+    private void insertFix(Node node) {
+        Node parent = node.parent;
+        while (parent != null && parent.rank == node.rank) {
+            boolean isLeft = node == parent.left;
+            Node sibling = isLeft ? parent.right : parent.left;
+            if (parent.rank - rank(sibling) == 1) {
+                parent.rank++;
+                node = parent;
+                parent = node.parent;
+                continue;
+            }
+            Node inner = isLeft ? node.right : node.left;
+            if (node.rank - rank(inner) == 2) {
+                rotate(node);
+                parent.rank--;
+            } else {
+                rotate(inner);
+                rotate(inner);
+                inner.rank++;
+                node.rank--;
+                parent.rank--;
+            }
+            return;
+        }
+    }
+
+    /**
+     * Удаляет элемент с таким же значением из дерева.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо вставить
+     * @return true, если элемент содержался в дереве
+     */
+    @Override
+    public boolean remove(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        Node node = findNode(value);
+        if (node == null) return false;
+        remove(node);
+        --size;
+        ++modCount;
+        return true;
+    }
+
+    private void remove(Node node) {
+        if (node.left != null && node.right != null) {
+            Node next = node.right;
+            while (next.left != null) next = next.left;
+            node.value = next.value;
+            node = next;
+        }
+        Node child = node.left != null ? node.left : node.right;
+        Node parent = node.parent;
+        if (child != null) {
+            child.parent = parent;
+        }
+        if (parent == null) {
+            root = child;
+            return;
+        }
+        boolean isLeft = node == parent.left;
+        if (isLeft) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+        removeFix(parent, child, isLeft);
+    }
+
+    /**
+     * Восстановление после удаления: child стал потомком parent со стороны isLeft и может иметь
+     * разность рангов 3. Лист с разностями (2, 2) понижается; дальше родитель 3-потомка понижается,
+     * пока это возможно, иначе один или два поворота завершают восстановление.
+     */
+    private void removeFix(Node parent, Node child, boolean isLeft) {
+        if (parent.left == null && parent.right == null && parent.rank == 1) {
+            parent.rank = 0;
+            child = parent;
+            parent = child.parent;
+            isLeft = parent != null && child == parent.left;
+        }
+        while (parent != null && parent.rank - rank(child) == 3) {
+            Node sibling = isLeft ? parent.right : parent.left;
+            if (parent.rank - sibling.rank == 2) {
+                parent.rank--;
+            } else {
+                Node inner = isLeft ? sibling.left : sibling.right;
+                Node outer = isLeft ? sibling.right : sibling.left;
+                if (sibling.rank - rank(inner) == 2 && sibling.rank - rank(outer) == 2) {
+                    sibling.rank--;
+                    parent.rank--;
+                } else if (sibling.rank - rank(outer) == 1) {
+                    rotate(sibling);
+                    sibling.rank++;
+                    parent.rank--;
+                    if (parent.left == null && parent.right == null) {
+                        parent.rank = 0;
+                    }
+                    return;
+                } else {
+                    rotate(inner);
+                    rotate(inner);
+                    inner.rank += 2;
+                    sibling.rank--;
+                    parent.rank -= 2;
+                    return;
+                }
+            }
+            child = parent;
+            parent = child.parent;
+            isLeft = parent != null && child == parent.left;
+        }
+    }
+
+    /**
+     * Поворачивает node вокруг его родителя: node занимает место родителя
+     */
+    private void rotate(Node node) {
+        Node parent = node.parent;
+        Node grand = parent.parent;
+        if (node == parent.left) {
+            parent.left = node.right;
+            if (node.right != null) node.right.parent = parent;
+            node.right = parent;
+        } else {
+            parent.right = node.left;
+            if (node.left != null) node.left.parent = parent;
+            node.left = parent;
+        }
+        parent.parent = node;
+        node.parent = grand;
+        if (grand == null) {
+            root = node;
+        } else if (grand.left == parent) {
+            grand.left = node;
+        } else {
+            grand.right = node;
+        }
+        rotationCount++;
+    }
+
+    private static int rank(WAVLTree<?>.Node node) {
+        return node == null ? -1 : node.rank;
+    }
+
+    /**
+     * @return сколько поворотов сделано за время жизни дерева
+     */
+    public long getRotationCount() {
+        return rotationCount;
+    }
+
+    private Node findNode(E value) {
+        Node curr = root;
+        while (curr != null) {
+            int comp = compare(curr.value, value);
+            if (comp == 0) return curr;
+            curr = (comp < 0) ? curr.right : curr.left;
+        }
+        return null;
+    }
+
+    /**
+     * Ищет элемент с таким же значением в дереве.
+     * Инвариант: на вход всегда приходит NotNull объект, который имеет корректный тип
+     *
+     * @param object элемент который необходимо поискать
+     * @return true, если такой элемент содержится в дереве
+     */
+    @Override
+    public boolean contains(Object object) {
+        @SuppressWarnings("unchecked")
+        E value = (E) object;
+        return findNode(value) != null;
+    }
+
+    /**
+     * Ищет наименьший элемент в дереве
+     * @return Возвращает наименьший элемент в дереве
+     * @throws NoSuchElementException если дерево пустое
+     */
+    @Override
+    public E first() {
+        if (size == 0) {
+            throw new NoSuchElementException("first");
+        }
+        Node curr = root;
+        while (curr.left != null) {
+            curr = curr.left;
+        }
+        return curr.value;
+    }
+
+    /**
+     * Ищет наибольший элемент в дереве
+     * @return Возвращает наибольший элемент в дереве
+     * @throws NoSuchElementException если дерево пустое
+     */
+    @Override
+    public E last() {
+        if (size == 0) {
+            throw new NoSuchElementException("last");
+        }
+        Node curr = root;
+        while (curr.right != null) {
+            curr = curr.right;
+        }
+        return curr.value;
+    }
+
+    private int compare(E v1, E v2) {
+        return comparator == null ? v1.compareTo(v2) : comparator.compare(v1, v2);
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "WAVLTree{size=" + size + ", rank=" + rank(root) + "}";
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return new SortedRangeView<>(this, fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return new SortedRangeView<>(this, null, toElement);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return new SortedRangeView<>(this, fromElement, null);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        Node curr = root;
+        while (curr != null && curr.left != null) {
+            curr = curr.left;
+        }
+        return new TreeIterator(curr);
+    }
+
+    @Override
+    public Iterator<E> iteratorFrom(E fromElement) {
+        return fromElement == null ? iterator() : new TreeIterator(ceilingNode(fromElement));
+    }
+
+    /**
+     * @return узел с наименьшим значением, не меньшим value, или null
+     */
+    private Node ceilingNode(E value) {
+        Node curr = root;
+        Node found = null;
+        while (curr != null) {
+            int comp = compare(curr.value, value);
+            if (comp == 0) return curr;
+            if (comp > 0) {
+                found = curr;
+                curr = curr.left;
+            } else {
+                curr = curr.right;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Следующий по порядку узел через ссылки на родителей
+     */
+    private Node successor(Node node) {
+        if (node.right != null) {
+            node = node.right;
+            while (node.left != null) node = node.left;
+            return node;
+        }
+        Node parent = node.parent;
+        while (parent != null && node == parent.right) {
+            node = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    /**
+     * Итератор по ссылкам на родителей: O(1) амортизированно на шаг, без стека.
+     * Удаление переносит значения между узлами, поэтому после remove следующий узел ищется заново.
+     */
+    private final class TreeIterator implements Iterator<E> {
+        private Node next;
+        private E lastReturned;
+        private int expectedModCount = modCount;
+
+        TreeIterator(Node next) {
+            this.next = next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next.value;
+            next = successor(next);
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            E following = next == null ? null : next.value;
+            WAVLTree.this.remove(lastReturned);
+            next = following == null ? null : ceilingNode(following);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Обходит дерево и проверяет правила рангов:
+     * <p>
+     * 1) Разность рангов родителя и потомка равна 1 или 2 (у отсутствующего потомка ранг -1).
+     * 2) У листа ранг 0.
+     * 3) Ссылки на родителей согласованы с ссылками на потомков.
+     *
+     * @throws NotBalancedTreeException если какое-либо правило не выполнено
+     */
+    @Override
+    public void checkBalanced() throws NotBalancedTreeException {
+        if (root != null && root.parent != null) {
+            throw new NotBalancedTreeException("Root must have no parent");
+        }
+        traverseTreeAndCheckBalanced(root);
+    }
+
+    private void traverseTreeAndCheckBalanced(Node node) throws NotBalancedTreeException {
+        if (node == null) {
+            return;
+        }
+        int leftDiff = node.rank - rank(node.left);
+        int rightDiff = node.rank - rank(node.right);
+        if (leftDiff < 1 || leftDiff > 2 || rightDiff < 1 || rightDiff > 2) {
+            throw NotBalancedTreeException.create("Rank difference must be 1 or 2.",
+                    rank(node.left), rank(node.right), node.toString());
+        }
+        if (node.left == null && node.right == null && node.rank != 0) {
+            throw new NotBalancedTreeException("Leaf must have rank 0.\n" + node);
+        }
+        if (node.left != null && node.left.parent != node || node.right != null && node.right.parent != node) {
+            throw new NotBalancedTreeException("Child must link back to its parent.\n" + node);
+        }
+        traverseTreeAndCheckBalanced(node.left);
+        traverseTreeAndCheckBalanced(node.right);
+    }
+
+    class Node {
+        E value;
+        Node left, right, parent;
+        int rank;
+
+        Node(E value, Node parent) {
+            this.value = value;
+            this.parent = parent;
+        }
+
+        @Override
+        public String toString() {
+            return "N{d=" + value + ", rank=" + rank + "}";
+        }
+    }
+}
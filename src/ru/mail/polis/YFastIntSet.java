@@ -0,0 +1,447 @@
+package ru.mail.polis;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * Изменяемое множество ключей int на y-fast trie: навигация (ceiling, floor, higher, lower) за O(log log U),
+ * где U = 2^32, и память O(n).
+ * <p>
+ * Ключи разбиты на корзины по возрастанию: корзина - отсортированный int[] от MIN_BUCKET до MAX_BUCKET ключей,
+ * то есть Θ(w) для w = 32, и поиск внутри неё - двоичный поиск за O(log w). Корзина отвечает за полуинтервал
+ * [low, next.low), первая - с low = Integer.MIN_VALUE, поэтому корзина ключа - это корзина с наибольшим
+ * low, не превосходящим ключ. Её находит x-fast trie по одним только представителям low: для каждого уровня
+ * l = 0..32 хеш-таблица хранит префиксы длины l всех представителей, а для каждого префикса - корзины
+ * с наименьшим и наибольшим low под ним. Двоичный поиск по уровням находит самый длинный общий префикс ключа
+ * с представителями за O(log w) обращений к таблице, а оттуда ответ - min, max или сосед по списку корзин.
+ * <p>
+ * Представителей в Θ(w) раз меньше, чем ключей, поэтому 33 записи на представителя дают O(n) памяти,
+ * а перестройка префиксов при делении и слиянии корзин (O(w) операций) раз в Θ(w) вставок или удалений
+ * стоит O(1) амортизированно. Знаковые ключи переводятся в беззнаковые инверсией старшего бита, чтобы
+ * порядок префиксов совпадал с порядком int.
+ * <p>
+ * Методы навигации возвращают long: найденный ключ или NOT_FOUND, как в EytzingerIntSet.
+ */
+public final class YFastIntSet {
+
+    /**
+     * Результат ceiling, floor, higher и lower, если такого ключа нет; вне диапазона int
+     */
+    public static final long NOT_FOUND = Long.MIN_VALUE;
+
+    static final int MIN_BUCKET = 32;
+    static final int MAX_BUCKET = 128;
+    private static final int INITIAL_BUCKET_CAPACITY = 8;
+    private static final int LEVELS = Integer.SIZE;
+
+    private final PrefixTable prefixes = new PrefixTable();
+    private final Bucket head = new Bucket(Integer.MIN_VALUE, new int[INITIAL_BUCKET_CAPACITY], 0);
+    private Bucket tail = head;
+    private int bucketCount = 1;
+    private int size;
+
+    public YFastIntSet() {
+        addRepresentative(head);
+    }
+
+    public boolean contains(int key) {
+        return floorBucket(key).search(key) >= 0;
+    }
+
+    public boolean add(int key) {
+        Bucket bucket = floorBucket(key);
+        int i = bucket.search(key);
+        if (i >= 0) {
+            return false;
+        }
+        if (bucket.size == MAX_BUCKET) {
+            split(bucket);
+            if (key >= bucket.next.low) {
+                bucket = bucket.next;
+            }
+            i = bucket.search(key);
+        }
+        bucket.insert(-i - 1, key);
+        size++;
+        return true;
+    }
+
+    public boolean remove(int key) {
+        Bucket bucket = floorBucket(key);
+        int i = bucket.search(key);
+        if (i < 0) {
+            return false;
+        }
+        bucket.delete(i);
+        size--;
+        if (bucket.size < MIN_BUCKET && bucketCount > 1) {
+            merge(bucket == head ? head : bucket.prev);
+        }
+        return true;
+    }
+
+    /**
+     * @return наименьший ключ не меньше key или NOT_FOUND
+     */
+    public long ceiling(int key) {
+        Bucket bucket = floorBucket(key);
+        int i = bucket.search(key);
+        if (i >= 0) {
+            return key;
+        }
+        i = -i - 1;
+        if (i < bucket.size) {
+            return bucket.keys[i];
+        }
+        //все корзины, кроме единственной, непусты
+        return bucket.next == null ? NOT_FOUND : bucket.next.keys[0];
+    }
+
+    /**
+     * @return наименьший ключ больше key или NOT_FOUND
+     */
+    public long higher(int key) {
+        return key == Integer.MAX_VALUE ? NOT_FOUND : ceiling(key + 1);
+    }
+
+    /**
+     * @return наибольший ключ не больше key или NOT_FOUND
+     */
+    public long floor(int key) {
+        Bucket bucket = floorBucket(key);
+        int i = bucket.search(key);
+        if (i >= 0) {
+            return key;
+        }
+        i = -i - 1;
+        if (i > 0) {
+            return bucket.keys[i - 1];
+        }
+        Bucket prev = bucket.prev;
+        return prev == null ? NOT_FOUND : prev.keys[prev.size - 1];
+    }
+
+    /**
+     * @return наибольший ключ меньше key или NOT_FOUND
+     */
+    public long lower(int key) {
+        return key == Integer.MIN_VALUE ? NOT_FOUND : floor(key - 1);
+    }
+
+    public int first() {
+        if (size == 0) {
+            throw new NoSuchElementException("first");
+        }
+        return head.keys[0];
+    }
+
+    public int last() {
+        if (size == 0) {
+            throw new NoSuchElementException("last");
+        }
+        return tail.keys[tail.size - 1];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Обходит ключи в порядке возрастания
+     */
+    public void forEach(IntConsumer action) {
+        for (Bucket bucket = head; bucket != null; bucket = bucket.next) {
+            for (int i = 0; i < bucket.size; i++) {
+                action.accept(bucket.keys[i]);
+            }
+        }
+    }
+
+    /**
+     * @return ключи в порядке возрастания
+     */
+    public int[] toArray() {
+        int[] sorted = new int[size];
+        int n = 0;
+        for (Bucket bucket = head; bucket != null; bucket = bucket.next) {
+            System.arraycopy(bucket.keys, 0, sorted, n, bucket.size);
+            n += bucket.size;
+        }
+        return sorted;
+    }
+
+    @Override
+    public String toString() {
+        return "YFastIntSet{size=" + size + ", buckets=" + bucketCount + "}";
+    }
+
+    /**
+     * @return корзина с наибольшим low, не превосходящим key; существует всегда, так как у head low = MIN_VALUE
+     */
+    private Bucket floorBucket(int key) {
+        int bits = key ^ Integer.MIN_VALUE;
+        //префикс длины lo есть в таблице, длины hi - нет (длины 0 есть всегда)
+        int lo = 0;
+        int hi = LEVELS + 1;
+        int slot = prefixes.find(prefixKey(0, bits));
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            int found = prefixes.find(prefixKey(mid, bits));
+            if (found >= 0) {
+                lo = mid;
+                slot = found;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo == LEVELS) {
+            return prefixes.min(slot);
+        }
+        //под префиксом есть только одна ветка, и это не ветка ключа
+        if ((bits >>> (LEVELS - 1 - lo) & 1) != 0) {
+            return prefixes.max(slot);
+        }
+        return prefixes.min(slot).prev;
+    }
+
+    /**
+     * Делит корзину пополам, верхняя половина становится новой корзиной со своим представителем
+     */
+    private void split(Bucket bucket) {
+        int half = bucket.size >>> 1;
+        int[] upper = Arrays.copyOfRange(bucket.keys, half, Math.max(bucket.size, half + INITIAL_BUCKET_CAPACITY));
+        Bucket next = new Bucket(upper[0], upper, bucket.size - half);
+        bucket.size = half;
+        next.prev = bucket;
+        next.next = bucket.next;
+        if (bucket.next != null) {
+            bucket.next.prev = next;
+        } else {
+            tail = next;
+        }
+        bucket.next = next;
+        bucketCount++;
+        addRepresentative(next);
+    }
+
+    /**
+     * Переносит ключи следующей корзины в bucket и удаляет следующую; слишком большую корзину снова делит
+     */
+    private void merge(Bucket bucket) {
+        Bucket next = bucket.next;
+        removeRepresentative(next);
+        if (bucket.keys.length < bucket.size + next.size) {
+            bucket.keys = Arrays.copyOf(bucket.keys, bucket.size + next.size);
+        }
+        System.arraycopy(next.keys, 0, bucket.keys, bucket.size, next.size);
+        bucket.size += next.size;
+        bucket.next = next.next;
+        if (next.next != null) {
+            next.next.prev = bucket;
+        } else {
+            tail = bucket;
+        }
+        bucketCount--;
+        if (bucket.size > MAX_BUCKET) {
+            split(bucket);
+        }
+    }
+
+    private void addRepresentative(Bucket bucket) {
+        int bits = bucket.low ^ Integer.MIN_VALUE;
+        for (int level = 0; level <= LEVELS; level++) {
+            long key = prefixKey(level, bits);
+            int slot = prefixes.find(key);
+            if (slot < 0) {
+                prefixes.put(key, bucket, bucket);
+                continue;
+            }
+            if (bucket.low < prefixes.min(slot).low) {
+                prefixes.mins[slot] = bucket;
+            }
+            if (bucket.low > prefixes.max(slot).low) {
+                prefixes.maxs[slot] = bucket;
+            }
+        }
+    }
+
+    /**
+     * Вызывается до того, как корзина исключена из списка: её соседи заменяют её в min и max
+     */
+    private void removeRepresentative(Bucket bucket) {
+        int bits = bucket.low ^ Integer.MIN_VALUE;
+        for (int level = 0; level <= LEVELS; level++) {
+            int slot = prefixes.find(prefixKey(level, bits));
+            Bucket min = prefixes.min(slot);
+            Bucket max = prefixes.max(slot);
+            if (min == bucket && max == bucket) {
+                prefixes.delete(slot);
+                continue;
+            }
+            if (min == bucket) {
+                prefixes.mins[slot] = bucket.next;
+            }
+            if (max == bucket) {
+                prefixes.maxs[slot] = bucket.prev;
+            }
+        }
+    }
+
+    /**
+     * @param bits - ключ со сменённым старшим битом
+     * @return уровень в старших 32 битах, префикс длины level - в младших
+     */
+    private static long prefixKey(int level, int bits) {
+        if (level == 0) {
+            return 0;
+        }
+        return (long) level << 32 | (bits >>> (LEVELS - level) & 0xFFFFFFFFL);
+    }
+
+    private static final class Bucket {
+        /**
+         * Представитель: не больше всех ключей корзины и больше всех ключей предыдущей
+         */
+        final int low;
+        int[] keys;
+        int size;
+        Bucket prev;
+        Bucket next;
+
+        Bucket(int low, int[] keys, int size) {
+            this.low = low;
+            this.keys = keys;
+            this.size = size;
+        }
+
+        int search(int key) {
+            return Arrays.binarySearch(keys, 0, size, key);
+        }
+
+        void insert(int i, int key) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, Math.min(2 * keys.length, MAX_BUCKET));
+            }
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            keys[i] = key;
+            size++;
+        }
+
+        void delete(int i) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            size--;
+        }
+    }
+
+    /**
+     * Хеш-таблица префиксов всех уровней сразу: открытая адресация с линейным пробированием и удалением
+     * сдвигом назад, ключ prefixKey, значения - две корзины в параллельных массивах
+     */
+    private static final class PrefixTable {
+
+        private static final long EMPTY = -1L;
+        private static final int MIN_CAPACITY = 64;
+
+        long[] keys;
+        Bucket[] mins;
+        Bucket[] maxs;
+        private int size;
+
+        PrefixTable() {
+            allocate(MIN_CAPACITY);
+        }
+
+        Bucket min(int slot) {
+            return mins[slot];
+        }
+
+        Bucket max(int slot) {
+            return maxs[slot];
+        }
+
+        /**
+         * @return ячейка ключа или -1
+         */
+        int find(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                long current = keys[i];
+                if (current == key) {
+                    return i;
+                }
+                if (current == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(long key, Bucket min, Bucket max) {
+            if (2 * (size + 1) > keys.length) {
+                resize(2 * keys.length);
+            }
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            mins[i] = min;
+            maxs[i] = max;
+            size++;
+        }
+
+        void delete(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            for (int i = (slot + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+                //ключ можно сдвинуть в дыру, если его домашняя ячейка не между дырой и им самим
+                int home = hash(keys[i]) & mask;
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    mins[hole] = mins[i];
+                    maxs[hole] = maxs[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = EMPTY;
+            mins[hole] = null;
+            maxs[hole] = null;
+            size--;
+            if (keys.length > MIN_CAPACITY && 8 * size < keys.length) {
+                resize(keys.length / 2);
+            }
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            Bucket[] oldMins = mins;
+            Bucket[] oldMaxs = maxs;
+            allocate(capacity);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldMins[i], oldMaxs[i]);
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            mins = new Bucket[capacity];
+            maxs = new Bucket[capacity];
+            size = 0;
+        }
+
+        private static int hash(long key) {
+            key ^= key >>> 33;
+            key *= 0xFF51AFD7ED558CCDL;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+    }
+}
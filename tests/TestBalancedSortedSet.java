@@ -2,6 +2,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -15,9 +16,15 @@ import org.junit.runners.MethodSorters;
 import org.junit.runners.Parameterized;
 
 import ru.mail.polis.AVLTree;
+import ru.mail.polis.BPlusTreeSet;
 import ru.mail.polis.BalancedSortedSet;
+import ru.mail.polis.LockFreeBinarySearchTree;
+import ru.mail.polis.LockFreeSkipList;
 import ru.mail.polis.NotBalancedTreeException;
 import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.ScapegoatTree;
+import ru.mail.polis.SplayTree;
+import ru.mail.polis.WAVLTree;
 
 /**
  * Created by Nechaev Mikhail
@@ -42,6 +49,12 @@ public class TestBalancedSortedSet extends AbstractSetTest {
     private static final Class<?>[] testClasses = (Class<?>[]) new Class<?>[]{
             AVLTree.class,
             RedBlackTree.class,
+            LockFreeSkipList.class,
+            BPlusTreeSet.class,
+            WAVLTree.class,
+            SplayTree.class,
+            ScapegoatTree.class,
+            LockFreeBinarySearchTree.class,
     };
 
     @SuppressWarnings("unchecked")
@@ -161,6 +174,85 @@ public class TestBalancedSortedSet extends AbstractSetTest {
         }
     }
 
+    @Test
+    public void test08_iteratorAndRanges() {
+        for (int i = 0; i < 500; i++) {
+            int value = RANDOM.nextInt(1000);
+            validSortedSet.add(value);
+            testSortedSet.add(value);
+        }
+        Assert.assertArrayEquals("iterator", validSortedSet.toArray(), testSortedSet.toArray());
+        for (int i = 0; i < 20; i++) {
+            int from = RANDOM.nextInt(1100) - 50;
+            int to = RANDOM.nextInt(1100) - 50;
+            if (validSortedSet.comparator() != null && validSortedSet.comparator().compare(from, to) > 0
+                    || validSortedSet.comparator() == null && from > to) {
+                int temp = from;
+                from = to;
+                to = temp;
+            }
+            Assert.assertArrayEquals("subSet", validSortedSet.subSet(from, to).toArray(),
+                    testSortedSet.subSet(from, to).toArray());
+            Assert.assertArrayEquals("headSet", validSortedSet.headSet(to).toArray(), testSortedSet.headSet(to).toArray());
+            Assert.assertArrayEquals("tailSet", validSortedSet.tailSet(from).toArray(), testSortedSet.tailSet(from).toArray());
+        }
+        for (Iterator<Integer> valid = validSortedSet.iterator(), test = testSortedSet.iterator(); valid.hasNext(); ) {
+            Assert.assertEquals("next", valid.next(), test.next());
+            if (RANDOM.nextBoolean()) {
+                valid.remove();
+                test.remove();
+            }
+        }
+        checkBalanced(testSortedSet);
+        Assert.assertArrayEquals("iterator after remove", validSortedSet.toArray(), testSortedSet.toArray());
+    }
+
+    @Test
+    public void test09_addAllNearlySorted() {
+        Integer[] values = new Integer[2000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i / 2 * 3; //каждое значение дважды
+        }
+        for (int i = 0; i + 1 < values.length; i += 1 + RANDOM.nextInt(5)) {
+            Integer temp = values[i];
+            values[i] = values[i + 1];
+            values[i + 1] = temp;
+        }
+        Assert.assertEquals("addAll", validSortedSet.addAll(Arrays.asList(values)), testSortedSet.addAll(Arrays.asList(values)));
+        Assert.assertFalse("addAll again", testSortedSet.addAll(Arrays.asList(values)));
+        checkBalanced(testSortedSet);
+        Assert.assertArrayEquals("after addAll", validSortedSet.toArray(), testSortedSet.toArray());
+        if (testSortedSet instanceof RedBlackTree) {
+            RedBlackTree<Integer>.Finger finger = ((RedBlackTree<Integer>) testSortedSet).finger();
+            for (int value = -5; value < 3005; value++) {
+                Assert.assertEquals("finger contains " + value, validSortedSet.contains(value), finger.contains(value));
+                if (value % 7 == 0) {
+                    check(validSortedSet, testSortedSet, value, TransformOperation.REMOVE);
+                } else if (value % 11 == 0) {
+                    Assert.assertEquals("finger add " + value, validSortedSet.add(value), finger.add(value));
+                    Assert.assertEquals("finger", Integer.valueOf(value), finger.get());
+                }
+            }
+            checkBalanced(testSortedSet);
+            Assert.assertArrayEquals("after finger", validSortedSet.toArray(), testSortedSet.toArray());
+        }
+    }
+
+    @Test
+    public void test10_wavlRotations() {
+        if (testSortedSet instanceof WAVLTree) {
+            WAVLTree<Integer> tree = (WAVLTree<Integer>) testSortedSet;
+            for (int i = 0; i < 5000; i++) {
+                long before = tree.getRotationCount();
+                check(validSortedSet, testSortedSet, RANDOM.nextInt(3000), TransformOperation.ADD);
+                Assert.assertTrue("rotations per add", tree.getRotationCount() - before <= 2);
+                before = tree.getRotationCount();
+                check(validSortedSet, testSortedSet, RANDOM.nextInt(3000), TransformOperation.REMOVE);
+                Assert.assertTrue("rotations per remove", tree.getRotationCount() - before <= 2);
+            }
+        }
+    }
+
     private <E> void check(SortedSet<E> validSortedSet, BalancedSortedSet<E> testSortedSet, E value, TransformOperation transformOperation) {
         checkFirstAndLast(validSortedSet, testSortedSet);
         checkTransformOperation(validSortedSet, testSortedSet, value, transformOperation);
@@ -0,0 +1,170 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.BalancedSortedSet;
+import ru.mail.polis.ChainHashTable;
+import ru.mail.polis.NotBalancedTreeException;
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestBatchOperations extends AbstractSetTest {
+
+    private static Student[] students(int count) {
+        Student[] students = new Student[count];
+        for (int i = 0; i < count; i++) {
+            students[i] = SimpleStudentGenerator.getInstance().generate();
+        }
+        return students;
+    }
+
+    /**
+     * Половина ключей уже в множестве, четверть - новые, четверть - повторы внутри партии
+     */
+    private static <E> E[] mixed(E[] present, E[] absent) {
+        E[] keys = present.clone();
+        for (int i = 0; i < keys.length; i++) {
+            int r = RANDOM.nextInt(4);
+            if (r == 0) keys[i] = absent[RANDOM.nextInt(absent.length)];
+            else if (r == 1) keys[i] = keys[RANDOM.nextInt(i + 1)];
+            else keys[i] = present[RANDOM.nextInt(present.length)];
+        }
+        return keys;
+    }
+
+    private static <E> void checkContainsAll(Set<E> validSet, Set<E> testSet, E[] keys, boolean[] out) {
+        for (int i = 0; i < keys.length; i++) {
+            Assert.assertEquals("containsAll[" + i + "]", validSet.contains(keys[i]), out[i]);
+        }
+        Assert.assertEquals("size", validSet.size(), testSet.size());
+    }
+
+    private static <E> int addAll(Set<E> validSet, E[] keys) {
+        int added = 0;
+        for (E key : keys) {
+            if (validSet.add(key)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    @Test
+    public void test01_openHashTable() {
+        Student[] present = students(2000);
+        Student[] absent = students(500);
+        OpenHashTable<Student> testSet = new OpenHashTable<>();
+        Set<Student> validSet = new HashSet<>();
+        for (int size : new int[]{1, 7, 33, 1024}) {
+            Student[] keys = mixed(present, absent);
+            Student[] batch = Arrays.copyOf(keys, size);
+            Assert.assertEquals("addBatch", addAll(validSet, batch), testSet.addBatch(batch));
+            boolean[] out = new boolean[keys.length];
+            testSet.containsAll(keys, out);
+            checkContainsAll(validSet, testSet, keys, out);
+        }
+        for (Student student : present) {
+            checkSizeAndContains(validSet, testSet, student);
+        }
+    }
+
+    @Test
+    public void test02_chainHashTable() {
+        Student[] present = students(2000);
+        Student[] absent = students(500);
+        ChainHashTable<Student> testSet = new ChainHashTable<>();
+        Set<Student> validSet = new HashSet<>();
+        for (int size : new int[]{1, 7, 33, 1024}) {
+            Student[] keys = mixed(present, absent);
+            Student[] batch = Arrays.copyOf(keys, size);
+            Assert.assertEquals("addBatch", addAll(validSet, batch), testSet.addBatch(batch));
+            boolean[] out = new boolean[keys.length];
+            testSet.containsAll(keys, out);
+            checkContainsAll(validSet, testSet, keys, out);
+        }
+        for (Student student : present) {
+            checkSizeAndContains(validSet, testSet, student);
+        }
+    }
+
+    @Test
+    public void test03_avlTree() throws NotBalancedTreeException {
+        checkTree(new AVLTree<>());
+    }
+
+    @Test
+    public void test04_redBlackTree() throws NotBalancedTreeException {
+        checkTree(new RedBlackTree<>());
+    }
+
+    private void checkTree(BalancedSortedSet<Integer> testSet) throws NotBalancedTreeException {
+        Set<Integer> validSet = new HashSet<>();
+        Integer[] present = new Integer[3000];
+        Integer[] absent = new Integer[1000];
+        for (int i = 0; i < present.length; i++) present[i] = RANDOM.nextInt(10000) * 2;
+        for (int i = 0; i < absent.length; i++) absent[i] = RANDOM.nextInt(10000) * 2 + 1;
+        for (int size : new int[]{0, 1, 2, 100, 1024, 3000}) {
+            Integer[] keys = mixed(present, absent);
+            Integer[] batch = Arrays.copyOf(keys, size);
+            int added = testSet instanceof AVLTree ? ((AVLTree<Integer>) testSet).addBatch(batch)
+                    : ((RedBlackTree<Integer>) testSet).addBatch(batch);
+            Assert.assertEquals("addBatch", addAll(validSet, batch), added);
+            testSet.checkBalanced();
+            boolean[] out = new boolean[keys.length];
+            if (testSet instanceof AVLTree) {
+                ((AVLTree<Integer>) testSet).containsAll(keys, out);
+            } else {
+                ((RedBlackTree<Integer>) testSet).containsAll(keys, out);
+            }
+            checkContainsAll(validSet, testSet, keys, out);
+        }
+    }
+
+    @Test
+    public void test05_sharedPathIsNotRepeated() {
+        //все ключи дерева и промахи между ними по возрастанию: спуск продолжается от общего предка,
+        //поэтому каждый узел сравнивается с ключами партии O(1) раз, а не O(log n)
+        int size = 1 << 14;
+        long[] comparisons = new long[1];
+        Comparator<Integer> counting = (a, b) -> {
+            comparisons[0]++;
+            return Integer.compare(a, b);
+        };
+        AVLTree<Integer> avl = new AVLTree<>(counting);
+        RedBlackTree<Integer> redBlack = new RedBlackTree<>(counting);
+        Integer[] keys = new Integer[2 * size];
+        for (int i = 0; i < size; i++) {
+            avl.add(2 * i);
+            redBlack.add(2 * i);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+        boolean[] out = new boolean[keys.length];
+        comparisons[0] = 0;
+        avl.containsAll(keys, out);
+        long avlComparisons = comparisons[0];
+        for (int i = 0; i < keys.length; i++) {
+            Assert.assertEquals("avl " + i, i % 2 == 0, out[i]);
+        }
+        comparisons[0] = 0;
+        redBlack.containsAll(keys, out);
+        long redBlackComparisons = comparisons[0];
+        for (int i = 0; i < keys.length; i++) {
+            Assert.assertEquals("red-black " + i, i % 2 == 0, out[i]);
+        }
+        //n - 1 сравнение на упорядоченной партии и не больше двух на каждый ключ при спуске
+        Assert.assertTrue("avl comparisons " + avlComparisons, avlComparisons <= 3L * keys.length);
+        Assert.assertTrue("red-black comparisons " + redBlackComparisons, redBlackComparisons <= 3L * keys.length);
+    }
+}
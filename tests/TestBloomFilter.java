@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.BlockedBloomFilter;
+import ru.mail.polis.ChainHashTable;
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestBloomFilter extends AbstractSetTest {
+
+    private static Student generate() {
+        return SimpleStudentGenerator.getInstance().generate();
+    }
+
+    @Test
+    public void test01_noFalseNegatives() {
+        int count = 100_000;
+        BlockedBloomFilter filter = new BlockedBloomFilter(count);
+        for (int i = 0; i < count; i++) {
+            filter.add(i * 31);
+        }
+        for (int i = 0; i < count; i++) {
+            Assert.assertTrue("added " + i, filter.mightContain(i * 31));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < count; i++) {
+            if (filter.mightContain(-1 - i * 31)) {
+                falsePositives++;
+            }
+        }
+        Assert.assertTrue("false positives " + falsePositives, falsePositives < count / 25);
+    }
+
+    @Test
+    public void test02_openHashTable() {
+        OpenHashTable<Student> testSet = new OpenHashTable<>();
+        testSet.enableBloomFilter();
+        checkTable(testSet);
+    }
+
+    @Test
+    public void test03_chainHashTable() {
+        ChainHashTable<Student> testSet = new ChainHashTable<>();
+        testSet.enableBloomFilter();
+        checkTable(testSet);
+    }
+
+    @Test
+    public void test04_enableOnFilledTable() {
+        OpenHashTable<Student> open = new OpenHashTable<>();
+        ChainHashTable<Student> chain = new ChainHashTable<>();
+        List<Student> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Student student = generate();
+            values.add(student);
+            open.add(student);
+            chain.add(student);
+        }
+        open.enableBloomFilter();
+        chain.enableBloomFilter();
+        for (Student student : values) {
+            Assert.assertTrue("open", open.contains(student));
+            Assert.assertTrue("chain", chain.contains(student));
+            Assert.assertFalse("open duplicate", open.add(student));
+            Assert.assertFalse("chain duplicate", chain.add(student));
+        }
+    }
+
+    /**
+     * Добавление, удаление большей части и повторное добавление: фильтр перестраивается и после роста,
+     * и после удалений, и не должен терять элементы
+     */
+    private void checkTable(Set<Student> testSet) {
+        Set<Student> validSet = new HashSet<>();
+        List<Student> values = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Student student = generate();
+            values.add(student);
+            check(validSet, testSet, student, TransformOperation.ADD);
+        }
+        for (int i = 0; i < 1500; i++) {
+            check(validSet, testSet, values.get(i), TransformOperation.REMOVE);
+        }
+        for (int i = 0; i < 1000; i++) {
+            check(validSet, testSet, values.get(i), TransformOperation.ADD);
+            checkSizeAndContains(validSet, testSet, generate());
+        }
+        for (Student student : values) {
+            checkSizeAndContains(validSet, testSet, student);
+        }
+    }
+
+    private void check(Set<Student> validSet, Set<Student> testSet, Student value, TransformOperation transformOperation) {
+        checkSizeAndContains(validSet, testSet, value);
+        checkTransformOperation(validSet, testSet, value, transformOperation);
+        checkSizeAndContains(validSet, testSet, value);
+        checkTransformOperation(validSet, testSet, value, transformOperation);
+        checkSizeAndContains(validSet, testSet, value);
+    }
+}
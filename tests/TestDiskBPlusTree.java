@@ -0,0 +1,182 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.DiskBPlusTree;
+import ru.mail.polis.ElementCodecs;
+import ru.mail.polis.NotBalancedTreeException;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestDiskBPlusTree extends AbstractSetTest {
+
+    //маленькие страницы, чтобы дерево быстро становилось многоуровневым
+    private static final int PAGE_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private TreeSet<Integer> validSet;
+
+    @Before
+    public void createFile() throws IOException {
+        file = folder.getRoot().toPath().resolve("tree.db");
+        validSet = new TreeSet<>();
+    }
+
+    private DiskBPlusTree<Integer> open() throws IOException {
+        return DiskBPlusTree.open(file, ElementCodecs.INTEGER, null, PAGE_SIZE, 64);
+    }
+
+    @Test
+    public void test01_emptyAndNull() throws IOException {
+        try (DiskBPlusTree<Integer> tree = open()) {
+            checkSizeAndContains(validSet, tree, 0);
+            Assert.assertFalse("iterator", tree.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void test02_randomAgainstTreeSet() throws IOException {
+        try (DiskBPlusTree<Integer> tree = open()) {
+            for (int i = 0; i < 20000; i++) {
+                int value = RANDOM.nextInt(5000);
+                TransformOperation operation = RANDOM.nextInt(3) > 0 ? TransformOperation.ADD : TransformOperation.REMOVE;
+                checkTransformOperation(validSet, tree, value, operation);
+                checkSizeAndContains(validSet, tree, value);
+                if (i % 1000 == 0) {
+                    checkBalanced(tree);
+                    tree.commit();
+                }
+            }
+            checkContent(tree);
+        }
+    }
+
+    @Test
+    public void test03_reopen() throws IOException {
+        try (DiskBPlusTree<Integer> tree = open()) {
+            for (int i = 0; i < 10000; i++) {
+                checkTransformOperation(validSet, tree, RANDOM.nextInt(100000), TransformOperation.ADD);
+            }
+        }
+        try (DiskBPlusTree<Integer> tree = open()) {
+            checkContent(tree);
+            for (Integer value : new ArrayList<>(validSet)) {
+                if (value % 2 == 0) {
+                    checkTransformOperation(validSet, tree, value, TransformOperation.REMOVE);
+                }
+            }
+        }
+        try (DiskBPlusTree<Integer> tree = open()) {
+            checkContent(tree);
+        }
+    }
+
+    @Test
+    public void test04_uncommittedChangesAreLost() throws IOException {
+        DiskBPlusTree<Integer> writer = open();
+        for (int i = 0; i < 5000; i++) {
+            checkTransformOperation(validSet, writer, i, TransformOperation.ADD);
+        }
+        writer.commit();
+        // изменения без commit: второй экземпляр должен видеть состояние последнего commit
+        for (int i = 5000; i < 10000; i++) {
+            writer.add(i);
+        }
+        for (int i = 0; i < 5000; i += 3) {
+            writer.remove(i);
+        }
+        try (DiskBPlusTree<Integer> reader = DiskBPlusTree.open(file, ElementCodecs.INTEGER)) {
+            checkContent(reader);
+        }
+        writer.rollback();
+        checkContent(writer);
+        writer.close();
+    }
+
+    @Test
+    public void test05_tornMetaFallsBack() throws IOException {
+        try (DiskBPlusTree<Integer> tree = open()) {
+            for (int i = 0; i < 1000; i++) {
+                checkTransformOperation(validSet, tree, i, TransformOperation.ADD);
+            }
+            tree.commit();
+            tree.add(100000);
+        }
+        // портим последнюю записанную копию метаданных
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer meta = ByteBuffer.allocate(1024);
+            channel.read(meta, 0);
+            int latest = meta.getLong(16) > meta.getLong(512 + 16) ? 0 : 512;
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), latest + 24);
+        }
+        try (DiskBPlusTree<Integer> tree = open()) {
+            checkContent(tree);
+        }
+    }
+
+    @Test
+    public void test06_pagesAreReused() throws IOException {
+        try (DiskBPlusTree<Integer> tree = open()) {
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 5000; i++) {
+                    tree.add(i);
+                }
+                tree.commit();
+                for (int i = 0; i < 5000; i++) {
+                    tree.remove(i);
+                }
+                tree.commit();
+            }
+            long pages = tree.getPageCount();
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 5000; i++) {
+                    tree.add(i);
+                }
+                tree.commit();
+                for (int i = 0; i < 5000; i++) {
+                    tree.remove(i);
+                }
+                tree.commit();
+            }
+            Assert.assertEquals("page count", pages, tree.getPageCount());
+            checkBalanced(tree);
+        }
+    }
+
+    private void checkContent(DiskBPlusTree<Integer> tree) {
+        Assert.assertEquals("size", validSet.size(), tree.size());
+        Iterator<Integer> expected = validSet.iterator();
+        for (Integer value : tree) {
+            Assert.assertEquals("iterator", expected.next(), value);
+        }
+        Assert.assertFalse("iterator", expected.hasNext());
+        if (!validSet.isEmpty()) {
+            Assert.assertEquals("first", validSet.first(), tree.first());
+            Assert.assertEquals("last", validSet.last(), tree.last());
+        }
+        checkBalanced(tree);
+    }
+
+    private void checkBalanced(DiskBPlusTree<Integer> tree) {
+        try {
+            tree.checkBalanced();
+        } catch (NotBalancedTreeException e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+}
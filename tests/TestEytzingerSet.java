@@ -0,0 +1,221 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.EytzingerIntSet;
+import ru.mail.polis.EytzingerSet;
+import ru.mail.polis.RedBlackTree;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestEytzingerSet {
+
+    private static final int MAX_SIZE = 70;
+
+    /**
+     * @return ключ или NOT_FOUND, как в EytzingerIntSet
+     */
+    private static long orNotFound(Integer value) {
+        return value == null ? EytzingerIntSet.NOT_FOUND : value;
+    }
+
+    @Test
+    public void test01_navigationAllShapes() {
+        //все размеры до MAX_SIZE: полные и неполные нижние уровни
+        Random random = new Random(42);
+        for (int size = 0; size <= MAX_SIZE; size++) {
+            TreeSet<Integer> expected = new TreeSet<>();
+            AVLTree<Integer> tree = new AVLTree<>();
+            while (expected.size() < size) {
+                int value = random.nextInt(4 * MAX_SIZE) * 2;
+                expected.add(value);
+                tree.add(value);
+            }
+            EytzingerSet<Integer> frozen = tree.freeze();
+            EytzingerIntSet ints = EytzingerIntSet.of(tree);
+            Assert.assertEquals(expected, frozen);
+            Assert.assertEquals(new ArrayList<>(expected), new ArrayList<>(frozen));
+            Assert.assertEquals(size, ints.size());
+            for (int probe = -1; probe <= 8 * MAX_SIZE + 1; probe++) {
+                Assert.assertEquals(expected.contains(probe), frozen.contains(probe));
+                Assert.assertEquals(expected.ceiling(probe), frozen.ceiling(probe));
+                Assert.assertEquals(expected.higher(probe), frozen.higher(probe));
+                Assert.assertEquals(expected.floor(probe), frozen.floor(probe));
+                Assert.assertEquals(expected.lower(probe), frozen.lower(probe));
+                Assert.assertEquals(expected.contains(probe), ints.contains(probe));
+                Assert.assertEquals(orNotFound(expected.ceiling(probe)), ints.ceiling(probe));
+                Assert.assertEquals(orNotFound(expected.higher(probe)), ints.higher(probe));
+                Assert.assertEquals(orNotFound(expected.floor(probe)), ints.floor(probe));
+                Assert.assertEquals(orNotFound(expected.lower(probe)), ints.lower(probe));
+            }
+            if (size == 0) {
+                try {
+                    frozen.first();
+                    Assert.fail("NoSuchElementException");
+                } catch (NoSuchElementException ignored) {
+                }
+            } else {
+                Assert.assertEquals(expected.first(), frozen.first());
+                Assert.assertEquals(expected.last(), frozen.last());
+                Assert.assertEquals(expected.first().intValue(), ints.first());
+                Assert.assertEquals(expected.last().intValue(), ints.last());
+                Assert.assertEquals(expected.subSet(MAX_SIZE, 3 * MAX_SIZE), frozen.subSet(MAX_SIZE, 3 * MAX_SIZE));
+            }
+        }
+    }
+
+    @Test
+    public void test02_comparatorAndSnapshot() {
+        RedBlackTree<Integer> tree = new RedBlackTree<>(Comparator.<Integer>reverseOrder());
+        for (int i = 0; i < 1000; i++) {
+            tree.add(i);
+        }
+        EytzingerSet<Integer> frozen = tree.freeze();
+        //дальнейшие изменения дерева снимок не видит
+        tree.remove(500);
+        tree.add(5000);
+        Assert.assertEquals(1000, frozen.size());
+        Assert.assertTrue(frozen.contains(500));
+        Assert.assertFalse(frozen.contains(5000));
+        Assert.assertEquals(999, frozen.first().intValue());
+        Assert.assertEquals(0, frozen.last().intValue());
+        //в обратном порядке higher - ближайший меньший элемент
+        Assert.assertEquals(499, frozen.higher(500).intValue());
+        Assert.assertEquals(501, frozen.lower(500).intValue());
+        Assert.assertNull(frozen.ceiling(-1));
+        try {
+            frozen.add(1);
+            Assert.fail("UnsupportedOperationException");
+        } catch (UnsupportedOperationException ignored) {
+        }
+        try {
+            EytzingerIntSet.of(tree);
+            Assert.fail("IllegalArgumentException");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void test03_intSetFromArray() {
+        Random random = new Random(7);
+        int[] values = new int[100_000];
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt();
+        }
+        values[1] = values[0]; //повторы отбрасываются
+        for (int value : values) {
+            expected.add(value);
+        }
+        EytzingerIntSet ints = EytzingerIntSet.of(values);
+        Assert.assertEquals(expected.size(), ints.size());
+        List<Integer> sorted = new ArrayList<>();
+        ints.forEach(sorted::add);
+        Assert.assertEquals(new ArrayList<>(expected), sorted);
+        Assert.assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), ints.toArray());
+        for (int i = 0; i < 10_000; i++) {
+            int probe = random.nextInt();
+            Assert.assertEquals(orNotFound(expected.ceiling(probe)), ints.ceiling(probe));
+            Assert.assertEquals(orNotFound(expected.floor(probe)), ints.floor(probe));
+        }
+        Assert.assertEquals(EytzingerIntSet.NOT_FOUND, ints.higher(Integer.MAX_VALUE));
+        Assert.assertEquals(EytzingerIntSet.NOT_FOUND, ints.lower(Integer.MIN_VALUE));
+        Assert.assertTrue(EytzingerIntSet.of().isEmpty());
+    }
+
+    @Test
+    public void test04_largeSize() {
+        //больше 2^27 ключей: индексы нижних уровней и 2k на выходе из массива близки к пределу int; ключи 0, 2, 4, ...
+        int size = (1 << 27) + 1000;
+        EytzingerIntSet ints = EytzingerIntSet.of(new EvenKeys(size));
+        Assert.assertEquals(size, ints.size());
+        Assert.assertTrue(ints.contains(0));
+        Assert.assertFalse(ints.contains(1));
+        Assert.assertTrue(ints.contains(2 * (size - 1)));
+        Assert.assertEquals(2 * (size - 1), ints.last());
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            int probe = random.nextInt(2 * size + 2) - 1;
+            long expectedCeiling = probe < 0 ? 0 : probe >= 2 * size - 1 ? EytzingerIntSet.NOT_FOUND : (probe + 1) & ~1;
+            long expectedFloor = probe < 0 ? EytzingerIntSet.NOT_FOUND : Math.min(probe & ~1, 2 * (size - 1));
+            Assert.assertEquals(expectedCeiling, ints.ceiling(probe));
+            Assert.assertEquals(expectedFloor, ints.floor(probe));
+            Assert.assertEquals((probe & 1) == 0 && probe >= 0 && probe <= 2 * (size - 1), ints.contains(probe));
+        }
+    }
+
+    /**
+     * Чётные числа от 0 без хранения: вход для EytzingerIntSet.of(SortedSet), которому нужен только обход
+     */
+    private static final class EvenKeys extends AbstractSet<Integer> implements SortedSet<Integer> {
+
+        private final int size;
+
+        EvenKeys(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size;
+                }
+
+                @Override
+                public Integer next() {
+                    return 2 * next++;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Comparator<? super Integer> comparator() {
+            return null;
+        }
+
+        @Override
+        public Integer first() {
+            return 0;
+        }
+
+        @Override
+        public Integer last() {
+            return 2 * (size - 1);
+        }
+
+        @Override
+        public SortedSet<Integer> subSet(Integer fromElement, Integer toElement) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedSet<Integer> headSet(Integer toElement) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedSet<Integer> tailSet(Integer fromElement) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
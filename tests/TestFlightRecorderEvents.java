@@ -0,0 +1,101 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.ChainHashTable;
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+
+/**
+ * События пишутся с нулевым порогом, чтобы в запись попало каждое из них
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestFlightRecorderEvents {
+
+    private static final String RESIZE = "ru.mail.polis.Resize";
+    private static final String REBALANCE = "ru.mail.polis.Rebalance";
+    private static final int COUNT = 1000;
+
+    private static List<RecordedEvent> record(String eventName, Runnable body) throws IOException {
+        Path file = Files.createTempFile("search-ds", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(eventName).withThreshold(Duration.ZERO);
+            recording.start();
+            body.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().equals(eventName))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void test01_resize() throws IOException {
+        List<RecordedEvent> events = record(RESIZE, () -> {
+            OpenHashTable<Student> open = new OpenHashTable<>();
+            ChainHashTable<Student> chain = new ChainHashTable<>();
+            for (int i = 0; i < COUNT; i++) {
+                Student student = SimpleStudentGenerator.getInstance().generate();
+                open.add(student);
+                chain.add(student);
+            }
+        });
+        //8 -> 16 -> ... -> 2048 у каждой таблицы
+        Assert.assertEquals(2 * 8, events.size());
+        for (RecordedEvent event : events) {
+            String structure = event.getString("structure");
+            Assert.assertTrue(structure, structure.equals("OpenHashTable") || structure.equals("ChainHashTable"));
+            Assert.assertEquals(2 * event.getInt("oldCapacity"), event.getInt("newCapacity"));
+            Assert.assertEquals(event.getInt("oldCapacity") / 2, event.getInt("size"));
+            Assert.assertNotNull(event.getStackTrace());
+        }
+    }
+
+    @Test
+    public void test02_rebalance() throws IOException {
+        List<RecordedEvent> events = record(REBALANCE, () -> {
+            AVLTree<Integer> avl = new AVLTree<>();
+            RedBlackTree<Integer> redBlack = new RedBlackTree<>();
+            for (int i = 0; i < COUNT; i++) {
+                avl.add(i);
+                redBlack.add(i);
+            }
+            for (int i = 0; i < COUNT; i++) {
+                avl.remove(i);
+                redBlack.remove(i);
+            }
+        });
+        long avlRotations = 0;
+        int maxLevels = 0;
+        for (RecordedEvent event : events) {
+            Assert.assertTrue(event.getString("operation").equals("add") || event.getString("operation").equals("remove"));
+            Assert.assertTrue(event.getInt("size") < COUNT || event.getString("operation").equals("add"));
+            if (event.getString("structure").equals("AVLTree")) {
+                avlRotations += event.getInt("rotations");
+            }
+            maxLevels = Math.max(maxLevels, event.getInt("levels"));
+        }
+        Assert.assertTrue(events.stream().anyMatch(event -> event.getString("structure").equals("RedBlackTree")));
+        //последовательная вставка в AVL-дерево - поворот почти на каждом втором элементе
+        Assert.assertTrue(String.valueOf(avlRotations), avlRotations >= COUNT / 2);
+        //при вставке степени двойки высоты меняются до самого корня
+        Assert.assertTrue(String.valueOf(maxLevels), maxLevels >= 9);
+    }
+}
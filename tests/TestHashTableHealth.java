@@ -0,0 +1,193 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.mail.polis.ChainHashTable;
+import ru.mail.polis.HashTableHealth;
+import ru.mail.polis.LengthHistogram;
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.ProbeRecorder;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestHashTableHealth {
+
+    private static final int COUNT = 5000;
+
+    /**
+     * Ключ, у которого по 16 значений делят один hashCode
+     */
+    private static final class ClumpedKey {
+        private final int value;
+
+        ClumpedKey(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ClumpedKey && ((ClumpedKey) o).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value / 16;
+        }
+    }
+
+    private static List<Student> students(int count) {
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            students.add(SimpleStudentGenerator.getInstance().generate());
+        }
+        return students;
+    }
+
+    @Test
+    public void test01_histogram() {
+        ProbeRecorder recorder = new ProbeRecorder();
+        OpenHashTable<Student> table = new OpenHashTable<>();
+        table.setProbeRecorder(recorder);
+        Student student = SimpleStudentGenerator.getInstance().generate();
+        table.add(student);
+        for (int i = 0; i < 9; i++) {
+            table.contains(student);
+        }
+        LengthHistogram hits = recorder.getHits();
+        Assert.assertEquals(9, hits.getTotal());
+        Assert.assertEquals(9, hits.count(1));
+        Assert.assertEquals(1.0, hits.getMean(), 0);
+        Assert.assertEquals(0.0, hits.getVariance(), 0);
+        Assert.assertEquals(1, hits.percentile(0));
+        Assert.assertEquals(1, hits.percentile(1));
+        Assert.assertEquals(0, recorder.getMisses().getTotal());
+        recorder.reset();
+        Assert.assertEquals(0, recorder.getHits().getTotal());
+        Assert.assertEquals(0, recorder.getHits().percentile(0.5));
+    }
+
+    @Test
+    public void test02_openReport() {
+        OpenHashTable<Student> table = new OpenHashTable<>();
+        List<Student> students = students(COUNT);
+        table.addAll(students);
+        for (int i = 0; i < COUNT / 10; i++) {
+            table.remove(students.get(i));
+        }
+        HashTableHealth health = table.healthReport(Integer.MAX_VALUE);
+        Assert.assertEquals(table.getTableSize(), health.getTableSize());
+        Assert.assertEquals(table.size(), health.getSize());
+        Assert.assertEquals(COUNT / 10, health.getTombstones());
+        Assert.assertEquals(table.size(), health.getHitLengths().getTotal());
+        Assert.assertEquals(table.size(), health.getMissLengths().getTotal());
+        Assert.assertEquals(1, health.getHitLengths().percentile(0));
+        Assert.assertTrue(health.toString(), health.getHitExcess() < 1.5);
+        Assert.assertTrue(health.toString(), health.getMissExcess() < 1.5);
+
+        HashTableHealth sampled = table.healthReport(100);
+        Assert.assertTrue(sampled.getHitLengths().getTotal() >= 100);
+        Assert.assertTrue(sampled.getHitLengths().getTotal() < table.size());
+        Assert.assertEquals(health.getClusterLengths(), sampled.getClusterLengths());
+    }
+
+    @Test
+    public void test03_chainReport() {
+        ChainHashTable<ClumpedKey> clumped = new ChainHashTable<>();
+        ChainHashTable<Integer> spread = new ChainHashTable<>();
+        for (int i = 0; i < COUNT; i++) {
+            clumped.add(new ClumpedKey(i));
+            spread.add(i * 7919);
+        }
+        HashTableHealth bad = clumped.healthReport(Integer.MAX_VALUE);
+        Assert.assertEquals(bad.getTableSize(), bad.getClusterLengths().getTotal());
+        Assert.assertEquals(COUNT, bad.getClusterLengths().getMean() * bad.getTableSize(), 1e-6);
+        Assert.assertEquals(16, bad.getClusterLengths().getMax());
+        Assert.assertEquals(bad.getClusterLengths(), bad.getMissLengths());
+        Assert.assertEquals(0, bad.getTombstones());
+        Assert.assertTrue(bad.toString(), bad.getHitExcess() > 3);
+        Assert.assertTrue(bad.toString(), bad.getDispersionIndex() > 5);
+
+        HashTableHealth good = spread.healthReport(Integer.MAX_VALUE);
+        Assert.assertTrue(good.toString(), good.getHitExcess() < 1.5);
+        Assert.assertTrue(good.toString(), good.getDispersionIndex() < bad.getDispersionIndex());
+    }
+
+    @Test
+    public void test04_recorderMatchesReport() {
+        List<Student> students = students(COUNT);
+        OpenHashTable<Student> open = new OpenHashTable<>();
+        ChainHashTable<Student> chain = new ChainHashTable<>();
+        open.addAll(students);
+        chain.addAll(students);
+        ProbeRecorder openRecorder = new ProbeRecorder();
+        ProbeRecorder chainRecorder = new ProbeRecorder();
+        open.setProbeRecorder(openRecorder);
+        chain.setProbeRecorder(chainRecorder);
+        for (Student student : students) {
+            Assert.assertTrue(open.contains(student));
+            Assert.assertTrue(chain.contains(student));
+        }
+        Assert.assertEquals(open.healthReport(COUNT).getHitLengths(), openRecorder.getHits());
+        Assert.assertEquals(chain.healthReport(COUNT).getHitLengths(), chainRecorder.getHits());
+
+        List<Student> absent = students(COUNT);
+        for (Student student : absent) {
+            Assert.assertFalse(open.contains(student));
+            Assert.assertFalse(chain.contains(student));
+        }
+        Assert.assertEquals(COUNT, openRecorder.getMisses().getTotal());
+        Assert.assertEquals(COUNT, chainRecorder.getMisses().getTotal());
+        Assert.assertTrue(openRecorder.getMisses().percentile(0) >= 1);
+
+        open.setProbeRecorder(null);
+        open.contains(students.get(0));
+        Assert.assertEquals(COUNT, openRecorder.getHits().getTotal());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test05_badQuantile() {
+        new ProbeRecorder().getHits().percentile(1.5);
+    }
+
+    @Test
+    public void test06_batchRecordsEveryMiss() {
+        //containsAll записывает те же длины, что contains, в том числе промахи в пустую цепочку или ячейку
+        List<Student> students = students(COUNT);
+        OpenHashTable<Student> open = new OpenHashTable<>();
+        ChainHashTable<Student> chain = new ChainHashTable<>();
+        open.addAll(students);
+        chain.addAll(students);
+        List<Student> keys = new ArrayList<>(students(COUNT));
+        keys.addAll(students.subList(0, COUNT / 2));
+        Student[] batch = keys.toArray(new Student[0]);
+
+        ProbeRecorder openScalar = new ProbeRecorder();
+        ProbeRecorder chainScalar = new ProbeRecorder();
+        open.setProbeRecorder(openScalar);
+        chain.setProbeRecorder(chainScalar);
+        for (Student key : batch) {
+            open.contains(key);
+            chain.contains(key);
+        }
+        ProbeRecorder openBatch = new ProbeRecorder();
+        ProbeRecorder chainBatch = new ProbeRecorder();
+        open.setProbeRecorder(openBatch);
+        chain.setProbeRecorder(chainBatch);
+        boolean[] out = new boolean[batch.length];
+        open.containsAll(batch, out);
+        chain.containsAll(batch, out);
+
+        Assert.assertEquals(COUNT, openBatch.getMisses().getTotal());
+        Assert.assertEquals(COUNT, chainBatch.getMisses().getTotal());
+        Assert.assertTrue("empty chains", chainBatch.getMisses().count(0) > 0);
+        Assert.assertEquals(openScalar.getMisses(), openBatch.getMisses());
+        Assert.assertEquals(chainScalar.getMisses(), chainBatch.getMisses());
+        Assert.assertEquals(openScalar.getHits(), openBatch.getHits());
+        Assert.assertEquals(chainScalar.getHits(), chainBatch.getHits());
+    }
+}
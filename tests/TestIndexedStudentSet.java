@@ -0,0 +1,126 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.IndexedStudentSet;
+import ru.mail.polis.IndexedStudentSet.Field;
+import ru.mail.polis.NotBalancedTreeException;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestIndexedStudentSet extends AbstractSetTest {
+
+    private static List<Student> students(int count) {
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            students.add(SimpleStudentGenerator.getInstance().generate());
+        }
+        return students;
+    }
+
+    private static List<Student> toList(Iterable<Student> students) {
+        List<Student> list = new ArrayList<>();
+        students.forEach(list::add);
+        return list;
+    }
+
+    private static <K extends Comparable<? super K>> List<Student> expected(Set<Student> validSet, Field<K> field,
+                                                                          Predicate<Student> predicate) {
+        Comparator<Student> order = Comparator.comparing((Student s) -> s.getId());
+        if (field == Field.GROUP_ID) {
+            order = Comparator.comparing(Student::getGroupId).thenComparing(order);
+        } else if (field == Field.BIRTHDAY) {
+            order = Comparator.comparing(Student::getBirthday).thenComparing(order);
+        } else if (field == Field.LAST_NAME) {
+            order = Comparator.comparing(Student::getLastName).thenComparing(order);
+        } else if (field == Field.YEAR_OF_ADMISSION) {
+            order = Comparator.comparing(Student::getYearOfAdmission).thenComparing(order);
+        }
+        return validSet.stream().filter(predicate).sorted(order).collect(Collectors.toList());
+    }
+
+    private void checkQueries(Set<Student> validSet, IndexedStudentSet testSet, Student sample) {
+        IndexedStudentSet.Index<Integer> byGroup = testSet.getIndex(Field.GROUP_ID);
+        Assert.assertEquals("groupId", expected(validSet, Field.GROUP_ID, s -> s.getGroupId() == sample.getGroupId()),
+                toList(byGroup.equalTo(sample.getGroupId())));
+        IndexedStudentSet.Index<LocalDate> byBirthday = testSet.getIndex(Field.BIRTHDAY);
+        LocalDate from = sample.getBirthday().minusDays(40);
+        LocalDate to = sample.getBirthday().plusDays(40);
+        Assert.assertEquals("birthday between",
+                expected(validSet, Field.BIRTHDAY, s -> !s.getBirthday().isBefore(from) && !s.getBirthday().isAfter(to)),
+                toList(byBirthday.between(from, to)));
+        IndexedStudentSet.Index<String> byLastName = testSet.getIndex(Field.LAST_NAME);
+        Assert.assertEquals("lastName", expected(validSet, Field.LAST_NAME, s -> s.getLastName().equals(sample.getLastName())),
+                toList(byLastName.equalTo(sample.getLastName())));
+        IndexedStudentSet.Index<Integer> byYear = testSet.getIndex(Field.YEAR_OF_ADMISSION);
+        Assert.assertEquals("year at least", expected(validSet, Field.YEAR_OF_ADMISSION, s -> s.getYearOfAdmission() >= 2015),
+                toList(byYear.atLeast(2015)));
+    }
+
+    private void checkRandom(IndexedStudentSet.TreeKind treeKind) throws NotBalancedTreeException {
+        IndexedStudentSet testSet = new IndexedStudentSet(treeKind);
+        testSet.addIndex(Field.GROUP_ID);
+        testSet.addIndex(Field.BIRTHDAY);
+        Set<Student> validSet = new HashSet<>();
+        List<Student> students = students(2000);
+        for (int i = 0; i < 5000; i++) {
+            Student student = students.get(RANDOM.nextInt(students.size()));
+            TransformOperation operation = RANDOM.nextInt(3) > 0 ? TransformOperation.ADD : TransformOperation.REMOVE;
+            checkTransformOperation(validSet, testSet, student, operation);
+            checkSizeAndContains(validSet, testSet, student);
+            Assert.assertEquals("getById", validSet.contains(student) ? student : null, testSet.getById(student.getId()));
+        }
+        //индексы, созданные на непустом множестве, заполняются сразу
+        testSet.addIndex(Field.LAST_NAME);
+        testSet.addIndex(Field.YEAR_OF_ADMISSION);
+        testSet.checkIndexes();
+        for (int i = 0; i < 20; i++) {
+            checkQueries(validSet, testSet, students.get(RANDOM.nextInt(students.size())));
+        }
+        for (Iterator<Student> it = testSet.iterator(); it.hasNext(); ) {
+            Student student = it.next();
+            if (RANDOM.nextBoolean()) {
+                it.remove();
+                validSet.remove(student);
+            }
+        }
+        testSet.checkIndexes();
+        Assert.assertEquals("size", validSet.size(), testSet.size());
+        checkQueries(validSet, testSet, students.get(0));
+    }
+
+    @Test
+    public void test01_redBlackTreeIndexes() throws NotBalancedTreeException {
+        checkRandom(IndexedStudentSet.TreeKind.RED_BLACK_TREE);
+    }
+
+    @Test
+    public void test02_avlTreeIndexes() throws NotBalancedTreeException {
+        checkRandom(IndexedStudentSet.TreeKind.AVL_TREE);
+    }
+
+    @Test
+    public void test03_equalIdIsSameStudent() {
+        IndexedStudentSet testSet = new IndexedStudentSet();
+        Student student = SimpleStudentGenerator.getInstance().generate();
+        Assert.assertTrue("add", testSet.add(student));
+        Assert.assertFalse("add again", testSet.add(student));
+        Assert.assertFalse("remove other", testSet.remove(SimpleStudentGenerator.getInstance().generate()));
+        Assert.assertSame("addIndex twice", testSet.addIndex(Field.GROUP_ID), testSet.addIndex(Field.GROUP_ID));
+        Assert.assertEquals("index", 1, toList(testSet.getIndex(Field.GROUP_ID).equalTo(student.getGroupId())).size());
+        Assert.assertTrue("remove", testSet.remove(student));
+        Assert.assertTrue("index after remove", toList(testSet.getIndex(Field.GROUP_ID).equalTo(student.getGroupId())).isEmpty());
+    }
+}
@@ -0,0 +1,228 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ru.mail.polis.LockFreeBinarySearchTree;
+import ru.mail.polis.NotBalancedTreeException;
+
+/**
+ * Конкурентные тесты: потоки запускаются одновременно через барьер, ошибка любого потока
+ * пробрасывается в тест после join
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestLockFreeBinarySearchTree {
+
+    private static final int THREADS = 4;
+    private static final int COUNT = 50_000;
+
+    private interface Body {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runThreads(int threads, Body body) throws InterruptedException {
+        CyclicBarrier start = new CyclicBarrier(threads);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    body.run(thread);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    @Test
+    public void test01_disjointAddRemove() throws InterruptedException, NotBalancedTreeException {
+        LockFreeBinarySearchTree<Integer> tree = new LockFreeBinarySearchTree<>();
+        runThreads(THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < COUNT; i++) {
+                //ключи потока - числа с остатком thread по модулю THREADS
+                tree.add(random.nextInt(COUNT) * THREADS + thread);
+            }
+        });
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            Random random = new Random(thread);
+            for (int i = 0; i < COUNT; i++) {
+                expected.add(random.nextInt(COUNT) * THREADS + thread);
+            }
+        }
+        tree.checkBalanced();
+        Assert.assertEquals(expected, tree);
+        runThreads(THREADS, thread -> {
+            for (Integer value : expected) {
+                if (value % THREADS == thread && value % 3 != 0) {
+                    Assert.assertTrue(tree.remove(value));
+                }
+            }
+        });
+        expected.removeIf(value -> value % 3 != 0);
+        tree.checkBalanced();
+        Assert.assertEquals(expected, tree);
+        Assert.assertEquals(expected.first(), tree.first());
+        Assert.assertEquals(expected.last(), tree.last());
+    }
+
+    @Test
+    public void test02_contendedKeys() throws InterruptedException, NotBalancedTreeException {
+        //все потоки бьются за 64 ключа: успешных вставок ключа ровно на его наличие больше, чем удалений
+        int keys = 64;
+        LockFreeBinarySearchTree<Integer> tree = new LockFreeBinarySearchTree<>();
+        AtomicLongArray balance = new AtomicLongArray(keys);
+        runThreads(THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 4 * COUNT; i++) {
+                int key = random.nextInt(keys);
+                switch (random.nextInt(3)) {
+                    case 0:
+                        if (tree.add(key)) balance.incrementAndGet(key);
+                        break;
+                    case 1:
+                        if (tree.remove(key)) balance.decrementAndGet(key);
+                        break;
+                    default:
+                        tree.contains(key);
+                }
+            }
+        });
+        tree.checkBalanced();
+        for (int key = 0; key < keys; key++) {
+            Assert.assertEquals("key " + key, tree.contains(key) ? 1 : 0, balance.get(key));
+        }
+    }
+
+    /**
+     * Операция одного потока в раунде: интервал [start, end] по System.nanoTime и результат
+     */
+    private static final class Operation {
+        final int kind; //0 - add, 1 - remove, 2 - contains
+        final int key;
+        long start;
+        long end;
+        boolean result;
+
+        Operation(int kind, int key) {
+            this.kind = kind;
+            this.key = key;
+        }
+    }
+
+    @Test
+    public void test03_linearizability() throws InterruptedException {
+        //короткие раунды по OPS операций на поток над KEYS ключами; история каждого раунда проверяется
+        //перебором: должен найтись последовательный порядок, согласованный с интервалами операций
+        int rounds = 2_000;
+        int ops = 3;
+        int keys = 2;
+        LockFreeBinarySearchTree<Integer> tree = new LockFreeBinarySearchTree<>();
+        Operation[][] history = new Operation[THREADS][ops];
+        Random random = new Random(42);
+        for (int round = 0; round < rounds; round++) {
+            int before = 0;
+            for (int key = 0; key < keys; key++) {
+                before |= tree.contains(key) ? 1 << key : 0;
+            }
+            for (Operation[] thread : history) {
+                for (int i = 0; i < ops; i++) {
+                    thread[i] = new Operation(random.nextInt(3), random.nextInt(keys));
+                }
+            }
+            runThreads(THREADS, thread -> {
+                for (Operation operation : history[thread]) {
+                    operation.start = System.nanoTime();
+                    switch (operation.kind) {
+                        case 0:
+                            operation.result = tree.add(operation.key);
+                            break;
+                        case 1:
+                            operation.result = tree.remove(operation.key);
+                            break;
+                        default:
+                            operation.result = tree.contains(operation.key);
+                    }
+                    operation.end = System.nanoTime();
+                }
+            });
+            int after = 0;
+            for (int key = 0; key < keys; key++) {
+                after |= tree.contains(key) ? 1 << key : 0;
+            }
+            List<Operation> all = new ArrayList<>();
+            for (Operation[] thread : history) {
+                all.addAll(List.of(thread));
+            }
+            Assert.assertTrue("round " + round + " is not linearizable",
+                    linearizable(all, 0L, before, after, new HashSet<>()));
+        }
+    }
+
+    /**
+     * Перебор с запоминанием: done - маска уже упорядоченных операций, state - маска присутствующих ключей
+     */
+    private static boolean linearizable(List<Operation> operations, long done, int state, int after, Set<Long> seen) {
+        if (done == (1L << operations.size()) - 1) {
+            return state == after;
+        }
+        if (!seen.add(done << 8 | state)) {
+            return false;
+        }
+        for (int i = 0; i < operations.size(); i++) {
+            if ((done & 1L << i) != 0 || !minimal(operations, done, i)) {
+                continue;
+            }
+            Operation operation = operations.get(i);
+            boolean present = (state & 1 << operation.key) != 0;
+            int next = state;
+            boolean expected;
+            if (operation.kind == 0) {
+                expected = !present;
+                next |= 1 << operation.key;
+            } else if (operation.kind == 1) {
+                expected = present;
+                next &= ~(1 << operation.key);
+            } else {
+                expected = present;
+            }
+            if (expected == operation.result && linearizable(operations, done | 1L << i, next, after, seen)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true, если ни одна неупорядоченная операция не закончилась раньше начала операции i
+     */
+    private static boolean minimal(List<Operation> operations, long done, int i) {
+        for (int j = 0; j < operations.size(); j++) {
+            if (j != i && (done & 1L << j) == 0 && operations.get(j).end < operations.get(i).start) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
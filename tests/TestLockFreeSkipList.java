@@ -0,0 +1,128 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ru.mail.polis.LockFreeSkipList;
+import ru.mail.polis.NotBalancedTreeException;
+
+/**
+ * Конкурентные тесты: потоки запускаются одновременно через барьер, ошибка любого потока
+ * пробрасывается в тест после join
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestLockFreeSkipList {
+
+    private static final int THREADS = 4;
+    private static final int COUNT = 50_000;
+
+    private interface Body {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runThreads(int threads, Body body) throws InterruptedException {
+        CyclicBarrier start = new CyclicBarrier(threads);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    body.run(thread);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    @Test
+    public void test01_disjointAddRemove() throws InterruptedException, NotBalancedTreeException {
+        LockFreeSkipList<Integer> list = new LockFreeSkipList<>();
+        runThreads(THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < COUNT; i++) {
+                //ключи потока - числа с остатком thread по модулю THREADS
+                list.add(random.nextInt(COUNT) * THREADS + thread);
+            }
+        });
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            Random random = new Random(thread);
+            for (int i = 0; i < COUNT; i++) {
+                expected.add(random.nextInt(COUNT) * THREADS + thread);
+            }
+        }
+        list.checkBalanced();
+        Assert.assertEquals(expected.size(), list.size());
+        Assert.assertEquals(expected, list);
+        runThreads(THREADS, thread -> {
+            for (Integer value : expected) {
+                if (value % THREADS == thread && value % 3 != 0) {
+                    Assert.assertTrue(list.remove(value));
+                    Assert.assertFalse(list.contains(value));
+                }
+            }
+        });
+        expected.removeIf(value -> value % 3 != 0);
+        list.checkBalanced();
+        Assert.assertEquals(expected.size(), list.size());
+        Assert.assertEquals(expected, list);
+        Assert.assertEquals(expected.first(), list.first());
+        Assert.assertEquals(expected.last(), list.last());
+    }
+
+    @Test
+    public void test02_contendedKeys() throws InterruptedException {
+        //все потоки бьются за 64 ключа: успешных вставок ключа ровно на его наличие больше, чем удалений
+        int keys = 64;
+        LockFreeSkipList<Integer> list = new LockFreeSkipList<>();
+        AtomicLongArray balance = new AtomicLongArray(keys);
+        runThreads(THREADS, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 4 * COUNT; i++) {
+                int key = random.nextInt(keys);
+                switch (random.nextInt(3)) {
+                    case 0:
+                        if (list.add(key)) balance.incrementAndGet(key);
+                        break;
+                    case 1:
+                        if (list.remove(key)) balance.decrementAndGet(key);
+                        break;
+                    default:
+                        list.contains(key);
+                }
+            }
+        });
+        int present = 0;
+        for (int key = 0; key < keys; key++) {
+            boolean contains = list.contains(key);
+            Assert.assertEquals("key " + key, contains ? 1 : 0, balance.get(key));
+            present += contains ? 1 : 0;
+        }
+        Assert.assertEquals("size", present, list.size());
+        //итератор видит каждый оставшийся ключ ровно один раз и по возрастанию
+        int previous = -1;
+        int seen = 0;
+        for (Integer key : list) {
+            Assert.assertTrue("order", key > previous);
+            previous = key;
+            seen++;
+        }
+        Assert.assertEquals("iterated", present, seen);
+    }
+}
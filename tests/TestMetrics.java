@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.BinarySearchTree;
+import ru.mail.polis.ChainHashTable;
+import ru.mail.polis.Metrics;
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+
+/**
+ * Метрики включаются только при запуске JVM с -Dru.mail.polis.metrics=true, а флаг читается один раз
+ * при загрузке Metrics. Поэтому в обычном прогоне test01 проверяет, что счётчики остаются нулевыми,
+ * а test04 запускает test02 и test03 в дочерней JVM с включёнными метриками через main
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestMetrics {
+
+    private static final int COUNT = 1000;
+
+    @Test
+    public void test01_disabledCountsNothing() {
+        Assume.assumeFalse(Metrics.ENABLED);
+        AVLTree<Integer> tree = new AVLTree<>();
+        OpenHashTable<Student> table = new OpenHashTable<>();
+        for (int i = 0; i < COUNT; i++) {
+            tree.add(i);
+            table.add(SimpleStudentGenerator.getInstance().generate());
+        }
+        Assert.assertEquals("tree", 0, tree.getMetrics().getOperations());
+        Assert.assertEquals("table", 0, table.getMetrics().getOperations());
+        Assert.assertEquals("table resizes", 0, table.getMetrics().getResizes());
+    }
+
+    @Test
+    public void test02_trees() {
+        Assume.assumeTrue(Metrics.ENABLED);
+        AVLTree<Integer> avl = new AVLTree<>();
+        RedBlackTree<Integer> redBlack = new RedBlackTree<>();
+        BinarySearchTree<Integer> bst = new BinarySearchTree<>();
+        for (int i = 0; i < COUNT; i++) {
+            avl.add(i);
+            redBlack.add(i);
+            bst.add(i);
+        }
+        for (int i = 0; i < COUNT; i++) {
+            avl.contains(i);
+            redBlack.contains(i);
+            avl.remove(i);
+            redBlack.remove(i);
+        }
+        for (Metrics metrics : new Metrics[]{avl.getMetrics(), redBlack.getMetrics()}) {
+            Assert.assertEquals("adds", COUNT, metrics.getAdds());
+            Assert.assertEquals("lookups", COUNT, metrics.getLookups());
+            Assert.assertEquals("removes", COUNT, metrics.getRemoves());
+            Assert.assertTrue("comparisons", metrics.getComparisons() >= metrics.getOperations());
+        }
+        Assert.assertEquals("avl rotations", avl.getRotationCount(), avl.getMetrics().getRotations());
+        Assert.assertEquals("red-black rotations", redBlack.getRotationCount(), redBlack.getMetrics().getRotations());
+        //вырожденное дерево: i-я вставка делает i сравнений
+        Assert.assertEquals("bst comparisons", (long) COUNT * (COUNT - 1) / 2, bst.getMetrics().getComparisons());
+        avl.getMetrics().reset();
+        Assert.assertEquals("reset", 0, avl.getMetrics().getOperations());
+    }
+
+    @Test
+    public void test03_hashTables() {
+        Assume.assumeTrue(Metrics.ENABLED);
+        OpenHashTable<Student> open = new OpenHashTable<>();
+        ChainHashTable<Student> chain = new ChainHashTable<>();
+        for (int i = 0; i < COUNT; i++) {
+            Student student = SimpleStudentGenerator.getInstance().generate();
+            open.add(student);
+            chain.add(student);
+            open.contains(student);
+            chain.contains(student);
+        }
+        for (Metrics metrics : new Metrics[]{open.getMetrics(), chain.getMetrics()}) {
+            Assert.assertEquals("adds", COUNT, metrics.getAdds());
+            Assert.assertEquals("lookups", COUNT, metrics.getLookups());
+            Assert.assertTrue("probes", metrics.getProbes() >= COUNT);
+            Assert.assertTrue("comparisons", metrics.getComparisons() >= COUNT);
+            Assert.assertTrue("resizes", metrics.getResizes() > 0);
+            Assert.assertTrue("resize time", metrics.getResizeNanos() > 0);
+        }
+    }
+
+    @Test
+    public void test04_enabledInChildJvm() throws IOException, InterruptedException {
+        Assume.assumeFalse(Metrics.ENABLED);
+        Process process = new ProcessBuilder(
+                System.getProperty("java.home") + "/bin/java",
+                "-ea",
+                "-Dru.mail.polis.metrics=true",
+                "-cp", System.getProperty("java.class.path"),
+                TestMetrics.class.getName())
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        Assert.assertEquals(output, 0, process.waitFor());
+    }
+
+    /**
+     * Точка входа дочерней JVM из test04. Без флага assumeTrue в проверках бросает исключение,
+     * и процесс завершается с ненулевым кодом, а не пропускает проверки
+     */
+    public static void main(String[] args) {
+        TestMetrics test = new TestMetrics();
+        test.test02_trees();
+        test.test03_hashTables();
+    }
+}
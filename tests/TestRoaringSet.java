@@ -0,0 +1,227 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import ru.mail.polis.RoaringSet;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestRoaringSet {
+
+    private static final int ARRAYS = 0;
+    private static final int BITMAPS = 1;
+    private static final int RUNS = 2;
+
+    private static void assertSameElements(TreeSet<Integer> expected, RoaringSet set) {
+        Assert.assertEquals(expected.size(), set.size());
+        Assert.assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+        List<Integer> viaForEach = new ArrayList<>();
+        set.forEachInt(viaForEach::add);
+        Assert.assertEquals(new ArrayList<>(expected), viaForEach);
+        Assert.assertEquals(expected, set);
+        if (!expected.isEmpty()) {
+            Assert.assertEquals(expected.first(), set.first());
+            Assert.assertEquals(expected.last(), set.last());
+        }
+    }
+
+    private static void assertNavigation(TreeSet<Integer> expected, RoaringSet set, int probe) {
+        Assert.assertEquals(expected.contains(probe), set.contains(probe));
+        Assert.assertEquals(expected.ceiling(probe), set.ceiling(probe));
+        Assert.assertEquals(expected.higher(probe), set.higher(probe));
+        Assert.assertEquals(expected.floor(probe), set.floor(probe));
+        Assert.assertEquals(expected.lower(probe), set.lower(probe));
+    }
+
+    @Test
+    public void test01_containerTransitions() {
+        //блок 0x8000xxxx (ключи от 0): массив -> битовая карта -> отрезки -> массив
+        RoaringSet set = new RoaringSet();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            Assert.assertTrue(set.add(i));
+            expected.add(i);
+        }
+        Assert.assertFalse(set.add(5000));
+        Assert.assertEquals(1, set.containerCounts()[BITMAPS]);
+        Assert.assertEquals(1, set.runOptimize());
+        Assert.assertEquals(1, set.containerCounts()[RUNS]);
+        Assert.assertTrue(set.serializedSize() < 16);
+        //дырки дробят отрезки; когда отрезков больше, чем помещается в битовую карту, вид меняется
+        for (int i = 1; i < 10_000; i += 2) {
+            Assert.assertTrue(set.remove(i));
+            expected.remove(i);
+        }
+        Assert.assertEquals(1, set.containerCounts()[BITMAPS]);
+        assertSameElements(expected, set);
+        for (int i = 0; i < 10_000; i += 4) {
+            set.remove(i);
+            expected.remove(i);
+        }
+        Assert.assertEquals(1, set.containerCounts()[ARRAYS]);
+        assertSameElements(expected, set);
+        for (int probe = -2; probe < 10_002; probe++) {
+            assertNavigation(expected, set, probe);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            set.remove(i);
+        }
+        Assert.assertTrue(set.isEmpty());
+        Assert.assertArrayEquals(new int[3], set.containerCounts());
+        try {
+            set.first();
+            Assert.fail("NoSuchElementException");
+        } catch (NoSuchElementException ignored) {
+        }
+    }
+
+    @Test
+    public void test02_randomOperationsAgainstTreeSet() {
+        //плотные ключи, любые int и отрезки с редкими дырами вокруг нуля и границ int
+        Random random = new Random(42);
+        for (int distribution = 0; distribution < 3; distribution++) {
+            RoaringSet set = new RoaringSet();
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int round = 0; round < 60_000; round++) {
+                int key = nextKey(random, distribution);
+                if (random.nextInt(3) != 0) {
+                    Assert.assertEquals(expected.add(key), set.add(key));
+                } else {
+                    Assert.assertEquals(expected.remove(key), set.remove(key));
+                }
+                if (round % 20_000 == 0) {
+                    set.runOptimize();
+                }
+                assertNavigation(expected, set, nextKey(random, distribution));
+            }
+            assertSameElements(expected, set);
+            set.runOptimize();
+            assertSameElements(expected, set);
+            int from = nextKey(random, distribution);
+            int to = from + 100_000;
+            Assert.assertEquals(new ArrayList<>(expected.subSet(from, to)), new ArrayList<>(set.subSet(from, to)));
+            Assert.assertEquals(new ArrayList<>(expected.tailSet(to)), new ArrayList<>(set.tailSet(to)));
+            //удаление через итератор
+            for (Iterator<Integer> it = set.iterator(); it.hasNext(); ) {
+                int value = it.next();
+                if ((value & 3) == 0) {
+                    it.remove();
+                    expected.remove(value);
+                }
+            }
+            assertSameElements(expected, set);
+        }
+    }
+
+    private static int nextKey(Random random, int distribution) {
+        switch (distribution) {
+            case 0:
+                return random.nextInt(200_000);
+            case 1:
+                return random.nextInt();
+            default:
+                int base = random.nextBoolean() ? Integer.MAX_VALUE - 70_000 : random.nextInt(3) * 70_000 - 70_000;
+                return base + random.nextInt(70_000);
+        }
+    }
+
+    @Test
+    public void test03_unionAndIntersection() {
+        Random random = new Random(7);
+        RoaringSet dense = new RoaringSet();
+        RoaringSet sparse = new RoaringSet();
+        RoaringSet runs = new RoaringSet();
+        for (int i = 0; i < 300_000; i++) {
+            if (random.nextInt(4) != 0) {
+                dense.add(i);
+            }
+            if (random.nextInt(100) == 0) {
+                sparse.add(i - 100_000);
+            }
+        }
+        for (int start = -50_000; start < 400_000; start += 3_000) {
+            for (int i = start; i < start + 1_000; i++) {
+                runs.add(i);
+            }
+        }
+        runs.runOptimize();
+        sparse.add(Integer.MIN_VALUE);
+        sparse.add(Integer.MAX_VALUE);
+        RoaringSet[] sets = {dense, sparse, runs, new RoaringSet()};
+        for (RoaringSet a : sets) {
+            for (RoaringSet b : sets) {
+                TreeSet<Integer> union = new TreeSet<>(a);
+                union.addAll(b);
+                TreeSet<Integer> intersection = new TreeSet<>(a);
+                intersection.retainAll(b);
+                RoaringSet actualUnion = RoaringSet.union(a, b);
+                RoaringSet actualIntersection = RoaringSet.intersection(a, b);
+                assertSameElements(union, actualUnion);
+                assertSameElements(intersection, actualIntersection);
+                //результат не делит контейнеры с аргументами
+                actualUnion.clear();
+                actualIntersection.clear();
+            }
+        }
+        //150 отрезков по 1000 ключей в блоках от -65536 до 458751
+        Assert.assertEquals(150_000, runs.size());
+        Assert.assertArrayEquals(new int[]{0, 0, 8}, runs.containerCounts());
+    }
+
+    @Test
+    public void test04_serialization() {
+        Random random = new Random(11);
+        RoaringSet set = new RoaringSet();
+        for (int i = 0; i < 100_000; i++) {
+            set.add(random.nextInt(1 << 20));
+            set.add(random.nextInt());
+        }
+        for (int i = 5_000_000; i < 5_200_000; i++) {
+            set.add(i);
+        }
+        set.runOptimize();
+        int[] counts = set.containerCounts();
+        Assert.assertTrue(counts[ARRAYS] > 0 && counts[BITMAPS] > 0 && counts[RUNS] > 0);
+        ByteBuffer buffer = ByteBuffer.allocate(set.serializedSize() + 8);
+        buffer.putInt(42);
+        set.serialize(buffer);
+        Assert.assertEquals(set.serializedSize() + 4, buffer.position());
+        buffer.flip();
+        Assert.assertEquals(42, buffer.getInt());
+        RoaringSet copy = RoaringSet.deserialize(buffer);
+        Assert.assertFalse(buffer.hasRemaining());
+        Assert.assertEquals(set, copy);
+        Assert.assertEquals(new ArrayList<>(set), new ArrayList<>(copy));
+        Assert.assertArrayEquals(counts, copy.containerCounts());
+
+        ByteBuffer empty = ByteBuffer.allocate(new RoaringSet().serializedSize());
+        new RoaringSet().serialize(empty);
+        empty.flip();
+        Assert.assertTrue(RoaringSet.deserialize(empty).isEmpty());
+
+        ByteBuffer truncated = ByteBuffer.allocate(set.serializedSize());
+        set.serialize(truncated);
+        truncated.flip().limit(truncated.limit() - 1);
+        try {
+            RoaringSet.deserialize(truncated);
+            Assert.fail("BufferUnderflowException");
+        } catch (BufferUnderflowException ignored) {
+        }
+        ByteBuffer badType = ByteBuffer.allocate(7).putInt(1).putChar('\0').put((byte) 9);
+        badType.flip();
+        try {
+            RoaringSet.deserialize(badType);
+            Assert.fail("IllegalArgumentException");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
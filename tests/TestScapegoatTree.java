@@ -0,0 +1,98 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Random;
+import java.util.TreeSet;
+
+import ru.mail.polis.NotBalancedTreeException;
+import ru.mail.polis.ScapegoatTree;
+import ru.mail.polis.TreeStats;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestScapegoatTree {
+
+    private static final int COUNT = 100_000;
+
+    @Test
+    public void test01_sortedInput() throws NotBalancedTreeException {
+        for (double alpha : new double[]{0.55, ScapegoatTree.DEFAULT_ALPHA, 0.9}) {
+            ScapegoatTree<Integer> tree = new ScapegoatTree<>(null, alpha);
+            for (int i = 0; i < COUNT; i++) {
+                tree.add(i);
+            }
+            tree.checkBalanced();
+            TreeStats stats = tree.stats();
+            Assert.assertTrue(stats.toString(), stats.getHeight() <= stats.getHeightBound());
+            Assert.assertTrue(stats.getHeight() <= Math.log(COUNT) / Math.log(1 / alpha) + 1);
+            Assert.assertTrue(tree.getRebuildCount() > 0);
+            //перестройки амортизируются: O(log n) перелинкованных узлов на вставку
+            Assert.assertTrue(tree.getRebuiltNodes() < 64L * COUNT);
+            for (int i = 0; i < COUNT; i++) {
+                Assert.assertTrue(tree.contains(i));
+            }
+        }
+    }
+
+    @Test
+    public void test02_removeRebuildsWholeTree() throws NotBalancedTreeException {
+        ScapegoatTree<Integer> tree = new ScapegoatTree<>();
+        for (int i = 0; i < COUNT; i++) {
+            tree.add(i);
+        }
+        long rebuilds = tree.getRebuildCount();
+        //удаление до 70% от наибольшего размера не перестраивает дерево
+        int removed = 0;
+        while (tree.size() >= ScapegoatTree.DEFAULT_ALPHA * COUNT) {
+            Assert.assertTrue(tree.remove(removed++));
+        }
+        Assert.assertEquals(rebuilds + 1, tree.getRebuildCount());
+        Assert.assertEquals(removed, tree.first().intValue());
+        tree.checkBalanced();
+        Assert.assertEquals(tree.stats().getMinimalHeight(), tree.stats().getHeight());
+        while (!tree.isEmpty()) {
+            tree.remove(tree.last());
+        }
+        tree.checkBalanced();
+    }
+
+    @Test
+    public void test03_matchesTreeSet() throws NotBalancedTreeException {
+        ScapegoatTree<Integer> tree = new ScapegoatTree<>();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < COUNT; i++) {
+            int value = random.nextInt(COUNT / 20);
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(value), tree.remove(value));
+            } else {
+                Assert.assertEquals(expected.add(value), tree.add(value));
+            }
+            Assert.assertEquals(expected.contains(value + 1), tree.contains(value + 1));
+        }
+        tree.checkBalanced();
+        Assert.assertEquals(expected, tree);
+        Assert.assertEquals(expected.headSet(1000), tree.headSet(1000));
+    }
+
+    @Test
+    public void test04_nodeFootprint() throws ClassNotFoundException {
+        //узел такой же, как в BinarySearchTree: значение и два потомка
+        Class<?> nodeClass = Class.forName("ru.mail.polis.ParentlessTree$Node");
+        int fields = 0;
+        for (Field field : nodeClass.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                fields++;
+            }
+        }
+        Assert.assertEquals(3, fields);
+        try {
+            new ScapegoatTree<Integer>(null, 0.5);
+            Assert.fail("IllegalArgumentException");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
@@ -0,0 +1,296 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.ChainHashTable;
+import ru.mail.polis.ElementCodec;
+import ru.mail.polis.ElementCodecs;
+import ru.mail.polis.IndexedStudentSet;
+import ru.mail.polis.NotBalancedTreeException;
+import ru.mail.polis.OpenHashTable;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Snapshots;
+import ru.mail.polis.Student;
+import ru.mail.polis.StudentCodec;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestSnapshots extends AbstractSetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+
+    @Before
+    public void createFile() {
+        file = folder.getRoot().toPath().resolve("snapshot.bin");
+    }
+
+    private List<Student> students(int count) {
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            students.add(SimpleStudentGenerator.getInstance().generate());
+        }
+        return students;
+    }
+
+    @Test
+    public void test01_avlTree() throws IOException, NotBalancedTreeException {
+        for (int size : new int[]{0, 1, 2, 3, 7, 100, 5000}) {
+            TreeSet<Integer> validSet = new TreeSet<>();
+            AVLTree<Integer> tree = new AVLTree<>();
+            for (int i = 0; i < size; i++) {
+                int value = RANDOM.nextInt();
+                validSet.add(value);
+                tree.add(value);
+            }
+            Snapshots.save(tree, ElementCodecs.INTEGER, file);
+            AVLTree<Integer> loaded = Snapshots.loadAVLTree(file, ElementCodecs.INTEGER, null);
+            loaded.checkBalanced();
+            Assert.assertEquals("size", validSet.size(), loaded.size());
+            for (Integer value : validSet) {
+                Assert.assertTrue("contains", loaded.contains(value));
+            }
+            for (int i = 0; i < 1000; i++) {
+                int value = RANDOM.nextInt(1000);
+                checkTransformOperation(validSet, loaded, value, RANDOM.nextBoolean() ? TransformOperation.ADD : TransformOperation.REMOVE);
+                checkSizeAndContains(validSet, loaded, value);
+            }
+            loaded.checkBalanced();
+        }
+    }
+
+    @Test
+    public void test02_redBlackTreeWithComparator() throws IOException, NotBalancedTreeException {
+        for (int size : new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 100, 5000}) {
+            Comparator<String> comparator = Comparator.reverseOrder();
+            TreeSet<String> validSet = new TreeSet<>(comparator);
+            RedBlackTree<String> tree = new RedBlackTree<>(comparator);
+            for (int i = 0; i < size; i++) {
+                String value = "ключ-" + RANDOM.nextInt();
+                validSet.add(value);
+                tree.add(value);
+            }
+            Snapshots.save(tree, ElementCodecs.STRING, file);
+            RedBlackTree<String> loaded = Snapshots.loadRedBlackTree(file, ElementCodecs.STRING, comparator);
+            loaded.checkBalanced();
+            Assert.assertEquals("size", validSet.size(), loaded.size());
+            if (size > 0) {
+                Assert.assertEquals("first", validSet.first(), loaded.first());
+                Assert.assertEquals("last", validSet.last(), loaded.last());
+            }
+            for (String value : validSet) {
+                Assert.assertTrue("contains", loaded.contains(value));
+            }
+            for (int i = 0; i < 1000; i++) {
+                String value = "ключ-" + RANDOM.nextInt(500);
+                checkTransformOperation(validSet, loaded, value, RANDOM.nextBoolean() ? TransformOperation.ADD : TransformOperation.REMOVE);
+                checkSizeAndContains(validSet, loaded, value);
+            }
+            loaded.checkBalanced();
+        }
+    }
+
+    @Test
+    public void test03_openHashTableKeepsTombstones() throws IOException {
+        Set<Student> validSet = new HashSet<>();
+        OpenHashTable<Student> table = new OpenHashTable<>();
+        List<Student> students = students(3000);
+        for (Student student : students) {
+            validSet.add(student);
+            table.add(student);
+        }
+        for (int i = 0; i < students.size(); i += 3) {
+            validSet.remove(students.get(i));
+            table.remove(students.get(i));
+        }
+        Snapshots.save(table, StudentCodec.INSTANCE, file);
+        OpenHashTable<Student> loaded = Snapshots.loadOpenHashTable(file, StudentCodec.INSTANCE);
+        Assert.assertEquals("table size", table.getTableSize(), loaded.getTableSize());
+        for (Student student : students) {
+            checkSizeAndContains(validSet, loaded, student);
+        }
+        for (int i = 0; i < students.size(); i++) {
+            Student student = students.get(i);
+            checkTransformOperation(validSet, loaded, student, i % 2 == 0 ? TransformOperation.ADD : TransformOperation.REMOVE);
+            checkSizeAndContains(validSet, loaded, student);
+        }
+        for (Student student : students(3000)) {
+            checkTransformOperation(validSet, loaded, student, TransformOperation.ADD);
+        }
+        for (Student student : validSet) {
+            checkSizeAndContains(validSet, loaded, student);
+        }
+    }
+
+    @Test
+    public void test04_chainHashTable() throws IOException {
+        Set<Student> validSet = new HashSet<>();
+        ChainHashTable<Student> table = new ChainHashTable<>();
+        List<Student> students = students(3000);
+        for (Student student : students) {
+            validSet.add(student);
+            table.add(student);
+        }
+        Snapshots.save(table, StudentCodec.INSTANCE, file);
+        ChainHashTable<Student> loaded = Snapshots.loadChainHashTable(file, StudentCodec.INSTANCE);
+        for (Student student : students) {
+            checkSizeAndContains(validSet, loaded, student);
+        }
+        for (int i = 0; i < students.size(); i++) {
+            Student student = students.get(i);
+            checkTransformOperation(validSet, loaded, student, i % 2 == 0 ? TransformOperation.ADD : TransformOperation.REMOVE);
+            checkSizeAndContains(validSet, loaded, student);
+        }
+    }
+
+    @Test
+    public void test05_studentCodecRoundTrip() throws IOException {
+        for (Student student : students(200)) {
+            ByteBuffer buffer = ByteBuffer.allocate(StudentCodec.INSTANCE.encodedSize(student));
+            StudentCodec.INSTANCE.encode(student, buffer);
+            Assert.assertFalse("encodedSize", buffer.hasRemaining());
+            buffer.flip();
+            Student decoded = StudentCodec.INSTANCE.decode(buffer);
+            Assert.assertEquals("equals", student, decoded);
+            Assert.assertEquals("hashCode", student.hashCode(), decoded.hashCode());
+            Assert.assertEquals("id", student.getId(), decoded.getId());
+            Assert.assertEquals("email", student.getEmail(), decoded.getEmail());
+            Assert.assertEquals("mobile", student.getMobile(), decoded.getMobile());
+            Assert.assertEquals("photo", student.getPhotoReference(), decoded.getPhotoReference());
+        }
+    }
+
+    @Test
+    public void test06_corruptionDetected() throws IOException {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (int i = 0; i < 1000; i++) {
+            tree.add(i);
+        }
+        Snapshots.save(tree, ElementCodecs.INTEGER, file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), 100);
+        }
+        try {
+            Snapshots.loadAVLTree(file, ElementCodecs.INTEGER, null);
+            Assert.fail("checksum");
+        } catch (IOException expected) {
+            /* ожидаемо */
+        }
+        try {
+            Snapshots.loadRedBlackTree(file, ElementCodecs.INTEGER, null);
+            Assert.fail("kind");
+        } catch (IOException expected) {
+            /* ожидаемо */
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(50);
+        }
+        try {
+            Snapshots.loadAVLTree(file, ElementCodecs.INTEGER, null);
+            Assert.fail("truncated");
+        } catch (IOException expected) {
+            /* ожидаемо */
+        }
+    }
+
+    @Test
+    public void test07_failedSaveKeepsPreviousSnapshot() throws IOException {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (int i = 0; i < 1000; i++) {
+            tree.add(i);
+        }
+        Snapshots.save(tree, ElementCodecs.INTEGER, file);
+        for (int i = 1000; i < 100_000; i++) {
+            tree.add(i);
+        }
+        try {
+            Snapshots.save(tree, new FailingCodec(50_000), file);
+            Assert.fail("codec failure");
+        } catch (IllegalStateException expected) {
+            /* ожидаемо */
+        }
+        AVLTree<Integer> loaded = Snapshots.loadAVLTree(file, ElementCodecs.INTEGER, null);
+        Assert.assertEquals("size", 1000, loaded.size());
+        Assert.assertTrue("contains", loaded.contains(999));
+        Assert.assertFalse("contains", loaded.contains(1000));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder.getRoot().toPath())) {
+            for (Path other : files) {
+                Assert.assertEquals("temp file left", file, other);
+            }
+        }
+    }
+
+    @Test
+    public void test08_restoredIdsAreNotReissued() {
+        //снимок из другой JVM, успевшей выдать больше идентификаторов, чем эта
+        Student student = SimpleStudentGenerator.getInstance().generate();
+        long restoredId = student.getId() + 1_000_000;
+        ByteBuffer buffer = ByteBuffer.allocate(StudentCodec.INSTANCE.encodedSize(student));
+        StudentCodec.INSTANCE.encode(student, buffer);
+        buffer.putLong(0, restoredId);
+        buffer.flip();
+        Student restored = StudentCodec.INSTANCE.decode(buffer);
+        Assert.assertEquals("id", restoredId, restored.getId());
+        Student fresh = SimpleStudentGenerator.getInstance().generate();
+        Assert.assertTrue("fresh id " + fresh.getId() + " <= restored " + restoredId, fresh.getId() > restoredId);
+        IndexedStudentSet set = new IndexedStudentSet();
+        Assert.assertTrue(set.add(restored));
+        Assert.assertTrue(set.add(fresh));
+    }
+
+    /**
+     * Кодек int, который падает на limit-м элементе: имитирует сбой посреди записи снимка
+     */
+    private static final class FailingCodec implements ElementCodec<Integer> {
+
+        private int limit;
+
+        FailingCodec(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public int fixedSize() {
+            return ElementCodecs.INTEGER.fixedSize();
+        }
+
+        @Override
+        public int encodedSize(Integer value) {
+            return ElementCodecs.INTEGER.encodedSize(value);
+        }
+
+        @Override
+        public void encode(Integer value, ByteBuffer buffer) {
+            if (--limit < 0) {
+                throw new IllegalStateException("encode");
+            }
+            ElementCodecs.INTEGER.encode(value, buffer);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer buffer) {
+            return ElementCodecs.INTEGER.decode(buffer);
+        }
+    }
+}
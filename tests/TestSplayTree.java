@@ -0,0 +1,130 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.lang.reflect.Field;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import ru.mail.polis.NotBalancedTreeException;
+import ru.mail.polis.SplayTree;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestSplayTree {
+
+    private static final int COUNT = 10_000;
+
+    @Test
+    public void test01_hotKeyAtRoot() throws ReflectiveOperationException, NotBalancedTreeException {
+        for (SplayTree.ReadMode mode : SplayTree.ReadMode.values()) {
+            SplayTree<Integer> tree = new SplayTree<>(null, mode);
+            //отсортированный вход вытягивает дерево в цепочку
+            for (int i = 0; i < COUNT; i++) {
+                tree.add(i);
+            }
+            int hot = COUNT / 3;
+            Assert.assertTrue(depthOf(tree, hot) > 100);
+            for (int i = 0; i < 20; i++) {
+                Assert.assertTrue(tree.contains(hot));
+            }
+            //полное расширение сразу ставит ключ в корень, полурасширение каждый раз вдвое укорачивает путь
+            int depth = depthOf(tree, hot);
+            Assert.assertTrue(mode + ": " + depth, mode == SplayTree.ReadMode.SPLAY ? depth == 0 : depth <= 1);
+            Assert.assertTrue(tree.stats().getHeight() < COUNT);
+            tree.checkBalanced();
+        }
+    }
+
+    @Test
+    public void test02_semiSplayRotatesLess() throws NotBalancedTreeException {
+        SplayTree<Integer> splay = new SplayTree<>(null, SplayTree.ReadMode.SPLAY);
+        SplayTree<Integer> semiSplay = new SplayTree<>(null, SplayTree.ReadMode.SEMI_SPLAY);
+        Random random = new Random(42);
+        int[] values = new int[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            values[i] = random.nextInt();
+            splay.add(values[i]);
+            semiSplay.add(values[i]);
+        }
+        long splayBefore = splay.getRotationCount();
+        long semiSplayBefore = semiSplay.getRotationCount();
+        random = new Random(7);
+        for (int i = 0; i < COUNT; i++) {
+            int value = values[random.nextInt(COUNT)];
+            Assert.assertTrue(splay.contains(value));
+            Assert.assertTrue(semiSplay.contains(value));
+        }
+        long splayRotations = splay.getRotationCount() - splayBefore;
+        long semiSplayRotations = semiSplay.getRotationCount() - semiSplayBefore;
+        Assert.assertTrue(semiSplayRotations + " vs " + splayRotations, semiSplayRotations * 3 < splayRotations * 2);
+        splay.checkBalanced();
+        semiSplay.checkBalanced();
+    }
+
+    @Test
+    public void test03_matchesTreeSet() throws NotBalancedTreeException {
+        for (SplayTree.ReadMode mode : SplayTree.ReadMode.values()) {
+            SplayTree<Integer> tree = new SplayTree<>(null, mode);
+            TreeSet<Integer> expected = new TreeSet<>();
+            Random random = new Random(42);
+            for (int i = 0; i < 5 * COUNT; i++) {
+                int value = random.nextInt(COUNT / 10);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        Assert.assertEquals(expected.add(value), tree.add(value));
+                        break;
+                    case 1:
+                        Assert.assertEquals(expected.remove(value), tree.remove(value));
+                        break;
+                    default:
+                        Assert.assertEquals(expected.contains(value), tree.contains(value));
+                }
+                Assert.assertEquals(expected.size(), tree.size());
+            }
+            tree.checkBalanced();
+            Assert.assertEquals(expected.first(), tree.first());
+            Assert.assertEquals(expected.last(), tree.last());
+            //поиск посреди обхода перестраивает дерево, итератор находит позицию заново
+            Iterator<Integer> iterator = tree.iterator();
+            for (Integer value : expected) {
+                Assert.assertTrue(iterator.hasNext());
+                Assert.assertEquals(value, iterator.next());
+                tree.contains(random.nextInt(COUNT / 10));
+            }
+            Assert.assertFalse(iterator.hasNext());
+            Assert.assertEquals(expected.subSet(100, 200), tree.subSet(100, 200));
+        }
+    }
+
+    /**
+     * @return глубина ключа (у корня 0), считая по обходу, не перестраивающему дерево
+     */
+    private static int depthOf(SplayTree<Integer> tree, int value) throws ReflectiveOperationException {
+        Object node = field(tree, "root");
+        for (int depth = 0; node != null; depth++) {
+            int comp = Integer.compare(value, (Integer) field(node, "value"));
+            if (comp == 0) {
+                return depth;
+            }
+            node = field(node, comp < 0 ? "left" : "right");
+        }
+        return -1;
+    }
+
+    /**
+     * Поле ищется и в суперклассах: корень хранится в общем ParentlessTree
+     */
+    private static Object field(Object target, String name) throws ReflectiveOperationException {
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(target);
+            } catch (NoSuchFieldException ignored) {
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.Student;
+import ru.mail.polis.StudentGenerator;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestStudentGenerator {
+
+    private static final int COUNT = 10_000;
+
+    /**
+     * Поля студента без id: id от запуска к запуску сдвигается
+     */
+    private static List<Object> fields(Student student, long firstId) {
+        return Arrays.asList(student.getId() - firstId, student.getFirstName(), student.getLastName(), student.getGender(),
+                student.getBirthday(), student.getGroupId(), student.getYearOfAdmission(),
+                student.getPhotoReference(), student.getEmail(), student.getMobile());
+    }
+
+    private static List<List<Object>> generate(long seed, boolean parallel) {
+        List<Student> students = (parallel ? new StudentGenerator(seed).stream(COUNT).parallel()
+                : new StudentGenerator(seed).stream(COUNT)).collect(Collectors.toList());
+        long firstId = students.get(0).getId();
+        return students.stream().map(student -> fields(student, firstId)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void test01_sameSeedSameStudents() {
+        List<List<Object>> first = generate(42, false);
+        Assert.assertEquals("size", COUNT, first.size());
+        Assert.assertEquals("sequential", first, generate(42, false));
+        Assert.assertEquals("parallel", first, generate(42, true));
+        Assert.assertNotEquals("other seed", first, generate(43, false));
+    }
+
+    @Test
+    public void test02_splitAfterPartialConsumption() {
+        List<List<Object>> expected = generate(7, false);
+        Spliterator<Student> spliterator = new StudentGenerator(7).spliterator(COUNT);
+        Student[] first = new Student[1];
+        for (int i = 0; i < 1500; i++) {
+            spliterator.tryAdvance(student -> {
+                if (first[0] == null) first[0] = student;
+            });
+        }
+        Spliterator<Student> prefix = spliterator.trySplit();
+        Assert.assertNotNull("split", prefix);
+        Assert.assertEquals("sizes", COUNT - 1500, prefix.estimateSize() + spliterator.estimateSize());
+        long firstId = first[0].getId();
+        List<List<Object>> rest = new java.util.ArrayList<>();
+        prefix.forEachRemaining(student -> rest.add(fields(student, firstId)));
+        spliterator.forEachRemaining(student -> rest.add(fields(student, firstId)));
+        Assert.assertEquals("rest", expected.subList(1500, COUNT), rest);
+    }
+
+    @Test
+    public void test03_uniqueIdsAcrossThreads() throws InterruptedException {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int seed = t;
+            threads[t] = new Thread(() -> new StudentGenerator(seed).stream(COUNT).parallel()
+                    .forEach(student -> Assert.assertTrue("duplicate id", ids.add(student.getId()))));
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals("ids", threads.length * COUNT, ids.size());
+    }
+
+    @Test
+    public void test04_blocksDoNotRepeat() {
+        //соседние блоки не должны повторять друг друга: почти все студенты без id различны
+        int count = 200_000;
+        for (long seed : new long[]{0, 1, 42}) {
+            Set<List<Object>> distinct = new HashSet<>();
+            new StudentGenerator(seed).stream(count).forEach(student -> distinct.add(fields(student, student.getId())));
+            Assert.assertTrue("seed " + seed + ": " + distinct.size() + " distinct of " + count,
+                    distinct.size() >= count * 0.99);
+        }
+    }
+}
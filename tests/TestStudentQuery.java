@@ -0,0 +1,129 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.IndexedStudentSet;
+import ru.mail.polis.IndexedStudentSet.Field;
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+import ru.mail.polis.StudentQuery;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestStudentQuery extends AbstractSetTest {
+
+    private static List<Student> students;
+    private static IndexedStudentSet indexed;
+
+    @BeforeClass
+    public static void createStudents() {
+        students = new ArrayList<>();
+        indexed = new IndexedStudentSet();
+        indexed.addIndex(Field.GROUP_ID);
+        indexed.addIndex(Field.YEAR_OF_ADMISSION);
+        indexed.addIndex(Field.BIRTHDAY);
+        indexed.addIndex(Field.LAST_NAME);
+        for (int i = 0; i < 20000; i++) {
+            Student student = SimpleStudentGenerator.getInstance().generate();
+            students.add(student);
+            indexed.add(student);
+        }
+    }
+
+    private static List<Student> expected(Predicate<Student> predicate) {
+        return students.stream().filter(predicate).sorted(Comparator.comparingLong(Student::getId))
+                .collect(Collectors.toList());
+    }
+
+    private static List<Student> sortedById(StudentQuery query) {
+        return query.stream().sorted(Comparator.comparingLong(Student::getId)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void test01_equalities() {
+        StudentQuery query = new StudentQuery(indexed)
+                .whereEquals(Field.GROUP_ID, 1042)
+                .whereEquals(Field.YEAR_OF_ADMISSION, 2015);
+        List<Student> expected = expected(s -> s.getGroupId() == 1042 && s.getYearOfAdmission() == 2015);
+        Assert.assertEquals("result in id order", expected, query.stream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void test02_equalitiesAndRange() {
+        LocalDate after = LocalDate.of(1996, 1, 1);
+        StudentQuery query = new StudentQuery(indexed)
+                .whereEquals(Field.GROUP_ID, 1042)
+                .whereEquals(Field.YEAR_OF_ADMISSION, 2015)
+                .whereAtLeast(Field.BIRTHDAY, after);
+        Assert.assertEquals("result", expected(s -> s.getGroupId() == 1042 && s.getYearOfAdmission() == 2015
+                && !s.getBirthday().isBefore(after)), sortedById(query));
+    }
+
+    @Test
+    public void test03_narrowRangeDrives() {
+        LocalDate from = LocalDate.of(1995, 6, 1);
+        LocalDate to = LocalDate.of(1995, 6, 10);
+        StudentQuery query = new StudentQuery(indexed)
+                .whereBetween(Field.BIRTHDAY, from, to)
+                .whereBetween(Field.YEAR_OF_ADMISSION, 2012, 2016)
+                .whereEquals(Field.LAST_NAME, "ФАБИШ");
+        Assert.assertTrue("plan " + query.explain(), query.explain().startsWith("Plan{cursors=[birthday"));
+        Assert.assertEquals("result", expected(s -> !s.getBirthday().isBefore(from) && !s.getBirthday().isAfter(to)
+                && s.getYearOfAdmission() >= 2012 && s.getYearOfAdmission() <= 2016
+                && s.getLastName().equals("ФАБИШ")), sortedById(query));
+    }
+
+    @Test
+    public void test04_wideRangesAndUnindexed() {
+        StudentQuery query = new StudentQuery(indexed)
+                .whereAtMost(Field.YEAR_OF_ADMISSION, 2013)
+                .whereEquals(Field.FIRST_NAME, "Марк");
+        Assert.assertEquals("result", expected(s -> s.getYearOfAdmission() <= 2013 && s.getFirstName().equals("Марк")),
+                sortedById(query));
+        StudentQuery scan = new StudentQuery(indexed).whereEquals(Field.FIRST_NAME, "Ева");
+        Assert.assertEquals("scan", expected(s -> s.getFirstName().equals("Ева")), sortedById(scan));
+        Assert.assertEquals("everything", students.size(), new StudentQuery(indexed).stream().count());
+    }
+
+    @Test
+    public void test05_limitAndEmpty() {
+        StudentQuery query = new StudentQuery(indexed)
+                .whereEquals(Field.GROUP_ID, 1010)
+                .whereEquals(Field.LAST_NAME, "РАБИН")
+                .limit(3);
+        List<Student> expected = expected(s -> s.getGroupId() == 1010 && s.getLastName().equals("РАБИН"));
+        Assert.assertEquals("limit", expected.subList(0, Math.min(3, expected.size())),
+                query.stream().collect(Collectors.toList()));
+        Assert.assertEquals("no match", 0, new StudentQuery(indexed)
+                .whereEquals(Field.GROUP_ID, 1042)
+                .whereEquals(Field.GROUP_ID, 1043).stream().count());
+        Assert.assertEquals("limit 0", 0, new StudentQuery(indexed).limit(0).stream().count());
+    }
+
+    @Test
+    public void test06_randomConjunctions() {
+        for (int i = 0; i < 50; i++) {
+            Student sample = students.get(RANDOM.nextInt(students.size()));
+            LocalDate from = sample.getBirthday().minusDays(RANDOM.nextInt(2000));
+            LocalDate to = sample.getBirthday().plusDays(RANDOM.nextInt(2000));
+            int year = sample.getYearOfAdmission();
+            StudentQuery query = new StudentQuery(indexed)
+                    .whereBetween(Field.BIRTHDAY, from, to)
+                    .whereEquals(Field.GROUP_ID, sample.getGroupId())
+                    .whereAtLeast(Field.YEAR_OF_ADMISSION, year);
+            List<Student> result = sortedById(query);
+            Assert.assertEquals("random " + query.explain(), expected(s -> !s.getBirthday().isBefore(from)
+                    && !s.getBirthday().isAfter(to) && s.getGroupId() == sample.getGroupId()
+                    && s.getYearOfAdmission() >= year), result);
+            Assert.assertTrue("sample", result.contains(sample));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+import ru.mail.polis.StudentRecord;
+import ru.mail.polis.StudentRecordTable;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestStudentRecord extends AbstractSetTest {
+
+    private static List<Student> students(int count) {
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            students.add(SimpleStudentGenerator.getInstance().generate());
+        }
+        return students;
+    }
+
+    private static ByteBuffer write(List<Student> students) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(students.size() * StudentRecord.RECORD_SIZE);
+        for (int i = 0; i < students.size(); i++) {
+            StudentRecord.write(students.get(i), buffer, i * StudentRecord.RECORD_SIZE);
+        }
+        return buffer;
+    }
+
+    @Test
+    public void test01_fieldsAndHashes() {
+        List<Student> students = students(1000);
+        ByteBuffer buffer = write(students);
+        StudentRecord record = new StudentRecord();
+        for (int i = 0; i < students.size(); i++) {
+            Student student = students.get(i);
+            record.wrap(buffer, i * StudentRecord.RECORD_SIZE);
+            Assert.assertEquals("id", student.getId(), record.getId());
+            Assert.assertEquals("firstName", student.getFirstName(), record.getFirstName());
+            Assert.assertEquals("lastName", student.getLastName(), record.getLastName());
+            Assert.assertEquals("gender", student.getGender(), record.getGender());
+            Assert.assertEquals("birthday", student.getBirthday(), record.getBirthday());
+            Assert.assertEquals("groupId", student.getGroupId(), record.getGroupId());
+            Assert.assertEquals("yearOfAdmission", student.getYearOfAdmission(), record.getYearOfAdmission());
+            Assert.assertEquals("photoReference", student.getPhotoReference(), record.getPhotoReference());
+            Assert.assertEquals("email", student.getEmail(), record.getEmail());
+            Assert.assertEquals("mobile", student.getMobile(), record.getMobile());
+            Assert.assertEquals("toStudent", student, record.toStudent());
+            Assert.assertEquals("hashCode", student.hashCode(), record.hashCode());
+            for (int tableSize : new int[]{2, 8, 1024}) {
+                for (int probId = 0; probId < tableSize; probId += 3) {
+                    Assert.assertEquals("hashCode(tableSize, probId)",
+                            student.hashCode(tableSize, probId), record.hashCode(tableSize, probId));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test02_equalityOnRawBytes() {
+        List<Student> students = students(200);
+        ByteBuffer direct = write(students);
+        ByteBuffer heap = ByteBuffer.allocate(StudentRecord.RECORD_SIZE);
+        StudentRecord first = new StudentRecord();
+        StudentRecord second = new StudentRecord();
+        for (int i = 0; i < students.size(); i++) {
+            StudentRecord.write(students.get(i), heap, 0);
+            first.wrap(direct, i * StudentRecord.RECORD_SIZE);
+            second.wrap(heap, 0);
+            Assert.assertEquals("same student", first, second);
+            if (i > 0) {
+                second.wrap(direct, (i - 1) * StudentRecord.RECORD_SIZE);
+                Assert.assertNotEquals("other student", first, second);
+            }
+        }
+        //поле стало короче: хвост старой строки не должен влиять на равенство
+        Student student = new Student("Александр", "ЩАВЕЛЕВ", Student.Gender.MALE, LocalDate.of(1995, 5, 5),
+                1001, 2014, null, "alexander@polis.mail.ru", null);
+        ByteBuffer reused = ByteBuffer.allocate(StudentRecord.RECORD_SIZE);
+        StudentRecord.write(student, reused, 0);
+        student.setEmail("a@polis.mail.ru");
+        StudentRecord.write(student, reused, 0);
+        ByteBuffer fresh = ByteBuffer.allocate(StudentRecord.RECORD_SIZE);
+        StudentRecord.write(student, fresh, 0);
+        Assert.assertEquals("padding", first.wrap(reused, 0), second.wrap(fresh, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test03_tooLongString() {
+        Student student = SimpleStudentGenerator.getInstance().generate();
+        student.setEmail("very-long-email-address-that-does-not-fit@polis.mail.ru");
+        StudentRecord.write(student, ByteBuffer.allocate(StudentRecord.RECORD_SIZE), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test04_littleEndianRejected() {
+        new StudentRecord().wrap(ByteBuffer.allocate(StudentRecord.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN), 0);
+    }
+
+    @Test
+    public void test05_tableAgainstHashSet() {
+        List<Student> students = students(5000);
+        ByteBuffer buffer = write(students);
+        Set<Student> validSet = new HashSet<>();
+        StudentRecordTable table = new StudentRecordTable(buffer);
+        StudentRecord record = new StudentRecord();
+        for (int i = 0; i < 20000; i++) {
+            int index = RANDOM.nextInt(students.size());
+            Student student = students.get(index);
+            record.wrap(buffer, index * StudentRecord.RECORD_SIZE);
+            if (RANDOM.nextInt(3) > 0) {
+                Assert.assertEquals("add", validSet.add(student), table.add(record.getOffset()));
+            } else {
+                Assert.assertEquals("remove", validSet.remove(student), table.remove(record));
+            }
+            Assert.assertEquals("size", validSet.size(), table.size());
+            Assert.assertEquals("contains", validSet.contains(student), table.contains(student));
+            Assert.assertEquals("contains record", validSet.contains(student), table.contains(record));
+        }
+        for (Student student : students(100)) {
+            Assert.assertFalse("absent", table.contains(student));
+        }
+        int[] count = new int[1];
+        table.forEachOffset(offset -> {
+            Assert.assertTrue("forEachOffset", validSet.contains(record.wrap(buffer, offset).toStudent()));
+            count[0]++;
+        });
+        Assert.assertEquals("forEachOffset count", validSet.size(), count[0]);
+    }
+
+    @Test
+    public void test06_stringsUpToFieldCapacity() {
+        //поле email шириной 52 байта: байт длины и до 51 байта строки
+        Student student = SimpleStudentGenerator.getInstance().generate();
+        String email = "a".repeat(51 - "@polis.mail.ru".length()) + "@polis.mail.ru";
+        student.setEmail(email);
+        student.setMobile("123456789012345");
+        ByteBuffer buffer = ByteBuffer.allocate(StudentRecord.RECORD_SIZE);
+        StudentRecord.write(student, buffer, 0);
+        StudentRecord record = new StudentRecord().wrap(buffer, 0);
+        Assert.assertEquals("email", email, record.getEmail());
+        Assert.assertEquals("mobile", "123456789012345", record.getMobile());
+        Assert.assertEquals("student", student, record.toStudent());
+        student.setEmail("a" + email);
+        try {
+            StudentRecord.write(student, buffer, 0);
+            Assert.fail("52 bytes in email");
+        } catch (IllegalArgumentException expected) {
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("does not fit into 51"));
+        }
+    }
+}
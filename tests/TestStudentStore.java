@@ -0,0 +1,95 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import ru.mail.polis.SimpleStudentGenerator;
+import ru.mail.polis.Student;
+import ru.mail.polis.StudentStore;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestStudentStore extends AbstractSetTest {
+
+    private List<Student> students;
+    private StudentStore store;
+
+    @Before
+    public void createStore() {
+        students = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            students.add(SimpleStudentGenerator.getInstance().generate());
+        }
+        store = new StudentStore();
+        store.appendAll(students.subList(0, 1000));
+        for (Student student : students.subList(1000, students.size())) {
+            store.append(student);
+        }
+    }
+
+    private void checkSelection(BitSet selection, Predicate<Student> predicate) {
+        for (int i = 0; i < students.size(); i++) {
+            Assert.assertEquals("row " + i, predicate.test(students.get(i)), selection.get(i));
+        }
+        Assert.assertTrue("no rows past the end", selection.length() <= students.size());
+    }
+
+    @Test
+    public void test01_rows() {
+        Assert.assertEquals("size", students.size(), store.size());
+        Assert.assertTrue("dictionary", store.getDictionarySize() < 100);
+        for (int i = 0; i < students.size(); i++) {
+            Student student = students.get(i);
+            StudentStore.Row row = store.row(i);
+            Assert.assertEquals("id", student.getId(), row.getId());
+            Assert.assertEquals("firstName", student.getFirstName(), row.getFirstName());
+            Assert.assertEquals("lastName", student.getLastName(), row.getLastName());
+            Assert.assertEquals("gender", student.getGender(), row.getGender());
+            Assert.assertEquals("birthday", student.getBirthday(), row.getBirthday());
+            Assert.assertEquals("groupId", student.getGroupId(), row.getGroupId());
+            Assert.assertEquals("year", student.getYearOfAdmission(), row.getYearOfAdmission());
+            Assert.assertEquals("student", student, row.toStudent());
+        }
+    }
+
+    @Test
+    public void test02_scans() {
+        Student sample = students.get(RANDOM.nextInt(students.size()));
+        checkSelection(store.whereGroupId(sample.getGroupId()), s -> s.getGroupId() == sample.getGroupId());
+        checkSelection(store.whereYearOfAdmission(2012, 2014),
+                s -> s.getYearOfAdmission() >= 2012 && s.getYearOfAdmission() <= 2014);
+        checkSelection(store.whereGender(Student.Gender.FEMALE), s -> s.getGender() == Student.Gender.FEMALE);
+        LocalDate from = LocalDate.of(1993, 3, 1);
+        LocalDate to = LocalDate.of(1995, 8, 31);
+        checkSelection(store.whereBirthday(from, to), s -> !s.getBirthday().isBefore(from) && !s.getBirthday().isAfter(to));
+        checkSelection(store.whereFirstName(sample.getFirstName()), s -> s.getFirstName().equals(sample.getFirstName()));
+        checkSelection(store.whereLastName(sample.getLastName()), s -> s.getLastName().equals(sample.getLastName()));
+        Assert.assertTrue("unknown name", store.whereLastName("НЕТ ТАКОЙ").isEmpty());
+
+        BitSet conjunction = store.whereGroupId(sample.getGroupId());
+        conjunction.and(store.whereGender(sample.getGender()));
+        checkSelection(conjunction, s -> s.getGroupId() == sample.getGroupId() && s.getGender() == sample.getGender());
+        Assert.assertTrue("sample", conjunction.get(students.indexOf(sample)));
+    }
+
+    @Test
+    public void test03_extremeBounds() {
+        checkSelection(store.whereYearOfAdmission(Short.MIN_VALUE, Short.MAX_VALUE), s -> true);
+        checkSelection(store.whereYearOfAdmission(Integer.MIN_VALUE, Integer.MAX_VALUE), s -> true);
+        checkSelection(store.whereYearOfAdmission(Integer.MIN_VALUE, 2013), s -> s.getYearOfAdmission() <= 2013);
+        checkSelection(store.whereYearOfAdmission(2013, Integer.MAX_VALUE), s -> s.getYearOfAdmission() >= 2013);
+        checkSelection(store.whereYearOfAdmission(Integer.MAX_VALUE, Integer.MIN_VALUE), s -> false);
+        checkSelection(store.whereBirthday(LocalDate.of(2100, 1, 1), LocalDate.of(1900, 1, 1)), s -> false);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void test04_rowOutOfRange() {
+        store.row(store.size());
+    }
+}
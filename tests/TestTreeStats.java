@@ -0,0 +1,85 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.Random;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.BinarySearchTree;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.TreeStats;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestTreeStats {
+
+    private static final int COUNT = 10_000;
+
+    @Test
+    public void test01_perfectTree() {
+        BinarySearchTree<Integer> tree = new BinarySearchTree<>();
+        for (int value : new int[]{4, 2, 6, 1, 3, 5, 7}) {
+            tree.add(value);
+        }
+        TreeStats stats = tree.stats();
+        Assert.assertEquals(7, stats.getSize());
+        Assert.assertEquals(3, stats.getHeight());
+        Assert.assertEquals(3, stats.getMinimalHeight());
+        Assert.assertEquals(1, stats.getDepths().count(0));
+        Assert.assertEquals(2, stats.getDepths().count(1));
+        Assert.assertEquals(4, stats.getDepths().count(2));
+        Assert.assertEquals(10, stats.getInternalPathLength());
+        Assert.assertEquals(1 + 10.0 / 7, stats.getExpectedHitComparisons(), 1e-9);
+        //все 8 пустых потомков на глубине 3
+        Assert.assertEquals(3.0, stats.getExpectedMissComparisons(), 1e-9);
+        Assert.assertEquals(-1.0, stats.getRedRatio(), 0);
+        Assert.assertEquals(0, new AVLTree<Integer>().stats().getHeight());
+    }
+
+    @Test
+    public void test02_sortedInput() {
+        BinarySearchTree<Integer> bst = new BinarySearchTree<>();
+        AVLTree<Integer> avl = new AVLTree<>();
+        RedBlackTree<Integer> redBlack = new RedBlackTree<>();
+        for (int i = 0; i < COUNT; i++) {
+            bst.add(i);
+            avl.add(i);
+            redBlack.add(i);
+        }
+        //глубже рекурсивного обхода, но без переполнения стека
+        TreeStats degenerate = bst.stats();
+        Assert.assertEquals(COUNT, degenerate.getHeight());
+        Assert.assertEquals((COUNT + 1) / 2.0, degenerate.getExpectedHitComparisons(), 1e-9);
+        Assert.assertTrue(degenerate.getHeightRatio() > 100);
+
+        TreeStats avlStats = avl.stats();
+        TreeStats redBlackStats = redBlack.stats();
+        Assert.assertEquals(COUNT, avlStats.getSize());
+        Assert.assertEquals(avl.validate(null).getHeight(), avlStats.getHeight());
+        Assert.assertEquals(redBlack.validate(null).getHeight(), redBlackStats.getHeight());
+        Assert.assertTrue(avlStats.getHeight() <= avlStats.getHeightBound());
+        Assert.assertTrue(redBlackStats.getHeight() <= redBlackStats.getHeightBound());
+        Assert.assertTrue(avlStats.getExpectedHitComparisons() < avlStats.getMinimalHeight() + 1);
+        Assert.assertTrue(redBlackStats.getRedRatio() > 0 && redBlackStats.getRedRatio() < 1);
+    }
+
+    @Test
+    public void test03_randomInput() {
+        BinarySearchTree<Integer> bst = new BinarySearchTree<>();
+        RedBlackTree<Integer> redBlack = new RedBlackTree<>();
+        Random random = new Random(42);
+        for (int i = 0; i < COUNT; i++) {
+            int value = random.nextInt();
+            bst.add(value);
+            redBlack.add(value);
+        }
+        TreeStats bstStats = bst.stats();
+        TreeStats redBlackStats = redBlack.stats();
+        Assert.assertEquals(bst.size(), bstStats.getSize());
+        Assert.assertEquals(bstStats.getSize(), bstStats.getDepths().getTotal());
+        //случайное дерево поиска: в среднем 2 ln n сравнений, сбалансированное - около log2 n
+        Assert.assertEquals(2 * Math.log(COUNT), bstStats.getExpectedHitComparisons(), 3);
+        Assert.assertTrue(redBlackStats.getExpectedHitComparisons() < bstStats.getExpectedHitComparisons());
+        Assert.assertEquals(bstStats.getExpectedHitComparisons() + 1, bstStats.getExpectedMissComparisons(), 0.1);
+    }
+}
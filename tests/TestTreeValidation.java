@@ -0,0 +1,147 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import ru.mail.polis.AVLTree;
+import ru.mail.polis.NotBalancedTreeException;
+import ru.mail.polis.RedBlackTree;
+import ru.mail.polis.TreeCheckReport;
+
+/**
+ * Испорченные деревья собираются через reflection: публичные операции испортить дерево не дают
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestTreeValidation {
+
+    private static final int COUNT = 20_000;
+
+    private static Object field(Object target, String name) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+
+    private static void setField(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    @Test
+    public void test01_parallelMatchesSequential() {
+        AVLTree<Integer> avl = new AVLTree<>();
+        RedBlackTree<Integer> redBlack = new RedBlackTree<>();
+        Random random = new Random(42);
+        for (int i = 0; i < COUNT; i++) {
+            int value = random.nextInt();
+            avl.add(value);
+            redBlack.add(value);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TreeCheckReport avlReport = avl.validate(null);
+            Assert.assertTrue(avlReport.toString(), avlReport.isBalanced());
+            Assert.assertEquals(avl.size(), avlReport.getNodeCount());
+            Assert.assertEquals(-1, avlReport.getBlackHeight());
+            //высота AVL-дерева не больше 1.44 log2(n + 2)
+            Assert.assertTrue(avlReport.getHeight() <= 1.45 * Math.log(COUNT + 2) / Math.log(2));
+            Assert.assertEquals(avlReport.toString(), avl.validate(pool).toString());
+
+            TreeCheckReport redBlackReport = redBlack.validate(null);
+            Assert.assertTrue(redBlackReport.toString(), redBlackReport.isBalanced());
+            Assert.assertEquals(redBlack.size(), redBlackReport.getNodeCount());
+            Assert.assertTrue(redBlackReport.getHeight() <= 2 * redBlackReport.getBlackHeight() + 1);
+            Assert.assertEquals(redBlackReport.toString(), redBlack.validate(pool).toString());
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertTrue(new AVLTree<Integer>().validate(null).isBalanced());
+        Assert.assertEquals(0, new RedBlackTree<Integer>().validate(null).getBlackHeight());
+    }
+
+    @Test
+    public void test02_orderViolation() throws ReflectiveOperationException {
+        RedBlackTree<Integer> tree = new RedBlackTree<>();
+        for (int i = 0; i < 1000; i++) {
+            tree.add(i);
+        }
+        Object root = field(tree, "root");
+        Object left = field(root, "left");
+        setField(left, "value", Integer.MAX_VALUE);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (ForkJoinPool validationPool : new ForkJoinPool[]{null, pool}) {
+                TreeCheckReport report = tree.validate(validationPool);
+                Assert.assertFalse(report.isBalanced());
+                //испорченный узел больше своего правого поддерева
+                Assert.assertTrue(report.getViolation(), report.getViolation().contains("not greater than the node"));
+                Assert.assertEquals("L", report.getPath());
+                Assert.assertEquals(1, report.getDepth());
+                Assert.assertTrue(report.getContext(), report.getContext().startsWith("N{d=" + Integer.MAX_VALUE));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        try {
+            tree.checkBalanced();
+            Assert.fail("NotBalancedTreeException");
+        } catch (NotBalancedTreeException e) {
+            Assert.assertNotNull(e.getReport());
+            Assert.assertTrue(e.getMessage().length() < 1000);
+        }
+    }
+
+    @Test
+    public void test03_heightViolation() throws ReflectiveOperationException {
+        AVLTree<Integer> tree = new AVLTree<>();
+        for (int i = 0; i < 1000; i++) {
+            tree.add(i);
+        }
+        Object node = field(tree, "root");
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            node = field(node, "right");
+            path.append('R');
+        }
+        node = field(node, "left");
+        path.append('L');
+        setField(node, "height", (byte) 100);
+        TreeCheckReport report = tree.validate(null);
+        Assert.assertFalse(report.isBalanced());
+        Assert.assertTrue(report.getViolation(), report.getViolation().startsWith("Stored height 100"));
+        Assert.assertEquals(path.toString(), report.getPath());
+        Assert.assertTrue(report.getContext(), report.getContext().contains("h=100"));
+    }
+
+    @Test
+    public void test04_degenerateTree() throws ReflectiveOperationException {
+        //цепочка из правых потомков: рекурсивная проверка переполнила бы стек
+        int length = 200_000;
+        AVLTree<Integer> tree = new AVLTree<>();
+        Class<?> nodeClass = Class.forName("ru.mail.polis.AVLTree$Node");
+        Constructor<?> constructor = nodeClass.getDeclaredConstructor(Object.class, nodeClass);
+        constructor.setAccessible(true);
+        Object root = constructor.newInstance(0, null);
+        Object parent = root;
+        for (int i = 1; i < length; i++) {
+            Object node = constructor.newInstance(i, parent);
+            setField(parent, "right", node);
+            parent = node;
+        }
+        setField(tree, "root", root);
+        setField(tree, "size", length);
+        TreeCheckReport report = tree.validate(null);
+        Assert.assertFalse(report.isBalanced());
+        //лист в порядке, ломается его родитель: высота 0 вместо 1
+        Assert.assertEquals(length - 2, report.getDepth());
+        Assert.assertTrue(report.getPath(), report.getPath().startsWith("...RRR"));
+        Assert.assertEquals(TreeCheckReport.MAX_PATH + 3, report.getPath().length());
+        Assert.assertEquals(2, report.getNodeCount());
+    }
+}
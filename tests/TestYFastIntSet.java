@@ -0,0 +1,143 @@
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import ru.mail.polis.YFastIntSet;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestYFastIntSet {
+
+    /**
+     * @return ключ или NOT_FOUND, как в YFastIntSet
+     */
+    private static long orNotFound(Integer value) {
+        return value == null ? YFastIntSet.NOT_FOUND : value;
+    }
+
+    private static void assertNavigation(TreeSet<Integer> expected, YFastIntSet set, int probe) {
+        Assert.assertEquals(expected.contains(probe), set.contains(probe));
+        Assert.assertEquals(orNotFound(expected.ceiling(probe)), set.ceiling(probe));
+        Assert.assertEquals(orNotFound(expected.higher(probe)), set.higher(probe));
+        Assert.assertEquals(orNotFound(expected.floor(probe)), set.floor(probe));
+        Assert.assertEquals(orNotFound(expected.lower(probe)), set.lower(probe));
+    }
+
+    private static void assertSameKeys(TreeSet<Integer> expected, YFastIntSet set) {
+        Assert.assertEquals(expected.size(), set.size());
+        Assert.assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), set.toArray());
+        if (!expected.isEmpty()) {
+            Assert.assertEquals(expected.first().intValue(), set.first());
+            Assert.assertEquals(expected.last().intValue(), set.last());
+        }
+    }
+
+    @Test
+    public void test01_emptyAndExtremeKeys() {
+        YFastIntSet set = new YFastIntSet();
+        Assert.assertTrue(set.isEmpty());
+        Assert.assertEquals(YFastIntSet.NOT_FOUND, set.ceiling(Integer.MIN_VALUE));
+        Assert.assertEquals(YFastIntSet.NOT_FOUND, set.floor(Integer.MAX_VALUE));
+        try {
+            set.first();
+            Assert.fail("NoSuchElementException");
+        } catch (NoSuchElementException ignored) {
+        }
+        Assert.assertTrue(set.add(Integer.MIN_VALUE));
+        Assert.assertTrue(set.add(Integer.MAX_VALUE));
+        Assert.assertTrue(set.add(0));
+        Assert.assertTrue(set.add(-1));
+        Assert.assertFalse(set.add(0));
+        Assert.assertEquals(4, set.size());
+        Assert.assertEquals(Integer.MIN_VALUE, set.first());
+        Assert.assertEquals(Integer.MAX_VALUE, set.last());
+        Assert.assertEquals(YFastIntSet.NOT_FOUND, set.higher(Integer.MAX_VALUE));
+        Assert.assertEquals(YFastIntSet.NOT_FOUND, set.lower(Integer.MIN_VALUE));
+        Assert.assertEquals(-1, set.lower(0));
+        Assert.assertEquals(0, set.higher(-1));
+        Assert.assertEquals(Integer.MAX_VALUE, set.ceiling(1));
+        Assert.assertEquals(Integer.MIN_VALUE, set.floor(-2));
+        Assert.assertTrue(set.remove(Integer.MIN_VALUE));
+        Assert.assertFalse(set.remove(Integer.MIN_VALUE));
+        Assert.assertEquals(-1, set.first());
+    }
+
+    @Test
+    public void test02_randomOperationsAgainstTreeSet() {
+        //плотные, разреженные и сгруппированные ключи; фаза удаления доводит множество почти до пустого,
+        //чтобы корзины сливались, в том числе первая
+        Random random = new Random(42);
+        int[] ranges = {1 << 12, Integer.MAX_VALUE, -1};
+        for (int range : ranges) {
+            TreeSet<Integer> expected = new TreeSet<>();
+            YFastIntSet set = new YFastIntSet();
+            for (int round = 0; round < 40_000; round++) {
+                int key = nextKey(random, range);
+                boolean insert = round < 25_000 ? random.nextInt(4) != 0 : random.nextInt(4) == 0;
+                if (insert) {
+                    Assert.assertEquals(expected.add(key), set.add(key));
+                } else {
+                    Integer victim = random.nextBoolean() ? expected.ceiling(key) : null;
+                    int removed = victim != null ? victim : key;
+                    Assert.assertEquals(expected.remove(removed), set.remove(removed));
+                }
+                if (round % 1000 == 0) {
+                    assertSameKeys(expected, set);
+                }
+                assertNavigation(expected, set, nextKey(random, range));
+            }
+            assertSameKeys(expected, set);
+            for (Integer key : new ArrayList<>(expected)) {
+                Assert.assertTrue(set.remove(key));
+            }
+            Assert.assertTrue(set.isEmpty());
+            Assert.assertEquals(YFastIntSet.NOT_FOUND, set.ceiling(0));
+        }
+    }
+
+    /**
+     * @param range - ключи от 0 до range, любые int при Integer.MAX_VALUE, группы подряд идущих ключей при -1
+     */
+    private static int nextKey(Random random, int range) {
+        if (range == Integer.MAX_VALUE) {
+            return random.nextInt();
+        }
+        if (range < 0) {
+            return (random.nextInt(64) << 24) + random.nextInt(512) - 256;
+        }
+        return random.nextInt(range);
+    }
+
+    @Test
+    public void test03_sequentialAddAndRemove() {
+        YFastIntSet set = new YFastIntSet();
+        for (int i = -50_000; i < 50_000; i++) {
+            Assert.assertTrue(set.add(i));
+        }
+        for (int i = -50_000; i < 50_000; i += 2) {
+            Assert.assertTrue(set.remove(i));
+        }
+        Assert.assertEquals(50_000, set.size());
+        List<Integer> keys = new ArrayList<>();
+        set.forEach(keys::add);
+        for (int i = 0; i < keys.size(); i++) {
+            Assert.assertEquals(-49_999 + 2 * i, keys.get(i).intValue());
+        }
+        for (int i = -50_000; i < 50_000; i += 2) {
+            Assert.assertEquals(i + 1, set.ceiling(i));
+            Assert.assertEquals(i - 1 < -49_999 ? YFastIntSet.NOT_FOUND : i - 1, set.floor(i));
+        }
+        for (int i = 49_999; i > 0; i -= 2) {
+            Assert.assertTrue(set.remove(i));
+            Assert.assertEquals(i - 2, set.last());
+        }
+        Assert.assertEquals(-49_999, set.first());
+        Assert.assertEquals(-1, set.last());
+    }
+}